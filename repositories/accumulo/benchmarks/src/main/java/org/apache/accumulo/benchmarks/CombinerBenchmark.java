@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.Combiner;
+import org.apache.accumulo.core.iterators.LongCombiner;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.iterators.TypedValueCombiner.Encoder;
+import org.apache.accumulo.core.iterators.user.SummingArrayCombiner;
+import org.apache.accumulo.core.iterators.user.SummingCombiner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks summing combiners over 100,000 versions of counters, comparing the primitive reduction of {@link SummingCombiner} and
+ * {@link SummingArrayCombiner} with the reduction through typedReduce, which decodes every Value into a Long or a List of Longs.
+ * <ul>
+ * <li>{@link #sum} and {@link #sumBoxed} sum single longs.</li>
+ * <li>{@link #sumArray} and {@link #sumArrayBoxed} sum arrays of 8 longs element-wise.</li>
+ * </ul>
+ * With the STRING encodings SummingCombiner still parses each value through a String, and SummingArrayCombiner reduces through typedReduce.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CombinerBenchmark {
+  
+  private static final Collection<ByteSequence> EMPTY_COL_FAMS = Collections.emptySet();
+  private static final int ENTRIES = 100000;
+  private static final int ARRAY_LENGTH = 8;
+  
+  /**
+   * Sums through typedReduce, because it is not a {@link LongCombiner.PrimitiveReducer}.
+   */
+  public static class BoxedSummingCombiner extends LongCombiner {
+    @Override
+    public Long typedReduce(Key key, Iterator<Long> iter) {
+      long sum = 0;
+      while (iter.hasNext())
+        sum = safeAdd(sum, iter.next());
+      return sum;
+    }
+  }
+  
+  /**
+   * Overriding typedReduce makes SummingArrayCombiner reduce through it.
+   */
+  public static class BoxedSummingArrayCombiner extends SummingArrayCombiner {
+    @Override
+    public List<Long> typedReduce(Key key, Iterator<List<Long>> iter) {
+      return super.typedReduce(key, iter);
+    }
+  }
+  
+  @Param({"VARLEN", "FIXEDLEN", "STRING"})
+  public String type;
+  
+  @Param({"4", "64", "1024"})
+  public int versions;
+  
+  private TreeMap<Key,Value> longs;
+  private TreeMap<Key,Value> arrays;
+  
+  @Setup
+  public void setup() {
+    Encoder<Long> longEncoder;
+    Encoder<List<Long>> arrayEncoder;
+    switch (LongCombiner.Type.valueOf(type)) {
+      case VARLEN:
+        longEncoder = LongCombiner.VAR_LEN_ENCODER;
+        arrayEncoder = SummingArrayCombiner.VAR_LONG_ARRAY_ENCODER;
+        break;
+      case FIXEDLEN:
+        longEncoder = LongCombiner.FIXED_LEN_ENCODER;
+        arrayEncoder = SummingArrayCombiner.FIXED_LONG_ARRAY_ENCODER;
+        break;
+      default:
+        longEncoder = LongCombiner.STRING_ENCODER;
+        arrayEncoder = SummingArrayCombiner.STRING_ARRAY_ENCODER;
+    }
+    
+    Random random = new Random(42);
+    longs = new TreeMap<Key,Value>();
+    arrays = new TreeMap<Key,Value>();
+    for (int i = 0; i < ENTRIES; i++) {
+      Key key = new Key(String.format("r%08d", i / versions), "count", "q", i % versions);
+      longs.put(key, new Value(longEncoder.encode((long) random.nextInt(1000))));
+      List<Long> array = new ArrayList<Long>(ARRAY_LENGTH);
+      for (int j = 0; j < ARRAY_LENGTH; j++)
+        array.add((long) random.nextInt(1000));
+      arrays.put(key, new Value(arrayEncoder.encode(array)));
+    }
+  }
+  
+  private int combine(Combiner combiner, TreeMap<Key,Value> data, Blackhole bh) throws IOException {
+    IteratorSetting is = new IteratorSetting(10, combiner.getClass());
+    is.addOption("type", type);
+    Combiner.setCombineAllColumns(is, true);
+    combiner.init(new SortedMapIterator(data), is.getOptions(), null);
+    
+    int count = 0;
+    combiner.seek(new Range(), EMPTY_COL_FAMS, false);
+    while (combiner.hasTop()) {
+      bh.consume(combiner.getTopValue());
+      combiner.next();
+      count++;
+    }
+    return count;
+  }
+  
+  @Benchmark
+  public int sum(Blackhole bh) throws IOException {
+    return combine(new SummingCombiner(), longs, bh);
+  }
+  
+  @Benchmark
+  public int sumBoxed(Blackhole bh) throws IOException {
+    return combine(new BoxedSummingCombiner(), longs, bh);
+  }
+  
+  @Benchmark
+  public int sumArray(Blackhole bh) throws IOException {
+    return combine(new SummingArrayCombiner(), arrays, bh);
+  }
+  
+  @Benchmark
+  public int sumArrayBoxed(Blackhole bh) throws IOException {
+    return combine(new BoxedSummingArrayCombiner(), arrays, bh);
+  }
+}
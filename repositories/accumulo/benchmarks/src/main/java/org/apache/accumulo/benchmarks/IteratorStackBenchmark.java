@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.iterators.system.ColumnFamilySkippingIterator;
+import org.apache.accumulo.core.iterators.system.DeletingIterator;
+import org.apache.accumulo.core.iterators.system.MultiIterator;
+import org.apache.accumulo.core.iterators.system.VisibilityFilter;
+import org.apache.accumulo.core.iterators.user.VersioningIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the iterators a tablet server stacks on top of its data sources, each one layered on the merge of in-memory sources so that the difference to
+ * {@link #merge} is the cost of the iterator itself.
+ * <ul>
+ * <li>{@link #merge} merges the sources with the {@link MultiIterator}, whose heap is the {@code HeapIterator}.</li>
+ * <li>{@link #versioning} keeps the latest version of each cell with the {@link VersioningIterator}.</li>
+ * <li>{@link #visibilityFilter} evaluates visibility expressions with the {@link VisibilityFilter}. With more distinct expressions than its cache holds every
+ * key is parsed and evaluated.</li>
+ * <li>{@link #columnFamilySkipping} reads one column family with the {@link ColumnFamilySkippingIterator}.</li>
+ * <li>{@link #systemStack} reads through the full stack a scan uses.</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IteratorStackBenchmark {
+  
+  private static final Collection<ByteSequence> EMPTY_COL_FAMS = Collections.emptySet();
+  
+  @Param({"1", "4", "16"})
+  public int sources;
+  
+  @Param({"16", "4096"})
+  public int visibilities;
+  
+  private List<SortedMap<Key,Value>> maps;
+  private Collection<ByteSequence> family;
+  
+  @Setup
+  public void setup() {
+    SyntheticData generator = new SyntheticData(10000, 32, 8, 4, 3, visibilities, 32);
+    maps = SyntheticData.split(generator.generate(), sources);
+    family = Collections.<ByteSequence> singleton(new ArrayByteSequence(SyntheticData.family(3)));
+  }
+  
+  private MultiIterator newMerge() {
+    List<SortedKeyValueIterator<Key,Value>> iters = new ArrayList<SortedKeyValueIterator<Key,Value>>(maps.size());
+    for (SortedMap<Key,Value> map : maps)
+      iters.add(new SortedMapIterator(map));
+    return new MultiIterator(iters, false);
+  }
+  
+  private static int consume(SortedKeyValueIterator<Key,Value> iter, Collection<ByteSequence> families, boolean inclusive, Blackhole bh) throws IOException {
+    int count = 0;
+    iter.seek(new Range(), families, inclusive);
+    while (iter.hasTop()) {
+      bh.consume(iter.getTopKey());
+      bh.consume(iter.getTopValue());
+      iter.next();
+      count++;
+    }
+    return count;
+  }
+  
+  @Benchmark
+  public int merge(Blackhole bh) throws IOException {
+    return consume(newMerge(), EMPTY_COL_FAMS, false, bh);
+  }
+  
+  @Benchmark
+  public int versioning(Blackhole bh) throws IOException {
+    VersioningIterator versioning = new VersioningIterator();
+    versioning.init(newMerge(), Collections.singletonMap("maxVersions", "1"), null);
+    return consume(versioning, EMPTY_COL_FAMS, false, bh);
+  }
+  
+  @Benchmark
+  public int visibilityFilter(Blackhole bh) throws IOException {
+    return consume(new VisibilityFilter(newMerge(), SyntheticData.AUTHS, new byte[0]), EMPTY_COL_FAMS, false, bh);
+  }
+  
+  @Benchmark
+  public int columnFamilySkipping(Blackhole bh) throws IOException {
+    return consume(new ColumnFamilySkippingIterator(newMerge()), family, true, bh);
+  }
+  
+  @Benchmark
+  public int systemStack(Blackhole bh) throws IOException {
+    SortedKeyValueIterator<Key,Value> iter = new DeletingIterator(newMerge(), false);
+    iter = new ColumnFamilySkippingIterator(iter);
+    iter = new VisibilityFilter(iter, SyntheticData.AUTHS, new byte[0]);
+    VersioningIterator versioning = new VersioningIterator();
+    versioning.init(iter, Collections.singletonMap("maxVersions", "1"), null);
+    return consume(versioning, EMPTY_COL_FAMS, false, bh);
+  }
+}
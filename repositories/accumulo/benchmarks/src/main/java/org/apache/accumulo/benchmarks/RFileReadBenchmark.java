@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.benchmarks;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileSKVIterator;
+import org.apache.accumulo.core.file.blockfile.cache.LruBlockCache;
+import org.apache.accumulo.core.iterators.system.ColumnFamilySkippingIterator;
+import org.apache.accumulo.core.util.CachedConfiguration;
+import org.apache.hadoop.fs.FileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the RFile read path against a synthetic file on the local file system.
+ * <p>
+ * Index and data blocks are served from block caches that hold the whole file, so the numbers reflect index lookups and block decoding rather than disk reads.
+ * <ul>
+ * <li>{@link #randomSeek} seeks to random keys, which descends the {@code MultiLevelIndex} and then skips forward within a data block.</li>
+ * <li>{@link #forwardSeek} seeks to keys a few entries past the previous one, which the reader satisfies within the current block using
+ * {@code RelativeKey.fastSkip}.</li>
+ * <li>{@link #scan} reads the whole file.</li>
+ * <li>{@link #columnFamilyScan} reads a single column family through the {@link ColumnFamilySkippingIterator}.</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RFileReadBenchmark {
+  
+  private static final Collection<ByteSequence> EMPTY_COL_FAMS = Collections.emptySet();
+  
+  @Param({"16", "256"})
+  public int keySize;
+  
+  @Param({"1", "16"})
+  public int families;
+  
+  @Param({"gz", "none"})
+  public String compression;
+  
+  private String file;
+  private FileSKVIterator reader;
+  private ColumnFamilySkippingIterator cfSkipper;
+  private Key[] randomKeys;
+  private Key[] forwardKeys;
+  private int randomIndex = 0;
+  private int forwardIndex = 0;
+  private Collection<ByteSequence> family;
+  
+  @Setup
+  public void setup() throws IOException {
+    SyntheticData generator = new SyntheticData(200000 / (families * 4), keySize, families, 4, 1, 16, 64);
+    SortedMap<Key,Value> data = generator.generate();
+    AccumuloConfiguration acuconf = SyntheticData.tableConfiguration(compression);
+    file = SyntheticData.writeRFile(data, acuconf);
+    
+    randomKeys = SyntheticData.sample(data, 1 << 14, 42);
+    forwardKeys = SyntheticData.stride(data, 7);
+    family = Collections.<ByteSequence> singleton(new ArrayByteSequence(SyntheticData.family(families / 2)));
+    
+    FileSystem fs = FileSystem.getLocal(CachedConfiguration.getInstance());
+    LruBlockCache dataCache = new LruBlockCache(1 << 30, 100000);
+    LruBlockCache indexCache = new LruBlockCache(1 << 28, 100000);
+    reader = FileOperations.getInstance().openReader(file, false, fs, fs.getConf(), acuconf, dataCache, indexCache);
+    cfSkipper = new ColumnFamilySkippingIterator(reader);
+    
+    // load every block into the caches
+    reader.seek(new Range(), EMPTY_COL_FAMS, false);
+    while (reader.hasTop())
+      reader.next();
+  }
+  
+  @TearDown
+  public void teardown() throws IOException {
+    reader.close();
+    SyntheticData.delete(file);
+  }
+  
+  @Benchmark
+  public Key randomSeek() throws IOException {
+    Key key = randomKeys[randomIndex++ & (randomKeys.length - 1)];
+    reader.seek(new Range(key, null), EMPTY_COL_FAMS, false);
+    return reader.getTopKey();
+  }
+  
+  @Benchmark
+  public Key forwardSeek() throws IOException {
+    if (forwardIndex == forwardKeys.length)
+      forwardIndex = 0;
+    Key key = forwardKeys[forwardIndex++];
+    reader.seek(new Range(key, null), EMPTY_COL_FAMS, false);
+    return reader.getTopKey();
+  }
+  
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public int scan(Blackhole bh) throws IOException {
+    int count = 0;
+    reader.seek(new Range(), EMPTY_COL_FAMS, false);
+    while (reader.hasTop()) {
+      bh.consume(reader.getTopKey());
+      bh.consume(reader.getTopValue());
+      reader.next();
+      count++;
+    }
+    return count;
+  }
+  
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public int columnFamilyScan(Blackhole bh) throws IOException {
+    int count = 0;
+    cfSkipper.seek(new Range(), family, true);
+    while (cfSkipper.hasTop()) {
+      bh.consume(cfSkipper.getTopKey());
+      cfSkipper.next();
+      count++;
+    }
+    return count;
+  }
+}
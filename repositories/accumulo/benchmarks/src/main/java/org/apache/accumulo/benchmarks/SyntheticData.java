@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileSKVWriter;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.util.CachedConfiguration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Generates deterministic synthetic key/value data for the benchmarks and writes it to RFiles on the local file system.
+ * <p>
+ * Rows are zero padded to the requested key size, every row holds the same number of column families and qualifiers, and each cell carries one of a fixed set
+ * of visibility expressions. Expressions reference labels {@code L0..L7} and groups {@code G0..G1023}; {@link #AUTHS} grants every label and the even groups, so
+ * roughly half of the expressions are visible.
+ */
+public class SyntheticData {
+  
+  private static final int GROUPS = 1024;
+  
+  public static final Authorizations AUTHS;
+  
+  static {
+    List<byte[]> auths = new ArrayList<byte[]>();
+    for (int i = 0; i < 8; i++)
+      auths.add(("L" + i).getBytes());
+    for (int i = 0; i < GROUPS; i += 2)
+      auths.add(("G" + i).getBytes());
+    AUTHS = new Authorizations(auths);
+  }
+  
+  private final int rows;
+  private final int keySize;
+  private final int families;
+  private final int qualifiers;
+  private final int versions;
+  private final String[] visibilities;
+  private final byte[] value;
+  
+  /**
+   * @param rows
+   *          number of rows
+   * @param keySize
+   *          length of each row id in bytes
+   * @param families
+   *          number of column families per row
+   * @param qualifiers
+   *          number of column qualifiers per family
+   * @param versions
+   *          number of timestamps per cell
+   * @param visibilities
+   *          number of distinct visibility expressions, zero for no visibility
+   * @param valueSize
+   *          length of each value in bytes
+   */
+  public SyntheticData(int rows, int keySize, int families, int qualifiers, int versions, int visibilities, int valueSize) {
+    this.rows = rows;
+    this.keySize = keySize;
+    this.families = families;
+    this.qualifiers = qualifiers;
+    this.versions = versions;
+    this.visibilities = new String[visibilities];
+    for (int i = 0; i < visibilities; i++)
+      this.visibilities[i] = String.format("L%d&(G%d|G%d)", i % 8, (i * 2 + 1) % GROUPS, i % GROUPS);
+    this.value = new byte[valueSize];
+    new Random(42).nextBytes(value);
+  }
+  
+  public String row(int i) {
+    String digits = Integer.toString(i);
+    StringBuilder sb = new StringBuilder(Math.max(keySize, digits.length() + 1));
+    sb.append('r');
+    for (int pad = sb.length() + digits.length(); pad < keySize; pad++)
+      sb.append('0');
+    return sb.append(digits).toString();
+  }
+  
+  public static String family(int i) {
+    return String.format("cf%04d", i);
+  }
+  
+  private String visibility(int row, int family, int qualifier) {
+    if (visibilities.length == 0)
+      return "";
+    return visibilities[Math.abs((row * 31 + family) * 31 + qualifier) % visibilities.length];
+  }
+  
+  public int getRows() {
+    return rows;
+  }
+  
+  public int getFamilies() {
+    return families;
+  }
+  
+  /**
+   * @return every key and value, in sorted order
+   */
+  public SortedMap<Key,Value> generate() {
+    TreeMap<Key,Value> data = new TreeMap<Key,Value>();
+    for (int r = 0; r < rows; r++) {
+      byte[] row = row(r).getBytes();
+      for (int f = 0; f < families; f++) {
+        byte[] cf = family(f).getBytes();
+        for (int q = 0; q < qualifiers; q++) {
+          byte[] cq = String.format("cq%04d", q).getBytes();
+          byte[] cv = visibility(r, f, q).getBytes();
+          for (int v = 0; v < versions; v++)
+            data.put(new Key(row, cf, cq, cv, 1000 + v), new Value(value));
+        }
+      }
+    }
+    return data;
+  }
+  
+  /**
+   * Splits the data into sources that each hold some of the versions of every cell, the way versions of a key end up spread across a tablet's in-memory map and
+   * files.
+   */
+  public static List<SortedMap<Key,Value>> split(SortedMap<Key,Value> data, int sources) {
+    List<SortedMap<Key,Value>> maps = new ArrayList<SortedMap<Key,Value>>(sources);
+    for (int i = 0; i < sources; i++)
+      maps.add(new TreeMap<Key,Value>());
+    int i = 0;
+    for (Entry<Key,Value> entry : data.entrySet())
+      maps.get(i++ % sources).put(entry.getKey(), entry.getValue());
+    return maps;
+  }
+  
+  /**
+   * @return a configuration with default table settings and the given compression codec
+   */
+  public static AccumuloConfiguration tableConfiguration(String compression) {
+    ConfigurationCopy conf = new ConfigurationCopy(AccumuloConfiguration.getDefaultConfiguration());
+    conf.set(Property.TABLE_FILE_COMPRESSION_TYPE, compression);
+    return conf;
+  }
+  
+  /**
+   * Writes the data to a new RFile in a temporary directory.
+   *
+   * @return the path of the new file
+   */
+  public static String writeRFile(SortedMap<Key,Value> data, AccumuloConfiguration acuconf) throws IOException {
+    File dir = File.createTempFile("accumulo-bench", "");
+    if (!dir.delete() || !dir.mkdir())
+      throw new IOException("Unable to create " + dir);
+    dir.deleteOnExit();
+    
+    String file = new File(dir, "bench.rf").getAbsolutePath();
+    FileSystem fs = FileSystem.getLocal(CachedConfiguration.getInstance());
+    FileSKVWriter writer = FileOperations.getInstance().openWriter(file, fs, fs.getConf(), acuconf);
+    try {
+      writer.startDefaultLocalityGroup();
+      for (Entry<Key,Value> entry : data.entrySet())
+        writer.append(entry.getKey(), entry.getValue());
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+  
+  public static void delete(String file) throws IOException {
+    FileSystem fs = FileSystem.getLocal(CachedConfiguration.getInstance());
+    fs.delete(new Path(file).getParent(), true);
+  }
+  
+  /**
+   * @return the given number of keys chosen uniformly at random from the data, in random order
+   */
+  public static Key[] sample(SortedMap<Key,Value> data, int count, long seed) {
+    Key[] all = data.keySet().toArray(new Key[data.size()]);
+    Random random = new Random(seed);
+    Key[] sample = new Key[count];
+    for (int i = 0; i < count; i++)
+      sample[i] = all[random.nextInt(all.length)];
+    return sample;
+  }
+  
+  /**
+   * @return every stride'th key of the data, in sorted order
+   */
+  public static Key[] stride(SortedMap<Key,Value> data, int stride) {
+    Key[] all = data.keySet().toArray(new Key[data.size()]);
+    Key[] keys = new Key[(all.length + stride - 1) / stride];
+    for (int i = 0; i < keys.length; i++)
+      keys[i] = all[i * stride];
+    return keys;
+  }
+}
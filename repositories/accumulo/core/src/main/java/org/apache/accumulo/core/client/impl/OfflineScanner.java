@@ -306,6 +306,16 @@ class OfflineIterator implements Iterator<Entry<Key,Value>> {
       readers.add(reader);
     }
     
+    return createScanStack(extent, readers, acuTableConf, authorizations, options);
+  }
+  
+  /**
+   * Builds the iterator stack a tablet server would use to scan the given files of a tablet, including the table's scan time iterators and visibility
+   * filtering.
+   */
+  static SortedKeyValueIterator<Key,Value> createScanStack(KeyExtent extent, List<SortedKeyValueIterator<Key,Value>> readers,
+      AccumuloConfiguration acuTableConf, Authorizations authorizations, ScannerOptions options) throws IOException {
+    
     MultiIterator multiIter = new MultiIterator(readers, extent);
     
     OfflineIteratorEnvironment iterEnv = new OfflineIteratorEnvironment();
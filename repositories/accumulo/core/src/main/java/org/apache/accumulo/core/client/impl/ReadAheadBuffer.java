@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.client.impl;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Value;
+
+/**
+ * Holds batches of scan results fetched ahead of a consumer. The number of batches it holds follows the rate at which the consumer drains them and the
+ * latency of the RPCs that fetch them, and the memory the batches use is capped.
+ *
+ * A consumer that is fast compared to the RPC latency gets enough batches buffered to cover an RPC. A slow consumer gets only a couple, and a smaller batch
+ * size, so that results are not held in client memory for long. A batch is always accepted when the buffer is empty, so a single batch larger than the cap
+ * does not block the scan.
+ */
+class ReadAheadBuffer<T> {
+  
+  static final long DEFAULT_MAX_MEMORY = 1 << 25;
+  static final int MIN_BATCH_SIZE = 10;
+  
+  // a batch should keep the consumer busy for at least this long, or this many RPCs
+  static final long TARGET_BATCH_TIME = 100;
+  static final int TARGET_BATCH_RPCS = 4;
+  
+  // rough per entry object overhead, used when estimating the memory used by a batch
+  private static final int ENTRY_OVERHEAD = 64;
+  private static final double ALPHA = 0.3;
+  
+  private static class Batch<T> {
+    T item;
+    int entries;
+    long bytes;
+    
+    Batch(T item, int entries, long bytes) {
+      this.item = item;
+      this.entries = entries;
+      this.bytes = bytes;
+    }
+  }
+  
+  private final int maxDepth;
+  private final long maxMemory;
+  
+  private LinkedList<Batch<T>> batches = new LinkedList<Batch<T>>();
+  private long bufferedBytes = 0;
+  private boolean closed = false;
+  private boolean readingAhead = false;
+  
+  // milliseconds an RPC takes
+  private double latency = -1;
+  // milliseconds the consumer takes to drain a batch, and entries it drains per millisecond
+  private double consumeTime = -1;
+  private double drainRate = -1;
+  private double bytesPerEntry = -1;
+  private double batchBytes = -1;
+  
+  private long handedOutTime = 0;
+  private int handedOutEntries = 0;
+  
+  ReadAheadBuffer(int maxDepth, long maxMemory) {
+    this.maxDepth = Math.max(1, maxDepth);
+    this.maxMemory = Math.max(1, maxMemory);
+  }
+  
+  static long estimateSize(List<? extends Entry<Key,Value>> entries) {
+    long bytes = 0;
+    for (Entry<Key,Value> entry : entries) {
+      if (entry instanceof KeyValue)
+        bytes += entry.getKey().getSize() + ((KeyValue) entry).value.length;
+      else
+        bytes += entry.getKey().getSize() + entry.getValue().getSize();
+      bytes += ENTRY_OVERHEAD;
+    }
+    return bytes;
+  }
+  
+  /**
+   * @return the number of batches that should be buffered for the consumer to not wait on an RPC
+   */
+  synchronized int getDepth() {
+    int depth = maxDepth;
+    if (latency >= 0 && consumeTime >= 0)
+      depth = (int) Math.min(maxDepth, Math.ceil(latency / Math.max(1, consumeTime)) + 1);
+    
+    if (batchBytes > 0)
+      depth = (int) Math.min(depth, maxMemory / Math.max(1, (long) batchBytes));
+    
+    return Math.max(1, depth);
+  }
+  
+  /**
+   * @return the number of entries to ask for in the next RPC, at most maxSize
+   */
+  synchronized int getBatchSize(int maxSize) {
+    if (drainRate < 0)
+      return maxSize;
+    
+    double size = drainRate * Math.max(TARGET_BATCH_TIME, TARGET_BATCH_RPCS * Math.max(0, latency));
+    if (bytesPerEntry > 0)
+      size = Math.min(size, maxMemory / bytesPerEntry);
+    
+    return (int) Math.max(Math.min(MIN_BATCH_SIZE, maxSize), Math.min(maxSize, size));
+  }
+  
+  /**
+   * @return true if another batch may be added without exceeding the depth or memory cap
+   */
+  synchronized boolean hasRoom() {
+    return batches.isEmpty() || (batches.size() < getDepth() && bufferedBytes < maxMemory);
+  }
+  
+  /**
+   * Adds a batch of results, waiting while the buffer is full.
+   */
+  synchronized void put(T batch, int entries, long bytes) throws InterruptedException {
+    while (!hasRoom() && !closed)
+      wait();
+    add(batch, entries, bytes);
+  }
+  
+  /**
+   * Adds a batch of results without waiting. Used by a single reader that checks {@link #continueReadAhead()} before each fetch, so that a reader never
+   * blocks on a consumer that has stopped reading.
+   */
+  synchronized void add(T batch, int entries, long bytes) {
+    if (entries > 0) {
+      double bpe = (double) bytes / entries;
+      bytesPerEntry = bytesPerEntry < 0 ? bpe : ALPHA * bpe + (1 - ALPHA) * bytesPerEntry;
+      batchBytes = batchBytes < 0 ? bytes : ALPHA * bytes + (1 - ALPHA) * batchBytes;
+    }
+    
+    batches.add(new Batch<T>(batch, entries, bytes));
+    bufferedBytes += bytes;
+    notifyAll();
+  }
+  
+  /**
+   * Adds a final item, such as an end of scan marker or an exception, without waiting. Nothing more may be read ahead after it.
+   */
+  synchronized void close(T last) {
+    batches.add(new Batch<T>(last, 0, 0));
+    closed = true;
+    readingAhead = false;
+    notifyAll();
+  }
+  
+  synchronized T take() throws InterruptedException {
+    while (batches.isEmpty())
+      wait();
+    return remove();
+  }
+  
+  synchronized T poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long end = System.currentTimeMillis() + unit.toMillis(timeout);
+    long remaining;
+    while (batches.isEmpty() && (remaining = end - System.currentTimeMillis()) > 0)
+      wait(remaining);
+    
+    if (batches.isEmpty())
+      return null;
+    return remove();
+  }
+  
+  private T remove() {
+    Batch<T> batch = batches.removeFirst();
+    bufferedBytes -= batch.bytes;
+    handedOutEntries = batch.entries;
+    handedOutTime = System.currentTimeMillis();
+    notifyAll();
+    return batch.item;
+  }
+  
+  /**
+   * Called when the consumer has finished with the last batch it took, before it asks for another.
+   */
+  synchronized void batchDrained() {
+    if (handedOutEntries == 0)
+      return;
+    
+    long time = Math.max(1, System.currentTimeMillis() - handedOutTime);
+    double rate = (double) handedOutEntries / time;
+    if (consumeTime < 0) {
+      consumeTime = time;
+      drainRate = rate;
+    } else {
+      consumeTime = ALPHA * time + (1 - ALPHA) * consumeTime;
+      drainRate = ALPHA * rate + (1 - ALPHA) * drainRate;
+    }
+    handedOutEntries = 0;
+  }
+  
+  synchronized void rpcCompleted(long time) {
+    latency = latency < 0 ? time : ALPHA * time + (1 - ALPHA) * latency;
+  }
+  
+  /**
+   * Used when a single reader fetches ahead. Marks the reader as running if there is room for more batches.
+   *
+   * @return true if the caller should start a reader
+   */
+  synchronized boolean startReadAhead() {
+    if (readingAhead || closed || !hasRoom())
+      return false;
+    readingAhead = true;
+    return true;
+  }
+  
+  /**
+   * Called by a reader after adding a batch. Marks the reader as stopped if the buffer is full.
+   *
+   * @return true if the reader should fetch another batch
+   */
+  synchronized boolean continueReadAhead() {
+    if (!closed && hasRoom())
+      return true;
+    readingAhead = false;
+    return false;
+  }
+  
+  /**
+   * @return true if nothing is buffered and no reader will add anything, so the consumer has to fetch the next batch itself
+   */
+  synchronized boolean needsFetch() {
+    return batches.isEmpty() && !readingAhead && !closed;
+  }
+  
+  synchronized int getBuffered() {
+    return batches.size();
+  }
+  
+  synchronized long getBufferedBytes() {
+    return bufferedBytes;
+  }
+  
+  synchronized double getLatency() {
+    return latency;
+  }
+  
+  synchronized double getDrainRate() {
+    return Math.max(0, drainRate) * 1000;
+  }
+}
@@ -21,7 +21,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -60,13 +59,15 @@ public class ScannerIterator implements Iterator<Entry<Key,Value>> {
   
   private ScannerOptions options;
   
-  private ArrayBlockingQueue<Object> synchQ;
+  private ReadAheadBuffer<Object> readAhead;
+  private int size;
   
   private boolean finished = false;
   
-  private boolean readaheadInProgress;
   private long batchCount = 0;
   
+  static final int MAX_READAHEAD_BATCHES = 8;
+  
   private static final List<KeyValue> EMPTY_LIST = Collections.emptyList();
   
   private static ThreadPoolExecutor readaheadPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 3l, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
@@ -74,48 +75,60 @@ public class ScannerIterator implements Iterator<Entry<Key,Value>> {
 
   private class Reader implements Runnable {
     
+    // when reading ahead, keep fetching batches until the read ahead buffer is full
+    private boolean readingAhead;
+    
+    Reader(boolean readingAhead) {
+      this.readingAhead = readingAhead;
+    }
+    
     @Override
     public void run() {
       
       try {
         while (true) {
+          // the batch size only takes effect when a scan session is started on a tablet server
+          scanState.size = readAhead.getBatchSize(size);
+          long t1 = System.currentTimeMillis();
           List<KeyValue> currentBatch = ThriftScanner.scan(instance, credentials, scanState, timeOut, instance.getConfiguration());
           
           if (currentBatch == null) {
-            synchQ.add(EMPTY_LIST);
+            readAhead.close(EMPTY_LIST);
             return;
           }
           
           if (currentBatch.size() == 0)
             continue;
           
-          synchQ.add(currentBatch);
-          return;
+          readAhead.rpcCompleted(System.currentTimeMillis() - t1);
+          readAhead.add(currentBatch, currentBatch.size(), ReadAheadBuffer.estimateSize(currentBatch));
+          if (!readingAhead || !readAhead.continueReadAhead())
+            return;
         }
       } catch (IsolationException e) {
-        synchQ.add(e);
+        readAhead.close(e);
         log.trace(e, e);
       } catch (ScanTimedOutException e) {
-        synchQ.add(e);
+        readAhead.close(e);
         log.trace(e, e);
       } catch (AccumuloException e) {
-        synchQ.add(e);
+        readAhead.close(e);
         log.trace(e, e);
       } catch (AccumuloSecurityException e) {
         log.trace(e, e);
-        synchQ.add(e);
+        readAhead.close(e);
       } catch (TableDeletedException e) {
         log.trace(e, e);
-        synchQ.add(e);
+        readAhead.close(e);
       } catch (TableOfflineException e) {
         log.trace(e, e);
-        synchQ.add(e);
+        readAhead.close(e);
       } catch (TableNotFoundException e) {
         log.warn(e, e);
-        synchQ.add(e);
+        readAhead.close(e);
       } catch (Exception e) {
         log.error(e, e);
-        synchQ.add(e);
+        readAhead.close(e);
       }
     }
     
@@ -130,7 +143,8 @@ public class ScannerIterator implements Iterator<Entry<Key,Value>> {
     
     this.options = new ScannerOptions(options);
     
-    synchQ = new ArrayBlockingQueue<Object>(1);
+    this.size = size;
+    readAhead = new ReadAheadBuffer<Object>(MAX_READAHEAD_BATCHES, ReadAheadBuffer.DEFAULT_MAX_MEMORY);
     
     if (this.options.fetchedColumns.size() > 0) {
       range = range.bound(this.options.fetchedColumns.first(), this.options.fetchedColumns.last());
@@ -138,13 +152,12 @@ public class ScannerIterator implements Iterator<Entry<Key,Value>> {
     
     scanState = new ScanState(credentials, tableName, authorizations, new Range(range), options.fetchedColumns, size, options.serverSideIteratorList,
         options.serverSideIteratorOptions, isolated);
-    readaheadInProgress = false;
     iter = null;
   }
   
   private void initiateReadAhead() {
-    readaheadInProgress = true;
-    readaheadPool.execute(new Reader());
+    if (readAhead.startReadAhead())
+      readaheadPool.execute(new Reader(true));
   }
   
   @SuppressWarnings("unchecked")
@@ -159,12 +172,14 @@ public class ScannerIterator implements Iterator<Entry<Key,Value>> {
     // this is done in order to find see if there is another batch to get
     
     try {
-      if (!readaheadInProgress) {
-        // no read ahead run, fetch the next batch right now
-        new Reader().run();
+      readAhead.batchDrained();
+      
+      if (readAhead.needsFetch()) {
+        // nothing read ahead, fetch the next batch right now
+        new Reader(false).run();
       }
       
-      Object obj = synchQ.take();
+      Object obj = readAhead.take();
       
       if (obj instanceof Exception) {
         finished = true;
@@ -185,7 +200,7 @@ public class ScannerIterator implements Iterator<Entry<Key,Value>> {
       batchCount++;
       
       if (batchCount > 3) {
-        // start a thread to read the next batch
+        // start a thread to read the next batches, unless one is running or enough are buffered
         initiateReadAhead();
       }
       
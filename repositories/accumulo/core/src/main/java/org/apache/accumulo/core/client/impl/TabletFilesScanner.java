@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.client.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import org.apache.accumulo.core.Constants;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyExtent;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileSKVIterator;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.util.ArgumentChecker;
+import org.apache.accumulo.core.util.LocalityGroupUtil;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.log4j.Logger;
+
+/**
+ * Scans a known set of files of one tablet directly from the file system, without reading the metadata table or contacting a tablet server. The files are read
+ * through the same iterator stack a tablet server uses, so deletes, the table's scan time iterators and visibility filtering are all applied.
+ *
+ * The caller is responsible for making sure the files do not change while they are read, for example by reading an offline table or an offline clone.
+ */
+public class TabletFilesScanner extends ScannerOptions implements Scanner {
+  
+  private static final Logger log = Logger.getLogger(TabletFilesScanner.class);
+  
+  private int batchSize;
+  private int timeOut;
+  private Range range;
+  
+  private FileSystem fs;
+  private Configuration conf;
+  private KeyExtent extent;
+  private List<String> files;
+  private AccumuloConfiguration acuTableConf;
+  private Authorizations authorizations;
+  
+  /**
+   * @param files
+   *          absolute paths of the tablet's files
+   * @param acuTableConf
+   *          the configuration of the table the tablet belongs to
+   */
+  public TabletFilesScanner(FileSystem fs, Configuration conf, KeyExtent extent, List<String> files, AccumuloConfiguration acuTableConf,
+      Authorizations authorizations) {
+    ArgumentChecker.notNull(fs, conf, extent, files, acuTableConf, authorizations);
+    this.fs = fs;
+    this.conf = conf;
+    this.extent = extent;
+    this.files = files;
+    this.acuTableConf = acuTableConf;
+    this.authorizations = authorizations;
+    this.range = new Range((Key) null, (Key) null);
+    
+    this.batchSize = Constants.SCAN_BATCH_SIZE;
+    this.timeOut = Integer.MAX_VALUE;
+  }
+  
+  @Override
+  public void setTimeOut(int timeOut) {
+    this.timeOut = timeOut;
+  }
+  
+  @Override
+  public int getTimeOut() {
+    return timeOut;
+  }
+  
+  @Override
+  public void setRange(Range range) {
+    this.range = range;
+  }
+  
+  @Override
+  public Range getRange() {
+    return range;
+  }
+  
+  @Override
+  public void setBatchSize(int size) {
+    this.batchSize = size;
+  }
+  
+  @Override
+  public int getBatchSize() {
+    return batchSize;
+  }
+  
+  @Override
+  public void enableIsolation() {
+    
+  }
+  
+  @Override
+  public void disableIsolation() {
+    
+  }
+  
+  @Override
+  public Iterator<Entry<Key,Value>> iterator() {
+    final ScannerOptions options = new ScannerOptions(this);
+    final List<FileSKVIterator> readers = new ArrayList<FileSKVIterator>(files.size());
+    final SortedKeyValueIterator<Key,Value> iter;
+    Range seekRange = extent.toDataRange().clip(range, true);
+    
+    try {
+      for (String file : files)
+        readers.add(FileOperations.getInstance().openReader(file, false, fs, conf, acuTableConf));
+      
+      iter = OfflineIterator.createScanStack(extent, new ArrayList<SortedKeyValueIterator<Key,Value>>(readers), acuTableConf, authorizations, options);
+      
+      if (seekRange != null && options.fetchedColumns.size() > 0)
+        seekRange = seekRange.bound(options.fetchedColumns.first(), options.fetchedColumns.last());
+      if (seekRange != null)
+        iter.seek(seekRange, LocalityGroupUtil.families(options.fetchedColumns), options.fetchedColumns.size() == 0 ? false : true);
+    } catch (IOException e) {
+      close(readers);
+      throw new RuntimeException(e);
+    }
+    
+    if (seekRange == null || !iter.hasTop())
+      close(readers);
+    
+    return new Iterator<Entry<Key,Value>>() {
+      
+      @Override
+      public boolean hasNext() {
+        return !readers.isEmpty() && iter.hasTop();
+      }
+      
+      @Override
+      public Entry<Key,Value> next() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        
+        try {
+          byte[] v = iter.getTopValue().get();
+          // copy just like tablet server does, do this before calling next
+          KeyValue ret = new KeyValue(new Key(iter.getTopKey()), Arrays.copyOf(v, v.length));
+          
+          iter.next();
+          
+          // the files are not needed once everything was read
+          if (!iter.hasTop())
+            close(readers);
+          
+          return ret;
+        } catch (IOException e) {
+          close(readers);
+          throw new RuntimeException(e);
+        }
+      }
+      
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+  
+  private static void close(List<FileSKVIterator> readers) {
+    for (FileSKVIterator reader : readers) {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        log.warn("Failed to close file " + e.getMessage(), e);
+      }
+    }
+    readers.clear();
+  }
+}
@@ -25,12 +25,15 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.SortedMap;
-import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.accumulo.core.Constants;
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
 import org.apache.accumulo.core.client.TableNotFoundException;
@@ -81,14 +84,19 @@ public class TabletLocatorImpl extends TabletLocator {
   
   protected Text tableId;
   protected TabletLocator parent;
-  protected TreeMap<Text,TabletLocation> metaCache = new TreeMap<Text,TabletLocation>(endRowComparator);
+  
+  // the cache is read without locking, lookupLock serializes metadata lookups and all changes to the cache
+  protected NavigableMap<Text,TabletLocation> metaCache = new ConcurrentSkipListMap<Text,TabletLocation>(endRowComparator);
   protected TabletLocationObtainer locationObtainer;
   protected Text lastTabletRow;
   
-  private TreeSet<KeyExtent> badExtents = new TreeSet<KeyExtent>();
-  private ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
-  private Lock rLock = rwLock.readLock();
-  private Lock wLock = rwLock.writeLock();
+  private SortedSet<KeyExtent> badExtents = new ConcurrentSkipListSet<KeyExtent>();
+  private ReentrantLock lookupLock = new ReentrantLock();
+  
+  private AtomicLong cacheHits = new AtomicLong(0);
+  private AtomicLong cacheMisses = new AtomicLong(0);
+  private AtomicLong invalidations = new AtomicLong(0);
+  private AtomicLong metadataLookups = new AtomicLong(0);
   
   public static interface TabletLocationObtainer {
     /**
@@ -120,29 +128,27 @@ public class TabletLocatorImpl extends TabletLocator {
     ArrayList<Mutation> notInCache = new ArrayList<Mutation>();
     Text row = new Text();
     
-    rLock.lock();
-    try {
-      processInvalidated();
-      
-      // for this to be efficient rows need to be in sorted order, but always sorting is slow... therefore only sort the
-      // stuff not in the cache.... it is most efficient to pass _locateTablet rows in sorted order
-      
-      // For this to be efficient, need to avoid fine grained synchronization and fine grained logging.
-      // Therefore methods called by this are not synchronized and should not log.
+    processInvalidated();
+    
+    // for this to be efficient rows need to be in sorted order, but always sorting is slow... therefore only sort the
+    // stuff not in the cache.... it is most efficient to pass _locateTablet rows in sorted order
+    
+    // For this to be efficient, need to avoid fine grained synchronization and fine grained logging.
+    // Therefore methods called by this are not synchronized and should not log.
+    
+    for (Mutation mutation : mutations) {
+      row.set(mutation.getRow());
+      TabletLocation tl = locateTabletInCache(row);
+      if (tl == null)
+        notInCache.add(mutation);
+      else
+        addMutation(binnedMutations, mutation, tl);
       
-      for (Mutation mutation : mutations) {
-        row.set(mutation.getRow());
-        TabletLocation tl = locateTabletInCache(row);
-        if (tl == null)
-          notInCache.add(mutation);
-        else
-          addMutation(binnedMutations, mutation, tl);
-        
-      }
-    } finally {
-      rLock.unlock();
     }
     
+    cacheHits.addAndGet(mutations.size() - notInCache.size());
+    cacheMisses.addAndGet(notInCache.size());
+    
     if (notInCache.size() > 0) {
       Collections.sort(notInCache, new Comparator<Mutation>() {
         public int compare(Mutation o1, Mutation o2) {
@@ -150,7 +156,7 @@ public class TabletLocatorImpl extends TabletLocator {
         }
       });
       
-      wLock.lock();
+      lookupLock.lock();
       try {
         boolean failed = false;
         for (Mutation mutation : notInCache) {
@@ -173,7 +179,7 @@ public class TabletLocatorImpl extends TabletLocator {
           }
         }
       } finally {
-        wLock.unlock();
+        lookupLock.unlock();
       }
     }
     
@@ -265,31 +271,29 @@ public class TabletLocatorImpl extends TabletLocator {
     if (log.isTraceEnabled())
       opTimer = new OpTimer(log, Level.TRACE).start("Binning " + ranges.size() + " ranges for table " + tableId);
     
-    List<Range> failures;
-    rLock.lock();
-    try {
-      processInvalidated();
-      
-      // for this to be optimal, need to look ranges up in sorted order when
-      // ranges are not present in cache... however do not want to always
-      // sort ranges... therefore try binning ranges using only the cache
-      // and sort whatever fails and retry
-      
-      failures = binRanges(ranges, binnedRanges, true);
-    } finally {
-      rLock.unlock();
-    }
+    processInvalidated();
+    
+    // for this to be optimal, need to look ranges up in sorted order when
+    // ranges are not present in cache... however do not want to always
+    // sort ranges... therefore try binning ranges using only the cache
+    // and sort whatever fails and retry
+    
+    List<Range> failures = binRanges(ranges, binnedRanges, true);
+    
+    cacheHits.addAndGet(ranges.size() - failures.size());
+    cacheMisses.addAndGet(failures.size());
     
     if (failures.size() > 0) {
       // sort failures by range start key
       Collections.sort(failures);
       
-      // try lookups again
-      wLock.lock();
+      // try lookups again, first reading the locations of all tablets in the failed ranges from the metadata table at once
+      lookupLock.lock();
       try {
+        prefetchRanges(failures);
         failures = binRanges(failures, binnedRanges, false);
       } finally {
-        wLock.unlock();
+        lookupLock.unlock();
       }
     }
     
@@ -301,24 +305,26 @@ public class TabletLocatorImpl extends TabletLocator {
   
   @Override
   public void invalidateCache(KeyExtent failedExtent) {
-    wLock.lock();
+    lookupLock.lock();
     try {
       badExtents.add(failedExtent);
     } finally {
-      wLock.unlock();
+      lookupLock.unlock();
     }
+    invalidations.incrementAndGet();
     if (log.isTraceEnabled())
       log.trace("Invalidated extent=" + failedExtent);
   }
   
   @Override
   public void invalidateCache(Collection<KeyExtent> keySet) {
-    wLock.lock();
+    lookupLock.lock();
     try {
       badExtents.addAll(keySet);
     } finally {
-      wLock.unlock();
+      lookupLock.unlock();
     }
+    invalidations.addAndGet(keySet.size());
     if (log.isTraceEnabled())
       log.trace("Invalidated " + keySet.size() + " cache entries for table " + tableId);
   }
@@ -327,7 +333,7 @@ public class TabletLocatorImpl extends TabletLocator {
   public void invalidateCache(String server) {
     int invalidatedCount = 0;
     
-    wLock.lock();
+    lookupLock.lock();
     try {
       for (TabletLocation cacheEntry : metaCache.values())
         if (cacheEntry.tablet_location.equals(server)) {
@@ -335,8 +341,9 @@ public class TabletLocatorImpl extends TabletLocator {
           invalidatedCount++;
         }
     } finally {
-      wLock.unlock();
+      lookupLock.unlock();
     }
+    invalidations.addAndGet(invalidatedCount);
     
     if (log.isTraceEnabled())
       log.trace("invalidated " + invalidatedCount + " cache entries  table=" + tableId + " server=" + server);
@@ -346,13 +353,14 @@ public class TabletLocatorImpl extends TabletLocator {
   @Override
   public void invalidateCache() {
     int invalidatedCount;
-    wLock.lock();
+    lookupLock.lock();
     try {
       invalidatedCount = metaCache.size();
       metaCache.clear();
     } finally {
-      wLock.unlock();
+      lookupLock.unlock();
     }
+    invalidations.addAndGet(invalidatedCount);
     if (log.isTraceEnabled())
       log.trace("invalidated all " + invalidatedCount + " cache entries for table=" + tableId);
   }
@@ -392,6 +400,7 @@ public class TabletLocatorImpl extends TabletLocator {
     TabletLocation ptl = parent.locateTablet(metadataRow, false, retry);
     
     if (ptl != null) {
+      metadataLookups.incrementAndGet();
       TabletLocations locations = locationObtainer.lookupTablet(ptl, metadataRow, lastTabletRow, parent);
       while (locations != null && locations.getLocations().isEmpty() && locations.getLocationless().isEmpty()
  && !ptl.tablet_extent.isRootTablet()) {
@@ -466,7 +475,7 @@ public class TabletLocatorImpl extends TabletLocator {
       removeOverlapping(badExtents, tabletLocation.tablet_extent);
   }
   
-  static void removeOverlapping(TreeMap<Text,TabletLocation> metaCache, KeyExtent nke) {
+  static void removeOverlapping(SortedMap<Text,TabletLocation> metaCache, KeyExtent nke) {
     Iterator<Entry<Text,TabletLocation>> iter = null;
     
     if (nke.getPrevEndRow() == null) {
@@ -500,7 +509,7 @@ public class TabletLocatorImpl extends TabletLocator {
     return row;
   }
   
-  static void removeOverlapping(TreeSet<KeyExtent> extents, KeyExtent nke) {
+  static void removeOverlapping(SortedSet<KeyExtent> extents, KeyExtent nke) {
     for (KeyExtent overlapping : KeyExtent.findOverlapping(nke, extents)) {
       extents.remove(overlapping);
     }
@@ -526,29 +535,33 @@ public class TabletLocatorImpl extends TabletLocator {
       row.append(new byte[] {0}, 0, 1);
     }
     
-    TabletLocation tl;
+    processInvalidated();
+    TabletLocation tl = locateTabletInCache(row);
     
-    if (lock)
-      rLock.lock();
-    try {
-      processInvalidated();
-      tl = locateTabletInCache(row);
-    } finally {
-      if (lock)
-        rLock.unlock();
+    if (lock) {
+      if (tl == null)
+        cacheMisses.incrementAndGet();
+      else
+        cacheHits.incrementAndGet();
     }
     
     if (tl == null) {
       if (lock)
-        wLock.lock();
+        lookupLock.lock();
       try {
-        // not in cache, so obtain info
-        lookupTabletLocation(row, retry);
+        // another thread may have looked up the location while waiting for the lock
+        if (lock)
+          tl = locateTabletInCache(row);
         
-        tl = locateTabletInCache(row);
+        if (tl == null) {
+          // not in cache, so obtain info
+          lookupTabletLocation(row, retry);
+          
+          tl = locateTabletInCache(row);
+        }
       } finally {
         if (lock)
-          wLock.unlock();
+          lookupLock.unlock();
       }
     }
     
@@ -557,17 +570,13 @@ public class TabletLocatorImpl extends TabletLocator {
   
   private void processInvalidated() throws AccumuloSecurityException, AccumuloException, TableNotFoundException {
     
-    if (badExtents.size() == 0)
+    if (badExtents.isEmpty())
       return;
     
-    boolean writeLockHeld = rwLock.isWriteLockedByCurrentThread();
+    lookupLock.lock();
     try {
-      if (!writeLockHeld) {
-        rLock.unlock();
-        wLock.lock();
-        if (badExtents.size() == 0)
-          return;
-      }
+      if (badExtents.isEmpty())
+        return;
       
       List<Range> lookups = new ArrayList<Range>(badExtents.size());
       
@@ -576,29 +585,86 @@ public class TabletLocatorImpl extends TabletLocator {
         removeOverlapping(metaCache, be);
       }
       
-      lookups = Range.mergeOverlapping(lookups);
-      
-      Map<String,Map<KeyExtent,List<Range>>> binnedRanges = new HashMap<String,Map<KeyExtent,List<Range>>>();
+      lookupTablets(Range.mergeOverlapping(lookups));
+    } finally {
+      lookupLock.unlock();
+    }
+  }
+  
+  /**
+   * Reads the locations of all tablets overlapping the given metadata ranges and adds them to the cache. Must be called with the lookup lock held.
+   */
+  private void lookupTablets(List<Range> lookups) throws AccumuloSecurityException, AccumuloException, TableNotFoundException {
+    Map<String,Map<KeyExtent,List<Range>>> binnedRanges = new HashMap<String,Map<KeyExtent,List<Range>>>();
+    
+    parent.binRanges(lookups, binnedRanges);
+    
+    // randomize server order
+    ArrayList<String> tabletServers = new ArrayList<String>(binnedRanges.keySet());
+    Collections.shuffle(tabletServers);
+    
+    for (String tserver : tabletServers) {
+      metadataLookups.incrementAndGet();
+      List<TabletLocation> locations = locationObtainer.lookupTablets(tserver, binnedRanges.get(tserver), parent);
       
-      parent.binRanges(lookups, binnedRanges);
+      for (TabletLocation tabletLocation : locations) {
+        updateCache(tabletLocation);
+      }
+    }
+  }
+  
+  /**
+   * Reads the locations of the tablets in ranges that span more than a row with one batched metadata scan per metadata tablet server, instead of looking
+   * them up one metadata row at a time. The last tablet of each range, whose metadata row is past the end of the range, is left to the regular lookup.
+   */
+  private void prefetchRanges(List<Range> ranges) throws AccumuloSecurityException, AccumuloException, TableNotFoundException {
+    if (tableId.toString().equals(Constants.METADATA_TABLE_ID))
+      return;
+    
+    List<Range> lookups = new ArrayList<Range>();
+    for (Range range : ranges) {
+      Text startRow = range.getStartKey() == null ? new Text() : range.getStartKey().getRow();
+      Text endRow = range.getEndKey() == null ? null : range.getEndKey().getRow();
       
-      // randomize server order
-      ArrayList<String> tabletServers = new ArrayList<String>(binnedRanges.keySet());
-      Collections.shuffle(tabletServers);
+      // a range within a single row is in one tablet
+      if (range.getEndKey() != null && range.afterEndKey(new Key(startRow).followingKey(PartialKey.ROW)))
+        continue;
       
-      for (String tserver : tabletServers) {
-        List<TabletLocation> locations = locationObtainer.lookupTablets(tserver, binnedRanges.get(tserver), parent);
-        
-        for (TabletLocation tabletLocation : locations) {
-          updateCache(tabletLocation);
-        }
-      }
-    } finally {
-      if (!writeLockHeld) {
-        rLock.lock();
-        wLock.unlock();
-      }
+      lookups.add(new Range(KeyExtent.getMetadataEntry(tableId, startRow), true, KeyExtent.getMetadataEntry(tableId, endRow), true));
     }
+    
+    if (lookups.isEmpty())
+      return;
+    
+    lookupTablets(Range.mergeOverlapping(lookups));
+  }
+  
+  /**
+   * @return the number of rows, mutations, or ranges found in the cache
+   */
+  public long getCacheHits() {
+    return cacheHits.get();
+  }
+  
+  /**
+   * @return the number of rows, mutations, or ranges that required a metadata lookup
+   */
+  public long getCacheMisses() {
+    return cacheMisses.get();
+  }
+  
+  /**
+   * @return the number of cache entries invalidated
+   */
+  public long getInvalidations() {
+    return invalidations.get();
+  }
+  
+  /**
+   * @return the number of metadata scans done to fill the cache
+   */
+  public long getMetadataLookups() {
+    return metadataLookups.get();
   }
   
   protected static void addRange(Map<String,Map<KeyExtent,List<Range>>> binnedRanges, String location, KeyExtent ke, Range range) {
@@ -29,7 +29,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -87,7 +86,7 @@ public class TabletServerBatchReaderIterator implements Iterator<Entry<Key,Value
   private final ExecutorService queryThreadPool;
   private final ScannerOptions options;
   
-  private ArrayBlockingQueue<List<Entry<Key,Value>>> resultsQueue;
+  private ReadAheadBuffer<List<Entry<Key,Value>>> resultsQueue;
   private Iterator<Entry<Key,Value>> batchIterator;
   private List<Entry<Key,Value>> batch;
   private static final List<Entry<Key,Value>> LAST_BATCH = new ArrayList<Map.Entry<Key,Value>>();
@@ -144,7 +143,7 @@ public class TabletServerBatchReaderIterator implements Iterator<Entry<Key,Value
     this.numThreads = numThreads;
     this.queryThreadPool = queryThreadPool;
     this.options = new ScannerOptions(scannerOptions);
-    resultsQueue = new ArrayBlockingQueue<List<Entry<Key,Value>>>(numThreads);
+    resultsQueue = new ReadAheadBuffer<List<Entry<Key,Value>>>(numThreads * 2, ReadAheadBuffer.DEFAULT_MAX_MEMORY);
     
     this.locator = new TimeoutTabletLocator(TabletLocator.getInstance(instance, credentials, new Text(table)), timeout);
 
@@ -166,7 +165,7 @@ public class TabletServerBatchReaderIterator implements Iterator<Entry<Key,Value
       @Override
       public void receive(List<Entry<Key,Value>> entries) {
         try {
-          resultsQueue.put(entries);
+          resultsQueue.put(entries, entries.size(), ReadAheadBuffer.estimateSize(entries));
         } catch (InterruptedException e) {
           if (TabletServerBatchReaderIterator.this.queryThreadPool.isShutdown())
             log.debug("Failed to add Batch Scan result", e);
@@ -199,6 +198,8 @@ public class TabletServerBatchReaderIterator implements Iterator<Entry<Key,Value
       if (batch != null && batchIterator.hasNext())
         return true;
       
+      resultsQueue.batchDrained();
+      
       // don't have one cached, try to cache one and return success
       try {
         batch = null;
@@ -356,7 +357,7 @@ public class TabletServerBatchReaderIterator implements Iterator<Entry<Key,Value
       try {
         TimeoutTracker timeoutTracker = timeoutTrackers.get(tsLocation);
         if (timeoutTracker == null) {
-          timeoutTracker = new TimeoutTracker(tsLocation, timedoutServers, timeout);
+          timeoutTracker = new TimeoutTracker(tsLocation, timedoutServers, timeout, resultsQueue);
           timeoutTrackers.put(tsLocation, timeoutTracker);
         }
         doLookup(tsLocation, tabletsRanges, tsFailures, unscanned, receiver, columns, credentials, options, authorizations, instance.getConfiguration(),
@@ -415,26 +416,11 @@ public class TabletServerBatchReaderIterator implements Iterator<Entry<Key,Value
             
             if (fatalException != null) {
               // we are finished with this batch query
-              if (!resultsQueue.offer(LAST_BATCH)) {
-                log.debug("Could not add to result queue after seeing fatalException in processFailures", fatalException);
-              }
+              resultsQueue.close(LAST_BATCH);
             }
           } else {
             // we are finished with this batch query
-            if (fatalException != null) {
-              if (!resultsQueue.offer(LAST_BATCH)) {
-                log.debug("Could not add to result queue after seeing fatalException", fatalException);
-              }
-            } else {
-              try {
-                resultsQueue.put(LAST_BATCH);
-              } catch (InterruptedException e) {
-                fatalException = e;
-                if (!resultsQueue.offer(LAST_BATCH)) {
-                  log.debug("Could not add to result queue after seeing fatalException", fatalException);
-                }
-              }
-            }
+            resultsQueue.close(LAST_BATCH);
           }
         }
       }
@@ -558,11 +544,13 @@ public class TabletServerBatchReaderIterator implements Iterator<Entry<Key,Value
     long timeOut;
     long activityTime;
     Long firstErrorTime = null;
+    ReadAheadBuffer<?> readAhead;
     
-    TimeoutTracker(String server, Set<String> badServers, long timeOut) {
+    TimeoutTracker(String server, Set<String> badServers, long timeOut, ReadAheadBuffer<?> readAhead) {
       this(timeOut);
       this.server = server;
       this.badServers = badServers;
+      this.readAhead = readAhead;
     }
 
     TimeoutTracker(long timeOut) {
@@ -585,6 +573,11 @@ public class TabletServerBatchReaderIterator implements Iterator<Entry<Key,Value
       firstErrorTime = null;
     }
     
+    void rpcCompleted(long time) {
+      if (readAhead != null)
+        readAhead.rpcCompleted(time);
+    }
+    
     void errorOccured(Exception e) {
       if (firstErrorTime == null) {
         firstErrorTime = activityTime;
@@ -645,12 +638,14 @@ public class TabletServerBatchReaderIterator implements Iterator<Entry<Key,Value
         
         Map<TKeyExtent,List<TRange>> thriftTabletRanges = Translator.translate(requested, Translator.KET, new Translator.ListTranslator<Range,TRange>(
             Translator.RT));
+        long t1 = System.currentTimeMillis();
         InitialMultiScan imsr = client.startMultiScan(Tracer.traceInfo(), credentials, thriftTabletRanges, Translator.translate(columns, Translator.CT),
             options.serverSideIteratorList, options.serverSideIteratorOptions, ByteBufferUtil.toByteBuffers(authorizations.getAuthorizations()), waitForWrites);
         if (waitForWrites)
           ThriftScanner.serversWaitedForWrites.get(ttype).add(server);
         
         MultiScanResult scanResult = imsr.result;
+        timeoutTracker.rpcCompleted(System.currentTimeMillis() - t1);
         
         opTimer.stop("Got 1st multi scan results, #results=" + scanResult.results.size() + (scanResult.more ? "  scanID=" + imsr.scanID : "")
             + " in %DURATION%");
@@ -673,7 +668,9 @@ public class TabletServerBatchReaderIterator implements Iterator<Entry<Key,Value
           timeoutTracker.check();
 
           opTimer.start("Continuing multi scan, scanid=" + imsr.scanID);
+          t1 = System.currentTimeMillis();
           scanResult = client.continueMultiScan(Tracer.traceInfo(), imsr.scanID);
+          timeoutTracker.rpcCompleted(System.currentTimeMillis() - t1);
           opTimer.stop("Got more multi scan results, #results=" + scanResult.results.size() + (scanResult.more ? "  scanID=" + imsr.scanID : "")
               + " in %DURATION%");
           
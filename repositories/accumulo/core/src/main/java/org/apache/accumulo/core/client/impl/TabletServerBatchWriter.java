@@ -161,16 +161,16 @@ public class TabletServerBatchWriter {
       this.server = server;
     }
     
-    void startingWrite() {
+    synchronized void startingWrite() {
       activityTime = System.currentTimeMillis();
     }
     
-    void madeProgress() {
+    synchronized void madeProgress() {
       activityTime = System.currentTimeMillis();
       firstErrorTime = null;
     }
 
-    void wroteNothing() {
+    synchronized void wroteNothing() {
       if (firstErrorTime == null) {
         firstErrorTime = activityTime;
       } else if (System.currentTimeMillis() - firstErrorTime > timeOut) {
@@ -400,6 +400,14 @@ public class TabletServerBatchWriter {
           maxTabletServersBatch));
       log.trace(String.format("tablets per batch    : %,8.2f avg  %,6d min %,6d max", (tabletBatchSum / (double) numBatches), minTabletBatch, maxTabletBatch));
       log.trace("");
+      log.trace("TABLET SERVER SEND STATISTICS");
+      for (TabletServerSendController controller : writer.getControllers()) {
+        log.trace(String.format("%-20s : %,10d sends %,10.2f MB %,10.2f KB/send %,8.0f ms latency %,10.2f MB/sec per send %,4d concurrent",
+            controller.getServer(), controller.getTotalSends(), controller.getTotalBytes() / (1024.0 * 1024.0),
+            controller.getTotalBytes() / 1024.0 / Math.max(1, controller.getTotalSends()), controller.getLatency(), controller.getRate() / (1024.0 * 1024.0),
+            controller.getConcurrency()));
+      }
+      log.trace("");
       log.trace("SYSTEM STATISTICS");
       log.trace(String.format("JVM GC Time          : %,10.2f secs", ((finalGCTimes - initialGCTimes) / 1000.0)));
       if (compMxBean.isCompilationTimeMonitoringSupported()) {
@@ -589,13 +597,17 @@ public class TabletServerBatchWriter {
     
     private static final int MUTATION_BATCH_SIZE = 1 << 17;
     private ExecutorService sendThreadPool;
+    private int numSendThreads;
     private Map<String,TabletServerMutations> serversMutations;
-    private Set<String> queued;
+    private Map<String,TabletServerSendController> controllers;
+    private Set<KeyExtent> extentsInFlight;
     private Map<String,TabletLocator> locators;
     
     public MutationWriter(int numSendThreads) {
       serversMutations = new HashMap<String,TabletServerMutations>();
-      queued = new HashSet<String>();
+      controllers = new HashMap<String,TabletServerSendController>();
+      extentsInFlight = new HashSet<KeyExtent>();
+      this.numSendThreads = numSendThreads;
       sendThreadPool = new SimpleThreadPool(numSendThreads, this.getClass().getName());
       locators = new HashMap<String,TabletLocator>();
     }
@@ -705,40 +717,126 @@ public class TabletServerBatchWriter {
       Collections.shuffle(servers);
       
       for (String server : servers)
-        if (!queued.contains(server)) {
-          sendThreadPool.submit(Trace.wrap(new SendTask(server)));
-          queued.add(server);
-        }
+        startSenders(server);
+    }
+    
+    private TabletServerSendController getController(String server) {
+      TabletServerSendController controller = controllers.get(server);
+      if (controller == null) {
+        controller = new TabletServerSendController(server, maxMem / 2, numSendThreads);
+        controllers.put(server, controller);
+      }
+      return controller;
+    }
+    
+    private synchronized Collection<TabletServerSendController> getControllers() {
+      return new ArrayList<TabletServerSendController>(controllers.values());
     }
     
-    private synchronized TabletServerMutations getMutationsToSend(String server) {
-      TabletServerMutations tsmuts = serversMutations.remove(server);
-      if (tsmuts == null)
-        queued.remove(server);
+    private void startSenders(String server) {
+      TabletServerMutations pending = serversMutations.get(server);
+      if (pending == null)
+        return;
+      
+      int sendable = 0;
+      for (KeyExtent extent : pending.getMutations().keySet())
+        if (!extentsInFlight.contains(extent))
+          sendable++;
       
-      return tsmuts;
+      TabletServerSendController controller = getController(server);
+      while (sendable > 0 && controller.canStartSender()) {
+        controller.senderStarted();
+        sendThreadPool.submit(Trace.wrap(new SendTask(server, controller)));
+        sendable--;
+      }
+    }
+    
+    /**
+     * Takes the next batch of mutations to send to a tablet server, sized by the server's controller. A tablet is only ever part of one batch in flight, so
+     * mutations for a tablet are still sent in the order they were added even when several batches are in flight to its server.
+     * 
+     * @return the batch to send, or null if the calling sender should stop
+     */
+    private synchronized TabletServerMutations getMutationsToSend(String server, TabletServerSendController controller, TabletServerMutations sent) {
+      if (sent != null)
+        extentsInFlight.removeAll(sent.getMutations().keySet());
+      
+      TabletServerMutations pending = serversMutations.get(server);
+      if (pending == null || controller.shouldStopSender()) {
+        controller.senderStopped();
+        return null;
+      }
+      
+      long batchSize = controller.getBatchSize();
+      long size = 0;
+      TabletServerMutations batch = new TabletServerMutations();
+      
+      Iterator<Entry<KeyExtent,List<Mutation>>> iter = pending.getMutations().entrySet().iterator();
+      while (iter.hasNext() && size < batchSize) {
+        Entry<KeyExtent,List<Mutation>> entry = iter.next();
+        if (extentsInFlight.contains(entry.getKey()))
+          continue;
+        
+        List<Mutation> tabletMutations = entry.getValue();
+        int count = 0;
+        while (count < tabletMutations.size() && size < batchSize)
+          size += tabletMutations.get(count++).estimatedMemoryUsed();
+        
+        if (count == tabletMutations.size()) {
+          batch.getMutations().put(entry.getKey(), tabletMutations);
+          iter.remove();
+        } else {
+          List<Mutation> head = tabletMutations.subList(0, count);
+          batch.getMutations().put(entry.getKey(), new ArrayList<Mutation>(head));
+          head.clear();
+        }
+        
+        extentsInFlight.add(entry.getKey());
+      }
+      
+      if (pending.getMutations().isEmpty())
+        serversMutations.remove(server);
+      
+      if (batch.getMutations().isEmpty()) {
+        // everything left for this server is being sent by other senders
+        controller.senderStopped();
+        return null;
+      }
+      
+      return batch;
+    }
+    
+    private synchronized void sendFailed(String server, TabletServerSendController controller, TabletServerMutations tsmuts) {
+      if (tsmuts != null)
+        extentsInFlight.removeAll(tsmuts.getMutations().keySet());
+      controller.senderStopped();
+      startSenders(server);
     }
     
     class SendTask implements Runnable {
       
       private String location;
+      private TabletServerSendController controller;
       
-      SendTask(String server) {
+      SendTask(String server, TabletServerSendController controller) {
         this.location = server;
+        this.controller = controller;
       }
       
       @Override
       public void run() {
+        TabletServerMutations tsmuts = null;
         try {
-          TabletServerMutations tsmuts = getMutationsToSend(location);
+          tsmuts = getMutationsToSend(location, controller, null);
           
           while (tsmuts != null) {
             send(tsmuts);
-            tsmuts = getMutationsToSend(location);
+            tsmuts = getMutationsToSend(location, controller, tsmuts);
           }
           
           return;
         } catch (Throwable t) {
+          sendFailed(location, controller, tsmuts);
           updateUnknownErrors("Failed to send tablet server " + location + " its batch : " + t.getMessage(), t);
         }
       }
@@ -762,6 +860,8 @@ public class TabletServerBatchWriter {
           Span span = Trace.start("sendMutations");
           try {
             
+            int senders = controller.getSenders();
+            
             TimeoutTracker timeoutTracker = timeoutTrackers.get(location);
             if (timeoutTracker == null) {
               timeoutTracker = new TimeoutTracker(location, timeout);
@@ -782,6 +882,8 @@ public class TabletServerBatchWriter {
               }
             }
             
+            controller.sendCompleted(successBytes, st2 - st1, senders);
+            
             if (failures.size() > 0) {
               failedMutations.add(failures);
               successBytes -= failures.getMemoryUsed();
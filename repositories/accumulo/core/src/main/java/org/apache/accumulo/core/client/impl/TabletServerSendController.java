@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.client.impl;
+
+/**
+ * Decides how much data the batch writer sends to a single tablet server in one RPC, and how many of those RPCs may be in flight at once, from the latency and
+ * throughput of the sends made so far.
+ *
+ * The batch size is chosen so that a send takes about {@link #TARGET_LATENCY} at the recently observed rate: long enough to amortize the cost of an RPC, short
+ * enough that a slow server does not hold on to a large part of the writer's memory. The number of concurrent sends is found by hill climbing on the combined
+ * rate at which the server accepts data, measured over windows of {@link #WINDOW} sends.
+ */
+class TabletServerSendController {
+  
+  static final long TARGET_LATENCY = 500;
+  static final long MIN_BATCH_SIZE = 1 << 16;
+  static final int WINDOW = 8;
+  
+  private static final double ALPHA = 0.3;
+  private static final double SIGNIFICANT_CHANGE = 0.05;
+  
+  private final String server;
+  private final long maxBatchSize;
+  private final int maxConcurrent;
+  
+  // bytes per millisecond of a single send
+  private double rate = -1;
+  private double latency = 0;
+  
+  private int concurrent = 1;
+  private int direction = 1;
+  private int senders = 0;
+  
+  private int windowSends = 0;
+  private double windowRate = 0;
+  private double lastWindowRate = -1;
+  
+  private long totalBytes = 0;
+  private long totalSends = 0;
+  
+  TabletServerSendController(String server, long maxBatchSize, int maxConcurrent) {
+    this.server = server;
+    this.maxBatchSize = Math.max(MIN_BATCH_SIZE, maxBatchSize);
+    this.maxConcurrent = Math.max(1, maxConcurrent);
+  }
+  
+  String getServer() {
+    return server;
+  }
+  
+  /**
+   * @return the number of bytes of mutations to put in the next send
+   */
+  synchronized long getBatchSize() {
+    if (rate < 0)
+      return maxBatchSize;
+    return Math.max(MIN_BATCH_SIZE, Math.min(maxBatchSize, (long) (rate * TARGET_LATENCY)));
+  }
+  
+  /**
+   * @return the number of sends that may currently be in flight to the server
+   */
+  synchronized int getConcurrency() {
+    return concurrent;
+  }
+  
+  /**
+   * @return true if another thread may start sending to the server
+   */
+  synchronized boolean canStartSender() {
+    return senders < concurrent;
+  }
+  
+  /**
+   * @return true if a thread sending to the server should stop, because the number of concurrent sends was lowered
+   */
+  synchronized boolean shouldStopSender() {
+    return senders > concurrent;
+  }
+  
+  synchronized void senderStarted() {
+    senders++;
+  }
+  
+  synchronized void senderStopped() {
+    senders--;
+  }
+  
+  /**
+   * @return the number of threads currently sending to the server
+   */
+  synchronized int getSenders() {
+    return senders;
+  }
+  
+  /**
+   * Records a completed send.
+   *
+   * @param bytes
+   *          the size of the mutations sent
+   * @param time
+   *          the time the send took, in milliseconds
+   * @param sharedWith
+   *          the number of sends that were in flight when this one started, including itself
+   */
+  synchronized void sendCompleted(long bytes, long time, int sharedWith) {
+    totalBytes += bytes;
+    totalSends++;
+    
+    time = Math.max(1, time);
+    double sendRate = (double) bytes / time;
+    
+    if (rate < 0) {
+      rate = sendRate;
+      latency = time;
+    } else {
+      rate = ALPHA * sendRate + (1 - ALPHA) * rate;
+      latency = ALPHA * time + (1 - ALPHA) * latency;
+    }
+    
+    // the server accepts data from each concurrent send at about this rate
+    windowRate += sendRate * sharedWith;
+    windowSends++;
+    
+    if (windowSends == WINDOW) {
+      adjustConcurrency(windowRate / windowSends);
+      windowRate = 0;
+      windowSends = 0;
+    }
+  }
+  
+  private void adjustConcurrency(double currentRate) {
+    if (lastWindowRate >= 0) {
+      if (currentRate < lastWindowRate * (1 - SIGNIFICANT_CHANGE)) {
+        // the last step made things worse, so go back
+        direction = -direction;
+      } else if (currentRate <= lastWindowRate * (1 + SIGNIFICANT_CHANGE)) {
+        // no significant change, prefer fewer sends
+        direction = -1;
+      }
+    }
+    
+    lastWindowRate = currentRate;
+    concurrent = Math.max(1, Math.min(maxConcurrent, concurrent + direction));
+    
+    // at the bounds, probe in the other direction next time
+    if (concurrent == 1)
+      direction = 1;
+    else if (concurrent == maxConcurrent)
+      direction = -1;
+  }
+  
+  /**
+   * @return the recent rate of a single send in bytes per second
+   */
+  synchronized double getRate() {
+    return Math.max(0, rate) * 1000;
+  }
+  
+  /**
+   * @return the recent latency of a send in milliseconds
+   */
+  synchronized double getLatency() {
+    return latency;
+  }
+  
+  synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+  
+  synchronized long getTotalSends() {
+    return totalSends;
+  }
+}
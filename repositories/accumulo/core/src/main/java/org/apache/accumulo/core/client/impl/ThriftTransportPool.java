@@ -30,6 +30,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
@@ -47,9 +48,12 @@ public class ThriftTransportPool {
   private static SecurityPermission TRANSPORT_POOL_PERMISSION = new SecurityPermission("transportPoolPermission");
   
   private static final Random random = new Random();
-  private long killTime = 1000 * 3;
+  private volatile long killTime = 1000 * 3;
   
-  private Map<ThriftTransportKey,List<CachedConnection>> cache = new HashMap<ThriftTransportKey,List<CachedConnection>>();
+  // each list of connections is synchronized on separately, so that threads using different servers do not contend
+  private ConcurrentHashMap<ThriftTransportKey,List<CachedConnection>> cache = new ConcurrentHashMap<ThriftTransportKey,List<CachedConnection>>();
+  
+  // guarded by the pool
   private Map<ThriftTransportKey,Long> errorCount = new HashMap<ThriftTransportKey,Long>();
   private Map<ThriftTransportKey,Long> errorTime = new HashMap<ThriftTransportKey,Long>();
   private Set<ThriftTransportKey> serversWarnedAbout = new HashSet<ThriftTransportKey>();
@@ -90,8 +94,8 @@ public class ThriftTransportPool {
         
         ArrayList<CachedConnection> connectionsToClose = new ArrayList<CachedConnection>();
         
-        synchronized (pool) {
-          for (List<CachedConnection> ccl : pool.cache.values()) {
+        for (List<CachedConnection> ccl : pool.cache.values()) {
+          synchronized (ccl) {
             Iterator<CachedConnection> iter = ccl.iterator();
             while (iter.hasNext()) {
               CachedConnection cachedConnection = iter.next();
@@ -101,14 +105,14 @@ public class ThriftTransportPool {
                 iter.remove();
               }
             }
-          }
-          
-          for (List<CachedConnection> ccl : pool.cache.values()) {
+            
             for (CachedConnection cachedConnection : ccl) {
               cachedConnection.transport.checkForStuckIO(STUCK_THRESHOLD);
             }
           }
-          
+        }
+        
+        synchronized (pool) {
           Iterator<Entry<ThriftTransportKey,Long>> iter = pool.errorTime.entrySet().iterator();
           while (iter.hasNext()) {
             Entry<ThriftTransportKey,Long> entry = iter.next();
@@ -381,25 +385,17 @@ public class ThriftTransportPool {
     if (preferCachedConnection) {
       HashSet<ThriftTransportKey> serversSet = new HashSet<ThriftTransportKey>(servers);
       
-      synchronized (this) {
-        
-        // randomly pick a server from the connection cache
-        serversSet.retainAll(cache.keySet());
+      // randomly pick a server from the connection cache
+      serversSet.retainAll(cache.keySet());
+      
+      if (serversSet.size() > 0) {
+        ArrayList<ThriftTransportKey> cachedServers = new ArrayList<ThriftTransportKey>(serversSet);
+        Collections.shuffle(cachedServers, random);
         
-        if (serversSet.size() > 0) {
-          ArrayList<ThriftTransportKey> cachedServers = new ArrayList<ThriftTransportKey>(serversSet);
-          Collections.shuffle(cachedServers, random);
-          
-          for (ThriftTransportKey ttk : cachedServers) {
-            for (CachedConnection cachedConnection : cache.get(ttk)) {
-              if (!cachedConnection.isReserved()) {
-                cachedConnection.setReserved(true);
-                if (log.isTraceEnabled())
-                  log.trace("Using existing connection to " + ttk.getLocation() + ":" + ttk.getPort());
-                return new Pair<String,TTransport>(ttk.getLocation() + ":" + ttk.getPort(), cachedConnection.transport);
-              }
-            }
-          }
+        for (ThriftTransportKey ttk : cachedServers) {
+          CachedTTransport transport = reserveCachedConnection(ttk);
+          if (transport != null)
+            return new Pair<String,TTransport>(ttk.getLocation() + ":" + ttk.getPort(), transport);
         }
       }
     }
@@ -410,19 +406,9 @@ public class ThriftTransportPool {
       ThriftTransportKey ttk = servers.get(index);
       
       if (!preferCachedConnection) {
-        synchronized (this) {
-          List<CachedConnection> cachedConnList = cache.get(ttk);
-          if (cachedConnList != null) {
-            for (CachedConnection cachedConnection : cachedConnList) {
-              if (!cachedConnection.isReserved()) {
-                cachedConnection.setReserved(true);
-                if (log.isTraceEnabled())
-                  log.trace("Using existing connection to " + ttk.getLocation() + ":" + ttk.getPort());
-                return new Pair<String,TTransport>(ttk.getLocation() + ":" + ttk.getPort(), cachedConnection.transport);
-              }
-            }
-          }
-        }
+        CachedTTransport transport = reserveCachedConnection(ttk);
+        if (transport != null)
+          return new Pair<String,TTransport>(ttk.getLocation() + ":" + ttk.getPort(), transport);
       }
 
       try {
@@ -442,15 +428,33 @@ public class ThriftTransportPool {
   }
   
   private TTransport getTransport(ThriftTransportKey cacheKey) throws TTransportException {
-    synchronized (this) {
-      // atomically reserve location if it exist in cache
-      List<CachedConnection> ccl = cache.get(cacheKey);
-      
-      if (ccl == null) {
-        ccl = new LinkedList<CachedConnection>();
-        cache.put(cacheKey, ccl);
-      }
-      
+    CachedTTransport transport = reserveCachedConnection(cacheKey);
+    if (transport != null)
+      return transport;
+    
+    return createNewTransport(cacheKey);
+  }
+  
+  private List<CachedConnection> getCachedConnections(ThriftTransportKey cacheKey) {
+    List<CachedConnection> ccl = cache.get(cacheKey);
+    if (ccl == null) {
+      ccl = new LinkedList<CachedConnection>();
+      List<CachedConnection> existing = cache.putIfAbsent(cacheKey, ccl);
+      if (existing != null)
+        ccl = existing;
+    }
+    return ccl;
+  }
+  
+  /**
+   * Atomically reserves an idle connection to the server, if there is one.
+   */
+  private CachedTTransport reserveCachedConnection(ThriftTransportKey cacheKey) {
+    List<CachedConnection> ccl = cache.get(cacheKey);
+    if (ccl == null)
+      return null;
+    
+    synchronized (ccl) {
       for (CachedConnection cachedConnection : ccl) {
         if (!cachedConnection.isReserved()) {
           cachedConnection.setReserved(true);
@@ -461,7 +465,7 @@ public class ThriftTransportPool {
       }
     }
     
-    return createNewTransport(cacheKey);
+    return null;
   }
   
   private TTransport createNewTransport(ThriftTransportKey cacheKey) throws TTransportException {
@@ -486,14 +490,8 @@ public class ThriftTransportPool {
     CachedConnection cc = new CachedConnection(tsc);
     cc.setReserved(true);
     
-    synchronized (this) {
-      List<CachedConnection> ccl = cache.get(cacheKey);
-      
-      if (ccl == null) {
-        ccl = new LinkedList<CachedConnection>();
-        cache.put(cacheKey, ccl);
-      }
-      
+    List<CachedConnection> ccl = getCachedConnections(cacheKey);
+    synchronized (ccl) {
       ccl.add(cc);
     }
     return cc.transport;
@@ -509,8 +507,8 @@ public class ThriftTransportPool {
     
     ArrayList<CachedConnection> closeList = new ArrayList<ThriftTransportPool.CachedConnection>();
 
-    synchronized (this) {
-      List<CachedConnection> ccl = cache.get(ctsc.getCacheKey());
+    List<CachedConnection> ccl = getCachedConnections(ctsc.getCacheKey());
+    synchronized (ccl) {
       for (Iterator<CachedConnection> iterator = ccl.iterator(); iterator.hasNext();) {
         CachedConnection cachedConnection = iterator.next();
         if (cachedConnection.transport == tsc) {
@@ -521,20 +519,22 @@ public class ThriftTransportPool {
             if (log.isTraceEnabled())
               log.trace("Returned connection had error " + ctsc.getCacheKey());
             
-            Long ecount = errorCount.get(ctsc.getCacheKey());
-            if (ecount == null)
-              ecount = 0l;
-            ecount++;
-            errorCount.put(ctsc.getCacheKey(), ecount);
-            
-            Long etime = errorTime.get(ctsc.getCacheKey());
-            if (etime == null) {
-              errorTime.put(ctsc.getCacheKey(), System.currentTimeMillis());
-            }
-            
-            if (ecount >= ERROR_THRESHOLD && !serversWarnedAbout.contains(ctsc.getCacheKey())) {
-              log.warn("Server " + ctsc.getCacheKey() + " had " + ecount + " failures in a short time period, will not complain anymore ");
-              serversWarnedAbout.add(ctsc.getCacheKey());
+            synchronized (this) {
+              Long ecount = errorCount.get(ctsc.getCacheKey());
+              if (ecount == null)
+                ecount = 0l;
+              ecount++;
+              errorCount.put(ctsc.getCacheKey(), ecount);
+              
+              Long etime = errorTime.get(ctsc.getCacheKey());
+              if (etime == null) {
+                errorTime.put(ctsc.getCacheKey(), System.currentTimeMillis());
+              }
+              
+              if (ecount >= ERROR_THRESHOLD && !serversWarnedAbout.contains(ctsc.getCacheKey())) {
+                log.warn("Server " + ctsc.getCacheKey() + " had " + ecount + " failures in a short time period, will not complain anymore ");
+                serversWarnedAbout.add(ctsc.getCacheKey());
+              }
             }
             
             cachedConnection.setReserved(false);
@@ -585,7 +585,7 @@ public class ThriftTransportPool {
    * 
    * @param time
    */
-  public synchronized void setIdleTime(long time) {
+  public void setIdleTime(long time) {
     this.killTime = time;
     log.debug("Set thrift transport pool idle time to " + time);
   }
@@ -28,6 +28,8 @@ import java.net.InetAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -36,6 +38,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
 
 import org.apache.accumulo.core.Constants;
 import org.apache.accumulo.core.client.AccumuloException;
@@ -53,27 +56,39 @@ import org.apache.accumulo.core.client.TableOfflineException;
 import org.apache.accumulo.core.client.ZooKeeperInstance;
 import org.apache.accumulo.core.client.impl.OfflineScanner;
 import org.apache.accumulo.core.client.impl.Tables;
+import org.apache.accumulo.core.client.impl.TabletFilesScanner;
 import org.apache.accumulo.core.client.impl.TabletLocator;
 import org.apache.accumulo.core.client.mock.MockInstance;
 import org.apache.accumulo.core.client.mock.MockTabletLocator;
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.ConfigurationCopy;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.KeyExtent;
 import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileSKVIterator;
+import org.apache.accumulo.core.file.FileUtil;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.system.MultiIterator;
 import org.apache.accumulo.core.iterators.user.VersioningIterator;
 import org.apache.accumulo.core.master.state.tables.TableState;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.core.security.TablePermission;
 import org.apache.accumulo.core.security.thrift.AuthInfo;
 import org.apache.accumulo.core.util.ArgumentChecker;
+import org.apache.accumulo.core.util.MetadataTable.DataFileValue;
 import org.apache.accumulo.core.util.Pair;
 import org.apache.accumulo.core.util.TextUtil;
 import org.apache.accumulo.core.util.UtilWaitThread;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.InputFormat;
@@ -134,6 +149,10 @@ public abstract class InputFormatBase<K,V> extends InputFormat<K,V> {
   private static final String ITERATORS_DELIM = ",";
   
   private static final String READ_OFFLINE = PREFIX + ".read.offline";
+  private static final String OFFLINE_SPLIT_SIZE = PREFIX + ".read.offline.splitSize";
+  
+  // the number of hosts reported for a split read from files
+  private static final int MAX_SPLIT_LOCATIONS = 3;
   
   /**
    * Enable or disable use of the {@link IsolatedScanner} in this configuration object. By default it is not enabled.
@@ -292,6 +311,11 @@ public abstract class InputFormatBase<K,V> extends InputFormat<K,V> {
    * There are two possible advantages to reading a tables file directly out of HDFS. First, you may see better read performance. Second, it will support
    * speculative execution better. When reading an online table speculative execution can put more load on an already slow tablet server.
    * 
+   * <p>
+   * Unless auto adjust ranges is disabled, the files of each tablet are found when the job is submitted and passed to the mappers with the table's
+   * configuration, so mappers do not contact the tablet servers. Mappers are scheduled on the hosts that store most of the tablet's files, and large tablets
+   * can be read by several mappers, see {@link #setOfflineSplitSize(Configuration, long)}.
+   * 
    * @param conf
    *          the job
    * @param scanOff
@@ -302,6 +326,26 @@ public abstract class InputFormatBase<K,V> extends InputFormat<K,V> {
     conf.setBoolean(READ_OFFLINE, scanOff);
   }
   
+  /**
+   * Sets the amount of data a mapper reads when reading an offline table. A tablet whose files are larger than this is read by several mappers, each reading
+   * a range of rows that starts and ends on a boundary between the files' blocks. By default each tablet is read by one mapper.
+   * 
+   * <p>
+   * Ranges are only divided when auto adjust ranges is enabled, which is the default.
+   * 
+   * @param conf
+   *          the Hadoop configuration object
+   * @param splitSize
+   *          the number of bytes of the tablet's files a mapper should read, or 0 to read each tablet in one mapper
+   * @see #setScanOffline(Configuration, boolean)
+   */
+  public static void setOfflineSplitSize(Configuration conf, long splitSize) {
+    ArgumentChecker.notNull(conf);
+    if (splitSize < 0)
+      throw new IllegalArgumentException("Invalid split size " + splitSize);
+    conf.setLong(OFFLINE_SPLIT_SIZE, splitSize);
+  }
+  
   /**
    * Restricts the columns that will be mapped over for this configuration object.
    * 
@@ -600,6 +644,14 @@ public abstract class InputFormatBase<K,V> extends InputFormat<K,V> {
     return conf.getBoolean(READ_OFFLINE, false);
   }
   
+  /**
+   * @return the number of bytes of a tablet's files a mapper reads, or 0 if each tablet is read in one mapper
+   * @see #setOfflineSplitSize(Configuration, long)
+   */
+  protected static long getOfflineSplitSize(Configuration conf) {
+    return conf.getLong(OFFLINE_SPLIT_SIZE, 0);
+  }
+  
   // Return a list of the iterator settings (for iterators to apply to a scanner)
   
   /**
@@ -690,15 +742,25 @@ public abstract class InputFormatBase<K,V> extends InputFormat<K,V> {
       Authorizations authorizations = getAuthorizations(conf);
       
       try {
-        log.debug("Creating connector with user: " + user);
-        Connector conn = instance.getConnector(user, password);
-        log.debug("Creating scanner for table: " + getTablename(conf));
-        log.debug("Authorizations are: " + authorizations);
-        if (isOfflineScan(conf)) {
-          scanner = new OfflineScanner(instance, new AuthInfo(user, ByteBuffer.wrap(password), instance.getInstanceID()), Tables.getTableId(instance,
-              getTablename(conf)), authorizations);
+        if (split instanceof TabletFilesInputSplit) {
+          // the split knows the tablet's files, so read them without contacting any tablet server
+          TabletFilesInputSplit filesSplit = (TabletFilesInputSplit) split;
+          log.debug("Creating scanner for files of tablet: " + filesSplit.getExtent());
+          log.debug("Authorizations are: " + authorizations);
+          FileSystem fs = FileUtil.getFileSystem(conf, instance.getConfiguration());
+          scanner = new TabletFilesScanner(fs, conf, filesSplit.getExtent(), filesSplit.getFiles(), new ConfigurationCopy(filesSplit.getTableProperties()),
+              authorizations);
         } else {
-          scanner = conn.createScanner(getTablename(conf), authorizations);
+          log.debug("Creating connector with user: " + user);
+          Connector conn = instance.getConnector(user, password);
+          log.debug("Creating scanner for table: " + getTablename(conf));
+          log.debug("Authorizations are: " + authorizations);
+          if (isOfflineScan(conf)) {
+            scanner = new OfflineScanner(instance, new AuthInfo(user, ByteBuffer.wrap(password), instance.getInstanceID()), Tables.getTableId(instance,
+                getTablename(conf)), authorizations);
+          } else {
+            scanner = conn.createScanner(getTablename(conf), authorizations);
+          }
         }
         if (isIsolated(conf)) {
           log.info("Creating isolated scanner");
@@ -857,6 +919,231 @@ public abstract class InputFormatBase<K,V> extends InputFormat<K,V> {
     return binnedRanges;
   }
   
+  /**
+   * Reads the metadata table to find the files of every tablet overlapping the ranges, creating a split for each tablet and range.
+   * 
+   * @return null if a tablet is still assigned to a tablet server
+   */
+  List<TabletFilesInputSplit> binOfflineTableFiles(Configuration conf, String tableName, List<Range> ranges) throws TableNotFoundException,
+      AccumuloException, AccumuloSecurityException {
+    
+    List<TabletFilesInputSplit> tabletSplits = new ArrayList<TabletFilesInputSplit>();
+    
+    Instance instance = getInstance(conf);
+    Connector conn = instance.getConnector(getUsername(conf), getPassword(conf));
+    String tableId = Tables.getTableId(instance, tableName);
+    
+    if (Tables.getTableState(instance, tableId) != TableState.OFFLINE) {
+      Tables.clearCache(instance);
+      if (Tables.getTableState(instance, tableId) != TableState.OFFLINE) {
+        throw new AccumuloException("Table is online " + tableName + "(" + tableId + ") cannot scan table in offline mode ");
+      }
+    }
+    
+    // mappers get the table's configuration with their split, so they do not have to ask a tablet server for it
+    Map<String,String> tableProperties = new TreeMap<String,String>();
+    for (Entry<String,String> entry : conn.tableOperations().getProperties(tableName))
+      tableProperties.put(entry.getKey(), entry.getValue());
+    
+    String tablesDir = Constants.getTablesDir(instance.getConfiguration());
+    
+    for (Range range : ranges) {
+      Text startRow;
+      
+      if (range.getStartKey() != null)
+        startRow = range.getStartKey().getRow();
+      else
+        startRow = new Text();
+      
+      Range metadataRange = new Range(new KeyExtent(new Text(tableId), startRow, null).getMetadataEntry(), true, null, false);
+      Scanner scanner = conn.createScanner(Constants.METADATA_TABLE_NAME, Constants.NO_AUTHS);
+      Constants.METADATA_PREV_ROW_COLUMN.fetch(scanner);
+      scanner.fetchColumnFamily(Constants.METADATA_DATAFILE_COLUMN_FAMILY);
+      scanner.fetchColumnFamily(Constants.METADATA_CURRENT_LOCATION_COLUMN_FAMILY);
+      scanner.fetchColumnFamily(Constants.METADATA_FUTURE_LOCATION_COLUMN_FAMILY);
+      scanner.setRange(metadataRange);
+      
+      RowIterator rowIter = new RowIterator(scanner);
+      
+      KeyExtent lastExtent = null;
+      
+      while (rowIter.hasNext()) {
+        Iterator<Entry<Key,Value>> row = rowIter.next();
+        Map<String,Long> files = new TreeMap<String,Long>();
+        KeyExtent extent = null;
+        String location = null;
+        
+        while (row.hasNext()) {
+          Entry<Key,Value> entry = row.next();
+          Key key = entry.getKey();
+          
+          if (key.getColumnFamily().equals(Constants.METADATA_DATAFILE_COLUMN_FAMILY)) {
+            String relPath = key.getColumnQualifier().toString();
+            String absPath = relPath.startsWith("..") ? tablesDir + relPath.substring(2) : tablesDir + "/" + tableId + relPath;
+            files.put(absPath, new DataFileValue(entry.getValue().get()).getSize());
+          }
+          
+          if (key.getColumnFamily().equals(Constants.METADATA_CURRENT_LOCATION_COLUMN_FAMILY)
+              || key.getColumnFamily().equals(Constants.METADATA_FUTURE_LOCATION_COLUMN_FAMILY)) {
+            location = entry.getValue().toString();
+          }
+          
+          if (Constants.METADATA_PREV_ROW_COLUMN.hasColumns(key)) {
+            extent = new KeyExtent(key.getRow(), entry.getValue());
+          }
+        }
+        
+        if (location != null)
+          return null;
+        
+        if (!extent.getTableId().toString().equals(tableId)) {
+          throw new AccumuloException("Saw unexpected table Id " + tableId + " " + extent);
+        }
+        
+        if (lastExtent != null && !extent.isPreviousExtent(lastExtent)) {
+          throw new AccumuloException(" " + lastExtent + " is not previous extent " + extent);
+        }
+        
+        tabletSplits.add(new TabletFilesInputSplit(tableName, extent.toDataRange().clip(range), extent, files, tableProperties));
+        
+        if (extent.getEndRow() == null || range.afterEndKey(new Key(extent.getEndRow()).followingKey(PartialKey.ROW))) {
+          break;
+        }
+        
+        lastExtent = extent;
+      }
+    }
+    
+    return tabletSplits;
+  }
+  
+  /**
+   * Divides the range of a tablet's split so that each new split reads about splitSize bytes of the tablet's files. The rows the range is divided at are taken
+   * from the files' indexes, whose entries are the last key of each block, so each split starts and ends on a block boundary.
+   */
+  static List<TabletFilesInputSplit> divideTabletSplit(FileSystem fs, Configuration conf, TabletFilesInputSplit split, long splitSize) throws IOException {
+    List<TabletFilesInputSplit> splits = new ArrayList<TabletFilesInputSplit>();
+    long size = split.getLength();
+    int numSplits = splitSize > 0 ? (int) Math.min(Integer.MAX_VALUE, (size + splitSize - 1) / splitSize) : 1;
+    
+    if (numSplits <= 1) {
+      splits.add(split);
+      return splits;
+    }
+    
+    List<Text> rows = new ArrayList<Text>();
+    List<SortedKeyValueIterator<Key,Value>> indexes = new ArrayList<SortedKeyValueIterator<Key,Value>>();
+    try {
+      AccumuloConfiguration acuTableConf = new ConfigurationCopy(split.getTableProperties());
+      for (String file : split.getFiles())
+        indexes.add(FileOperations.getInstance().openIndex(file, fs, conf, acuTableConf));
+      
+      MultiIterator indexIter = new MultiIterator(indexes, true);
+      while (indexIter.hasTop()) {
+        Key key = indexIter.getTopKey();
+        if (split.getRange().afterEndKey(key))
+          break;
+        if (!split.getRange().beforeStartKey(key) && (rows.isEmpty() || !rows.get(rows.size() - 1).equals(key.getRow())))
+          rows.add(key.getRow());
+        indexIter.next();
+      }
+    } finally {
+      for (SortedKeyValueIterator<Key,Value> index : indexes) {
+        try {
+          ((FileSKVIterator) index).close();
+        } catch (IOException e) {
+          log.warn("Failed to close index " + e.getMessage(), e);
+        }
+      }
+    }
+    
+    numSplits = Math.min(numSplits, rows.size() + 1);
+    Text prevRow = null;
+    for (int i = 1; i <= numSplits; i++) {
+      Text row = i == numSplits ? null : rows.get((int) ((long) i * rows.size() / numSplits));
+      if (row != null && prevRow != null && row.equals(prevRow))
+        continue;
+      
+      Range range = split.getRange().clip(new Range(prevRow, false, row, true), true);
+      if (range != null) {
+        TabletFilesInputSplit subSplit = new TabletFilesInputSplit(split);
+        subSplit.setRange(range);
+        subSplit.setLength(size / numSplits);
+        splits.add(subSplit);
+      }
+      prevRow = row;
+    }
+    
+    return splits;
+  }
+  
+  /**
+   * @return the hosts that store the most data of the files
+   */
+  static String[] getFileLocations(FileSystem fs, Collection<String> files) throws IOException {
+    final Map<String,Long> hostBytes = new HashMap<String,Long>();
+    for (String file : files) {
+      FileStatus status = fs.getFileStatus(new Path(file));
+      for (BlockLocation block : fs.getFileBlockLocations(status, 0, status.getLen())) {
+        for (String host : block.getHosts()) {
+          Long bytes = hostBytes.get(host);
+          hostBytes.put(host, (bytes == null ? 0 : bytes) + block.getLength());
+        }
+      }
+    }
+    
+    List<String> hosts = new ArrayList<String>(hostBytes.keySet());
+    Collections.sort(hosts, new Comparator<String>() {
+      @Override
+      public int compare(String h1, String h2) {
+        return hostBytes.get(h2).compareTo(hostBytes.get(h1));
+      }
+    });
+    
+    return hosts.subList(0, Math.min(MAX_SPLIT_LOCATIONS, hosts.size())).toArray(new String[0]);
+  }
+  
+  /**
+   * Creates splits for an offline table that carry the files of their tablet, divided so that each reads about the configured split size.
+   */
+  List<InputSplit> getOfflineFileSplits(Configuration conf, String tableName, List<Range> ranges) throws IOException {
+    List<TabletFilesInputSplit> tabletSplits;
+    try {
+      // files are read with the job's authorizations without a tablet server checking them, so check them here
+      Connector conn = getInstance(conf).getConnector(getUsername(conf), getPassword(conf));
+      Authorizations userAuths = conn.securityOperations().getUserAuthorizations(getUsername(conf));
+      for (byte[] auth : getAuthorizations(conf))
+        if (!userAuths.contains(auth))
+          throw new IOException("User " + getUsername(conf) + " does not have authorization " + new String(auth));
+      
+      tabletSplits = binOfflineTableFiles(conf, tableName, ranges);
+      while (tabletSplits == null) {
+        // Some tablets were still online, try again
+        UtilWaitThread.sleep(100 + (int) (Math.random() * 100)); // sleep randomly between 100 and 200 ms
+        tabletSplits = binOfflineTableFiles(conf, tableName, ranges);
+      }
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+    
+    FileSystem fs = FileUtil.getFileSystem(conf, getInstance(conf).getConfiguration());
+    long splitSize = getOfflineSplitSize(conf);
+    
+    ArrayList<InputSplit> splits = new ArrayList<InputSplit>(tabletSplits.size());
+    for (TabletFilesInputSplit tabletSplit : tabletSplits) {
+      String[] locations = getFileLocations(fs, tabletSplit.getFiles());
+      for (TabletFilesInputSplit split : divideTabletSplit(fs, conf, tabletSplit, splitSize)) {
+        split.setLocations(locations);
+        splits.add(split);
+      }
+    }
+    
+    log.debug("Created " + splits.size() + " splits for " + tabletSplits.size() + " tablets of " + tableName);
+    return splits;
+  }
+  
   /**
    * Read the metadata table to get tablets and match up ranges to them.
    */
@@ -877,6 +1164,9 @@ public abstract class InputFormatBase<K,V> extends InputFormat<K,V> {
       ranges.add(new Range());
     }
     
+    if (isOfflineScan(conf) && autoAdjust)
+      return getOfflineFileSplits(conf, tableName, ranges);
+    
     // get the metadata information for these ranges
     Map<String,Map<KeyExtent,List<Range>>> binnedRanges = new HashMap<String,Map<KeyExtent,List<Range>>>();
     TabletLocator tl;
@@ -1068,4 +1358,94 @@ public abstract class InputFormatBase<K,V> extends InputFormat<K,V> {
         out.writeUTF(locations[i]);
     }
   }
+  
+  /**
+   * A split of an offline table that holds the files of its tablet and the table's configuration, so that the record reader can read the files directly.
+   */
+  public static class TabletFilesInputSplit extends RangeInputSplit {
+    private KeyExtent extent;
+    private List<String> files;
+    private long length;
+    private Map<String,String> tableProperties;
+    
+    public TabletFilesInputSplit() {
+      extent = new KeyExtent();
+      files = new ArrayList<String>();
+      tableProperties = new TreeMap<String,String>();
+    }
+    
+    public TabletFilesInputSplit(TabletFilesInputSplit split) throws IOException {
+      super(split);
+      this.extent = split.extent;
+      this.files = split.files;
+      this.length = split.length;
+      this.tableProperties = split.tableProperties;
+    }
+    
+    TabletFilesInputSplit(String table, Range range, KeyExtent extent, Map<String,Long> files, Map<String,String> tableProperties) {
+      super(table, range, new String[0]);
+      this.extent = extent;
+      this.files = new ArrayList<String>(files.keySet());
+      for (Long size : files.values())
+        length += size;
+      this.tableProperties = tableProperties;
+    }
+    
+    public KeyExtent getExtent() {
+      return extent;
+    }
+    
+    /**
+     * @return the absolute paths of the tablet's files
+     */
+    public List<String> getFiles() {
+      return files;
+    }
+    
+    public Map<String,String> getTableProperties() {
+      return tableProperties;
+    }
+    
+    /**
+     * @return the estimated number of bytes of the files this split reads
+     */
+    @Override
+    public long getLength() {
+      return length;
+    }
+    
+    void setLength(long length) {
+      this.length = length;
+    }
+    
+    @Override
+    public void readFields(DataInput in) throws IOException {
+      super.readFields(in);
+      extent.readFields(in);
+      int numFiles = in.readInt();
+      files = new ArrayList<String>(numFiles);
+      for (int i = 0; i < numFiles; i++)
+        files.add(in.readUTF());
+      length = in.readLong();
+      int numProperties = in.readInt();
+      tableProperties = new TreeMap<String,String>();
+      for (int i = 0; i < numProperties; i++)
+        tableProperties.put(in.readUTF(), in.readUTF());
+    }
+    
+    @Override
+    public void write(DataOutput out) throws IOException {
+      super.write(out);
+      extent.write(out);
+      out.writeInt(files.size());
+      for (String file : files)
+        out.writeUTF(file);
+      out.writeLong(length);
+      out.writeInt(tableProperties.size());
+      for (Entry<String,String> entry : tableProperties.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeUTF(entry.getValue());
+      }
+    }
+  }
 }
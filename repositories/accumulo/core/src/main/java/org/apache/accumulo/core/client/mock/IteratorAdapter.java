@@ -17,26 +17,51 @@
 package org.apache.accumulo.core.client.mock;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.KeyValue;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileSKVIterator;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 
 public class IteratorAdapter implements Iterator<Entry<Key,Value>> {
   
   SortedKeyValueIterator<Key,Value> inner;
+  // closed once inner is exhausted
+  private List<FileSKVIterator> files;
   
   public IteratorAdapter(SortedKeyValueIterator<Key,Value> inner) {
+    this(inner, Collections.<FileSKVIterator> emptyList());
+  }
+  
+  IteratorAdapter(SortedKeyValueIterator<Key,Value> inner, List<FileSKVIterator> files) {
     this.inner = inner;
+    this.files = files;
   }
   
   @Override
   public boolean hasNext() {
-    return inner.hasTop();
+    if (inner.hasTop())
+      return true;
+    if (!files.isEmpty())
+      closeFiles(files);
+    return false;
+  }
+  
+  static void closeFiles(List<FileSKVIterator> files) {
+    for (FileSKVIterator file : files) {
+      try {
+        file.close();
+      } catch (IOException e) {
+        // the scan is done with the file
+      }
+    }
+    files.clear();
   }
   
   @Override
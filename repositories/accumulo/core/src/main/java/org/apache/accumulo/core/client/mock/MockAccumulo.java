@@ -16,6 +16,7 @@
  */
 package org.apache.accumulo.core.client.mock;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -25,24 +26,53 @@ import java.util.SortedSet;
 import org.apache.accumulo.core.Constants;
 import org.apache.accumulo.core.client.BatchScanner;
 import org.apache.accumulo.core.client.admin.TimeType;
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.file.blockfile.cache.BlockCache;
+import org.apache.accumulo.core.file.blockfile.cache.LruBlockCache;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.core.security.SystemPermission;
 import org.apache.accumulo.core.security.TablePermission;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
 
+/**
+ * Holds the tables, users and settings of a mock instance.
+ * 
+ * By default each table is a single sorted map in memory. When a directory is given, tables are kept the way a tablet server keeps them: writes go to the
+ * sorted map until it uses more than {@link Property#TSERV_MAXMEM}, when it is minor compacted to an RFile in the directory, and scans merge the map with
+ * the table's files, read through block caches, under the same system iterators a tablet server uses. Once a table has more than
+ * {@link Property#TABLE_FILE_MAX} files they are major compacted into one.
+ */
 public class MockAccumulo {
   final Map<String,MockTable> tables = new HashMap<String,MockTable>();
   final Map<String,String> systemProperties = new HashMap<String,String>();
   Map<String,MockUser> users = new HashMap<String,MockUser>();
   final FileSystem fs;
+  final Path dir;
+  final BlockCache dataCache;
+  final BlockCache indexCache;
+  private int nextTableDir = 0;
   
   MockAccumulo(FileSystem fs) {
-    this.fs = fs;
+    this(fs, null);
   }
   
-  {
+  MockAccumulo(FileSystem fs, Path dir) {
+    this.fs = fs;
+    this.dir = dir;
+    if (dir != null) {
+      AccumuloConfiguration conf = AccumuloConfiguration.getDefaultConfiguration();
+      long blockSize = conf.getMemoryInBytes(Property.TSERV_DEFAULT_BLOCKSIZE);
+      dataCache = new LruBlockCache(conf.getMemoryInBytes(Property.TSERV_DATACACHE_SIZE), blockSize, false);
+      indexCache = new LruBlockCache(conf.getMemoryInBytes(Property.TSERV_INDEXCACHE_SIZE), blockSize, false);
+    } else {
+      dataCache = null;
+      indexCache = null;
+    }
+    
     MockUser root = new MockUser("root", new byte[] {}, Constants.NO_AUTHS);
     root.permissions.add(SystemPermission.SYSTEM);
     users.put(root.name, root);
@@ -53,6 +83,13 @@ public class MockAccumulo {
     return fs;
   }
   
+  /**
+   * @return the directory tables are compacted to, or null if tables are kept only in memory
+   */
+  public Path getDirectory() {
+    return dir;
+  }
+  
   void setProperty(String key, String value) {
     systemProperties.put(key, value);
   }
@@ -68,6 +105,20 @@ public class MockAccumulo {
   public void addMutation(String table, Mutation m) {
     MockTable t = tables.get(table);
     t.addMutation(m);
+    if (dir != null && t.getMemoryUsage() > getMaxMemory()) {
+      try {
+        t.minorCompact();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+  
+  private long getMaxMemory() {
+    String maxMem = systemProperties.get(Property.TSERV_MAXMEM.getKey());
+    if (maxMem == null)
+      maxMem = Property.TSERV_MAXMEM.getDefaultValue();
+    return AccumuloConfiguration.getMemoryInBytes(maxMem);
   }
   
   public BatchScanner createBatchScanner(String tableName, Authorizations authorizations) {
@@ -75,7 +126,11 @@ public class MockAccumulo {
   }
   
   public void createTable(String username, String tableName, boolean useVersions, TimeType timeType) {
-    MockTable t = new MockTable(useVersions, timeType);
+    MockTable t;
+    if (dir == null)
+      t = new MockTable(useVersions, timeType);
+    else
+      t = new MockTable(useVersions, timeType, this, new Path(dir, "t-" + nextTableDir++));
     t.userPermissions.put(username, EnumSet.allOf(TablePermission.class));
     tables.put(tableName, t);
   }
@@ -27,8 +27,8 @@ import org.apache.accumulo.core.client.BatchScanner;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileSKVIterator;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
-import org.apache.accumulo.core.iterators.SortedMapIterator;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.commons.collections.iterators.IteratorChain;
 
@@ -58,12 +58,14 @@ public class MockBatchScanner extends MockScannerBase implements BatchScanner {
 
     IteratorChain chain = new IteratorChain();
     for (Range range : ranges) {
-      SortedKeyValueIterator<Key,Value> i = new SortedMapIterator(table.table);
+      List<FileSKVIterator> files = new ArrayList<FileSKVIterator>();
       try {
+        SortedKeyValueIterator<Key,Value> i = table.createSource(files);
         i = createFilter(i);
         i.seek(range, createColumnBSS(fetchedColumns), !fetchedColumns.isEmpty());
-        chain.addIterator(new IteratorAdapter(i));
+        chain.addIterator(new IteratorAdapter(i, files));
       } catch (IOException e) {
+        IteratorAdapter.closeFiles(files);
         throw new RuntimeException(e);
       }
     }
@@ -28,12 +28,14 @@ import org.apache.accumulo.core.client.AccumuloSecurityException;
 import org.apache.accumulo.core.client.Connector;
 import org.apache.accumulo.core.client.Instance;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.core.security.thrift.AuthInfo;
 import org.apache.accumulo.core.util.ByteBufferUtil;
 import org.apache.accumulo.core.util.CachedConfiguration;
 import org.apache.accumulo.core.util.TextUtil;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 
 public class MockInstance implements Instance {
@@ -61,11 +63,22 @@ public class MockInstance implements Instance {
   }
   
   public MockInstance(String instanceName, FileSystem fs) {
+    this(instanceName, fs, null);
+  }
+  
+  /**
+   * Creates an instance whose tables are minor compacted to RFiles under dir once they use more than {@link Property#TSERV_MAXMEM}, and read through the
+   * block caches and system iterators a tablet server uses, so that reads and writes cost what they would on a tablet server.
+   * 
+   * @param dir
+   *          the directory to write the files of the tables to, or null to keep tables only in memory
+   */
+  public MockInstance(String instanceName, FileSystem fs, Path dir) {
     synchronized (instances) {
       if (instances.containsKey(instanceName))
         acu = instances.get(instanceName);
       else
-        instances.put(instanceName, acu = new MockAccumulo(fs));
+        instances.put(instanceName, acu = new MockAccumulo(fs, dir));
     }
     this.instanceName = instanceName;
   }
@@ -17,7 +17,9 @@
 package org.apache.accumulo.core.client.mock;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.TimeUnit;
 
@@ -25,9 +27,9 @@ import org.apache.accumulo.core.client.Scanner;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileSKVIterator;
 import org.apache.accumulo.core.iterators.Filter;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
-import org.apache.accumulo.core.iterators.SortedMapIterator;
 import org.apache.accumulo.core.security.Authorizations;
 
 public class MockScanner extends MockScannerBase implements Scanner {
@@ -97,12 +99,14 @@ public class MockScanner extends MockScannerBase implements Scanner {
   
   @Override
   public Iterator<Entry<Key,Value>> iterator() {
-    SortedKeyValueIterator<Key,Value> i = new SortedMapIterator(table.table);
+    List<FileSKVIterator> files = new ArrayList<FileSKVIterator>();
     try {
+      SortedKeyValueIterator<Key,Value> i = table.createSource(files);
       i = new RangeFilter(createFilter(i), range);
       i.seek(range, createColumnBSS(fetchedColumns), !fetchedColumns.isEmpty());
-      return new IteratorAdapter(i);
+      return new IteratorAdapter(i, files);
     } catch (IOException e) {
+      IteratorAdapter.closeFiles(files);
       throw new RuntimeException(e);
     }
     
@@ -62,6 +62,20 @@ public class MockScannerBase extends ScannerOptions implements ScannerBase {
   }
   
   static class MockIteratorEnvironment implements IteratorEnvironment {
+    private final IteratorScope scope;
+    private final boolean fullMajorCompaction;
+    private final AccumuloConfiguration conf;
+    
+    MockIteratorEnvironment() {
+      this(IteratorScope.scan, false, AccumuloConfiguration.getDefaultConfiguration());
+    }
+    
+    MockIteratorEnvironment(IteratorScope scope, boolean fullMajorCompaction, AccumuloConfiguration conf) {
+      this.scope = scope;
+      this.fullMajorCompaction = fullMajorCompaction;
+      this.conf = conf;
+    }
+    
     @Override
     public SortedKeyValueIterator<Key,Value> reserveMapFileReader(String mapFileName) throws IOException {
       throw new NotImplementedException();
@@ -69,17 +83,17 @@ public class MockScannerBase extends ScannerOptions implements ScannerBase {
     
     @Override
     public AccumuloConfiguration getConfig() {
-      return AccumuloConfiguration.getDefaultConfiguration();
+      return conf;
     }
     
     @Override
     public IteratorScope getIteratorScope() {
-      return IteratorScope.scan;
+      return scope;
     }
     
     @Override
     public boolean isFullMajorCompaction() {
-      return false;
+      return fullMajorCompaction;
     }
     
     private ArrayList<SortedKeyValueIterator<Key,Value>> topLevelIterators = new ArrayList<SortedKeyValueIterator<Key,Value>>();
@@ -16,9 +16,13 @@
  */
 package org.apache.accumulo.core.client.mock;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedMap;
@@ -26,15 +30,30 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentSkipListMap;
 
+import org.apache.accumulo.core.client.IteratorSetting;
 import org.apache.accumulo.core.client.admin.TimeType;
+import org.apache.accumulo.core.client.mock.MockScannerBase.MockIteratorEnvironment;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.ColumnUpdate;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileSKVIterator;
+import org.apache.accumulo.core.file.FileSKVWriter;
+import org.apache.accumulo.core.file.rfile.RFile;
 import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.iterators.system.ColumnFamilySkippingIterator;
+import org.apache.accumulo.core.iterators.system.DeletingIterator;
+import org.apache.accumulo.core.iterators.system.MultiIterator;
 import org.apache.accumulo.core.security.TablePermission;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 
 public class MockTable {
@@ -80,14 +99,31 @@ public class MockTable {
     }
   };
   
-  final SortedMap<Key,Value> table = new ConcurrentSkipListMap<Key,Value>();
+  private static final Collection<ByteSequence> EMPTY_COL_FAMS = Collections.emptySet();
+  private static final List<IteratorSetting> NO_ITERATORS = Collections.emptyList();
+  
+  // replaced by an empty map when it is minor compacted, scans keep reading the map they started with
+  volatile SortedMap<Key,Value> table = new ConcurrentSkipListMap<Key,Value>();
   int mutationCount = 0;
   final Map<String,String> settings;
   Map<String,EnumSet<TablePermission>> userPermissions = new HashMap<String,EnumSet<TablePermission>>();
   private TimeType timeType;
   SortedSet<Text> splits = new TreeSet<Text>();
   
+  // the directory the table is compacted to, null if the table is kept only in memory
+  private final MockAccumulo acu;
+  private final Path dir;
+  private final List<String> files = new ArrayList<String>();
+  private long memoryUsage = 0;
+  private int nextFile = 0;
+  
   MockTable(boolean limitVersion, TimeType timeType) {
+    this(limitVersion, timeType, null, null);
+  }
+  
+  MockTable(boolean limitVersion, TimeType timeType, MockAccumulo acu, Path dir) {
+    this.acu = acu;
+    this.dir = dir;
     this.timeType = timeType;
     settings = IteratorUtil.generateInitialTableProperties(limitVersion);
     for (Entry<String,String> entry : AccumuloConfiguration.getDefaultConfiguration()) {
@@ -112,7 +148,105 @@ public class MockTable {
           key.setTimestamp(now);
       
       table.put(new MockMemKey(key, mutationCount), new Value(u.getValue()));
+      memoryUsage += key.getSize() + u.getValue().length;
+    }
+  }
+  
+  synchronized long getMemoryUsage() {
+    return memoryUsage;
+  }
+  
+  /**
+   * Creates an iterator over the entries in memory merged with the files of the table. The readers of the files are added to openedFiles, and must be closed
+   * by the caller once it is done with the iterator.
+   */
+  synchronized SortedKeyValueIterator<Key,Value> createSource(List<FileSKVIterator> openedFiles) throws IOException {
+    if (files.isEmpty())
+      return new SortedMapIterator(table);
+    
+    List<SortedKeyValueIterator<Key,Value>> iters = new ArrayList<SortedKeyValueIterator<Key,Value>>(files.size() + 1);
+    iters.add(new SortedMapIterator(table));
+    for (String file : files) {
+      FileSKVIterator reader = FileOperations.getInstance().openReader(file, false, acu.fs, acu.fs.getConf(), new MockConfiguration(settings), acu.dataCache,
+          acu.indexCache);
+      openedFiles.add(reader);
+      iters.add(reader);
     }
+    return new MultiIterator(iters, false);
+  }
+  
+  /**
+   * Writes the entries in memory to a new file through the minor compaction iterators of the table. Does nothing if the table is kept only in memory.
+   */
+  synchronized void minorCompact() throws IOException {
+    if (dir == null || table.isEmpty())
+      return;
+    
+    files.add(compact(new SortedMapIterator(table), IteratorScope.minc, false, NO_ITERATORS, "F"));
+    table = new ConcurrentSkipListMap<Key,Value>();
+    memoryUsage = 0;
+    
+    if (files.size() > new MockConfiguration(settings).getMaxFilesPerTablet())
+      majorCompact(NO_ITERATORS);
+  }
+  
+  /**
+   * Compacts all the files of the table into one, dropping deleted entries, through the major compaction iterators of the table followed by the given
+   * iterators. Does nothing if the table has no files.
+   */
+  synchronized void majorCompact(List<IteratorSetting> iterators) throws IOException {
+    if (dir == null || files.isEmpty())
+      return;
+    
+    List<FileSKVIterator> readers = new ArrayList<FileSKVIterator>(files.size());
+    String compacted;
+    try {
+      // compactions do not go through the block caches
+      for (String file : files)
+        readers.add(FileOperations.getInstance().openReader(file, false, acu.fs, acu.fs.getConf(), new MockConfiguration(settings), null, null));
+      compacted = compact(new MultiIterator(new ArrayList<SortedKeyValueIterator<Key,Value>>(readers), false), IteratorScope.majc, true, iterators, "A");
+    } finally {
+      for (FileSKVIterator reader : readers)
+        reader.close();
+    }
+    
+    // scans that already opened the old files keep reading them
+    for (String file : files)
+      acu.fs.delete(new Path(file), false);
+    files.clear();
+    files.add(compacted);
+  }
+  
+  private String compact(SortedKeyValueIterator<Key,Value> source, IteratorScope scope, boolean fullMajorCompaction, List<IteratorSetting> iterators,
+      String prefix) throws IOException {
+    AccumuloConfiguration conf = new MockConfiguration(settings);
+    String file = new Path(dir, prefix + String.format("%06d", nextFile++) + "." + RFile.EXTENSION).toString();
+    
+    MockIteratorEnvironment env = new MockIteratorEnvironment(scope, fullMajorCompaction, conf);
+    SortedKeyValueIterator<Key,Value> iter = new ColumnFamilySkippingIterator(new DeletingIterator(source, !fullMajorCompaction));
+    iter = env.getTopLevelIterator(IteratorUtil.loadIterators(scope, iter, null, conf, iterators, env));
+    iter.seek(new Range(), EMPTY_COL_FAMS, false);
+    
+    FileSKVWriter writer = FileOperations.getInstance().openWriter(file, acu.fs, acu.fs.getConf(), conf);
+    try {
+      writer.startDefaultLocalityGroup();
+      while (iter.hasTop()) {
+        writer.append(iter.getTopKey(), iter.getTopValue());
+        iter.next();
+      }
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+  
+  /**
+   * Removes the directory of a deleted table.
+   */
+  synchronized void deleteFiles() throws IOException {
+    if (dir != null)
+      acu.fs.delete(dir, true);
+    files.clear();
   }
   
   public void addSplits(SortedSet<Text> partitionKeys) {
@@ -119,7 +119,12 @@ public class MockTableOperations extends TableOperationsHelper {
   public void delete(String tableName) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
     if (!exists(tableName))
       throw new TableNotFoundException(tableName, tableName, "");
-    acu.tables.remove(tableName);
+    MockTable table = acu.tables.remove(tableName);
+    try {
+      table.deleteFiles();
+    } catch (IOException e) {
+      throw new AccumuloException(e);
+    }
   }
   
   @Override
@@ -134,7 +139,16 @@ public class MockTableOperations extends TableOperationsHelper {
   }
   
   @Override
-  public void flush(String tableName) throws AccumuloException, AccumuloSecurityException {}
+  public void flush(String tableName) throws AccumuloException, AccumuloSecurityException {
+    MockTable table = acu.tables.get(tableName);
+    if (table == null)
+      return;
+    try {
+      table.minorCompact();
+    } catch (IOException e) {
+      throw new AccumuloException(e);
+    }
+  }
   
   @Override
   public void setProperty(String tableName, String property, String value) throws AccumuloException, AccumuloSecurityException {
@@ -295,13 +309,27 @@ public class MockTableOperations extends TableOperationsHelper {
   @Override
   public void compact(String tableName, Text start, Text end, boolean flush, boolean wait) throws AccumuloSecurityException, TableNotFoundException,
       AccumuloException {
-    throw new NotImplementedException();
+    compact(tableName, start, end, Collections.<IteratorSetting> emptyList(), flush, wait);
   }
   
   @Override
   public void compact(String tableName, Text start, Text end, List<IteratorSetting> iterators, boolean flush, boolean wait) throws AccumuloSecurityException,
       TableNotFoundException, AccumuloException {
-    throw new NotImplementedException();
+    // tables kept in memory have no files to compact
+    if (acu.getDirectory() == null)
+      throw new NotImplementedException();
+    MockTable table = acu.tables.get(tableName);
+    if (table == null)
+      throw new TableNotFoundException(tableName, tableName, "no such table");
+    
+    // the whole table is compacted, and always before returning
+    try {
+      if (flush)
+        table.minorCompact();
+      table.majorCompact(iterators);
+    } catch (IOException e) {
+      throw new AccumuloException(e);
+    }
   }
   
   @Override
@@ -312,7 +340,9 @@ public class MockTableOperations extends TableOperationsHelper {
   
   @Override
   public void flush(String tableName, Text start, Text end, boolean wait) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
-    throw new NotImplementedException();
+    if (!exists(tableName))
+      throw new TableNotFoundException(tableName, tableName, "");
+    flush(tableName);
   }
   
   @Override
@@ -51,6 +51,9 @@ public enum Property {
   GENERAL_DYNAMIC_CLASSPATHS(AccumuloClassLoader.DYNAMIC_CLASSPATH_PROPERTY_NAME, AccumuloClassLoader.DEFAULT_DYNAMIC_CLASSPATH_VALUE, PropertyType.STRING,
       "A list of all of the places where changes in jars or classes will force a reload of the classloader."),
   GENERAL_RPC_TIMEOUT("general.rpc.timeout", "120s", PropertyType.TIMEDURATION, "Time to wait on I/O for simple, short RPC calls"),
+  GENERAL_RPC_SELECTOR_THREADS("general.rpc.selector.threads", "1", PropertyType.COUNT,
+      "The number of threads a server uses to read and write client connections. Requests are run by a separate pool of threads. "
+          + "Raising this helps servers with thousands of client connections."),
   GENERAL_KERBEROS_KEYTAB("general.kerberos.keytab", "", PropertyType.PATH, "Path to the kerberos keytab to use. Leave blank if not using kerberoized hdfs"),
   GENERAL_KERBEROS_PRINCIPAL("general.kerberos.principal", "", PropertyType.STRING, "Name of the kerberos principal to use. _HOST will automatically be "
       + "replaced by the machines hostname in the hostname portion of the principal. Leave blank if not using kerberoized hdfs"),
@@ -76,6 +79,11 @@ public enum Property {
   TSERV_DEFAULT_BLOCKSIZE("tserver.default.blocksize", "1M", PropertyType.MEMORY, "Specifies a default blocksize for the tserver caches"),
   TSERV_DATACACHE_SIZE("tserver.cache.data.size", "100M", PropertyType.MEMORY, "Specifies the size of the cache for file data blocks."),
   TSERV_INDEXCACHE_SIZE("tserver.cache.index.size", "512M", PropertyType.MEMORY, "Specifies the size of the cache for file indices."),
+  TSERV_CACHE_POLICY("tserver.cache.policy", "lru", PropertyType.STRING,
+      "The replacement policy of the data and index caches.  Use lru for the least-recently-used cache, or tinylfu for a lock-striped cache that only "
+          + "admits a block when it is requested more often than the blocks it would evict, which keeps large scans from flushing frequently used blocks.  "
+          + "Use offheap for a least-recently-used cache that stores blocks in direct memory instead of the java heap; it does not cache blocks larger "
+          + "than tserver.default.blocksize and needs -XX:MaxDirectMemorySize set above the sum of both cache sizes."),
   TSERV_PORTSEARCH("tserver.port.search", "false", PropertyType.BOOLEAN, "if the ports above are in use, search higher ports until one is available"),
   TSERV_CLIENTPORT("tserver.port.client", "9997", PropertyType.PORT, "The port used for handling client connections on the tablet servers"),
   TSERV_MUTATION_QUEUE_MAX("tserver.mutation.queue.max", "256K", PropertyType.MEMORY,
@@ -92,10 +100,17 @@ public enum Property {
       "Max number of files a major compaction thread can open at once. "),
   TSERV_SCAN_MAX_OPENFILES("tserver.scan.files.open.max", "100", PropertyType.COUNT,
       "Maximum total map files that all tablets in a tablet server can open for scans. "),
+  TSERV_SCAN_TRACE_THRESHOLD("tserver.scan.trace.threshold", "0", PropertyType.TIMEDURATION,
+      "Scans of a tablet that take longer than this to produce a batch are logged with where their time went: the time spent in each iterator, the blocks "
+          + "found in the block caches and read from files, and the number of files merged. The slow scans are shown on the monitor. Collecting the "
+          + "times adds some overhead to every scan, so this is off when set to zero."),
   TSERV_MAX_IDLE("tserver.files.open.idle", "1m", PropertyType.TIMEDURATION, "Tablet servers leave previously used map files open for future queries. "
       + "This setting determines how much time an unused map file should be kept open until it is closed."),
   TSERV_NATIVEMAP_ENABLED("tserver.memory.maps.native.enabled", "true", PropertyType.BOOLEAN,
       "An in-memory data store for accumulo implemented in c++ that increases the amount of data " + "accumulo can hold in memory and avoids Java GC pauses."),
+  TSERV_ARENAMAP_ENABLED("tserver.memory.maps.arena.enabled", "false", PropertyType.BOOLEAN,
+      "When the native map is disabled or its library can not be loaded, store in-memory data in large Java byte arrays indexed by a skip list of offsets, "
+          + "instead of one Java object per key and value. This holds considerably more data in the same heap than the default Java map."),
   TSERV_MAXMEM(
       "tserver.memory.maps.max",
       "1G",
@@ -112,7 +127,25 @@ public enum Property {
   TSERV_MIGRATE_MAXCONCURRENT("tserver.migrations.concurrent.max", "1", PropertyType.COUNT,
       "The maximum number of concurrent tablet migrations for a tablet server"),
   TSERV_MAJC_MAXCONCURRENT("tserver.compaction.major.concurrent.max", "3", PropertyType.COUNT,
-      "The maximum number of concurrent major compactions for a tablet server"),
+      "The maximum number of concurrent major compactions for a tablet server, excluding large compactions. "
+          + "See tserver.compaction.major.large.threshold"),
+  TSERV_MAJC_LARGE_MAXCONCURRENT("tserver.compaction.major.large.concurrent.max", "1", PropertyType.COUNT,
+      "The maximum number of concurrent large major compactions for a tablet server. Large compactions run on their own threads, "
+          + "so that they do not hold up the smaller compactions that keep the number of files per tablet down."),
+  TSERV_MAJC_LARGE_THRESHOLD("tserver.compaction.major.large.threshold", "1G", PropertyType.MEMORY,
+      "Major compactions of tablets with at least this much data in files are queued as large compactions."),
+  TSERV_MAJC_HUGE_THRESHOLD("tserver.compaction.major.huge.threshold", "10G", PropertyType.MEMORY,
+      "Major compactions of tablets with at least this much data in files are deferred while smaller compactions are waiting for a large compaction thread, "
+          + "for up to tserver.compaction.major.huge.defer.max."),
+  TSERV_MAJC_HUGE_DEFER_MAX("tserver.compaction.major.huge.defer.max", "10m", PropertyType.TIMEDURATION,
+      "The longest time a huge major compaction is deferred in favor of smaller large compactions."),
+  TSERV_MAJC_THROUGHPUT("tserver.compaction.major.throughput", "0", PropertyType.MEMORY,
+      "The combined rate, in bytes per second, at which major compactions other than large compactions may write. Zero means unlimited."),
+  TSERV_MAJC_LARGE_THROUGHPUT("tserver.compaction.major.large.throughput", "0", PropertyType.MEMORY,
+      "The combined rate, in bytes per second, at which large major compactions may write. Zero means unlimited."),
+  TSERV_MAJC_PIPELINE_THREADS("tserver.compaction.major.pipeline.threads", "4", PropertyType.COUNT,
+      "The number of threads shared by major compactions of tables with table.compaction.major.pipeline.enabled set, which decompress the files "
+          + "being compacted and compress the files being written."),
   TSERV_MINC_MAXCONCURRENT("tserver.compaction.minor.concurrent.max", "4", PropertyType.COUNT,
       "The maximum number of concurrent minor compactions for a tablet server"),
   TSERV_BLOOM_LOAD_MAXCONCURRENT("tserver.bloom.load.concurrent.max", "4", PropertyType.COUNT,
@@ -151,8 +184,13 @@ public enum Property {
       "The size of the HDFS blocks used to write to the Write-Ahead log.  If zero, it will be 110% of tserver.walog.max.size (that is, try to use just one block)"),
   TSERV_WAL_REPLICATION("tserver.wal.replication", "0", PropertyType.COUNT,
       "The replication to use when writing the Write-Ahead log to HDFS. If zero, it will use the HDFS default replication setting."),
+  TSERV_WAL_GROUP_COMMIT("tserver.wal.group.commit", "false", PropertyType.BOOLEAN,
+      "When true, writers encode their write-ahead log records on their own threads and queue them, and a single thread appends everything queued "
+          + "since the last sync and syncs once for the whole group.  This removes the lock writers otherwise hold while writing to the log."),
   TSERV_RECOVERY_MAX_CONCURRENT("tserver.recovery.concurrent.max", "2", PropertyType.COUNT, "The maximum number of threads to use to sort logs during recovery"),
   TSERV_SORT_BUFFER_SIZE("tserver.sort.buffer.size", "200M", PropertyType.MEMORY, "The amount of memory to use when sorting logs during recovery."),
+  TSERV_SORT_THREADS("tserver.sort.threads", "2", PropertyType.COUNT,
+      "The number of threads shared by all log recoveries to sort and spill chunks of a log in parallel while the next chunk is read."),
   TSERV_ARCHIVE_WALOGS("tserver.archive.walogs", "false", PropertyType.BOOLEAN, "Keep copies of the WALOGs for debugging purposes"),
   TSERV_WORKQ_THREADS("tserver.workq.threads", "2", PropertyType.COUNT,
       "The number of threads for the distributed workq.  These threads are used for copying failed bulk files."),
@@ -169,6 +207,11 @@ public enum Property {
       + "no longer in use are removed from the filesystem."),
   GC_PORT("gc.port.client", "50091", PropertyType.PORT, "The listening port for the garbage collector's monitor service"),
   GC_DELETE_THREADS("gc.threads.delete", "16", PropertyType.COUNT, "The number of threads used to delete files"),
+  GC_STREAMING_ENABLED("gc.streaming.enabled", "false", PropertyType.BOOLEAN, "When true, each cycle sorts delete candidates and file references on local "
+      + "disk and merges them, instead of holding the candidates in memory. This keeps the memory used by the garbage collector bounded regardless of the "
+      + "number of files."),
+  GC_STREAMING_BATCH_SIZE("gc.streaming.batch.size", "100000", PropertyType.COUNT, "The number of delete candidates or file references the garbage "
+      + "collector holds in memory at once when streaming, and the number of files it queues for the delete threads."),
   
   // properties that are specific to the monitor server behavior
   MONITOR_PREFIX("monitor.", null, PropertyType.PREFIX, "Properties in this category affect the behavior of the monitor web server."),
@@ -207,6 +250,10 @@ public enum Property {
           + "of its map file compacted into one.  There is no guarantee an idle tablet will be compacted. "
           + "Compactions of idle tablets are only started when regular compactions are not running. Idle "
           + "compactions only take place for tablets that have one or more map files."),
+  TABLE_MAJC_PIPELINE_ENABLED("table.compaction.major.pipeline.enabled", "false", PropertyType.BOOLEAN,
+      "Read the files being compacted ahead and write the compacted file behind on threads shared by the tablet server, so that decompression and "
+          + "compression overlap with merging and a major compaction uses several cores. The compacted file is the same either way. "
+          + "See tserver.compaction.major.pipeline.threads"),
   TABLE_SPLIT_THRESHOLD("table.split.threshold", "1G", PropertyType.MEMORY, "When combined size of files exceeds this amount a tablet is split."),
   TABLE_MINC_LOGS_MAX("table.compaction.minor.logs.threshold", "3", PropertyType.COUNT,
       "When there are more than this many write-ahead logs against a tablet, it will be minor compacted.  See comment for property tserver.memory.maps.max"),
@@ -227,6 +274,9 @@ public enum Property {
       "Determines how large index blocks can be in files that support multilevel indexes. The maximum value for this is " + Integer.MAX_VALUE),
   TABLE_FILE_BLOCK_SIZE("table.file.blocksize", "0B", PropertyType.MEMORY,
       "Overrides the hadoop dfs.block.size setting so that map files have better query performance. " + "The maximum value for this is " + Integer.MAX_VALUE),
+  TABLE_FILE_SEEK_INDEX_INTERVAL("table.file.seek.index.interval", "0", PropertyType.COUNT,
+      "When greater than zero, the position of every Nth key in a data block is stored at the end of the block, so that seeks within a block do not have to "
+          + "decode every key before the one sought. Files written with this set can not be read by earlier versions. Set to zero to disable."),
   TABLE_FILE_REPLICATION("table.file.replication", "0", PropertyType.COUNT, "Determines how many replicas to keep of a tables map files in HDFS. "
       + "When this value is LTE 0, HDFS defaults are used."),
   TABLE_FILE_MAX(
@@ -240,6 +290,9 @@ public enum Property {
       "This number of seeks that would actually use a bloom filter must occur before a "
           + "map files bloom filter is loaded. Set this to zero to initiate loading of bloom " + "filters when a map file opened."),
   TABLE_BLOOM_SIZE("table.bloom.size", "1048576", PropertyType.COUNT, "Bloom filter size, as number of keys."),
+  TABLE_BLOOM_PARTITION_SIZE("table.bloom.partition.size", "0", PropertyType.COUNT,
+      "When greater than zero, bloom filters are split into partitions of about this many keys, each covering a range of rows. "
+          + "A partition is only read, through the index cache, when a lookup needs it. Files written this way can not be filtered by earlier versions."),
   TABLE_BLOOM_ERRORRATE("table.bloom.error.rate", "0.5%", PropertyType.FRACTION, "Bloom filter error rate."),
   TABLE_BLOOM_KEY_FUNCTOR(
       "table.bloom.key.functor",
@@ -347,7 +400,7 @@ public enum Property {
   }
   
   private static final EnumSet<Property> fixedProperties = EnumSet.of(Property.TSERV_CLIENTPORT, Property.TSERV_NATIVEMAP_ENABLED,
-      Property.TSERV_SCAN_MAX_OPENFILES, Property.MASTER_CLIENTPORT, Property.GC_PORT);
+      Property.TSERV_ARENAMAP_ENABLED, Property.TSERV_SCAN_MAX_OPENFILES, Property.MASTER_CLIENTPORT, Property.GC_PORT);
   
   public static boolean isFixedZooPropertyKey(Property key) {
     return fixedProperties.contains(key);
@@ -45,6 +45,7 @@ import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.file.keyfunctor.KeyFunctor;
+import org.apache.accumulo.core.file.keyfunctor.RowFunctor;
 import org.apache.accumulo.core.file.rfile.RFile;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
@@ -85,6 +86,9 @@ public class BloomFilterLayer {
   
   public static class Writer implements FileSKVWriter {
     private DynamicBloomFilter bloomFilter;
+    // used instead of bloomFilter when the bloom filter is partitioned
+    private PartitionedBloomFilter.Writer partitionedFilter;
+    private int hashType;
     private int numKeys;
     private int vectorSize;
     
@@ -107,7 +111,7 @@ public class BloomFilterLayer {
       // Our desired error rate is by default 0.005, i.e. 0.5%
       double errorRate = acuconf.getFraction(Property.TABLE_BLOOM_ERRORRATE);
       vectorSize = (int) Math.ceil(-HASH_COUNT * numKeys / Math.log(1.0 - Math.pow(errorRate, 1.0 / HASH_COUNT)));
-      bloomFilter = new DynamicBloomFilter(vectorSize, HASH_COUNT, Hash.parseHashType(acuconf.get(Property.TABLE_BLOOM_HASHTYPE)), numKeys);
+      hashType = Hash.parseHashType(acuconf.get(Property.TABLE_BLOOM_HASHTYPE));
       
       /**
        * load KeyFunctor
@@ -122,13 +126,20 @@ public class BloomFilterLayer {
         
       }
       
+      int partitionSize = acuconf.getCount(Property.TABLE_BLOOM_PARTITION_SIZE);
+      if (partitionSize > 0)
+        partitionedFilter = new PartitionedBloomFilter.Writer(partitionSize, errorRate, HASH_COUNT, hashType, !(transformer instanceof RowFunctor));
+      else
+        bloomFilter = new DynamicBloomFilter(vectorSize, HASH_COUNT, hashType, numKeys);
     }
     
     @Override
     public synchronized void append(org.apache.accumulo.core.data.Key key, Value val) throws IOException {
       writer.append(key, val);
       Key bloomKey = transformer.transform(key);
-      if (bloomKey.getBytes().length > 0)
+      if (partitionedFilter != null)
+        partitionedFilter.add(key, bloomKey.getBytes());
+      else if (bloomKey.getBytes().length > 0)
         bloomFilter.add(bloomKey);
     }
     
@@ -138,11 +149,15 @@ public class BloomFilterLayer {
       if (closed)
         return;
       
-      DataOutputStream out = writer.createMetaStore(BLOOM_FILE_NAME);
-      out.writeUTF(transformer.getClass().getCanonicalName());
-      bloomFilter.write(out);
-      out.flush();
-      out.close();
+      if (partitionedFilter != null) {
+        partitionedFilter.write(writer, transformer.getClass().getCanonicalName(), hashType);
+      } else {
+        DataOutputStream out = writer.createMetaStore(BLOOM_FILE_NAME);
+        out.writeUTF(transformer.getClass().getCanonicalName());
+        bloomFilter.write(out);
+        out.flush();
+        out.close();
+      }
       writer.close();
       closed = true;
     }
@@ -155,12 +170,15 @@ public class BloomFilterLayer {
     @Override
     public void startDefaultLocalityGroup() throws IOException {
       writer.startDefaultLocalityGroup();
-      
+      if (partitionedFilter != null)
+        partitionedFilter.startLocalityGroup(null);
     }
     
     @Override
     public void startNewLocalityGroup(String name, Set<ByteSequence> columnFamilies) throws IOException {
       writer.startNewLocalityGroup(name, columnFamilies);
+      if (partitionedFilter != null)
+        partitionedFilter.startLocalityGroup(columnFamilies);
     }
     
     @Override
@@ -172,6 +190,8 @@ public class BloomFilterLayer {
   static class BloomFilterLoader {
     
     private volatile DynamicBloomFilter bloomFilter;
+    private volatile PartitionedBloomFilter partitionedFilter;
+    private FileSKVIterator reader;
     private int loadRequest = 0;
     private int loadThreshold = 1;
     private int maxLoadThreads;
@@ -181,6 +201,7 @@ public class BloomFilterLayer {
     
     BloomFilterLoader(final FileSKVIterator reader, AccumuloConfiguration acuconf) {
       
+      this.reader = reader;
       maxLoadThreads = acuconf.getCount(Property.TSERV_BLOOM_LOAD_MAXCONCURRENT);
       
       loadThreshold = acuconf.getCount(Property.TABLE_BLOOM_LOAD_THRESHOLD);
@@ -195,8 +216,14 @@ public class BloomFilterLayer {
           DataInputStream in = null;
           
           try {
-            in = reader.getMetaStore(BLOOM_FILE_NAME);
-            DynamicBloomFilter tmpBloomFilter = new DynamicBloomFilter();
+            boolean partitioned = false;
+            try {
+              in = reader.getMetaStore(BLOOM_FILE_NAME);
+            } catch (NoSuchMetaStoreException nsme) {
+              // only the index of a partitioned bloom filter is read here, its partitions are read as they are needed
+              in = reader.getMetaStore(PartitionedBloomFilter.INDEX_NAME);
+              partitioned = true;
+            }
             
             // check for closed again after open but before reading the bloom filter in
             if (closed)
@@ -214,9 +241,16 @@ public class BloomFilterLayer {
              * read in bloom filter
              */
             
-            tmpBloomFilter.readFields(in);
-            // only set the bloom filter after it is fully constructed
-            bloomFilter = tmpBloomFilter;
+            if (partitioned) {
+              PartitionedBloomFilter tmpPartitionedFilter = new PartitionedBloomFilter();
+              tmpPartitionedFilter.readIndex(in);
+              partitionedFilter = tmpPartitionedFilter;
+            } else {
+              DynamicBloomFilter tmpBloomFilter = new DynamicBloomFilter();
+              tmpBloomFilter.readFields(in);
+              // only set the bloom filter after it is fully constructed
+              bloomFilter = tmpBloomFilter;
+            }
           } catch (NoSuchMetaStoreException nsme) {
             // file does not have a bloom filter, ignore it
           } catch (IOException ioe) {
@@ -288,11 +322,17 @@ public class BloomFilterLayer {
      * @return false iff key doesn't exist, true if key probably exists.
      * @throws IOException
      */
-    boolean probablyHasKey(Range range) throws IOException {
-      if (bloomFilter == null) {
+    boolean probablyHasKey(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+      if (bloomFilter == null && partitionedFilter == null) {
         initiateLoad(maxLoadThreads);
-        if (bloomFilter == null)
+        if (bloomFilter == null && partitionedFilter == null)
+          return true;
+      }
+      
+      if (partitionedFilter != null) {
+        if (closed)
           return true;
+        return partitionedFilter.probablyHasKey(reader, transformer, range, columnFamilies, inclusive);
       }
       
       Key bloomKey = transformer.transform(range);
@@ -333,7 +373,7 @@ public class BloomFilterLayer {
     @Override
     public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
       
-      if (!bfl.probablyHasKey(range)) {
+      if (!bfl.probablyHasKey(range, columnFamilies, inclusive)) {
         checkSuper = false;
       } else {
         reader.seek(range, columnFamilies, inclusive);
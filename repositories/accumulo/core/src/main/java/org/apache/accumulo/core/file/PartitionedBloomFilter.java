@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.accumulo.core.bloomfilter.BlockedBloomFilter;
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.file.keyfunctor.KeyFunctor;
+import org.apache.accumulo.core.file.keyfunctor.RowFunctor;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.hash.Hash;
+import org.apache.log4j.Logger;
+
+/**
+ * A bloom filter split into partitions, each covering a range of rows in one locality group. Partitions are stored as separate meta blocks and read the first
+ * time a lookup needs them, so opening a file only reads a small index, and the partitions of rows that are never looked up are never read. The meta blocks
+ * go through the index cache like the rest of the file's metadata.
+ * 
+ * A row never spans two partitions of a locality group, so a lookup checks at most one partition per locality group. When the key functor uses more than the
+ * row, the rows are added as well, so that lookups of a whole row can be filtered too.
+ */
+public class PartitionedBloomFilter {
+  
+  private static final Logger log = Logger.getLogger(PartitionedBloomFilter.class);
+  
+  public static final String INDEX_NAME = "acu_bloom_partitions";
+  public static final String PARTITION_PREFIX = "acu_bloom_p";
+  
+  // rows are hashed with a different seed than the keys of the functor, so that a row can not match a row and column family with the same bytes
+  static final int KEY_SEED = 0;
+  static final int ROW_SEED = 0x5bd1e995;
+  
+  private static class LocalityGroup {
+    // null for the default locality group
+    Set<ByteSequence> families;
+    List<Text> firstRows = new ArrayList<Text>();
+    int firstPartition;
+    
+    boolean isRelevant(Collection<ByteSequence> columnFamilies, boolean inclusive) {
+      if (families == null || !inclusive || columnFamilies.isEmpty())
+        return true;
+      for (ByteSequence family : columnFamilies)
+        if (families.contains(family))
+          return true;
+      return false;
+    }
+    
+    /**
+     * @return the partition that would hold the row, or -1 if the row is before the first row of the locality group
+     */
+    int findPartition(Text row) {
+      int index = Collections.binarySearch(firstRows, row);
+      if (index < 0)
+        index = -index - 2;
+      return index < 0 ? -1 : firstPartition + index;
+    }
+  }
+  
+  public static class Writer {
+    private final int partitionSize;
+    private final double errorRate;
+    private final int nbHash;
+    private final Hash hash;
+    private final boolean includeRows;
+    
+    private List<LocalityGroup> groups = new ArrayList<LocalityGroup>();
+    private List<BlockedBloomFilter> partitions = new ArrayList<BlockedBloomFilter>();
+    
+    // the hashes of the keys in the open partition, the partition is sized once all of its keys are known
+    private long[] hashes = new long[1024];
+    private int numHashes = 0;
+    private boolean partitionOpen = false;
+    
+    private ByteSequence lastRow = null;
+    private byte[] lastKey = null;
+    
+    /**
+     * @param partitionSize
+     *          the number of keys after which a new partition is started, at the next row
+     * @param includeRows
+     *          true to add the row of every key, in addition to the keys given
+     */
+    public Writer(int partitionSize, double errorRate, int nbHash, int hashType, boolean includeRows) {
+      this.partitionSize = partitionSize;
+      this.errorRate = errorRate;
+      this.nbHash = nbHash;
+      this.hash = Hash.getInstance(hashType);
+      this.includeRows = includeRows;
+    }
+    
+    /**
+     * @param families
+     *          the column families of the locality group, or null for the default locality group
+     */
+    public void startLocalityGroup(Set<ByteSequence> families) {
+      finishPartition();
+      LocalityGroup group = new LocalityGroup();
+      if (families != null)
+        group.families = new HashSet<ByteSequence>(families);
+      group.firstPartition = partitions.size();
+      groups.add(group);
+      lastRow = null;
+      lastKey = null;
+    }
+    
+    private void addHash(long h) {
+      if (numHashes == hashes.length)
+        hashes = Arrays.copyOf(hashes, hashes.length * 2);
+      hashes[numHashes++] = h;
+    }
+    
+    /**
+     * @param bloomKey
+     *          the key produced by the key functor for the key, may be empty
+     */
+    public void add(Key key, byte[] bloomKey) {
+      if (groups.isEmpty())
+        startLocalityGroup(null);
+      
+      ByteSequence row = key.getRowData();
+      if (lastRow == null || !lastRow.equals(row)) {
+        if (numHashes >= partitionSize)
+          finishPartition();
+        byte[] rowBytes = row.toArray();
+        if (!partitionOpen) {
+          groups.get(groups.size() - 1).firstRows.add(new Text(rowBytes));
+          partitionOpen = true;
+        }
+        if (includeRows)
+          addHash(BlockedBloomFilter.hash(hash, rowBytes, ROW_SEED));
+        lastRow = new ArrayByteSequence(rowBytes);
+      }
+      
+      // keys are sorted, so the same bloom key is usually added many times in a row
+      if (bloomKey.length > 0 && !Arrays.equals(bloomKey, lastKey)) {
+        addHash(BlockedBloomFilter.hash(hash, bloomKey, KEY_SEED));
+        lastKey = bloomKey;
+      }
+    }
+    
+    private void finishPartition() {
+      if (!partitionOpen)
+        return;
+      BlockedBloomFilter filter = new BlockedBloomFilter(BlockedBloomFilter.getVectorSize(Math.max(1, numHashes), errorRate, nbHash), nbHash);
+      for (int i = 0; i < numHashes; i++)
+        filter.add(hashes[i]);
+      partitions.add(filter);
+      numHashes = 0;
+      partitionOpen = false;
+    }
+    
+    int getNumPartitions() {
+      return partitions.size() + (partitionOpen ? 1 : 0);
+    }
+    
+    /**
+     * Writes the partitions and their index to meta stores of the file.
+     */
+    public void write(FileSKVWriter writer, String functorClass, int hashType) throws IOException {
+      finishPartition();
+      
+      for (int i = 0; i < partitions.size(); i++) {
+        DataOutputStream out = writer.createMetaStore(PARTITION_PREFIX + i);
+        partitions.get(i).write(out);
+        out.close();
+      }
+      
+      DataOutputStream out = writer.createMetaStore(INDEX_NAME);
+      out.writeUTF(functorClass);
+      out.writeInt(hashType);
+      out.writeBoolean(includeRows);
+      out.writeInt(partitions.size());
+      out.writeInt(groups.size());
+      for (LocalityGroup group : groups) {
+        out.writeBoolean(group.families != null);
+        if (group.families != null) {
+          out.writeInt(group.families.size());
+          for (ByteSequence family : group.families) {
+            out.writeInt(family.length());
+            out.write(family.getBackingArray(), family.offset(), family.length());
+          }
+        }
+        out.writeInt(group.firstPartition);
+        out.writeInt(group.firstRows.size());
+        for (Text row : group.firstRows)
+          row.write(out);
+      }
+      out.close();
+      
+      partitions.clear();
+    }
+  }
+  
+  private Hash hash;
+  private boolean includeRows;
+  private List<LocalityGroup> groups = new ArrayList<LocalityGroup>();
+  private AtomicReferenceArray<SoftReference<BlockedBloomFilter>> partitions;
+  
+  /**
+   * Reads the index of the partitions, after the name of the key functor.
+   */
+  void readIndex(DataInputStream in) throws IOException {
+    hash = Hash.getInstance(in.readInt());
+    includeRows = in.readBoolean();
+    partitions = new AtomicReferenceArray<SoftReference<BlockedBloomFilter>>(in.readInt());
+    int numGroups = in.readInt();
+    for (int i = 0; i < numGroups; i++) {
+      LocalityGroup group = new LocalityGroup();
+      if (in.readBoolean()) {
+        int numFamilies = in.readInt();
+        group.families = new HashSet<ByteSequence>();
+        for (int j = 0; j < numFamilies; j++) {
+          byte[] family = new byte[in.readInt()];
+          in.readFully(family);
+          group.families.add(new ArrayByteSequence(family));
+        }
+      }
+      group.firstPartition = in.readInt();
+      int numRows = in.readInt();
+      for (int j = 0; j < numRows; j++) {
+        Text row = new Text();
+        row.readFields(in);
+        group.firstRows.add(row);
+      }
+      groups.add(group);
+    }
+  }
+  
+  private BlockedBloomFilter getPartition(FileSKVIterator reader, int index) {
+    SoftReference<BlockedBloomFilter> ref = partitions.get(index);
+    BlockedBloomFilter filter = ref == null ? null : ref.get();
+    if (filter != null)
+      return filter;
+    
+    DataInputStream in = null;
+    try {
+      in = reader.getMetaStore(PARTITION_PREFIX + index);
+      filter = new BlockedBloomFilter();
+      filter.readFields(in);
+      partitions.set(index, new SoftReference<BlockedBloomFilter>(filter));
+      return filter;
+    } catch (IOException ioe) {
+      log.warn("Can't read bloom filter partition " + index, ioe);
+      return null;
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          log.warn("Failed to close ", e);
+        }
+      }
+    }
+  }
+  
+  /**
+   * @return the number of partitions that have been read and not released
+   */
+  int getLoadedPartitions() {
+    int count = 0;
+    for (int i = 0; i < partitions.length(); i++)
+      if (partitions.get(i) != null && partitions.get(i).get() != null)
+        count++;
+    return count;
+  }
+  
+  /**
+   * @return false if the range can not contain any keys of the file, true if it probably does
+   */
+  boolean probablyHasKey(FileSKVIterator reader, KeyFunctor transformer, Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) {
+    org.apache.hadoop.util.bloom.Key bloomKey = transformer.transform(range);
+    long h;
+    if (bloomKey != null && bloomKey.getBytes().length > 0) {
+      h = BlockedBloomFilter.hash(hash, bloomKey.getBytes(), KEY_SEED);
+    } else if (includeRows && new RowFunctor().transform(range) != null) {
+      h = BlockedBloomFilter.hash(hash, range.getStartKey().getRowData().toArray(), ROW_SEED);
+    } else {
+      return true;
+    }
+    
+    Text row = range.getStartKey().getRow();
+    for (LocalityGroup group : groups) {
+      if (!group.isRelevant(columnFamilies, inclusive))
+        continue;
+      int index = group.findPartition(row);
+      if (index < 0)
+        continue;
+      BlockedBloomFilter filter = getPartition(reader, index);
+      if (filter == null || filter.membershipTest(h))
+        return true;
+    }
+    return false;
+  }
+}
@@ -65,4 +65,11 @@ public interface BlockCache {
    * @return max size in bytes
    */
   public long getMaxSize();
+  
+  /**
+   * Get counter statistics for this cache.
+   * 
+   * @return the statistics object this cache updates
+   */
+  public CacheStats getStats();
 }
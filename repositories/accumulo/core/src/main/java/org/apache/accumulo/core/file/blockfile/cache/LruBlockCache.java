@@ -577,73 +577,6 @@ public class LruBlockCache implements BlockCache, HeapSize {
     return this.stats;
   }
   
-  public static class CacheStats {
-    private final AtomicLong accessCount = new AtomicLong(0);
-    private final AtomicLong hitCount = new AtomicLong(0);
-    private final AtomicLong missCount = new AtomicLong(0);
-    private final AtomicLong evictionCount = new AtomicLong(0);
-    private final AtomicLong evictedCount = new AtomicLong(0);
-    private final AtomicLong duplicateReads = new AtomicLong(0);
-    
-    public void miss() {
-      missCount.incrementAndGet();
-      accessCount.incrementAndGet();
-    }
-    
-    public void hit() {
-      hitCount.incrementAndGet();
-      accessCount.incrementAndGet();
-    }
-    
-    public void evict() {
-      evictionCount.incrementAndGet();
-    }
-    
-    public void duplicateReads() {
-      duplicateReads.incrementAndGet();
-    }
-    
-    public void evicted() {
-      evictedCount.incrementAndGet();
-    }
-    
-    public long getRequestCount() {
-      return accessCount.get();
-    }
-    
-    public long getMissCount() {
-      return missCount.get();
-    }
-    
-    public long getHitCount() {
-      return hitCount.get();
-    }
-    
-    public long getEvictionCount() {
-      return evictionCount.get();
-    }
-    
-    public long getDuplicateReads() {
-      return duplicateReads.get();
-    }
-    
-    public long getEvictedCount() {
-      return evictedCount.get();
-    }
-    
-    public double getHitRatio() {
-      return ((float) getHitCount() / (float) getRequestCount());
-    }
-    
-    public double getMissRatio() {
-      return ((float) getMissCount() / (float) getRequestCount());
-    }
-    
-    public double evictedPerEviction() {
-      return (float) ((float) getEvictedCount() / (float) getEvictionCount());
-    }
-  }
-  
   public final static long CACHE_FIXED_OVERHEAD = ClassSize.align((3 * SizeConstants.SIZEOF_LONG) + (8 * ClassSize.REFERENCE)
       + (5 * SizeConstants.SIZEOF_FLOAT) + SizeConstants.SIZEOF_BOOLEAN + ClassSize.OBJECT);
   
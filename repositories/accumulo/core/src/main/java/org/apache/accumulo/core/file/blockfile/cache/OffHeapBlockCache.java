@@ -0,0 +1,561 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.accumulo.core.util.NamingThreadFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A block cache that keeps block contents outside of the java heap, in direct {@link ByteBuffer}s.
+ * <p>
+ *
+ * Memory is allocated lazily in fixed size slabs. Each slab is handed to a size class and cut into equally sized chunks, the size classes growing by 25% from
+ * {@link #MIN_CHUNK_SIZE} up to the largest block the cache accepts. A block is copied once into the smallest chunk that fits it. Once all slabs are handed
+ * out, a size class that needs room takes a slab back from the size class that was used least recently, as long as none of that class's blocks were used
+ * after the oldest block of its own, and otherwise evicts its own least-recently-used blocks. The slabs therefore follow the block sizes being read when
+ * they change. Blocks larger than the largest chunk are not cached.
+ * <p>
+ *
+ * Only a small {@link Entry} object per block remains on the heap, so the cache can be sized far beyond the heap without adding to garbage collection work.
+ * The JVM must be started with a <code>-XX:MaxDirectMemorySize</code> larger than the cache.
+ * <p>
+ *
+ * Entries returned by {@link #getBlock(String)} are pinned and must be handed back with {@link Entry#release()} once the caller is done reading them. The
+ * chunk of an entry that is evicted while pinned is only reused after its last reader released it. Entries returned by {@link #cacheBlock(String, byte[])}
+ * are not pinned, the caller still owns the array it passed in.
+ */
+public class OffHeapBlockCache implements BlockCache, HeapSize {
+  
+  static final Log LOG = LogFactory.getLog(OffHeapBlockCache.class);
+  
+  static final int MIN_CHUNK_SIZE = 4 * 1024;
+  static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+  
+  public final static long PER_ENTRY_OVERHEAD = ClassSize.align(ClassSize.OBJECT + (4 * ClassSize.REFERENCE) + SizeConstants.SIZEOF_INT
+      + ClassSize.ATOMIC_INTEGER + ClassSize.STRING + ClassSize.BYTE_BUFFER + ClassSize.CONCURRENT_HASHMAP_ENTRY);
+  
+  private final ConcurrentHashMap<String,Entry> map = new ConcurrentHashMap<String,Entry>();
+  private final SlabClass[] slabClasses;
+  
+  private final long maxSize;
+  private final int slabSize;
+  private final int maxSlabs;
+  private final AtomicInteger allocatedSlabs = new AtomicInteger(0);
+  
+  /** Slabs taken back from a size class, ready to be cut into chunks of another size */
+  private final ConcurrentLinkedQueue<Slab> spareSlabs = new ConcurrentLinkedQueue<Slab>();
+  
+  /** Access count (sequential ID), orders the use of blocks across size classes */
+  private final AtomicLong count = new AtomicLong(0);
+  
+  /** Bytes of block data currently cached */
+  private final AtomicLong size = new AtomicLong(0);
+  
+  /** Current number of cached elements */
+  private final AtomicLong elements = new AtomicLong(0);
+  
+  private final CacheStats stats = new CacheStats();
+  
+  /** Statistics thread schedule pool */
+  private final ScheduledExecutorService scheduleThreadPool = Executors.newScheduledThreadPool(1, new NamingThreadFactory("OffHeapBlockCacheStats"));
+  
+  /**
+   * @param maxSize
+   *          maximum amount of direct memory used by this cache, in bytes
+   * @param maxBlockSize
+   *          size of the largest block that will be cached, in bytes
+   */
+  public OffHeapBlockCache(long maxSize, long maxBlockSize) {
+    this(maxSize, maxBlockSize, DEFAULT_SLAB_SIZE);
+  }
+  
+  /**
+   * @param maxSize
+   *          maximum amount of direct memory used by this cache, in bytes
+   * @param maxBlockSize
+   *          size of the largest block that will be cached, in bytes
+   * @param slabSize
+   *          size of each direct buffer allocation, raised to the largest chunk size if smaller
+   */
+  public OffHeapBlockCache(long maxSize, long maxBlockSize, int slabSize) {
+    if (maxBlockSize <= 0 || maxBlockSize > Integer.MAX_VALUE / 2)
+      throw new IllegalArgumentException("maxBlockSize out of range " + maxBlockSize);
+    
+    List<Integer> chunkSizes = new ArrayList<Integer>();
+    int chunkSize = MIN_CHUNK_SIZE;
+    while (chunkSize < maxBlockSize) {
+      chunkSizes.add(chunkSize);
+      chunkSize = align((int) (chunkSize * 1.25));
+    }
+    chunkSizes.add(align((int) maxBlockSize));
+    
+    int largestChunk = chunkSizes.get(chunkSizes.size() - 1);
+    this.slabSize = (int) Math.max(largestChunk, Math.min(slabSize, maxSize));
+    this.maxSlabs = (int) Math.min(Integer.MAX_VALUE, maxSize / this.slabSize);
+    if (maxSlabs == 0)
+      throw new IllegalArgumentException("maxSize " + maxSize + " can not hold a block of " + maxBlockSize + " bytes");
+    this.maxSize = maxSize;
+    
+    slabClasses = new SlabClass[chunkSizes.size()];
+    for (int i = 0; i < slabClasses.length; i++)
+      slabClasses[i] = new SlabClass(chunkSizes.get(i));
+    
+    this.scheduleThreadPool.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        logStats();
+      }
+    }, LruBlockCache.statThreadPeriod, LruBlockCache.statThreadPeriod, TimeUnit.SECONDS);
+  }
+  
+  private static int align(int num) {
+    return (num + 7) & ~7;
+  }
+  
+  private SlabClass slabClassFor(int length) {
+    for (SlabClass sc : slabClasses)
+      if (sc.chunkSize >= length)
+        return sc;
+    return null;
+  }
+  
+  /**
+   * Copies the block into direct memory. The array may be reused by the caller afterwards.
+   *
+   * @return the cached entry, or null if the block is too large or no chunk could be freed for it
+   */
+  @Override
+  public CacheEntry cacheBlock(String blockName, byte[] buf, boolean inMemory) {
+    Entry existing = map.get(blockName);
+    if (existing != null) {
+      stats.duplicateReads();
+      return existing;
+    }
+    
+    SlabClass sc = slabClassFor(buf.length);
+    if (sc == null) {
+      stats.rejected();
+      return null;
+    }
+    
+    Chunk chunk = allocate(sc);
+    if (chunk == null) {
+      stats.rejected();
+      return null;
+    }
+    
+    chunk.buffer.clear();
+    chunk.buffer.put(buf);
+    
+    Entry entry = new Entry(blockName, chunk, buf.length, sc);
+    existing = map.putIfAbsent(blockName, entry);
+    if (existing != null) {
+      // lost a race with another reader of the same block
+      stats.duplicateReads();
+      chunk.free();
+      return existing;
+    }
+    
+    sc.add(entry);
+    size.addAndGet(buf.length);
+    elements.incrementAndGet();
+    stats.admitted();
+    return entry;
+  }
+  
+  @Override
+  public CacheEntry cacheBlock(String blockName, byte[] buf) {
+    return cacheBlock(blockName, buf, false);
+  }
+  
+  /**
+   * @return a pinned entry that must be released by the caller, or null if the block is not cached
+   */
+  @Override
+  public Entry getBlock(String blockName) {
+    Entry entry = map.get(blockName);
+    if (entry == null || !entry.retain()) {
+      stats.miss();
+      return null;
+    }
+    stats.hit();
+    entry.owner.touch(entry);
+    return entry;
+  }
+  
+  private Chunk allocate(SlabClass sc) {
+    Chunk chunk = sc.allocate();
+    if (chunk == null) {
+      SlabClass idle = idleSlabClass(sc);
+      if (idle != null && idle.releaseSlab())
+        chunk = sc.allocate();
+    }
+    if (chunk == null)
+      chunk = sc.evictAndAllocate();
+    return chunk;
+  }
+  
+  /**
+   * Finds the size class to take a slab from for another size class that ran out of chunks. This is the least recently used size class, if none of its blocks
+   * were used after the oldest block of the class that needs the slab.
+   */
+  private SlabClass idleSlabClass(SlabClass sc) {
+    long oldest = sc.oldestAccess();
+    SlabClass idle = null;
+    for (SlabClass other : slabClasses) {
+      if (other == sc || other.slabs == 0 || other.lastUsed >= oldest)
+        continue;
+      if (idle == null || other.lastUsed < idle.lastUsed)
+        idle = other;
+    }
+    return idle;
+  }
+  
+  private void evicted(Entry entry) {
+    map.remove(entry.name, entry);
+    size.addAndGet(-entry.length);
+    elements.decrementAndGet();
+    stats.evicted();
+    entry.release();
+  }
+  
+  @Override
+  public void shutdown() {
+    // direct buffers are reclaimed when the cache is garbage collected
+    this.scheduleThreadPool.shutdown();
+  }
+  
+  @Override
+  public long getMaxSize() {
+    return maxSize;
+  }
+  
+  @Override
+  public CacheStats getStats() {
+    return stats;
+  }
+  
+  /**
+   * Get the number of bytes of block data held in direct memory.
+   */
+  public long getCurrentSize() {
+    return size.get();
+  }
+  
+  /**
+   * Get the amount of direct memory allocated so far.
+   */
+  public long getAllocatedSize() {
+    return (long) allocatedSlabs.get() * slabSize;
+  }
+  
+  /**
+   * Get the size of this cache (number of cached blocks)
+   */
+  public long size() {
+    return elements.get();
+  }
+  
+  /**
+   * Only the entry objects live on the heap.
+   */
+  @Override
+  public long heapSize() {
+    return elements.get() * PER_ENTRY_OVERHEAD;
+  }
+  
+  public void logStats() {
+    float sizeMB = ((float) getCurrentSize()) / ((float) (1024 * 1024));
+    float allocatedMB = ((float) getAllocatedSize()) / ((float) (1024 * 1024));
+    float maxMB = ((float) maxSize) / ((float) (1024 * 1024));
+    LOG.debug("Cache Stats: Sizes: " + "Used=" + sizeMB + "MB, " + "Allocated=" + allocatedMB + "MB, " + "Max=" + maxMB + "MB, Counts: " + "Blocks=" + size()
+        + ", " + "Access=" + stats.getRequestCount() + ", " + "Hit=" + stats.getHitCount() + ", " + "Miss=" + stats.getMissCount() + ", " + "Rejected="
+        + stats.getRejectedCount() + ", " + "Evicted=" + stats.getEvictedCount() + ", Ratios: " + "Hit Ratio=" + stats.getHitRatio() * 100 + "%");
+  }
+  
+  /**
+   * A cached block. The cache itself holds one reference, each reader that obtained the entry from {@link OffHeapBlockCache#getBlock(String)} holds another.
+   */
+  public static class Entry implements CacheEntry {
+    
+    private final String name;
+    private final Chunk chunk;
+    private final int length;
+    private final SlabClass owner;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    private volatile Object index;
+    // guarded by the monitor of the owner
+    private long lastAccess;
+    
+    private Entry(String name, Chunk chunk, int length, SlabClass owner) {
+      this.name = name;
+      this.chunk = chunk;
+      this.length = length;
+      this.owner = owner;
+    }
+    
+    private boolean retain() {
+      while (true) {
+        int count = refCount.get();
+        if (count == 0)
+          return false;
+        if (refCount.compareAndSet(count, count + 1))
+          return true;
+      }
+    }
+    
+    /**
+     * Hands back a reference obtained from {@link OffHeapBlockCache#getBlock(String)}. The entry must not be read afterwards.
+     */
+    public void release() {
+      int count = refCount.decrementAndGet();
+      if (count == 0)
+        chunk.free();
+      else if (count < 0)
+        throw new IllegalStateException("Block " + name + " released too often");
+    }
+    
+    /**
+     * @return a read only view of the block, positioned at its start
+     */
+    public ByteBuffer getByteBuffer() {
+      ByteBuffer bb = chunk.buffer.asReadOnlyBuffer();
+      bb.clear();
+      bb.limit(length);
+      return bb;
+    }
+    
+    /**
+     * Copies the block onto the heap. Prefer {@link #getByteBuffer()}.
+     */
+    @Override
+    public byte[] getBuffer() {
+      byte[] buf = new byte[length];
+      getByteBuffer().get(buf);
+      return buf;
+    }
+    
+    public int getLength() {
+      return length;
+    }
+    
+    @Override
+    public Object getIndex() {
+      return index;
+    }
+    
+    @Override
+    public void setIndex(Object idx) {
+      this.index = idx;
+    }
+  }
+  
+  /**
+   * One direct buffer allocation. A slab belongs to a single size class at a time, which cuts it into chunks.
+   */
+  private class Slab {
+    
+    private final ByteBuffer buffer;
+    /** The size class the chunks are freed to, or null while the slab is taken back */
+    private volatile SlabClass owner;
+    /** Chunks of a slab that is taken back which are still in use */
+    private final AtomicInteger inUse = new AtomicInteger(0);
+    
+    Slab(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+    
+    void chunkReleased() {
+      if (inUse.decrementAndGet() == 0)
+        spareSlabs.add(this);
+    }
+  }
+  
+  private class Chunk {
+    
+    private final Slab slab;
+    private final ByteBuffer buffer;
+    
+    Chunk(Slab slab, ByteBuffer buffer) {
+      this.slab = slab;
+      this.buffer = buffer;
+    }
+    
+    void free() {
+      SlabClass sc = slab.owner;
+      if (sc == null || !sc.free(this))
+        slab.chunkReleased();
+    }
+  }
+  
+  /**
+   * The chunks of one size, and the LRU order of the blocks stored in them. All fields are guarded by the instance monitor.
+   */
+  private class SlabClass {
+    
+    private final int chunkSize;
+    private final ArrayDeque<Chunk> freeChunks = new ArrayDeque<Chunk>();
+    private final LinkedHashMap<String,Entry> lru = new LinkedHashMap<String,Entry>(16, 0.75f, true);
+    private final List<Slab> ownSlabs = new ArrayList<Slab>();
+    
+    /** Number of slabs owned, read without the monitor */
+    private volatile int slabs = 0;
+    /** When a block of this size was last cached or read, read without the monitor */
+    private volatile long lastUsed = 0;
+    
+    SlabClass(int chunkSize) {
+      this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * @return a free chunk, growing by a slab if there is one left, or null
+     */
+    synchronized Chunk allocate() {
+      if (freeChunks.isEmpty())
+        grow();
+      return freeChunks.poll();
+    }
+    
+    synchronized Chunk evictAndAllocate() {
+      if (freeChunks.isEmpty() && !lru.isEmpty()) {
+        stats.evict();
+        Iterator<Entry> iter = lru.values().iterator();
+        while (freeChunks.isEmpty() && iter.hasNext()) {
+          Entry victim = iter.next();
+          iter.remove();
+          // the chunk returns to the free list right away unless a reader still has the entry pinned
+          evicted(victim);
+        }
+      }
+      return freeChunks.poll();
+    }
+    
+    private void grow() {
+      Slab slab = spareSlabs.poll();
+      if (slab == null) {
+        while (true) {
+          int allocated = allocatedSlabs.get();
+          if (allocated >= maxSlabs)
+            return;
+          if (allocatedSlabs.compareAndSet(allocated, allocated + 1))
+            break;
+        }
+        slab = new Slab(ByteBuffer.allocateDirect(slabSize));
+      }
+      
+      slab.owner = this;
+      ownSlabs.add(slab);
+      slabs = ownSlabs.size();
+      
+      ByteBuffer buffer = slab.buffer.duplicate();
+      for (int offset = 0; offset + chunkSize <= slabSize; offset += chunkSize) {
+        buffer.limit(offset + chunkSize);
+        buffer.position(offset);
+        freeChunks.push(new Chunk(slab, buffer.slice()));
+      }
+    }
+    
+    /**
+     * Gives up the slab holding the least recently used block, evicting the blocks stored in it. The slab becomes available to other size classes once its
+     * pinned blocks are released.
+     *
+     * @return false if this class has no slab
+     */
+    synchronized boolean releaseSlab() {
+      if (ownSlabs.isEmpty())
+        return false;
+      
+      Slab slab = lru.isEmpty() ? ownSlabs.get(0) : lru.values().iterator().next().chunk.slab;
+      
+      int free = 0;
+      for (Chunk chunk : freeChunks)
+        if (chunk.slab == slab)
+          free++;
+      int inUse = slabSize / chunkSize - free;
+      
+      // chunks released from here on are counted down instead of returned to this class
+      slab.inUse.set(inUse);
+      slab.owner = null;
+      ownSlabs.remove(slab);
+      slabs = ownSlabs.size();
+      
+      Iterator<Chunk> chunks = freeChunks.iterator();
+      while (chunks.hasNext())
+        if (chunks.next().slab == slab)
+          chunks.remove();
+      
+      if (inUse == 0) {
+        spareSlabs.add(slab);
+      } else {
+        stats.evict();
+        Iterator<Entry> iter = lru.values().iterator();
+        while (iter.hasNext()) {
+          Entry victim = iter.next();
+          if (victim.chunk.slab == slab) {
+            iter.remove();
+            evicted(victim);
+          }
+        }
+      }
+      return true;
+    }
+    
+    /**
+     * @return the access count of the least recently used block, or {@link Long#MAX_VALUE} if there is none
+     */
+    synchronized long oldestAccess() {
+      if (lru.isEmpty())
+        return Long.MAX_VALUE;
+      return lru.values().iterator().next().lastAccess;
+    }
+    
+    synchronized void add(Entry entry) {
+      lru.put(entry.name, entry);
+      entry.lastAccess = lastUsed = count.incrementAndGet();
+    }
+    
+    synchronized void touch(Entry entry) {
+      if (lru.get(entry.name) != null)
+        entry.lastAccess = lastUsed = count.incrementAndGet();
+    }
+    
+    /**
+     * @return false if the chunk's slab no longer belongs to this class
+     */
+    synchronized boolean free(Chunk chunk) {
+      if (chunk.slab.owner != this)
+        return false;
+      freeChunks.push(chunk);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,365 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.accumulo.core.util.NamingThreadFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A scan-resistant block cache that is memory-bound using an LRU eviction order guarded by a TinyLFU admission policy.
+ * <p>
+ *
+ * The cache is split into lock-striped segments. Each segment owns an access ordered map of its blocks, an equal share of the total cache size and a small
+ * count-min sketch recording how often each block name was requested. Eviction happens inline on the thread that inserts a block and only ever locks the
+ * segment the block hashes to, so there is no global eviction thread or full scan of the cache.
+ * <p>
+ *
+ * When a segment is full a new block is only admitted if it has been requested more often than the least-recently-used blocks it would displace. Blocks read
+ * once by a large sequential scan therefore fail admission and leave the frequently used index and data blocks of point lookups in the cache. Blocks that are
+ * cached with the in-memory flag bypass the admission check.
+ * <p>
+ *
+ * The sketch is periodically halved so that frequencies reflect recent history. Admission decisions are reported through {@link CacheStats#getAdmittedCount()}
+ * and {@link CacheStats#getRejectedCount()}.
+ */
+public class TinyLfuBlockCache implements BlockCache, HeapSize {
+  
+  static final Log LOG = LogFactory.getLog(TinyLfuBlockCache.class);
+  
+  /** Number of lock stripes, must be a power of two */
+  static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+  
+  /** Segments are not made smaller than this many blocks of the expected size */
+  static final int MIN_BLOCKS_PER_SEGMENT = 8;
+  
+  private final Segment[] segments;
+  private final int segmentShift;
+  
+  private final long maxSize;
+  
+  /** Current size of cache */
+  private final AtomicLong size = new AtomicLong(0);
+  
+  /** Current number of cached elements */
+  private final AtomicLong elements = new AtomicLong(0);
+  
+  /** Cache access count (sequential ID) */
+  private final AtomicLong count = new AtomicLong(0);
+  
+  private final CacheStats stats = new CacheStats();
+  
+  /** Statistics thread schedule pool */
+  private final ScheduledExecutorService scheduleThreadPool = Executors.newScheduledThreadPool(1, new NamingThreadFactory("TinyLfuBlockCacheStats"));
+  
+  /**
+   * Default constructor. Specify maximum size and expected average block size (approximation is fine).
+   *
+   * @param maxSize
+   *          maximum size of cache, in bytes
+   * @param blockSize
+   *          approximate size of each block, in bytes
+   */
+  public TinyLfuBlockCache(long maxSize, long blockSize) {
+    this(maxSize, blockSize, DEFAULT_CONCURRENCY_LEVEL);
+  }
+  
+  /**
+   * @param maxSize
+   *          maximum size of cache, in bytes
+   * @param blockSize
+   *          approximate size of each block, in bytes, used to size the frequency sketch
+   * @param concurrencyLevel
+   *          maximum number of independently locked segments, rounded down to a power of two
+   */
+  public TinyLfuBlockCache(long maxSize, long blockSize, int concurrencyLevel) {
+    if (maxSize <= 0 || blockSize <= 0)
+      throw new IllegalArgumentException("maxSize and blockSize must be positive");
+    if (concurrencyLevel <= 0)
+      throw new IllegalArgumentException("concurrencyLevel must be positive");
+    
+    // keep each segment large enough to hold several blocks
+    long maxSegments = Math.max(1, Math.min(concurrencyLevel, maxSize / (blockSize * MIN_BLOCKS_PER_SEGMENT)));
+    int numSegments = 1;
+    int shift = 0;
+    while (numSegments * 2 <= maxSegments) {
+      numSegments <<= 1;
+      shift++;
+    }
+    this.segmentShift = 32 - shift;
+    this.maxSize = maxSize;
+    
+    long segmentSize = Math.max(1, maxSize / numSegments);
+    int segmentBlocks = (int) Math.min(1 << 24, Math.max(64, segmentSize / blockSize));
+    
+    segments = new Segment[numSegments];
+    for (int i = 0; i < numSegments; i++)
+      segments[i] = new Segment(segmentSize, segmentBlocks);
+    
+    this.scheduleThreadPool.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        logStats();
+      }
+    }, LruBlockCache.statThreadPeriod, LruBlockCache.statThreadPeriod, TimeUnit.SECONDS);
+  }
+  
+  private static int spread(int h) {
+    // murmur3 finalizer, segments are chosen by the high bits so names that differ only in their trailing characters must still spread out
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    return h ^ (h >>> 16);
+  }
+  
+  private Segment segmentFor(int hash) {
+    if (segments.length == 1)
+      return segments[0];
+    return segments[hash >>> segmentShift];
+  }
+  
+  @Override
+  public CacheEntry cacheBlock(String blockName, byte[] buf, boolean inMemory) {
+    int hash = spread(blockName.hashCode());
+    return segmentFor(hash).cacheBlock(blockName, hash, buf, inMemory);
+  }
+  
+  @Override
+  public CacheEntry cacheBlock(String blockName, byte[] buf) {
+    return cacheBlock(blockName, buf, false);
+  }
+  
+  @Override
+  public CacheEntry getBlock(String blockName) {
+    int hash = spread(blockName.hashCode());
+    return segmentFor(hash).getBlock(blockName, hash);
+  }
+  
+  @Override
+  public void shutdown() {
+    this.scheduleThreadPool.shutdown();
+  }
+  
+  @Override
+  public long getMaxSize() {
+    return maxSize;
+  }
+  
+  @Override
+  public CacheStats getStats() {
+    return stats;
+  }
+  
+  /**
+   * Get the current size of this cache.
+   *
+   * @return current size in bytes
+   */
+  public long getCurrentSize() {
+    return size.get();
+  }
+  
+  /**
+   * Get the size of this cache (number of cached blocks)
+   *
+   * @return number of cached blocks
+   */
+  public long size() {
+    return elements.get();
+  }
+  
+  @Override
+  public long heapSize() {
+    return getCurrentSize();
+  }
+  
+  public void logStats() {
+    float sizeMB = ((float) getCurrentSize()) / ((float) (1024 * 1024));
+    float maxMB = ((float) maxSize) / ((float) (1024 * 1024));
+    LOG.debug("Cache Stats: Sizes: " + "Total=" + sizeMB + "MB (" + getCurrentSize() + "), " + "Max=" + maxMB + "MB (" + maxSize + ")" + ", Counts: "
+        + "Blocks=" + size() + ", " + "Access=" + stats.getRequestCount() + ", " + "Hit=" + stats.getHitCount() + ", " + "Miss=" + stats.getMissCount() + ", "
+        + "Admitted=" + stats.getAdmittedCount() + ", " + "Rejected=" + stats.getRejectedCount() + ", " + "Evicted=" + stats.getEvictedCount() + ", Ratios: "
+        + "Hit Ratio=" + stats.getHitRatio() * 100 + "%, " + "Duplicate Reads=" + stats.getDuplicateReads());
+  }
+  
+  /**
+   * One lock stripe of the cache. All fields are guarded by {@link #lock}.
+   */
+  private class Segment {
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String,CachedBlock> map;
+    private final FrequencySketch sketch;
+    private final long maxSize;
+    private long size = 0;
+    
+    Segment(long maxSize, int expectedBlocks) {
+      this.maxSize = maxSize;
+      this.map = new LinkedHashMap<String,CachedBlock>(16, 0.75f, true);
+      this.sketch = new FrequencySketch(expectedBlocks);
+    }
+    
+    CachedBlock getBlock(String blockName, int hash) {
+      lock.lock();
+      try {
+        sketch.increment(hash);
+        CachedBlock cb = map.get(blockName);
+        if (cb == null) {
+          stats.miss();
+          return null;
+        }
+        stats.hit();
+        cb.access(count.incrementAndGet());
+        return cb;
+      } finally {
+        lock.unlock();
+      }
+    }
+    
+    CachedBlock cacheBlock(String blockName, int hash, byte[] buf, boolean inMemory) {
+      lock.lock();
+      try {
+        CachedBlock cb = map.get(blockName);
+        if (cb != null) {
+          stats.duplicateReads();
+          cb.access(count.incrementAndGet());
+          return cb;
+        }
+        
+        cb = new CachedBlock(blockName, buf, count.incrementAndGet(), inMemory);
+        long needed = size + cb.heapSize() - maxSize;
+        if (needed > 0 && !makeRoom(needed, inMemory ? Integer.MAX_VALUE : sketch.frequency(hash))) {
+          stats.rejected();
+          return null;
+        }
+        
+        map.put(blockName, cb);
+        size += cb.heapSize();
+        TinyLfuBlockCache.this.size.addAndGet(cb.heapSize());
+        elements.incrementAndGet();
+        stats.admitted();
+        return cb;
+      } finally {
+        lock.unlock();
+      }
+    }
+    
+    /**
+     * Evicts least-recently-used blocks until at least the requested number of bytes is free. Nothing is evicted if any of the required victims was used more
+     * often than the candidate.
+     */
+    private boolean makeRoom(long bytes, int candidateFrequency) {
+      if (bytes > maxSize)
+        return false;
+      
+      List<CachedBlock> victims = new ArrayList<CachedBlock>();
+      long freed = 0;
+      Iterator<CachedBlock> iter = map.values().iterator();
+      while (freed < bytes && iter.hasNext()) {
+        CachedBlock victim = iter.next();
+        if (victim.getPriority() == CachedBlock.BlockPriority.MEMORY && candidateFrequency != Integer.MAX_VALUE)
+          return false;
+        if (sketch.frequency(spread(victim.getName().hashCode())) >= candidateFrequency)
+          return false;
+        victims.add(victim);
+        freed += victim.heapSize();
+      }
+      
+      if (freed < bytes)
+        return false;
+      
+      for (CachedBlock victim : victims) {
+        map.remove(victim.getName());
+        size -= victim.heapSize();
+        TinyLfuBlockCache.this.size.addAndGet(-1 * victim.heapSize());
+        elements.decrementAndGet();
+        stats.evicted();
+      }
+      stats.evict();
+      return true;
+    }
+  }
+  
+  /**
+   * A count-min sketch of four rows of 4-bit saturating counters packed into longs. Once the number of increments reaches ten times the table width all
+   * counters are halved, which keeps the recorded frequencies biased towards recent accesses.
+   */
+  static class FrequencySketch {
+    
+    private static final int[] SEEDS = {0x97cb3127, 0xbf58476d, 0x94d049bb, 0x2545f491};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions = 0;
+    
+    FrequencySketch(int expectedEntries) {
+      int width = 1;
+      while (width < expectedEntries)
+        width <<= 1;
+      table = new long[width];
+      tableMask = width - 1;
+      sampleSize = 10 * width;
+    }
+    
+    private int indexOf(int hash, int row) {
+      int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+      return (h ^ (h >>> 16)) & tableMask;
+    }
+    
+    int frequency(int hash) {
+      int min = 15;
+      for (int row = 0; row < 4; row++) {
+        int counter = (int) ((table[indexOf(hash, row)] >>> (row << 4 | (hash & 3) << 2)) & 0xfL);
+        min = Math.min(min, counter);
+      }
+      return min;
+    }
+    
+    void increment(int hash) {
+      boolean added = false;
+      for (int row = 0; row < 4; row++) {
+        int index = indexOf(hash, row);
+        int offset = row << 4 | (hash & 3) << 2;
+        if (((table[index] >>> offset) & 0xfL) != 0xfL) {
+          table[index] += 1L << offset;
+          added = true;
+        }
+      }
+      if (added && ++additions == sampleSize)
+        reset();
+    }
+    
+    private void reset() {
+      for (int i = 0; i < table.length; i++)
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      additions >>>= 1;
+    }
+  }
+}
@@ -22,6 +22,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
 
 import org.apache.accumulo.core.file.blockfile.ABlockReader;
 import org.apache.accumulo.core.file.blockfile.ABlockWriter;
@@ -29,9 +30,11 @@ import org.apache.accumulo.core.file.blockfile.BlockFileReader;
 import org.apache.accumulo.core.file.blockfile.BlockFileWriter;
 import org.apache.accumulo.core.file.blockfile.cache.BlockCache;
 import org.apache.accumulo.core.file.blockfile.cache.CacheEntry;
+import org.apache.accumulo.core.file.blockfile.cache.OffHeapBlockCache;
 import org.apache.accumulo.core.file.rfile.bcfile.BCFile;
 import org.apache.accumulo.core.file.rfile.bcfile.BCFile.Reader.BlockReader;
 import org.apache.accumulo.core.file.rfile.bcfile.BCFile.Writer.BlockAppender;
+import org.apache.accumulo.core.iterators.system.ScanStats;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
@@ -267,7 +270,7 @@ public class CachableBlockFile {
         CacheEntry cacheEntry = _iCache.getBlock(_lookup);
         
         if (cacheEntry != null) {
-          return new CachedBlockRead(cacheEntry, cacheEntry.getBuffer());
+          return CachedBlockRead.open(cacheEntry);
         }
         
       }
@@ -302,7 +305,10 @@ public class CachableBlockFile {
         cb = cache.getBlock(_lookup);
         
         if (cb != null) {
-          return new CachedBlockRead(cb, cb.getBuffer());
+          ScanStats stats = ScanStats.current();
+          if (stats != null)
+            stats.blockRead(true, 0);
+          return CachedBlockRead.open(cb);
         }
         
       }
@@ -312,6 +318,10 @@ public class CachableBlockFile {
        */
       _currBlock = loader.get();
       
+      ScanStats stats = ScanStats.current();
+      if (stats != null)
+        stats.blockRead(false, _currBlock.getRawSize());
+      
       /**
        * If the block is bigger than the cache just return the stream
        */
@@ -350,7 +360,7 @@ public class CachableBlockFile {
         if (ce == null)
           return new BlockRead(new DataInputStream(new ByteArrayInputStream(b)), b.length);
         else
-          return new CachedBlockRead(ce, ce.getBuffer());
+          return new CachedBlockRead(ce, b);
         
       }
     }
@@ -409,7 +419,13 @@ public class CachableBlockFile {
     
   }
   
-  static class SeekableByteArrayInputStream extends ByteArrayInputStream {
+  private interface Seekable {
+    void seek(int position);
+    
+    int getPosition();
+  }
+  
+  static class SeekableByteArrayInputStream extends ByteArrayInputStream implements Seekable {
     
     public SeekableByteArrayInputStream(byte[] buf) {
       super(buf);
@@ -432,20 +448,118 @@ public class CachableBlockFile {
     }
     
   }
+  
+  /**
+   * Reads a block straight out of the direct memory of an {@link OffHeapBlockCache}, without copying it onto the heap.
+   */
+  static class SeekableByteBufferInputStream extends InputStream implements Seekable {
+    
+    private final ByteBuffer buf;
+    private int mark = 0;
+    
+    public SeekableByteBufferInputStream(ByteBuffer buf) {
+      this.buf = buf;
+    }
+    
+    @Override
+    public int read() {
+      if (!buf.hasRemaining())
+        return -1;
+      return buf.get() & 0xff;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0)
+        return 0;
+      if (!buf.hasRemaining())
+        return -1;
+      len = Math.min(len, buf.remaining());
+      buf.get(b, off, len);
+      return len;
+    }
+    
+    @Override
+    public long skip(long n) {
+      if (n <= 0)
+        return 0;
+      int k = (int) Math.min(n, buf.remaining());
+      buf.position(buf.position() + k);
+      return k;
+    }
+    
+    @Override
+    public int available() {
+      return buf.remaining();
+    }
+    
+    @Override
+    public boolean markSupported() {
+      return true;
+    }
+    
+    @Override
+    public synchronized void mark(int readlimit) {
+      mark = buf.position();
+    }
+    
+    @Override
+    public synchronized void reset() {
+      buf.position(mark);
+    }
+    
+    public void seek(int position) {
+      if (position < 0 || position >= buf.limit())
+        throw new IllegalArgumentException("pos = " + position + " buf.limit = " + buf.limit());
+      buf.position(position);
+    }
+    
+    public int getPosition() {
+      return buf.position();
+    }
+  }
 
   public static class CachedBlockRead extends BlockRead {
-    private SeekableByteArrayInputStream seekableInput;
+    private Seekable seekableInput;
     private CacheEntry cb;
+    private OffHeapBlockCache.Entry pinned;
     
     public CachedBlockRead(CacheEntry cb, byte buf[]) {
       this(new SeekableByteArrayInputStream(buf), buf.length);
       this.cb = cb;
     }
     
-    private CachedBlockRead(SeekableByteArrayInputStream seekableInput, long size) {
+    /**
+     * Reads a pinned off-heap entry in place. The entry is released when this block is closed.
+     */
+    public CachedBlockRead(OffHeapBlockCache.Entry entry) {
+      this(new SeekableByteBufferInputStream(entry.getByteBuffer()), entry.getLength());
+      this.cb = entry;
+      this.pinned = entry;
+    }
+    
+    private <S extends InputStream & Seekable> CachedBlockRead(S seekableInput, long size) {
       super(seekableInput, size);
       this.seekableInput = seekableInput;
     }
+    
+    /**
+     * Wraps an entry obtained from {@link BlockCache#getBlock(String)}.
+     */
+    static CachedBlockRead open(CacheEntry cb) {
+      if (cb instanceof OffHeapBlockCache.Entry)
+        return new CachedBlockRead((OffHeapBlockCache.Entry) cb);
+      return new CachedBlockRead(cb, cb.getBuffer());
+    }
+    
+    @Override
+    public void close() throws IOException {
+      super.close();
+      if (pinned != null) {
+        pinned.release();
+        pinned = null;
+      }
+    }
 
     @Override
     public void seek(int position) {
@@ -24,13 +24,37 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.file.blockfile.ABlockReader;
+import org.apache.accumulo.core.file.blockfile.ABlockWriter;
 import org.apache.accumulo.core.file.rfile.MultiLevelIndex.IndexEntry;
 
 /**
+ * An index of positions within a cached data block, used to seek within the block without decoding every key before the one sought.
  * 
+ * For blocks written with a seek index, the positions and keys of every Nth entry are stored at the end of the block and are decoded the first time the block
+ * is sought. For other blocks the index is built by scanning the block once it has been accessed often enough. Either way the decoded keys are kept with the
+ * cached block.
  */
 public class BlockIndex {
   
+  /**
+   * @param hasSeekIndex
+   *          true if the block ends with a seek index written by {@link SeekIndexWriter}
+   */
+  public static BlockIndex getIndex(ABlockReader cacheBlock, IndexEntry indexEntry, boolean hasSeekIndex) throws IOException {
+    if (!hasSeekIndex)
+      return getIndex(cacheBlock, indexEntry);
+    
+    BlockIndex blockIndex = cacheBlock.getIndex(BlockIndex.class);
+    
+    if (blockIndex.blockIndex == null)
+      blockIndex.readSeekIndex(cacheBlock, indexEntry);
+    
+    if (blockIndex.blockIndex.length > 0)
+      return blockIndex;
+    
+    return null;
+  }
+  
   public static BlockIndex getIndex(ABlockReader cacheBlock, IndexEntry indexEntry) throws IOException {
     
     BlockIndex blockIndex = cacheBlock.getIndex(BlockIndex.class);
@@ -172,4 +196,73 @@ public class BlockIndex {
 
     cacheBlock.seek(0);
   }
+  
+  private synchronized void readSeekIndex(ABlockReader cacheBlock, IndexEntry indexEntry) throws IOException {
+    if (this.blockIndex != null)
+      return;
+    
+    // the last int in the block is the position of the seek index
+    cacheBlock.seek((int) indexEntry.getRawSize() - 4);
+    cacheBlock.seek(cacheBlock.readInt());
+    
+    BlockIndexEntry[] index = new BlockIndexEntry[cacheBlock.readInt()];
+    for (int i = 0; i < index.length; i++) {
+      int pos = cacheBlock.readInt();
+      int count = cacheBlock.readInt();
+      Key prevKey = new Key();
+      prevKey.readFields(cacheBlock);
+      RelativeKey rk = new RelativeKey();
+      rk.setPrevKey(prevKey);
+      rk.readFields(cacheBlock);
+      index[i] = new BlockIndexEntry(pos, indexEntry.getNumEntries() - count, rk.getKey(), prevKey);
+    }
+    
+    this.blockIndex = index;
+    
+    cacheBlock.seek(0);
+  }
+  
+  /**
+   * Records the position of every Nth entry while a data block is written, and writes them at the end of the block. The keys are stored relative to the key
+   * before them, so an entry costs little more than the previous key.
+   */
+  static class SeekIndexWriter {
+    
+    private final int interval;
+    private ArrayList<BlockIndexEntry> entries = new ArrayList<BlockIndexEntry>();
+    
+    SeekIndexWriter(int interval) {
+      this.interval = interval;
+    }
+    
+    /**
+     * Called before an entry is appended to the block.
+     * 
+     * @param count
+     *          the number of entries already in the block
+     */
+    void add(long pos, int count, Key key, Key prevKey) {
+      if (count > 0 && count % interval == 0)
+        entries.add(new BlockIndexEntry((int) pos, count, new Key(key), prevKey));
+    }
+    
+    /**
+     * Writes the recorded positions at the end of the block, followed by the position they start at.
+     */
+    void write(ABlockWriter out) throws IOException {
+      int start = (int) out.getRawSize();
+      
+      out.writeInt(entries.size());
+      for (BlockIndexEntry entry : entries) {
+        out.writeInt(entry.pos);
+        // for an entry being written, entriesLeft holds the number of entries before it in the block
+        out.writeInt(entry.entriesLeft);
+        entry.prevKey.write(out);
+        new RelativeKey(entry.prevKey, entry.key).write(out);
+      }
+      out.writeInt(start);
+      
+      entries.clear();
+    }
+  }
 }
@@ -72,6 +72,8 @@ public class RFile {
   private RFile() {}
   
   private static final int RINDEX_MAGIC = 0x20637474;
+  // version 8 is the same as version 7, except that every data block ends with a seek index
+  static final int RINDEX_VER_8 = 8;
   static final int RINDEX_VER_7 = 7;
   static final int RINDEX_VER_6 = 6;
   // static final int RINDEX_VER_5 = 5; // unreleased
@@ -311,16 +313,30 @@ public class RFile {
     
     private HashSet<ByteSequence> previousColumnFamilies;
     
+    private BlockIndex.SeekIndexWriter seekIndex = null;
+    
     public Writer(BlockFileWriter bfw, int blockSize) throws IOException {
       this(bfw, blockSize, (int) AccumuloConfiguration.getDefaultConfiguration().getMemoryInBytes(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE_INDEX));
     }
     
     public Writer(BlockFileWriter bfw, int blockSize, int indexBlockSize) throws IOException {
+      this(bfw, blockSize, indexBlockSize, 0);
+    }
+    
+    /**
+     * @param seekIndexInterval
+     *          when greater than zero, the position of every seekIndexInterval-th entry of a data block is stored at the end of the block, so that readers can
+     *          seek within a cached block without decoding the keys before the one sought. Files written this way can not be read by versions that do not
+     *          know about the seek index.
+     */
+    public Writer(BlockFileWriter bfw, int blockSize, int indexBlockSize, int seekIndexInterval) throws IOException {
       this.blockSize = blockSize;
       this.indexBlockSize = indexBlockSize;
       this.fileWriter = bfw;
       this.blockWriter = null;
       previousColumnFamilies = new HashSet<ByteSequence>();
+      if (seekIndexInterval > 0)
+        seekIndex = new BlockIndex.SeekIndexWriter(seekIndexInterval);
     }
     
     @Override
@@ -335,7 +351,7 @@ public class RFile {
       ABlockWriter mba = fileWriter.prepareMetaBlock("RFile.index");
       
       mba.writeInt(RINDEX_MAGIC);
-      mba.writeInt(RINDEX_VER_7);
+      mba.writeInt(seekIndex == null ? RINDEX_VER_7 : RINDEX_VER_8);
       
       if (currentLocalityGroup != null)
         localityGroups.add(currentLocalityGroup);
@@ -390,6 +406,9 @@ public class RFile {
         blockWriter = fileWriter.prepareDataBlock();
       }
       
+      if (seekIndex != null)
+        seekIndex.add(blockWriter.getRawSize(), entries, key, lastKeyInBlock);
+      
       RelativeKey rk = new RelativeKey(lastKeyInBlock, key);
       
       rk.write(blockWriter);
@@ -402,6 +421,9 @@ public class RFile {
     }
     
     private void closeBlock(Key key, boolean lastBlock) throws IOException {
+      if (seekIndex != null)
+        seekIndex.write(blockWriter);
+      
       blockWriter.close();
       
       if (lastBlock)
@@ -734,7 +756,7 @@ public class RFile {
           Key currKey = null;
 
           if (currBlock.isIndexable()) {
-            BlockIndex blockIndex = BlockIndex.getIndex(currBlock, indexEntry);
+            BlockIndex blockIndex = BlockIndex.getIndex(currBlock, indexEntry, version == RINDEX_VER_8);
             if (blockIndex != null) {
               BlockIndexEntry bie = blockIndex.seekBlock(startKey, currBlock);
               if (bie != null) {
@@ -831,30 +853,31 @@ public class RFile {
       this.reader = rdr;
       
       ABlockReader mb = reader.getMetaBlock("RFile.index");
-      
-      int magic = mb.readInt();
-      int ver = mb.readInt();
-      
-      if (magic != RINDEX_MAGIC)
-        throw new IOException("Did not see expected magic number, saw " + magic);
-      if (ver != RINDEX_VER_7 && ver != RINDEX_VER_6 && ver != RINDEX_VER_4 && ver != RINDEX_VER_3)
-        throw new IOException("Did not see expected version, saw " + ver);
-      
-      int size = mb.readInt();
-      lgReaders = new LocalityGroupReader[size];
-      
-      deepCopies = new LinkedList<Reader>();
-      
-      for (int i = 0; i < size; i++) {
-        LocalityGroupMetadata lgm = new LocalityGroupMetadata(ver, rdr);
-        lgm.readFields(mb);
-        localityGroups.add(lgm);
+      try {
+        int magic = mb.readInt();
+        int ver = mb.readInt();
+        
+        if (magic != RINDEX_MAGIC)
+          throw new IOException("Did not see expected magic number, saw " + magic);
+        if (ver != RINDEX_VER_8 && ver != RINDEX_VER_7 && ver != RINDEX_VER_6 && ver != RINDEX_VER_4 && ver != RINDEX_VER_3)
+          throw new IOException("Did not see expected version, saw " + ver);
+        
+        int size = mb.readInt();
+        lgReaders = new LocalityGroupReader[size];
         
-        lgReaders[i] = new LocalityGroupReader(reader, lgm, ver);
+        deepCopies = new LinkedList<Reader>();
+        
+        for (int i = 0; i < size; i++) {
+          LocalityGroupMetadata lgm = new LocalityGroupMetadata(ver, rdr);
+          lgm.readFields(mb);
+          localityGroups.add(lgm);
+          
+          lgReaders[i] = new LocalityGroupReader(reader, lgm, ver);
+        }
+      } finally {
+        mb.close();
       }
       
-      mb.close();
-      
       nonDefaultColumnFamilies = new HashSet<ByteSequence>();
       for (LocalityGroupMetadata lgm : localityGroups) {
         if (!lgm.isDefaultLG)
@@ -120,9 +120,10 @@ public class RFileOperations extends FileOperations {
     long indexBlockSize = acuconf.getMemoryInBytes(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE_INDEX);
     
     String compression = acuconf.get(Property.TABLE_FILE_COMPRESSION_TYPE);
+    int seekIndexInterval = acuconf.getCount(Property.TABLE_FILE_SEEK_INDEX_INTERVAL);
     
     CachableBlockFile.Writer _cbw = new CachableBlockFile.Writer(fs.create(new Path(file), false, bufferSize, (short) rep, block), compression, conf);
-    Writer writer = new RFile.Writer(_cbw, (int) blockSize, (int) indexBlockSize);
+    Writer writer = new RFile.Writer(_cbw, (int) blockSize, (int) indexBlockSize, seekIndexInterval);
     return writer;
   }
 }
@@ -68,7 +68,7 @@ public abstract class Combiner extends WrappingIterator implements OptionDescrib
     }
     
     private boolean _hasNext() {
-      return source.hasTop() && !source.getTopKey().isDeleted() && topKey.equals(source.getTopKey(), PartialKey.ROW_COLFAM_COLQUAL_COLVIS);
+      return isVersionOf(topKey, source);
     }
     
     /**
@@ -160,14 +160,39 @@ public abstract class Combiner extends WrappingIterator implements OptionDescrib
         if (workKey.isDeleted())
           return;
         topKey = workKey;
-        Iterator<Value> viter = new ValueIterator(getSource());
-        topValue = reduce(topKey, viter);
-        while (viter.hasNext())
-          viter.next();
+        topValue = reduceVersions(topKey, getSource());
       }
     }
   }
   
+  /**
+   * Reduces the Values of all non-deleted versions of the top key of source into a single Value, leaving source positioned after them. This implementation
+   * passes a copy of each Value to {@link #reduce(Key, Iterator)}. Subclasses may override it to read the Values in place, as long as they are done with each
+   * Value before advancing source.
+   * 
+   * @param key
+   *          The most recent version of the Key being reduced.
+   * 
+   * @param source
+   *          The source iterator, positioned at key.
+   * 
+   * @return The combined Value.
+   */
+  protected Value reduceVersions(Key key, SortedKeyValueIterator<Key,Value> source) throws IOException {
+    Iterator<Value> viter = new ValueIterator(source);
+    Value value = reduce(key, viter);
+    while (viter.hasNext())
+      viter.next();
+    return value;
+  }
+  
+  /**
+   * @return true if the top key of source is a non-deleted version of key, and so should be reduced with it
+   */
+  protected static boolean isVersionOf(Key key, SortedKeyValueIterator<Key,Value> source) {
+    return source.hasTop() && !source.getTopKey().isDeleted() && key.equals(source.getTopKey(), PartialKey.ROW_COLFAM_COLQUAL_COLVIS);
+  }
+  
   @Override
   public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
     // do not want to seek to the middle of a value that should be combined...
@@ -33,8 +33,11 @@ import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.KeyExtent;
 import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.data.thrift.IterInfo;
+import org.apache.accumulo.core.iterators.system.ScanStats;
 import org.apache.accumulo.core.iterators.system.SynchronizedIterator;
+import org.apache.accumulo.core.iterators.system.TimingIterator;
 import org.apache.accumulo.core.iterators.user.VersioningIterator;
 import org.apache.accumulo.core.tabletserver.thrift.IteratorConfig;
 import org.apache.accumulo.core.tabletserver.thrift.TIteratorSetting;
@@ -237,6 +240,11 @@ public class IteratorUtil {
         
         skvi.init(prev, options, env);
         prev = skvi;
+        
+        // time each configured iterator of a traced scan separately
+        ScanStats stats = ScanStats.current();
+        if (stats != null)
+          prev = (SortedKeyValueIterator<K,V>) new TimingIterator((SortedKeyValueIterator<Key,Value>) prev, stats.getTimer(iterInfo.iterName));
       }
     } catch (ClassNotFoundException e) {
       log.error(e.toString());
@@ -16,11 +16,11 @@
  */
 package org.apache.accumulo.core.iterators;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.accumulo.core.client.IteratorSetting;
@@ -37,6 +37,9 @@ import org.apache.hadoop.io.WritableUtils;
  * 
  * A required option for this Combiner is "type" which indicates which type of Encoder to use to encode and decode Longs into Values. Supported types are
  * VARNUM, LONG, and STRING which indicate the VarNumEncoder, LongEncoder, and StringEncoder respectively.
+ * 
+ * Subclasses that also implement {@link PrimitiveReducer} are given the values of each Key as primitive longs instead, decoded in batches into an array that
+ * is reused, so reducing does not create a Long or copy a Value for each version.
  */
 public abstract class LongCombiner extends TypedValueCombiner<Long> {
   public static final Encoder<Long> FIXED_LEN_ENCODER = new FixedLenEncoder();
@@ -46,6 +49,39 @@ public abstract class LongCombiner extends TypedValueCombiner<Long> {
   protected static final String TYPE = "type";
   protected static final String CLASS_PREFIX = "class:";
   
+  private static final int BATCH_SIZE = 64;
+  
+  /**
+   * A reduction over primitive longs, for LongCombiners that can compute their result one batch of values at a time. It must compute the same result as
+   * typedReduce, which is still used when reduce is called directly.
+   */
+  public static interface PrimitiveReducer {
+    /**
+     * @return the result of reducing no values, which the first batch of values is combined with
+     */
+    public long initialValue();
+    
+    /**
+     * Combines a batch of decoded values with the result of reducing the earlier batches.
+     * 
+     * @param key
+     *          The most recent version of the Key being reduced.
+     * @param result
+     *          The result so far.
+     * @param values
+     *          The values, in the order typedReduce would see them. The array is reused for the next batch.
+     * @param count
+     *          The number of values in the array.
+     * @return the new result
+     */
+    public long reduce(Key key, long result, long[] values, int count);
+  }
+  
+  // set on the first reduction, null if values are reduced by typedReduce
+  private PrimitiveReducer reducer;
+  private boolean reducerChecked = false;
+  private long[] batch;
+  
   public static enum Type {
     /**
      * indicates a variable-length encoding of a Long using {@link LongCombiner.VarLenEncoder}
@@ -91,6 +127,66 @@ public abstract class LongCombiner extends TypedValueCombiner<Long> {
     }
   }
   
+  @Override
+  protected Value reduceVersions(Key key, SortedKeyValueIterator<Key,Value> source) throws IOException {
+    if (!reducerChecked) {
+      reducer = reducesPrimitives(getClass()) ? (PrimitiveReducer) this : null;
+      reducerChecked = true;
+    }
+    if (reducer == null)
+      return super.reduceVersions(key, source);
+    
+    Encoder<Long> encoder = getEncoder();
+    boolean lossy = isLossy();
+    if (batch == null)
+      batch = new long[BATCH_SIZE];
+    
+    long result = reducer.initialValue();
+    int count = 0;
+    while (isVersionOf(key, source)) {
+      try {
+        batch[count] = decode(encoder, source.getTopValue().get());
+        if (++count == batch.length) {
+          result = reducer.reduce(key, result, batch, count);
+          count = 0;
+        }
+      } catch (ValueFormatException vfe) {
+        if (!lossy)
+          throw vfe;
+      }
+      source.next();
+    }
+    if (count > 0)
+      result = reducer.reduce(key, result, batch, count);
+    return new Value(encoder.encode(result));
+  }
+  
+  /**
+   * @return true if c is a PrimitiveReducer, unless it overrides reduce or the typedReduce of the class that implemented the primitive reduction
+   */
+  static boolean reducesPrimitives(Class<?> c) {
+    if (!PrimitiveReducer.class.isAssignableFrom(c) || !usesTypedReduce(c))
+      return false;
+    try {
+      Method typed = c.getMethod("typedReduce", Key.class, Iterator.class);
+      Method primitive = c.getMethod("reduce", Key.class, long.class, long[].class, int.class);
+      return typed.getDeclaringClass().isAssignableFrom(primitive.getDeclaringClass());
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+  
+  /**
+   * Decodes the built in encodings without creating a Long.
+   */
+  private static long decode(Encoder<Long> encoder, byte[] b) {
+    if (encoder == VAR_LEN_ENCODER)
+      return VarLenEncoder.decode(b, 0);
+    if (encoder == FIXED_LEN_ENCODER)
+      return FixedLenEncoder.decode(b, 0);
+    return encoder.decode(b);
+  }
+  
   @Override
   public IteratorOptions describeOptions() {
     IteratorOptions io = super.describeOptions();
@@ -127,12 +223,25 @@ public abstract class LongCombiner extends TypedValueCombiner<Long> {
     
     @Override
     public Long decode(byte[] b) {
-      DataInputStream dis = new DataInputStream(new ByteArrayInputStream(b));
-      try {
-        return WritableUtils.readVLong(dis);
-      } catch (IOException e) {
-        throw new ValueFormatException(e);
-      }
+      return decode(b, 0);
+    }
+    
+    /**
+     * Decodes a long written by WritableUtils.writeVLong, without reading through a stream.
+     */
+    public static long decode(byte[] b, int offset) {
+      if (b.length <= offset)
+        throw new ValueFormatException("trying to convert to long, but byte array is empty");
+      byte firstByte = b[offset];
+      int len = WritableUtils.decodeVIntSize(firstByte);
+      if (len == 1)
+        return firstByte;
+      if (b.length < offset + len)
+        throw new ValueFormatException("trying to convert to long, but byte array isn't long enough, wanted " + (offset + len) + " found " + b.length);
+      long l = 0;
+      for (int i = 1; i < len; i++)
+        l = (l << 8) | (b[offset + i] & 0xff);
+      return WritableUtils.isNegativeVInt(firstByte) ? ~l : l;
     }
   }
   
@@ -17,6 +17,7 @@
 package org.apache.accumulo.core.iterators;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -122,6 +123,20 @@ public abstract class TypedValueCombiner<V> extends Combiner {
     this.encoder = encoder;
   }
   
+  /**
+   * @return the Encoder<V> used to translate Values to V and back
+   */
+  protected Encoder<V> getEncoder() {
+    return encoder;
+  }
+  
+  /**
+   * @return true if values which fail to decode are ignored rather than failing the reduction
+   */
+  protected boolean isLossy() {
+    return lossy;
+  }
+  
   /**
    * Instantiates and sets the Encoder<V> used to translate Values to V and back.
    * 
@@ -188,6 +203,19 @@ public abstract class TypedValueCombiner<V> extends Combiner {
     return new Value(encoder.encode(typedReduce(key, new VIterator<V>(iter, encoder, lossy))));
   }
   
+  /**
+   * @return true if c reduces Values with the {@link #reduce(Key, Iterator)} of this class, rather than its own. Only then may a subclass reduce Values
+   *         without calling {@link #reduce(Key, Iterator)}.
+   */
+  protected static boolean usesTypedReduce(Class<?> c) {
+    try {
+      Method reduce = c.getMethod("reduce", Key.class, Iterator.class);
+      return reduce.getDeclaringClass() == TypedValueCombiner.class;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+  
   @Override
   public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options, IteratorEnvironment env) throws IOException {
     super.init(source, options, env);
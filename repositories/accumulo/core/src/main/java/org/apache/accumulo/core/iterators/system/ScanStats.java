@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.iterators.system;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records where the time of a traced scan went: the time spent in each layer of the iterator stack, the blocks read from the block caches and from files, and
+ * the number of sources merged.
+ *
+ * A tablet server binds the stats of a scan to the thread running it, so the file readers can count the blocks they read without knowing about the scan. When
+ * no scan is traced nothing is bound, and the cost of tracing is one thread local lookup per block read.
+ */
+public class ScanStats {
+  
+  private static final ThreadLocal<ScanStats> current = new ThreadLocal<ScanStats>();
+  
+  /**
+   * The time spent in one layer of the iterator stack, including the time spent in the layers below it.
+   */
+  public static class Timer {
+    private final String name;
+    private long nanos = 0;
+    private long calls = 0;
+    
+    Timer(String name) {
+      this.name = name;
+    }
+    
+    public void add(long elapsed) {
+      nanos += elapsed;
+      calls++;
+    }
+    
+    public String getName() {
+      return name;
+    }
+    
+    public long getNanos() {
+      return nanos;
+    }
+    
+    public long getCalls() {
+      return calls;
+    }
+  }
+  
+  // in the order the stack is built, from the bottom up
+  private List<Timer> timers = new ArrayList<Timer>();
+  private long start;
+  private long cacheHits;
+  private long cacheMisses;
+  private long bytesDecompressed;
+  private int sourcesMerged;
+  
+  public ScanStats() {
+    reset();
+  }
+  
+  /**
+   * @return the stats of the scan the current thread is running, or null if it is not traced
+   */
+  public static ScanStats current() {
+    return current.get();
+  }
+  
+  /**
+   * Collect the blocks read by the current thread into these stats, until {@link #unbind()} is called.
+   */
+  public void bind() {
+    current.set(this);
+  }
+  
+  public static void unbind() {
+    current.remove();
+  }
+  
+  /**
+   * Clears the counts and restarts the clock, but keeps the timers of the layers so an iterator stack can be traced again.
+   */
+  public void reset() {
+    for (Timer timer : timers) {
+      timer.nanos = 0;
+      timer.calls = 0;
+    }
+    start = System.currentTimeMillis();
+    cacheHits = 0;
+    cacheMisses = 0;
+    bytesDecompressed = 0;
+    sourcesMerged = 0;
+  }
+  
+  /**
+   * Returns the timer for a layer of the iterator stack. Layers must be requested from the bottom of the stack up. A stack that is rebuilt during the scan gets
+   * the timers of the stack it replaces.
+   */
+  public Timer getTimer(String name) {
+    for (Timer timer : timers)
+      if (timer.name.equals(name))
+        return timer;
+    Timer timer = new Timer(name);
+    timers.add(timer);
+    return timer;
+  }
+  
+  /**
+   * @param cached
+   *          true if the block was found in a block cache
+   * @param rawSize
+   *          the decompressed size of a block read from a file
+   */
+  public void blockRead(boolean cached, long rawSize) {
+    if (cached) {
+      cacheHits++;
+    } else {
+      cacheMisses++;
+      bytesDecompressed += rawSize;
+    }
+  }
+  
+  public void addSourcesMerged(int sources) {
+    sourcesMerged += sources;
+  }
+  
+  public long getElapsedMillis() {
+    return System.currentTimeMillis() - start;
+  }
+  
+  public long getCacheHits() {
+    return cacheHits;
+  }
+  
+  public long getCacheMisses() {
+    return cacheMisses;
+  }
+  
+  public long getBytesDecompressed() {
+    return bytesDecompressed;
+  }
+  
+  public int getSourcesMerged() {
+    return sourcesMerged;
+  }
+  
+  /**
+   * @return the time spent in a layer of the iterator stack, excluding the layer below it. This is only approximate for iterators that read several copies of
+   *         their source.
+   */
+  public long getSelfNanos(Timer timer) {
+    int index = timers.indexOf(timer);
+    if (index <= 0)
+      return timer.nanos;
+    return Math.max(0, timer.nanos - timers.get(index - 1).nanos);
+  }
+  
+  public List<Timer> getTimers() {
+    return timers;
+  }
+  
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("sources merged: ").append(sourcesMerged);
+    sb.append(", blocks cached: ").append(cacheHits);
+    sb.append(", blocks read: ").append(cacheMisses);
+    sb.append(", bytes decompressed: ").append(bytesDecompressed);
+    if (timers.size() > 0) {
+      sb.append(", iterator ms:");
+      for (Timer timer : timers)
+        sb.append(String.format(" %s=%.3f", timer.name, getSelfNanos(timer) / 1000000.0));
+    }
+    return sb.toString();
+  }
+}
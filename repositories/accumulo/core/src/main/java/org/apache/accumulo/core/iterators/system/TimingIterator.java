@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.iterators.system;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+
+/**
+ * Adds the time spent seeking and advancing its source to a {@link ScanStats.Timer}. Only placed in the iterator stack of traced scans.
+ */
+public class TimingIterator extends WrappingIterator {
+  
+  private ScanStats.Timer timer;
+  
+  public TimingIterator(SortedKeyValueIterator<Key,Value> source, ScanStats.Timer timer) {
+    super.setSource(source);
+    this.timer = timer;
+  }
+  
+  @Override
+  public void next() throws IOException {
+    long t1 = System.nanoTime();
+    try {
+      super.next();
+    } finally {
+      timer.add(System.nanoTime() - t1);
+    }
+  }
+  
+  @Override
+  public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+    long t1 = System.nanoTime();
+    try {
+      super.seek(range, columnFamilies, inclusive);
+    } finally {
+      timer.add(System.nanoTime() - t1);
+    }
+  }
+  
+  @Override
+  public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+    return new TimingIterator(getSource().deepCopy(env), timer);
+  }
+}
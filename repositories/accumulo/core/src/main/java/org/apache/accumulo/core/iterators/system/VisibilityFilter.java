@@ -16,25 +16,31 @@
  */
 package org.apache.accumulo.core.iterators.system;
 
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.Filter;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.security.Authorizations;
-import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.accumulo.core.security.VisibilityEvaluator;
 import org.apache.accumulo.core.security.VisibilityParseException;
-import org.apache.accumulo.core.util.TextUtil;
 import org.apache.commons.collections.map.LRUMap;
-import org.apache.hadoop.io.Text;
 import org.apache.log4j.Logger;
 
+/**
+ * Filters keys whose column visibility is not satisfied by the scan's authorizations. Accept and reject decisions are cached per filter, keyed by the raw
+ * visibility bytes, so each distinct expression is evaluated at most once while it stays in the cache.
+ */
 public class VisibilityFilter extends Filter {
+  
+  /** Maximum number of distinct visibility expressions whose result is cached per scan */
+  static final int CACHE_SIZE = 1000;
+  
   private VisibilityEvaluator ve;
-  private Text defaultVisibility;
+  private ByteSequence defaultVisibility;
   private LRUMap cache;
-  private Text tmpVis;
   
   private static final Logger log = Logger.getLogger(VisibilityFilter.class);
   
@@ -43,23 +49,22 @@ public class VisibilityFilter extends Filter {
   public VisibilityFilter(SortedKeyValueIterator<Key,Value> iterator, Authorizations authorizations, byte[] defaultVisibility) {
     setSource(iterator);
     this.ve = new VisibilityEvaluator(authorizations);
-    this.defaultVisibility = new Text(defaultVisibility);
-    this.cache = new LRUMap(1000);
-    this.tmpVis = new Text();
+    this.defaultVisibility = new ArrayByteSequence(defaultVisibility.clone());
+    this.cache = new LRUMap(CACHE_SIZE);
   }
   
   @Override
   public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
-    return new VisibilityFilter(getSource().deepCopy(env), ve.getAuthorizations(), TextUtil.getBytes(defaultVisibility));
+    return new VisibilityFilter(getSource().deepCopy(env), ve.getAuthorizations(), defaultVisibility.toArray());
   }
   
   @Override
   public boolean accept(Key k, Value v) {
-    Text testVis = k.getColumnVisibility(tmpVis);
+    ByteSequence testVis = k.getColumnVisibilityData();
     
-    if (testVis.getLength() == 0 && defaultVisibility.getLength() == 0)
+    if (testVis.length() == 0 && defaultVisibility.length() == 0)
       return true;
-    else if (testVis.getLength() == 0)
+    else if (testVis.length() == 0)
       testVis = defaultVisibility;
     
     Boolean b = (Boolean) cache.get(testVis);
@@ -67,8 +72,8 @@ public class VisibilityFilter extends Filter {
       return b;
     
     try {
-      Boolean bb = ve.evaluate(new ColumnVisibility(testVis));
-      cache.put(new Text(testVis), bb);
+      Boolean bb = ve.evaluate(testVis);
+      cache.put(testVis == defaultVisibility ? testVis : new ArrayByteSequence(testVis.toArray().clone()), bb);
       return bb;
     } catch (VisibilityParseException e) {
       log.error("Parse Error", e);
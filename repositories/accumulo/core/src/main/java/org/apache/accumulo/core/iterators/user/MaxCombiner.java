@@ -24,7 +24,7 @@ import org.apache.accumulo.core.iterators.LongCombiner;
 /**
  * A Combiner that interprets Values as Longs and returns the largest Long among them.
  */
-public class MaxCombiner extends LongCombiner {
+public class MaxCombiner extends LongCombiner implements LongCombiner.PrimitiveReducer {
   @Override
   public Long typedReduce(Key key, Iterator<Long> iter) {
     long max = Long.MIN_VALUE;
@@ -36,6 +36,19 @@ public class MaxCombiner extends LongCombiner {
     return max;
   }
   
+  @Override
+  public long initialValue() {
+    return Long.MIN_VALUE;
+  }
+  
+  @Override
+  public long reduce(Key key, long result, long[] values, int count) {
+    for (int i = 0; i < count; i++)
+      if (values[i] > result)
+        result = values[i];
+    return result;
+  }
+  
   @Override
   public IteratorOptions describeOptions() {
     IteratorOptions io = super.describeOptions();
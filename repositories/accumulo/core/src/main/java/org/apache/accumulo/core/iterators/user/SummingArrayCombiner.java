@@ -39,6 +39,9 @@ import org.apache.hadoop.io.WritableUtils;
 
 /**
  * A Combiner that interprets Values as arrays of Longs and returns an array of element-wise sums.
+ * 
+ * With the VARLEN and FIXEDLEN encodings the arrays are summed as primitive longs, into arrays that are reused from key to key, rather than decoded into
+ * Lists.
  */
 public class SummingArrayCombiner extends TypedValueCombiner<List<Long>> {
   public static final Encoder<List<Long>> FIXED_LONG_ARRAY_ENCODER = new FixedLongArrayEncoder();
@@ -63,6 +66,83 @@ public class SummingArrayCombiner extends TypedValueCombiner<List<Long>> {
     STRING
   }
   
+  // set on the first reduction; subclasses that override reduce or typedReduce are always reduced by them
+  private Boolean sumsPrimitives = null;
+  private long[] sums = new long[0];
+  private long[] decoded = new long[0];
+  
+  @Override
+  protected Value reduceVersions(Key key, SortedKeyValueIterator<Key,Value> source) throws IOException {
+    Encoder<List<Long>> encoder = getEncoder();
+    if (encoder != VAR_LONG_ARRAY_ENCODER && encoder != FIXED_LONG_ARRAY_ENCODER)
+      return super.reduceVersions(key, source);
+    if (sumsPrimitives == null) {
+      try {
+        sumsPrimitives = usesTypedReduce(getClass())
+            && getClass().getMethod("typedReduce", Key.class, Iterator.class).getDeclaringClass() == SummingArrayCombiner.class;
+      } catch (NoSuchMethodException e) {
+        sumsPrimitives = false;
+      }
+    }
+    if (!sumsPrimitives)
+      return super.reduceVersions(key, source);
+    
+    boolean fixed = encoder == FIXED_LONG_ARRAY_ENCODER;
+    boolean lossy = isLossy();
+    int sumLen = 0;
+    while (isVersionOf(key, source)) {
+      try {
+        int len = decode(fixed, source.getTopValue().get());
+        if (len > sums.length)
+          sums = Arrays.copyOf(sums, len);
+        for (int i = 0; i < len; i++)
+          sums[i] = i < sumLen ? LongCombiner.safeAdd(sums[i], decoded[i]) : decoded[i];
+        sumLen = Math.max(sumLen, len);
+      } catch (ValueFormatException vfe) {
+        if (!lossy)
+          throw vfe;
+      }
+      source.next();
+    }
+    
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(baos);
+    WritableUtils.writeVInt(dos, sumLen);
+    for (int i = 0; i < sumLen; i++) {
+      if (fixed)
+        dos.writeLong(sums[i]);
+      else
+        WritableUtils.writeVLong(dos, sums[i]);
+    }
+    return new Value(baos.toByteArray());
+  }
+  
+  /**
+   * Decodes an array written by a FixedLongArrayEncoder or VarLongArrayEncoder into the decoded buffer, so that a value that fails to decode leaves the sums
+   * unchanged.
+   * 
+   * @return the number of elements
+   */
+  private int decode(boolean fixed, byte[] b) {
+    long len = LongCombiner.VarLenEncoder.decode(b, 0);
+    // every element takes at least a byte
+    if (len < 0 || len > b.length)
+      throw new ValueFormatException("invalid array length " + len);
+    if (len > decoded.length)
+      decoded = new long[(int) len];
+    int offset = WritableUtils.decodeVIntSize(b[0]);
+    for (int i = 0; i < len; i++) {
+      if (fixed) {
+        decoded[i] = LongCombiner.FixedLenEncoder.decode(b, offset);
+        offset += 8;
+      } else {
+        decoded[i] = LongCombiner.VarLenEncoder.decode(b, offset);
+        offset += WritableUtils.decodeVIntSize(b[offset]);
+      }
+    }
+    return (int) len;
+  }
+  
   @Override
   public List<Long> typedReduce(Key key, Iterator<List<Long>> iter) {
     List<Long> sum = new ArrayList<Long>();
@@ -24,7 +24,7 @@ import org.apache.accumulo.core.iterators.LongCombiner;
 /**
  * A Combiner that interprets Values as Longs and returns their sum.
  */
-public class SummingCombiner extends LongCombiner {
+public class SummingCombiner extends LongCombiner implements LongCombiner.PrimitiveReducer {
   @Override
   public Long typedReduce(Key key, Iterator<Long> iter) {
     long sum = 0;
@@ -34,6 +34,18 @@ public class SummingCombiner extends LongCombiner {
     return sum;
   }
   
+  @Override
+  public long initialValue() {
+    return 0;
+  }
+  
+  @Override
+  public long reduce(Key key, long result, long[] values, int count) {
+    for (int i = 0; i < count; i++)
+      result = safeAdd(result, values[i]);
+    return result;
+  }
+  
   @Override
   public IteratorOptions describeOptions() {
     IteratorOptions io = super.describeOptions();
@@ -36,6 +36,10 @@ import org.slf4j.LoggerFactory;
   private static final org.apache.thrift.protocol.TField NAME_FIELD_DESC = new org.apache.thrift.protocol.TField("name", org.apache.thrift.protocol.TType.STRING, (short)2);
   private static final org.apache.thrift.protocol.TField RUNTIME_FIELD_DESC = new org.apache.thrift.protocol.TField("runtime", org.apache.thrift.protocol.TType.I32, (short)5);
   private static final org.apache.thrift.protocol.TField PROGRESS_FIELD_DESC = new org.apache.thrift.protocol.TField("progress", org.apache.thrift.protocol.TType.DOUBLE, (short)6);
+  private static final org.apache.thrift.protocol.TField READ_TIME_FIELD_DESC = new org.apache.thrift.protocol.TField("readTime", org.apache.thrift.protocol.TType.I32, (short)7);
+  private static final org.apache.thrift.protocol.TField CHUNK_SORT_TIME_FIELD_DESC = new org.apache.thrift.protocol.TField("chunkSortTime", org.apache.thrift.protocol.TType.I32, (short)8);
+  private static final org.apache.thrift.protocol.TField SPILL_TIME_FIELD_DESC = new org.apache.thrift.protocol.TField("spillTime", org.apache.thrift.protocol.TType.I32, (short)9);
+  private static final org.apache.thrift.protocol.TField MERGE_TIME_FIELD_DESC = new org.apache.thrift.protocol.TField("mergeTime", org.apache.thrift.protocol.TType.I32, (short)10);
 
   private static final Map<Class<? extends IScheme>, SchemeFactory> schemes = new HashMap<Class<? extends IScheme>, SchemeFactory>();
   static {
@@ -46,12 +50,20 @@ import org.slf4j.LoggerFactory;
   public String name; // required
   public int runtime; // required
   public double progress; // required
+  public int readTime; // required
+  public int chunkSortTime; // required
+  public int spillTime; // required
+  public int mergeTime; // required
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   @SuppressWarnings("all") public enum _Fields implements org.apache.thrift.TFieldIdEnum {
     NAME((short)2, "name"),
     RUNTIME((short)5, "runtime"),
-    PROGRESS((short)6, "progress");
+    PROGRESS((short)6, "progress"),
+    READ_TIME((short)7, "readTime"),
+    CHUNK_SORT_TIME((short)8, "chunkSortTime"),
+    SPILL_TIME((short)9, "spillTime"),
+    MERGE_TIME((short)10, "mergeTime");
 
     private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
 
@@ -72,6 +84,14 @@ import org.slf4j.LoggerFactory;
           return RUNTIME;
         case 6: // PROGRESS
           return PROGRESS;
+        case 7: // READ_TIME
+          return READ_TIME;
+        case 8: // CHUNK_SORT_TIME
+          return CHUNK_SORT_TIME;
+        case 9: // SPILL_TIME
+          return SPILL_TIME;
+        case 10: // MERGE_TIME
+          return MERGE_TIME;
         default:
           return null;
       }
@@ -114,6 +134,10 @@ import org.slf4j.LoggerFactory;
   // isset id assignments
   private static final int __RUNTIME_ISSET_ID = 0;
   private static final int __PROGRESS_ISSET_ID = 1;
+  private static final int __READ_TIME_ISSET_ID = 2;
+  private static final int __CHUNK_SORT_TIME_ISSET_ID = 3;
+  private static final int __SPILL_TIME_ISSET_ID = 4;
+  private static final int __MERGE_TIME_ISSET_ID = 5;
   private byte __isset_bitfield = 0;
   public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
   static {
@@ -124,6 +148,14 @@ import org.slf4j.LoggerFactory;
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
     tmpMap.put(_Fields.PROGRESS, new org.apache.thrift.meta_data.FieldMetaData("progress", org.apache.thrift.TFieldRequirementType.DEFAULT, 
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.DOUBLE)));
+    tmpMap.put(_Fields.READ_TIME, new org.apache.thrift.meta_data.FieldMetaData("readTime", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
+    tmpMap.put(_Fields.CHUNK_SORT_TIME, new org.apache.thrift.meta_data.FieldMetaData("chunkSortTime", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
+    tmpMap.put(_Fields.SPILL_TIME, new org.apache.thrift.meta_data.FieldMetaData("spillTime", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
+    tmpMap.put(_Fields.MERGE_TIME, new org.apache.thrift.meta_data.FieldMetaData("mergeTime", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
     metaDataMap = Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(RecoveryStatus.class, metaDataMap);
   }
@@ -134,7 +166,11 @@ import org.slf4j.LoggerFactory;
   public RecoveryStatus(
     String name,
     int runtime,
-    double progress)
+    double progress,
+    int readTime,
+    int chunkSortTime,
+    int spillTime,
+    int mergeTime)
   {
     this();
     this.name = name;
@@ -142,6 +178,14 @@ import org.slf4j.LoggerFactory;
     setRuntimeIsSet(true);
     this.progress = progress;
     setProgressIsSet(true);
+    this.readTime = readTime;
+    setReadTimeIsSet(true);
+    this.chunkSortTime = chunkSortTime;
+    setChunkSortTimeIsSet(true);
+    this.spillTime = spillTime;
+    setSpillTimeIsSet(true);
+    this.mergeTime = mergeTime;
+    setMergeTimeIsSet(true);
   }
 
   /**
@@ -154,6 +198,10 @@ import org.slf4j.LoggerFactory;
     }
     this.runtime = other.runtime;
     this.progress = other.progress;
+    this.readTime = other.readTime;
+    this.chunkSortTime = other.chunkSortTime;
+    this.spillTime = other.spillTime;
+    this.mergeTime = other.mergeTime;
   }
 
   public RecoveryStatus deepCopy() {
@@ -167,6 +215,14 @@ import org.slf4j.LoggerFactory;
     this.runtime = 0;
     setProgressIsSet(false);
     this.progress = 0.0;
+    setReadTimeIsSet(false);
+    this.readTime = 0;
+    setChunkSortTimeIsSet(false);
+    this.chunkSortTime = 0;
+    setSpillTimeIsSet(false);
+    this.spillTime = 0;
+    setMergeTimeIsSet(false);
+    this.mergeTime = 0;
   }
 
   public String getName() {
@@ -239,6 +295,98 @@ import org.slf4j.LoggerFactory;
     __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __PROGRESS_ISSET_ID, value);
   }
 
+  public int getReadTime() {
+    return this.readTime;
+  }
+
+  public RecoveryStatus setReadTime(int readTime) {
+    this.readTime = readTime;
+    setReadTimeIsSet(true);
+    return this;
+  }
+
+  public void unsetReadTime() {
+    __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __READ_TIME_ISSET_ID);
+  }
+
+  /** Returns true if field readTime is set (has been assigned a value) and false otherwise */
+  public boolean isSetReadTime() {
+    return EncodingUtils.testBit(__isset_bitfield, __READ_TIME_ISSET_ID);
+  }
+
+  public void setReadTimeIsSet(boolean value) {
+    __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __READ_TIME_ISSET_ID, value);
+  }
+
+  public int getChunkSortTime() {
+    return this.chunkSortTime;
+  }
+
+  public RecoveryStatus setChunkSortTime(int chunkSortTime) {
+    this.chunkSortTime = chunkSortTime;
+    setChunkSortTimeIsSet(true);
+    return this;
+  }
+
+  public void unsetChunkSortTime() {
+    __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __CHUNK_SORT_TIME_ISSET_ID);
+  }
+
+  /** Returns true if field chunkSortTime is set (has been assigned a value) and false otherwise */
+  public boolean isSetChunkSortTime() {
+    return EncodingUtils.testBit(__isset_bitfield, __CHUNK_SORT_TIME_ISSET_ID);
+  }
+
+  public void setChunkSortTimeIsSet(boolean value) {
+    __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __CHUNK_SORT_TIME_ISSET_ID, value);
+  }
+
+  public int getSpillTime() {
+    return this.spillTime;
+  }
+
+  public RecoveryStatus setSpillTime(int spillTime) {
+    this.spillTime = spillTime;
+    setSpillTimeIsSet(true);
+    return this;
+  }
+
+  public void unsetSpillTime() {
+    __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __SPILL_TIME_ISSET_ID);
+  }
+
+  /** Returns true if field spillTime is set (has been assigned a value) and false otherwise */
+  public boolean isSetSpillTime() {
+    return EncodingUtils.testBit(__isset_bitfield, __SPILL_TIME_ISSET_ID);
+  }
+
+  public void setSpillTimeIsSet(boolean value) {
+    __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __SPILL_TIME_ISSET_ID, value);
+  }
+
+  public int getMergeTime() {
+    return this.mergeTime;
+  }
+
+  public RecoveryStatus setMergeTime(int mergeTime) {
+    this.mergeTime = mergeTime;
+    setMergeTimeIsSet(true);
+    return this;
+  }
+
+  public void unsetMergeTime() {
+    __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __MERGE_TIME_ISSET_ID);
+  }
+
+  /** Returns true if field mergeTime is set (has been assigned a value) and false otherwise */
+  public boolean isSetMergeTime() {
+    return EncodingUtils.testBit(__isset_bitfield, __MERGE_TIME_ISSET_ID);
+  }
+
+  public void setMergeTimeIsSet(boolean value) {
+    __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __MERGE_TIME_ISSET_ID, value);
+  }
+
   public void setFieldValue(_Fields field, Object value) {
     switch (field) {
     case NAME:
@@ -265,6 +413,38 @@ import org.slf4j.LoggerFactory;
       }
       break;
 
+    case READ_TIME:
+      if (value == null) {
+        unsetReadTime();
+      } else {
+        setReadTime((Integer)value);
+      }
+      break;
+
+    case CHUNK_SORT_TIME:
+      if (value == null) {
+        unsetChunkSortTime();
+      } else {
+        setChunkSortTime((Integer)value);
+      }
+      break;
+
+    case SPILL_TIME:
+      if (value == null) {
+        unsetSpillTime();
+      } else {
+        setSpillTime((Integer)value);
+      }
+      break;
+
+    case MERGE_TIME:
+      if (value == null) {
+        unsetMergeTime();
+      } else {
+        setMergeTime((Integer)value);
+      }
+      break;
+
     }
   }
 
@@ -279,6 +459,18 @@ import org.slf4j.LoggerFactory;
     case PROGRESS:
       return Double.valueOf(getProgress());
 
+    case READ_TIME:
+      return Integer.valueOf(getReadTime());
+
+    case CHUNK_SORT_TIME:
+      return Integer.valueOf(getChunkSortTime());
+
+    case SPILL_TIME:
+      return Integer.valueOf(getSpillTime());
+
+    case MERGE_TIME:
+      return Integer.valueOf(getMergeTime());
+
     }
     throw new IllegalStateException();
   }
@@ -296,6 +488,14 @@ import org.slf4j.LoggerFactory;
       return isSetRuntime();
     case PROGRESS:
       return isSetProgress();
+    case READ_TIME:
+      return isSetReadTime();
+    case CHUNK_SORT_TIME:
+      return isSetChunkSortTime();
+    case SPILL_TIME:
+      return isSetSpillTime();
+    case MERGE_TIME:
+      return isSetMergeTime();
     }
     throw new IllegalStateException();
   }
@@ -340,6 +540,42 @@ import org.slf4j.LoggerFactory;
         return false;
     }
 
+    boolean this_present_readTime = true;
+    boolean that_present_readTime = true;
+    if (this_present_readTime || that_present_readTime) {
+      if (!(this_present_readTime && that_present_readTime))
+        return false;
+      if (this.readTime != that.readTime)
+        return false;
+    }
+
+    boolean this_present_chunkSortTime = true;
+    boolean that_present_chunkSortTime = true;
+    if (this_present_chunkSortTime || that_present_chunkSortTime) {
+      if (!(this_present_chunkSortTime && that_present_chunkSortTime))
+        return false;
+      if (this.chunkSortTime != that.chunkSortTime)
+        return false;
+    }
+
+    boolean this_present_spillTime = true;
+    boolean that_present_spillTime = true;
+    if (this_present_spillTime || that_present_spillTime) {
+      if (!(this_present_spillTime && that_present_spillTime))
+        return false;
+      if (this.spillTime != that.spillTime)
+        return false;
+    }
+
+    boolean this_present_mergeTime = true;
+    boolean that_present_mergeTime = true;
+    if (this_present_mergeTime || that_present_mergeTime) {
+      if (!(this_present_mergeTime && that_present_mergeTime))
+        return false;
+      if (this.mergeTime != that.mergeTime)
+        return false;
+    }
+
     return true;
   }
 
@@ -386,6 +622,46 @@ import org.slf4j.LoggerFactory;
         return lastComparison;
       }
     }
+    lastComparison = Boolean.valueOf(isSetReadTime()).compareTo(typedOther.isSetReadTime());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetReadTime()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.readTime, typedOther.readTime);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = Boolean.valueOf(isSetChunkSortTime()).compareTo(typedOther.isSetChunkSortTime());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetChunkSortTime()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.chunkSortTime, typedOther.chunkSortTime);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = Boolean.valueOf(isSetSpillTime()).compareTo(typedOther.isSetSpillTime());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetSpillTime()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.spillTime, typedOther.spillTime);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = Boolean.valueOf(isSetMergeTime()).compareTo(typedOther.isSetMergeTime());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetMergeTime()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.mergeTime, typedOther.mergeTime);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -421,6 +697,22 @@ import org.slf4j.LoggerFactory;
     sb.append("progress:");
     sb.append(this.progress);
     first = false;
+    if (!first) sb.append(", ");
+    sb.append("readTime:");
+    sb.append(this.readTime);
+    first = false;
+    if (!first) sb.append(", ");
+    sb.append("chunkSortTime:");
+    sb.append(this.chunkSortTime);
+    first = false;
+    if (!first) sb.append(", ");
+    sb.append("spillTime:");
+    sb.append(this.spillTime);
+    first = false;
+    if (!first) sb.append(", ");
+    sb.append("mergeTime:");
+    sb.append(this.mergeTime);
+    first = false;
     sb.append(")");
     return sb.toString();
   }
@@ -490,6 +782,38 @@ import org.slf4j.LoggerFactory;
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
             }
             break;
+          case 7: // READ_TIME
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.readTime = iprot.readI32();
+              struct.setReadTimeIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 8: // CHUNK_SORT_TIME
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.chunkSortTime = iprot.readI32();
+              struct.setChunkSortTimeIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 9: // SPILL_TIME
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.spillTime = iprot.readI32();
+              struct.setSpillTimeIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 10: // MERGE_TIME
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.mergeTime = iprot.readI32();
+              struct.setMergeTimeIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
           default:
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
         }
@@ -516,6 +840,18 @@ import org.slf4j.LoggerFactory;
       oprot.writeFieldBegin(PROGRESS_FIELD_DESC);
       oprot.writeDouble(struct.progress);
       oprot.writeFieldEnd();
+      oprot.writeFieldBegin(READ_TIME_FIELD_DESC);
+      oprot.writeI32(struct.readTime);
+      oprot.writeFieldEnd();
+      oprot.writeFieldBegin(CHUNK_SORT_TIME_FIELD_DESC);
+      oprot.writeI32(struct.chunkSortTime);
+      oprot.writeFieldEnd();
+      oprot.writeFieldBegin(SPILL_TIME_FIELD_DESC);
+      oprot.writeI32(struct.spillTime);
+      oprot.writeFieldEnd();
+      oprot.writeFieldBegin(MERGE_TIME_FIELD_DESC);
+      oprot.writeI32(struct.mergeTime);
+      oprot.writeFieldEnd();
       oprot.writeFieldStop();
       oprot.writeStructEnd();
     }
@@ -543,7 +879,19 @@ import org.slf4j.LoggerFactory;
       if (struct.isSetProgress()) {
         optionals.set(2);
       }
-      oprot.writeBitSet(optionals, 3);
+      if (struct.isSetReadTime()) {
+        optionals.set(3);
+      }
+      if (struct.isSetChunkSortTime()) {
+        optionals.set(4);
+      }
+      if (struct.isSetSpillTime()) {
+        optionals.set(5);
+      }
+      if (struct.isSetMergeTime()) {
+        optionals.set(6);
+      }
+      oprot.writeBitSet(optionals, 7);
       if (struct.isSetName()) {
         oprot.writeString(struct.name);
       }
@@ -553,12 +901,24 @@ import org.slf4j.LoggerFactory;
       if (struct.isSetProgress()) {
         oprot.writeDouble(struct.progress);
       }
+      if (struct.isSetReadTime()) {
+        oprot.writeI32(struct.readTime);
+      }
+      if (struct.isSetChunkSortTime()) {
+        oprot.writeI32(struct.chunkSortTime);
+      }
+      if (struct.isSetSpillTime()) {
+        oprot.writeI32(struct.spillTime);
+      }
+      if (struct.isSetMergeTime()) {
+        oprot.writeI32(struct.mergeTime);
+      }
     }
 
     @Override
     public void read(org.apache.thrift.protocol.TProtocol prot, RecoveryStatus struct) throws org.apache.thrift.TException {
       TTupleProtocol iprot = (TTupleProtocol) prot;
-      BitSet incoming = iprot.readBitSet(3);
+      BitSet incoming = iprot.readBitSet(7);
       if (incoming.get(0)) {
         struct.name = iprot.readString();
         struct.setNameIsSet(true);
@@ -571,6 +931,22 @@ import org.slf4j.LoggerFactory;
         struct.progress = iprot.readDouble();
         struct.setProgressIsSet(true);
       }
+      if (incoming.get(3)) {
+        struct.readTime = iprot.readI32();
+        struct.setReadTimeIsSet(true);
+      }
+      if (incoming.get(4)) {
+        struct.chunkSortTime = iprot.readI32();
+        struct.setChunkSortTimeIsSet(true);
+      }
+      if (incoming.get(5)) {
+        struct.spillTime = iprot.readI32();
+        struct.setSpillTimeIsSet(true);
+      }
+      if (incoming.get(6)) {
+        struct.mergeTime = iprot.readI32();
+        struct.setMergeTimeIsSet(true);
+      }
     }
   }
 
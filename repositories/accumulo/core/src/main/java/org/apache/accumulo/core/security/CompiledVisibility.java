@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.security;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.security.ColumnVisibility.Node;
+
+/**
+ * A visibility expression flattened into parallel arrays in pre-order, so that it can be evaluated against any set of authorizations without the parse tree.
+ * Each node records its operator, its term or number of children, and the index just past its subtree, which lets AND and OR short circuit by jumping over
+ * children that do not need to be evaluated. Terms are copied out of the expression, so a compiled visibility holds no reference to the bytes it was built
+ * from.
+ */
+final class CompiledVisibility {
+  
+  private static final byte TERM = 0;
+  private static final byte AND = 1;
+  private static final byte OR = 2;
+  
+  private final byte[] ops;
+  private final int[] args;
+  private final int[] next;
+  private final ByteSequence[] terms;
+  
+  private CompiledVisibility(byte[] ops, int[] args, int[] next, ByteSequence[] terms) {
+    this.ops = ops;
+    this.args = args;
+    this.next = next;
+    this.terms = terms;
+  }
+  
+  static CompiledVisibility compile(ColumnVisibility visibility) throws VisibilityParseException {
+    byte[] expression = visibility.getExpression();
+    Node root = visibility.getParseTree();
+    if (root == null)
+      throw new VisibilityParseException("Empty expression", expression, 0);
+    
+    int size = count(root);
+    Compiler compiler = new Compiler(expression, size);
+    compiler.add(root);
+    return new CompiledVisibility(compiler.ops, compiler.args, compiler.next, compiler.terms.toArray(new ByteSequence[compiler.terms.size()]));
+  }
+  
+  private static int count(Node node) {
+    int count = 1;
+    for (Node child : node.children)
+      count += count(child);
+    return count;
+  }
+  
+  private static class Compiler {
+    final byte[] expression;
+    final byte[] ops;
+    final int[] args;
+    final int[] next;
+    final List<ByteSequence> terms = new ArrayList<ByteSequence>();
+    int index = 0;
+    
+    Compiler(byte[] expression, int size) {
+      this.expression = expression;
+      this.ops = new byte[size];
+      this.args = new int[size];
+      this.next = new int[size];
+    }
+    
+    void add(Node node) throws VisibilityParseException {
+      int pos = index++;
+      switch (node.type) {
+        case TERM:
+          ops[pos] = TERM;
+          args[pos] = terms.size();
+          terms.add(new ArrayByteSequence(node.getTerm(expression).toArray().clone()));
+          break;
+        case AND:
+        case OR:
+          if (node.children == null || node.children.size() < 2)
+            throw new VisibilityParseException(node.type + " has less than 2 children", expression, node.start);
+          ops[pos] = node.type == ColumnVisibility.NodeType.AND ? AND : OR;
+          args[pos] = node.children.size();
+          for (Node child : node.children)
+            add(child);
+          break;
+        default:
+          throw new VisibilityParseException("No such node type", expression, node.start);
+      }
+      next[pos] = index;
+    }
+  }
+  
+  boolean evaluate(Authorizations auths) {
+    return evaluate(auths, 0);
+  }
+  
+  private boolean evaluate(Authorizations auths, int pos) {
+    switch (ops[pos]) {
+      case TERM:
+        return auths.contains(terms[args[pos]]);
+      case AND:
+        for (int i = 0, child = pos + 1; i < args[pos]; i++, child = next[child]) {
+          if (!evaluate(auths, child))
+            return false;
+        }
+        return true;
+      default:
+        for (int i = 0, child = pos + 1; i < args[pos]; i++, child = next[child]) {
+          if (evaluate(auths, child))
+            return true;
+        }
+        return false;
+    }
+  }
+}
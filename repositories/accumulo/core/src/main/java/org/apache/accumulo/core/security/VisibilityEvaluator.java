@@ -18,10 +18,26 @@ package org.apache.accumulo.core.security;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.security.ColumnVisibility.Node;
 
 public class VisibilityEvaluator {
+  
+  /** Maximum number of distinct expressions whose compiled form is kept */
+  static final int COMPILED_CACHE_SIZE = 10000;
+  
+  /**
+   * Compiled expressions are independent of authorizations, so they are shared by every evaluator in the process. Tables typically use a few hundred distinct
+   * expressions, so a scan only parses the ones no earlier scan has seen. Lookups do not lock, so concurrent scans do not wait on each other; when the cache
+   * is full it is cleared rather than keeping track of which expressions were used last.
+   */
+  private static final ConcurrentHashMap<ByteSequence,CompiledVisibility> compiled = new ConcurrentHashMap<ByteSequence,CompiledVisibility>();
+  private static final AtomicInteger compiledCount = new AtomicInteger(0);
+  
   private Authorizations auths;
   
   static Authorizations escape(Authorizations auths) {
@@ -78,6 +94,33 @@ public class VisibilityEvaluator {
     return evaluate(visibility.getExpression(), visibility.getParseTree());
   }
   
+  /**
+   * Evaluates a serialized visibility expression. The expression is parsed and compiled the first time it is seen, later evaluations of the same bytes reuse
+   * the compiled form.
+   * 
+   * @param expression
+   *          a non-empty visibility expression, it is not retained
+   */
+  public boolean evaluate(ByteSequence expression) throws VisibilityParseException {
+    CompiledVisibility cv = compiled.get(expression);
+    
+    if (cv == null) {
+      byte[] copy = new byte[expression.length()];
+      if (expression.isBackedByArray())
+        System.arraycopy(expression.getBackingArray(), expression.offset(), copy, 0, copy.length);
+      else
+        for (int i = 0; i < copy.length; i++)
+          copy[i] = expression.byteAt(i);
+      cv = CompiledVisibility.compile(new ColumnVisibility(copy));
+      if (compiled.putIfAbsent(new ArrayByteSequence(copy), cv) == null && compiledCount.incrementAndGet() > COMPILED_CACHE_SIZE) {
+        compiled.clear();
+        compiledCount.set(0);
+      }
+    }
+    
+    return cv.evaluate(auths);
+  }
+  
   private final boolean evaluate(final byte[] expression, final Node root) throws VisibilityParseException {
     switch (root.type) {
       case TERM:
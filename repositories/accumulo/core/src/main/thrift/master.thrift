@@ -45,6 +45,10 @@ struct RecoveryStatus {
     2:string name
     5:i32 runtime                   // in millis
     6:double progress
+    7:i32 readTime                  // in millis
+    8:i32 chunkSortTime             // in millis
+    9:i32 spillTime                 // in millis
+    10:i32 mergeTime                // in millis
 }
 
 struct TabletServerStatus {
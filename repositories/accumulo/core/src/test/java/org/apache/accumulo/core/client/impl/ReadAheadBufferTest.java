@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.client.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class ReadAheadBufferTest extends TestCase {
+  
+  public void testMemoryCap() throws Exception {
+    ReadAheadBuffer<String> buffer = new ReadAheadBuffer<String>(4, 1000);
+    assertTrue(buffer.hasRoom());
+    buffer.put("a", 10, 400);
+    assertTrue(buffer.hasRoom());
+    buffer.put("b", 10, 400);
+    // two batches of this size are all that fit
+    assertEquals(2, buffer.getDepth());
+    assertFalse(buffer.hasRoom());
+    assertEquals(800, buffer.getBufferedBytes());
+    
+    assertEquals("a", buffer.take());
+    assertTrue(buffer.hasRoom());
+    assertEquals(400, buffer.getBufferedBytes());
+  }
+  
+  public void testLargeBatch() throws Exception {
+    // a batch larger than the cap is accepted when nothing is buffered
+    ReadAheadBuffer<String> buffer = new ReadAheadBuffer<String>(4, 100);
+    buffer.put("a", 10, 1000);
+    assertFalse(buffer.hasRoom());
+    assertEquals("a", buffer.take());
+    assertNull(buffer.poll(10, TimeUnit.MILLISECONDS));
+  }
+  
+  public void testPutWaits() throws Exception {
+    final ReadAheadBuffer<String> buffer = new ReadAheadBuffer<String>(1, 1000);
+    buffer.put("a", 10, 100);
+    
+    final CountDownLatch added = new CountDownLatch(1);
+    Thread producer = new Thread() {
+      public void run() {
+        try {
+          buffer.put("b", 10, 100);
+          added.countDown();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    producer.start();
+    
+    assertFalse(added.await(100, TimeUnit.MILLISECONDS));
+    assertEquals("a", buffer.take());
+    assertTrue(added.await(10, TimeUnit.SECONDS));
+    assertEquals("b", buffer.take());
+    producer.join();
+  }
+  
+  public void testSlowConsumer() throws Exception {
+    ReadAheadBuffer<String> buffer = new ReadAheadBuffer<String>(8, 1 << 20);
+    assertEquals(8, buffer.getDepth());
+    assertEquals(1000, buffer.getBatchSize(1000));
+    
+    buffer.rpcCompleted(5);
+    buffer.put("a", 100, 1000);
+    buffer.take();
+    Thread.sleep(50);
+    buffer.batchDrained();
+    
+    // the consumer takes much longer than an RPC, so little needs to be read ahead
+    assertEquals(2, buffer.getDepth());
+    int size = buffer.getBatchSize(1000);
+    assertTrue(size < 1000);
+    assertTrue(size >= ReadAheadBuffer.MIN_BATCH_SIZE);
+  }
+  
+  public void testFastConsumer() throws Exception {
+    ReadAheadBuffer<String> buffer = new ReadAheadBuffer<String>(8, 1 << 20);
+    
+    buffer.rpcCompleted(100);
+    buffer.put("a", 100, 1000);
+    buffer.take();
+    buffer.batchDrained();
+    
+    // the consumer drains a batch faster than an RPC completes, so read ahead as far as allowed
+    assertEquals(8, buffer.getDepth());
+    assertEquals(1000, buffer.getBatchSize(1000));
+  }
+  
+  public void testReadAhead() throws Exception {
+    ReadAheadBuffer<String> buffer = new ReadAheadBuffer<String>(3, 1 << 20);
+    assertTrue(buffer.needsFetch());
+    assertTrue(buffer.startReadAhead());
+    assertFalse(buffer.startReadAhead());
+    assertFalse(buffer.needsFetch());
+    
+    buffer.add("a", 10, 10);
+    assertTrue(buffer.continueReadAhead());
+    buffer.add("b", 10, 10);
+    assertTrue(buffer.continueReadAhead());
+    buffer.add("c", 10, 10);
+    assertFalse(buffer.continueReadAhead());
+    
+    assertEquals(3, buffer.getBuffered());
+    assertFalse(buffer.needsFetch());
+    buffer.take();
+    buffer.take();
+    buffer.take();
+    assertTrue(buffer.needsFetch());
+    
+    assertTrue(buffer.startReadAhead());
+    buffer.close("end");
+    assertFalse(buffer.startReadAhead());
+    assertFalse(buffer.needsFetch());
+    assertEquals("end", buffer.take());
+  }
+}
@@ -1239,4 +1239,33 @@ public class TabletLocatorImplTest extends TestCase {
     locateTabletTest(tab0TabletCache, "a", ke1, "tserver7");
     
   }
+  
+  public void testCacheCounters() throws Exception {
+    Text tableName = new Text("foo");
+    
+    TabletLocatorImpl metaCache = createLocators("foo", nke("foo", "g", null), "l1", nke("foo", "m", "g"), "l2", nke("foo", null, "m"), "l2");
+    
+    List<Range> ranges = nrl(nr(null, null));
+    Map<String,Map<KeyExtent,List<Range>>> expected = createExpectedBinnings("l1", nol(nke("foo", "g", null), nrl(nr(null, null))), "l2",
+        nol(nke("foo", "m", "g"), nrl(nr(null, null)), nke("foo", null, "m"), nrl(nr(null, null)))
+    
+    );
+    
+    // the locations of all tablets in the range are read with one metadata scan
+    runTest(tableName, ranges, metaCache, expected);
+    assertEquals(0, metaCache.getCacheHits());
+    assertEquals(1, metaCache.getCacheMisses());
+    assertEquals(1, metaCache.getMetadataLookups());
+    
+    runTest(tableName, ranges, metaCache, expected);
+    assertEquals(1, metaCache.getCacheHits());
+    assertEquals(1, metaCache.getMetadataLookups());
+    
+    metaCache.invalidateCache(nke("foo", "m", "g"));
+    assertEquals(1, metaCache.getInvalidations());
+    
+    runTest(tableName, ranges, metaCache, expected);
+    assertEquals(2, metaCache.getCacheHits());
+    assertEquals(2, metaCache.getMetadataLookups());
+  }
 }
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.client.impl;
+
+import junit.framework.TestCase;
+
+public class TabletServerSendControllerTest extends TestCase {
+  
+  private static final long MAX_BATCH = 50 << 20;
+  
+  // simulates a server that accepts data at a rate that depends on the number of concurrent sends
+  private static void simulate(TabletServerSendController controller, double[] rates, int sends) {
+    for (int i = 0; i < sends; i++) {
+      int concurrent = controller.getConcurrency();
+      long bytes = controller.getBatchSize();
+      double perSend = rates[Math.min(rates.length, concurrent) - 1] / concurrent;
+      controller.sendCompleted(bytes, (long) (bytes / perSend), concurrent);
+    }
+  }
+  
+  public void testBatchSize() {
+    TabletServerSendController controller = new TabletServerSendController("server", MAX_BATCH, 1);
+    
+    // until something was sent, send everything
+    assertEquals(MAX_BATCH, controller.getBatchSize());
+    
+    // a send of 1MB taking 1 second, so 500ms worth is 512K
+    controller.sendCompleted(1 << 20, 1000, 1);
+    assertEquals(1 << 19, controller.getBatchSize());
+    
+    // a slow server gets the minimum
+    for (int i = 0; i < 20; i++)
+      controller.sendCompleted(1 << 10, 1000, 1);
+    assertEquals(TabletServerSendController.MIN_BATCH_SIZE, controller.getBatchSize());
+    
+    // a fast server gets the maximum
+    for (int i = 0; i < 20; i++)
+      controller.sendCompleted(1 << 30, 100, 1);
+    assertEquals(MAX_BATCH, controller.getBatchSize());
+    
+    assertEquals(41, controller.getTotalSends());
+  }
+  
+  public void testSenders() {
+    TabletServerSendController controller = new TabletServerSendController("server", MAX_BATCH, 4);
+    assertEquals(1, controller.getConcurrency());
+    assertTrue(controller.canStartSender());
+    controller.senderStarted();
+    assertFalse(controller.canStartSender());
+    assertFalse(controller.shouldStopSender());
+    controller.senderStarted();
+    assertTrue(controller.shouldStopSender());
+    controller.senderStopped();
+    assertEquals(1, controller.getSenders());
+  }
+  
+  public void testConcurrencyIncreases() {
+    // the server scales with concurrent sends
+    TabletServerSendController controller = new TabletServerSendController("server", MAX_BATCH, 4);
+    simulate(controller, new double[] {1000, 2000, 3000, 4000}, TabletServerSendController.WINDOW * 5);
+    assertEquals(4, controller.getConcurrency());
+    
+    // and stays close to the best concurrency
+    simulate(controller, new double[] {1000, 2000, 3000, 4000}, TabletServerSendController.WINDOW * 20);
+    assertTrue(controller.getConcurrency() >= 3);
+  }
+  
+  public void testConcurrencyDecreases() {
+    // the server gets no faster with concurrent sends
+    TabletServerSendController controller = new TabletServerSendController("server", MAX_BATCH, 8);
+    simulate(controller, new double[] {1000, 1000, 1000, 1000, 1000, 1000, 1000, 1000}, TabletServerSendController.WINDOW * 40);
+    assertTrue(controller.getConcurrency() <= 2);
+    
+    // the server slows down with concurrent sends
+    controller = new TabletServerSendController("server", MAX_BATCH, 8);
+    simulate(controller, new double[] {1000, 2000, 3000, 2000, 1000, 1000, 1000, 1000}, TabletServerSendController.WINDOW * 40);
+    assertTrue(controller.getConcurrency() >= 2);
+    assertTrue(controller.getConcurrency() <= 4);
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.client.mapreduce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.client.impl.TabletFilesScanner;
+import org.apache.accumulo.core.client.mapreduce.InputFormatBase.TabletFilesInputSplit;
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyExtent;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileSKVWriter;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+public class OfflineFileSplitsTest {
+  
+  private static final int ROWS = 1000;
+  
+  private static String row(int i) {
+    return String.format("row_%04d", i);
+  }
+  
+  private static Map<String,String> tableProperties() {
+    Map<String,String> props = new TreeMap<String,String>();
+    for (Entry<String,String> entry : AccumuloConfiguration.getDefaultConfiguration())
+      props.put(entry.getKey(), entry.getValue());
+    // small blocks, so the file's index has many entries to divide the tablet at
+    props.put(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE.getKey(), "1K");
+    return props;
+  }
+  
+  private static TabletFilesInputSplit writeTablet(FileSystem fs, Configuration conf, Map<String,String> props) throws Exception {
+    Path file = new Path("target/accumulo-test/offline/tablet.rf");
+    fs.deleteOnExit(file);
+    fs.delete(file, true);
+    fs.mkdirs(file.getParent());
+    
+    FileSKVWriter writer = FileOperations.getInstance().openWriter(file.toString(), fs, conf, new ConfigurationCopy(props));
+    writer.startDefaultLocalityGroup();
+    for (int i = 0; i < ROWS; i++)
+      writer.append(new Key(new Text(row(i)), new Text("cf"), new Text("cq")), new Value(("value of " + row(i)).getBytes()));
+    writer.close();
+    
+    KeyExtent extent = new KeyExtent(new Text("1"), null, null);
+    Map<String,Long> files = Collections.singletonMap(file.toString(), fs.getFileStatus(file).getLen());
+    return new TabletFilesInputSplit("test", extent.toDataRange(), extent, files, props);
+  }
+  
+  @Test
+  public void testSerialization() throws Exception {
+    Map<String,Long> files = new TreeMap<String,Long>();
+    files.put("/accumulo/tables/1/t-1/F1.rf", 100l);
+    files.put("/accumulo/tables/1/t-1/F2.rf", 50l);
+    KeyExtent extent = new KeyExtent(new Text("1"), new Text("m"), new Text("d"));
+    TabletFilesInputSplit split = new TabletFilesInputSplit("test", new Range("e", "f"), extent, files, tableProperties());
+    split.setLocations(new String[] {"host1", "host2"});
+    
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    split.write(new DataOutputStream(baos));
+    TabletFilesInputSplit copy = new TabletFilesInputSplit();
+    copy.readFields(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+    
+    assertEquals(split.getRange(), copy.getRange());
+    assertEquals(extent, copy.getExtent());
+    assertEquals(split.getFiles(), copy.getFiles());
+    assertEquals(150, copy.getLength());
+    assertEquals(2, copy.getLocations().length);
+    assertEquals("host2", copy.getLocations()[1]);
+    assertEquals(split.getTableProperties(), copy.getTableProperties());
+  }
+  
+  @Test
+  public void testDivideTablet() throws Exception {
+    Configuration conf = new Configuration();
+    FileSystem fs = FileSystem.get(new URI("file:///"), conf);
+    Map<String,String> props = tableProperties();
+    TabletFilesInputSplit tablet = writeTablet(fs, conf, props);
+    
+    // a split size larger than the tablet does not divide it
+    List<TabletFilesInputSplit> splits = InputFormatBase.divideTabletSplit(fs, conf, tablet, tablet.getLength() + 1);
+    assertEquals(1, splits.size());
+    
+    splits = InputFormatBase.divideTabletSplit(fs, conf, tablet, tablet.getLength() / 4 + 1);
+    assertEquals(4, splits.size());
+    
+    // reading every split returns every row once, in order
+    int read = 0;
+    for (TabletFilesInputSplit split : splits) {
+      assertTrue(split.getLength() > 0);
+      TabletFilesScanner scanner = new TabletFilesScanner(fs, conf, split.getExtent(), split.getFiles(), new ConfigurationCopy(props), new Authorizations());
+      scanner.setRange(split.getRange());
+      int inSplit = 0;
+      for (Entry<Key,Value> entry : scanner) {
+        assertEquals(row(read), entry.getKey().getRow().toString());
+        assertEquals("value of " + row(read), entry.getValue().toString());
+        read++;
+        inSplit++;
+      }
+      // splits fall on block boundaries, so are only roughly even
+      assertTrue(inSplit > ROWS / 8);
+    }
+    assertEquals(ROWS, read);
+  }
+  
+  @Test
+  public void testFetchColumns() throws Exception {
+    Configuration conf = new Configuration();
+    FileSystem fs = FileSystem.get(new URI("file:///"), conf);
+    Map<String,String> props = tableProperties();
+    TabletFilesInputSplit tablet = writeTablet(fs, conf, props);
+    
+    TabletFilesScanner scanner = new TabletFilesScanner(fs, conf, tablet.getExtent(), tablet.getFiles(), new ConfigurationCopy(props), new Authorizations());
+    scanner.setRange(new Range(row(10), row(19)));
+    int count = 0;
+    Iterator<Entry<Key,Value>> iter = scanner.iterator();
+    while (iter.hasNext()) {
+      iter.next();
+      count++;
+    }
+    assertEquals(10, count);
+    
+    scanner.fetchColumnFamily(new Text("other"));
+    assertFalse(scanner.iterator().hasNext());
+  }
+}
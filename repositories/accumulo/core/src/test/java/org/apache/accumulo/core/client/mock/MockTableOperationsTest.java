@@ -43,19 +43,23 @@ import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.client.admin.TableOperations;
 import org.apache.accumulo.core.client.admin.TimeType;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.file.FileOperations;
 import org.apache.accumulo.core.file.FileSKVWriter;
+import org.apache.accumulo.core.file.rfile.RFile;
 import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.accumulo.core.iterators.user.RegExFilter;
 import org.apache.accumulo.core.iterators.user.VersioningIterator;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.accumulo.core.security.thrift.AuthInfo;
 import org.apache.accumulo.core.util.Pair;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.junit.Assert;
@@ -264,4 +268,69 @@ public class MockTableOperationsTest {
         false);
   }
   
+  private static int countFiles(FileSystem fs, Path dir) throws IOException {
+    int count = 0;
+    for (FileStatus status : fs.listStatus(dir)) {
+      if (status.isDir())
+        count += countFiles(fs, status.getPath());
+      else if (status.getPath().getName().endsWith("." + RFile.EXTENSION))
+        count++;
+    }
+    return count;
+  }
+  
+  private static int checkRows(Connector conn, String table) throws TableNotFoundException {
+    int count = 0;
+    for (Entry<Key,Value> entry : conn.createScanner(table, Constants.NO_AUTHS)) {
+      int row = Integer.parseInt(entry.getKey().getRow().toString().substring(1));
+      Assert.assertEquals(1, row % 2);
+      Assert.assertEquals(Integer.toString(-row), entry.getValue().toString());
+      count++;
+    }
+    return count;
+  }
+  
+  @Test
+  public void testTablesInFiles() throws Exception {
+    FileSystem fs = FileSystem.get(new URI("file:///"), new Configuration());
+    Path dir = new Path("target/accumulo-test/mock-tables");
+    fs.delete(dir, true);
+    Instance instance = new MockInstance("files", fs, dir);
+    Connector conn = instance.getConnector("user", "pass");
+    conn.instanceOperations().setProperty(Property.TSERV_MAXMEM.getKey(), "4K");
+    TableOperations tableOperations = conn.tableOperations();
+    tableOperations.create("t");
+    tableOperations.setProperty("t", Property.TABLE_FILE_MAX.getKey(), "3");
+    
+    BatchWriter bw = conn.createBatchWriter("t", new BatchWriterConfig());
+    for (int i = 0; i < 1000; i++) {
+      Mutation m = new Mutation(String.format("r%04d", i));
+      m.put("cf", "cq", 1, new Value(Integer.toString(i).getBytes()));
+      bw.addMutation(m);
+    }
+    // delete the even rows and overwrite the odd ones, after the first versions were written to files
+    for (int i = 0; i < 1000; i++) {
+      Mutation m = new Mutation(String.format("r%04d", i));
+      if (i % 2 == 0)
+        m.putDelete("cf", "cq", 2);
+      else
+        m.put("cf", "cq", 2, new Value(Integer.toString(-i).getBytes()));
+      bw.addMutation(m);
+    }
+    bw.close();
+    
+    Assert.assertEquals(500, checkRows(conn, "t"));
+    int files = countFiles(fs, dir);
+    Assert.assertTrue(files > 0 && files <= 3);
+    
+    // a compaction flushes memory and writes one file through the given iterators
+    IteratorSetting setting = new IteratorSetting(30, RegExFilter.class);
+    RegExFilter.setRegexs(setting, "r00.*", null, null, null, false);
+    tableOperations.compact("t", null, null, Collections.singletonList(setting), true, true);
+    Assert.assertEquals(1, countFiles(fs, dir));
+    Assert.assertEquals(50, checkRows(conn, "t"));
+    
+    tableOperations.delete("t");
+    Assert.assertEquals(0, countFiles(fs, dir));
+  }
 }
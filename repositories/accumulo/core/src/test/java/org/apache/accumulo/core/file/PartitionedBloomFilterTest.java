@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.keyfunctor.ColumnFamilyFunctor;
+import org.apache.accumulo.core.file.keyfunctor.KeyFunctor;
+import org.apache.accumulo.core.file.rfile.RFileTest.TestRFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.hash.Hash;
+import org.junit.Test;
+
+public class PartitionedBloomFilterTest {
+  
+  private static final Collection<ByteSequence> EMPTY_COL_FAMS = Collections.emptySet();
+  
+  private static String row(int i) {
+    return String.format("r_%06d", i);
+  }
+  
+  private static Range familyRange(String row, String family) {
+    Key key = new Key(new Text(row), new Text(family));
+    return new Range(key, true, key.followingKey(PartialKey.ROW_COLFAM), false);
+  }
+  
+  @Test
+  public void testLookups() throws IOException {
+    KeyFunctor functor = new ColumnFamilyFunctor();
+    TestRFile trf = new TestRFile();
+    trf.openWriter(false);
+    PartitionedBloomFilter.Writer writer = new PartitionedBloomFilter.Writer(100, 0.01, 5, Hash.MURMUR_HASH, true);
+    
+    // only even rows are written, in a locality group for family a and in the default locality group
+    Set<ByteSequence> families = new HashSet<ByteSequence>();
+    families.add(new ArrayByteSequence("a"));
+    trf.writer.startNewLocalityGroup("lg1", families);
+    writer.startLocalityGroup(families);
+    for (int i = 0; i < 2000; i += 2) {
+      for (int q = 0; q < 3; q++) {
+        Key key = new Key(row(i), "a", "q" + q);
+        trf.writer.append(key, new Value(new byte[0]));
+        writer.add(key, functor.transform(key).getBytes());
+      }
+    }
+    
+    trf.writer.startDefaultLocalityGroup();
+    writer.startLocalityGroup(null);
+    for (int i = 0; i < 2000; i += 2) {
+      Key key = new Key(row(i), "b", "q");
+      trf.writer.append(key, new Value(new byte[0]));
+      writer.add(key, functor.transform(key).getBytes());
+    }
+    
+    // every row adds the row and the row and family, so each locality group has 20 partitions of 50 rows
+    assertEquals(40, writer.getNumPartitions());
+    
+    writer.write(trf.writer, functor.getClass().getName(), Hash.MURMUR_HASH);
+    trf.closeWriter();
+    trf.openReader();
+    
+    PartitionedBloomFilter filter = new PartitionedBloomFilter();
+    DataInputStream in = trf.reader.getMetaStore(PartitionedBloomFilter.INDEX_NAME);
+    assertEquals(functor.getClass().getName(), in.readUTF());
+    filter.readIndex(in);
+    in.close();
+    
+    assertEquals(0, filter.getLoadedPartitions());
+    
+    // a lookup reads at most one partition per locality group
+    assertTrue(filter.probablyHasKey(trf.reader, functor, familyRange(row(500), "a"), EMPTY_COL_FAMS, false));
+    assertTrue(filter.getLoadedPartitions() <= 2);
+    
+    int falsePositives = 0;
+    for (int i = 0; i < 2000; i++) {
+      boolean found = filter.probablyHasKey(trf.reader, functor, familyRange(row(i), "a"), EMPTY_COL_FAMS, false);
+      // the rows are also in the filter, so lookups of a whole row are filtered too
+      boolean rowFound = filter.probablyHasKey(trf.reader, functor, new Range(row(i)), EMPTY_COL_FAMS, false);
+      if (i % 2 == 0) {
+        assertTrue(found);
+        assertTrue(rowFound);
+      } else {
+        if (found)
+          falsePositives++;
+        if (rowFound)
+          falsePositives++;
+      }
+    }
+    // 2000 lookups of absent keys, each checking two partitions with a 1% error rate
+    assertTrue("false positives " + falsePositives, falsePositives < 120);
+    
+    // rows before the first row of the file are not in any partition
+    assertEquals(false, filter.probablyHasKey(trf.reader, functor, new Range("a"), EMPTY_COL_FAMS, false));
+    
+    // lookups that are not limited to a row can not be filtered
+    assertTrue(filter.probablyHasKey(trf.reader, functor, new Range(row(1), row(3)), EMPTY_COL_FAMS, false));
+    
+    trf.closeReader();
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests slab allocation, eviction and pinning of the OffHeapBlockCache.
+ */
+public class TestOffHeapBlockCache extends TestCase {
+  
+  private static byte[] block(int size, int seed) {
+    byte[] buf = new byte[size];
+    for (int i = 0; i < size; i++)
+      buf[i] = (byte) (i * 31 + seed);
+    return buf;
+  }
+  
+  public void testCacheSimple() throws Exception {
+    OffHeapBlockCache cache = new OffHeapBlockCache(1 << 20, 16 * 1024, 64 * 1024);
+    
+    for (int i = 0; i < 20; i++) {
+      assertNull(cache.getBlock("block" + i));
+      assertNotNull(cache.cacheBlock("block" + i, block(1000 + i * 500, i)));
+    }
+    
+    for (int i = 0; i < 20; i++) {
+      OffHeapBlockCache.Entry entry = cache.getBlock("block" + i);
+      assertNotNull(entry);
+      assertEquals(1000 + i * 500, entry.getLength());
+      assertTrue(Arrays.equals(block(1000 + i * 500, i), entry.getBuffer()));
+      
+      ByteBuffer bb = entry.getByteBuffer();
+      assertEquals(0, bb.position());
+      assertEquals(entry.getLength(), bb.remaining());
+      entry.release();
+    }
+    
+    assertEquals(20, cache.size());
+    assertEquals(20, cache.getStats().getHitCount());
+    assertEquals(20, cache.getStats().getMissCount());
+    assertTrue(cache.heapSize() < cache.getCurrentSize());
+  }
+  
+  public void testEviction() throws Exception {
+    // room for exactly four 16k chunks
+    OffHeapBlockCache cache = new OffHeapBlockCache(64 * 1024, 16 * 1024, 64 * 1024);
+    
+    for (int i = 0; i < 4; i++)
+      assertNotNull(cache.cacheBlock("block" + i, block(16 * 1024, i)));
+    
+    // touch block0 so block1 is the least recently used
+    cache.getBlock("block0").release();
+    
+    assertNotNull(cache.cacheBlock("block4", block(16 * 1024, 4)));
+    assertNull(cache.getBlock("block1"));
+    
+    OffHeapBlockCache.Entry entry = cache.getBlock("block0");
+    assertTrue(Arrays.equals(block(16 * 1024, 0), entry.getBuffer()));
+    entry.release();
+    
+    assertEquals(4, cache.size());
+    assertEquals(1, cache.getStats().getEvictedCount());
+    assertEquals(64 * 1024, cache.getAllocatedSize());
+  }
+  
+  public void testPinnedEntryIsNotReused() throws Exception {
+    OffHeapBlockCache cache = new OffHeapBlockCache(16 * 1024, 16 * 1024, 16 * 1024);
+    
+    cache.cacheBlock("block0", block(16 * 1024, 0));
+    OffHeapBlockCache.Entry pinned = cache.getBlock("block0");
+    
+    // the only chunk is pinned, so a new block can not be cached
+    assertNull(cache.cacheBlock("block1", block(16 * 1024, 1)));
+    assertTrue(Arrays.equals(block(16 * 1024, 0), pinned.getBuffer()));
+    assertNull(cache.getBlock("block0"));
+    
+    pinned.release();
+    assertNotNull(cache.cacheBlock("block1", block(16 * 1024, 1)));
+    OffHeapBlockCache.Entry entry = cache.getBlock("block1");
+    assertTrue(Arrays.equals(block(16 * 1024, 1), entry.getBuffer()));
+    entry.release();
+  }
+  
+  public void testBlockSizesChange() throws Exception {
+    // four slabs, all handed to the 4k chunks first
+    OffHeapBlockCache cache = new OffHeapBlockCache(256 * 1024, 16 * 1024, 64 * 1024);
+    
+    for (int i = 0; i < 64; i++)
+      assertNotNull(cache.cacheBlock("small" + i, block(4 * 1024, i)));
+    assertEquals(64, cache.size());
+    assertEquals(256 * 1024, cache.getAllocatedSize());
+    
+    // the idle 4k chunks give their slabs up to the 16k blocks read now
+    for (int i = 0; i < 16; i++)
+      assertNotNull(cache.cacheBlock("large" + i, block(16 * 1024, i)));
+    for (int i = 0; i < 16; i++) {
+      OffHeapBlockCache.Entry entry = cache.getBlock("large" + i);
+      assertNotNull(entry);
+      assertTrue(Arrays.equals(block(16 * 1024, i), entry.getBuffer()));
+      entry.release();
+    }
+    assertEquals(16, cache.size());
+    assertNull(cache.getBlock("small63"));
+    assertEquals(256 * 1024, cache.getAllocatedSize());
+    
+    // and back again
+    for (int i = 0; i < 64; i++)
+      assertNotNull(cache.cacheBlock("small" + i, block(4 * 1024, i)));
+    for (int i = 0; i < 64; i++) {
+      OffHeapBlockCache.Entry entry = cache.getBlock("small" + i);
+      assertNotNull(entry);
+      assertTrue(Arrays.equals(block(4 * 1024, i), entry.getBuffer()));
+      entry.release();
+    }
+    assertEquals(64, cache.size());
+    assertEquals(0, cache.getStats().getRejectedCount());
+  }
+  
+  public void testUsedSlabIsNotTaken() throws Exception {
+    OffHeapBlockCache cache = new OffHeapBlockCache(128 * 1024, 16 * 1024, 64 * 1024);
+    
+    for (int i = 0; i < 4; i++)
+      assertNotNull(cache.cacheBlock("large" + i, block(16 * 1024, i)));
+    for (int i = 0; i < 16; i++)
+      assertNotNull(cache.cacheBlock("small" + i, block(4 * 1024, i)));
+    
+    // the 16k blocks are in use, so the 4k blocks evict each other
+    cache.getBlock("large0").release();
+    assertNotNull(cache.cacheBlock("small16", block(4 * 1024, 16)));
+    assertNull(cache.getBlock("small0"));
+    for (int i = 0; i < 4; i++) {
+      OffHeapBlockCache.Entry entry = cache.getBlock("large" + i);
+      assertNotNull(entry);
+      entry.release();
+    }
+  }
+  
+  public void testPinnedSlabIsReusedAfterRelease() throws Exception {
+    OffHeapBlockCache cache = new OffHeapBlockCache(64 * 1024, 16 * 1024, 64 * 1024);
+    
+    for (int i = 0; i < 16; i++)
+      assertNotNull(cache.cacheBlock("small" + i, block(4 * 1024, i)));
+    OffHeapBlockCache.Entry pinned = cache.getBlock("small0");
+    
+    // the slab is taken from the 4k chunks, but can not be cut into 16k chunks while a block in it is read
+    assertNull(cache.cacheBlock("large0", block(16 * 1024, 0)));
+    assertNull(cache.getBlock("small1"));
+    assertTrue(Arrays.equals(block(4 * 1024, 0), pinned.getBuffer()));
+    
+    pinned.release();
+    assertNotNull(cache.cacheBlock("large0", block(16 * 1024, 0)));
+    OffHeapBlockCache.Entry entry = cache.getBlock("large0");
+    assertTrue(Arrays.equals(block(16 * 1024, 0), entry.getBuffer()));
+    entry.release();
+    assertEquals(64 * 1024, cache.getAllocatedSize());
+  }
+  
+  public void testBlockTooLarge() throws Exception {
+    OffHeapBlockCache cache = new OffHeapBlockCache(1 << 20, 16 * 1024);
+    assertNull(cache.cacheBlock("huge", new byte[32 * 1024]));
+    assertEquals(1, cache.getStats().getRejectedCount());
+    assertEquals(0, cache.getAllocatedSize());
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the admission policy and size accounting of the TinyLfuBlockCache.
+ */
+public class TestTinyLfuBlockCache extends TestCase {
+  
+  private static final int BLOCK_SIZE = 1000;
+  
+  private static long heapSize(String name, int size) {
+    return ClassSize.align(name.length()) + ClassSize.align(size) + CachedBlock.PER_BLOCK_OVERHEAD;
+  }
+  
+  public void testCacheSimple() throws Exception {
+    TinyLfuBlockCache cache = new TinyLfuBlockCache(1000000, BLOCK_SIZE);
+    
+    long expectedSize = 0;
+    for (int i = 0; i < 100; i++) {
+      assertNull(cache.getBlock("block" + i));
+      assertNotNull(cache.cacheBlock("block" + i, new byte[BLOCK_SIZE]));
+      expectedSize += heapSize("block" + i, BLOCK_SIZE);
+    }
+    
+    assertEquals(expectedSize, cache.heapSize());
+    assertEquals(100, cache.size());
+    
+    for (int i = 0; i < 100; i++) {
+      CacheEntry ce = cache.getBlock("block" + i);
+      assertNotNull(ce);
+      assertEquals(BLOCK_SIZE, ce.getBuffer().length);
+    }
+    
+    assertEquals(100, cache.getStats().getHitCount());
+    assertEquals(100, cache.getStats().getMissCount());
+    assertEquals(100, cache.getStats().getAdmittedCount());
+    assertEquals(0, cache.getStats().getRejectedCount());
+  }
+  
+  public void testScanResistance() throws Exception {
+    long maxSize = 20 * heapSize("hot00", BLOCK_SIZE);
+    TinyLfuBlockCache cache = new TinyLfuBlockCache(maxSize, BLOCK_SIZE, 1);
+    
+    // a working set of hot blocks that is read repeatedly
+    for (int round = 0; round < 5; round++) {
+      readHotBlocks(cache);
+    }
+    
+    // a large sequential scan that reads every block once, while point lookups keep reading the hot blocks
+    for (int i = 0; i < 1000; i++) {
+      String name = String.format("scan%04d", i);
+      if (cache.getBlock(name) == null)
+        cache.cacheBlock(name, new byte[BLOCK_SIZE]);
+      if (i % 20 == 0)
+        readHotBlocks(cache);
+    }
+    
+    for (int i = 0; i < 10; i++) {
+      assertNotNull(cache.getBlock(String.format("hot%02d", i)));
+    }
+    
+    assertTrue(cache.getStats().getRejectedCount() > 0);
+    assertTrue(cache.heapSize() <= maxSize);
+  }
+  
+  private void readHotBlocks(TinyLfuBlockCache cache) {
+    for (int i = 0; i < 10; i++) {
+      String name = String.format("hot%02d", i);
+      if (cache.getBlock(name) == null)
+        cache.cacheBlock(name, new byte[BLOCK_SIZE]);
+    }
+  }
+  
+  public void testFrequentBlockIsAdmitted() throws Exception {
+    long maxSize = 10 * heapSize("block0", BLOCK_SIZE);
+    TinyLfuBlockCache cache = new TinyLfuBlockCache(maxSize, BLOCK_SIZE, 1);
+    
+    for (int i = 0; i < 10; i++) {
+      cache.getBlock("block" + i);
+      cache.cacheBlock("block" + i, new byte[BLOCK_SIZE]);
+    }
+    
+    // requested once, cache is full of blocks requested just as often
+    assertNull(cache.getBlock("newer"));
+    assertNull(cache.cacheBlock("newer", new byte[BLOCK_SIZE]));
+    
+    // requested again, now more popular than the least recently used block
+    assertNull(cache.getBlock("newer"));
+    assertNotNull(cache.cacheBlock("newer", new byte[BLOCK_SIZE]));
+    assertNotNull(cache.getBlock("newer"));
+    assertNull(cache.getBlock("block0"));
+    
+    assertEquals(1, cache.getStats().getRejectedCount());
+    assertEquals(1, cache.getStats().getEvictedCount());
+  }
+  
+  public void testInMemoryBypassesAdmission() throws Exception {
+    long maxSize = 10 * heapSize("block0", BLOCK_SIZE);
+    TinyLfuBlockCache cache = new TinyLfuBlockCache(maxSize, BLOCK_SIZE, 1);
+    
+    for (int i = 0; i < 10; i++) {
+      cache.getBlock("block" + i);
+      cache.getBlock("block" + i);
+      cache.cacheBlock("block" + i, new byte[BLOCK_SIZE]);
+    }
+    
+    assertNotNull(cache.cacheBlock("memory", new byte[BLOCK_SIZE], true));
+    assertEquals(10, cache.size());
+    assertEquals(0, cache.getStats().getRejectedCount());
+  }
+  
+  public void testBlockLargerThanSegment() throws Exception {
+    TinyLfuBlockCache cache = new TinyLfuBlockCache(100 * BLOCK_SIZE, BLOCK_SIZE);
+    assertNull(cache.cacheBlock("huge", new byte[200 * BLOCK_SIZE]));
+    assertEquals(0, cache.heapSize());
+    assertEquals(1, cache.getStats().getRejectedCount());
+  }
+}
@@ -159,10 +159,14 @@ public class RFileTest {
     public SortedKeyValueIterator<Key,Value> iter;
 
     public void openWriter(boolean startDLG) throws IOException {
+      openWriter(startDLG, 0);
+    }
+    
+    public void openWriter(boolean startDLG, int seekIndexInterval) throws IOException {
       baos = new ByteArrayOutputStream();
       dos = new FSDataOutputStream(baos, new FileSystem.Statistics("a"));
       CachableBlockFile.Writer _cbw = new CachableBlockFile.Writer(dos, "gz", conf);
-      writer = new RFile.Writer(_cbw, 1000, 1000);
+      writer = new RFile.Writer(_cbw, 1000, 1000, seekIndexInterval);
       
       if (startDLG)
         writer.startDefaultLocalityGroup();
@@ -1507,4 +1511,56 @@ public class RFileTest {
     
     reader.close();
   }
+  
+  @Test
+  public void testSeekIndex() throws IOException {
+    // seek within blocks using the seek index stored at the end of each block, and check a file without one still reads the same
+    for (int interval : new int[] {0, 1, 4, 1000}) {
+      TestRFile trf = new TestRFile();
+      trf.openWriter(true, interval);
+      
+      ArrayList<Key> expectedKeys = new ArrayList<Key>();
+      ArrayList<Value> expectedValues = new ArrayList<Value>();
+      
+      for (int row = 0; row < 500; row++) {
+        for (int cq = 0; cq < 3; cq++) {
+          Key k = nk(nf("r_", row), "cf", nf("cq_", cq), "", 10);
+          Value v = nv(row + "_" + cq);
+          trf.writer.append(k, v);
+          expectedKeys.add(k);
+          expectedValues.add(v);
+        }
+      }
+      
+      trf.closeWriter();
+      trf.openReader();
+      
+      trf.seek(null);
+      verify(trf, expectedKeys.iterator(), expectedValues.iterator());
+      
+      Random rand = new Random(42);
+      // seek the same blocks many times, so that they are cached
+      for (int i = 0; i < 2000; i++) {
+        int index = rand.nextInt(expectedKeys.size());
+        trf.seek(expectedKeys.get(index));
+        for (int j = index; j < Math.min(index + 5, expectedKeys.size()); j++) {
+          assertTrue(trf.iter.hasTop());
+          assertEquals(expectedKeys.get(j), trf.iter.getTopKey());
+          assertEquals(expectedValues.get(j), trf.iter.getTopValue());
+          trf.iter.next();
+        }
+        
+        // seek between keys
+        trf.seek(expectedKeys.get(index).followingKey(PartialKey.ROW_COLFAM_COLQUAL));
+        if (index + 1 < expectedKeys.size()) {
+          assertTrue(trf.iter.hasTop());
+          assertEquals(expectedKeys.get(index + 1), trf.iter.getTopKey());
+        } else {
+          assertFalse(trf.iter.hasTop());
+        }
+      }
+      
+      trf.closeReader();
+    }
+  }
 }
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.iterators.system;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyExtent;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.DefaultIteratorEnvironment;
+import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.iterators.user.VersioningIterator;
+import org.apache.hadoop.io.Text;
+
+public class ScanStatsTest extends TestCase {
+  
+  private static final Collection<ByteSequence> EMPTY_COL_FAMS = new ArrayList<ByteSequence>();
+  
+  private static TreeMap<Key,Value> data() {
+    TreeMap<Key,Value> tm = new TreeMap<Key,Value>();
+    for (int i = 0; i < 10; i++)
+      for (long ts = 0; ts < 3; ts++)
+        tm.put(new Key(new Text(String.format("%03d", i)), new Text("cf"), new Text("cq"), ts), new Value(("" + i).getBytes()));
+    return tm;
+  }
+  
+  private static int read(SortedKeyValueIterator<Key,Value> iter) throws IOException {
+    iter.seek(new Range(), EMPTY_COL_FAMS, false);
+    int count = 0;
+    while (iter.hasTop()) {
+      count++;
+      iter.next();
+    }
+    return count;
+  }
+  
+  public void testTimers() throws Exception {
+    ScanStats stats = new ScanStats();
+    SortedKeyValueIterator<Key,Value> iter = new TimingIterator(new SortedMapIterator(data()), stats.getTimer("source"));
+    iter = new TimingIterator(new DeletingIterator(iter, false), stats.getTimer("deletes"));
+    
+    assertEquals(30, read(iter));
+    
+    assertEquals(2, stats.getTimers().size());
+    ScanStats.Timer source = stats.getTimers().get(0);
+    ScanStats.Timer deletes = stats.getTimers().get(1);
+    assertEquals("source", source.getName());
+    // one seek and a next for every entry
+    assertEquals(31, source.getCalls());
+    assertEquals(31, deletes.getCalls());
+    assertTrue(deletes.getNanos() >= source.getNanos());
+    assertEquals(deletes.getNanos() - source.getNanos(), stats.getSelfNanos(deletes));
+    assertEquals(source.getNanos(), stats.getSelfNanos(source));
+    
+    // a rebuilt stack times into the same timers
+    assertSame(source, stats.getTimer("source"));
+    stats.reset();
+    assertEquals(0, source.getCalls());
+    assertEquals(2, stats.getTimers().size());
+  }
+  
+  public void testDeepCopy() throws Exception {
+    ScanStats stats = new ScanStats();
+    TimingIterator iter = new TimingIterator(new SortedMapIterator(data()), stats.getTimer("source"));
+    SortedKeyValueIterator<Key,Value> copy = iter.deepCopy(null);
+    
+    assertEquals(30, read(iter));
+    assertEquals(30, read(copy));
+    assertEquals(62, stats.getTimer("source").getCalls());
+  }
+  
+  public void testBlocks() {
+    ScanStats stats = new ScanStats();
+    stats.blockRead(true, 0);
+    stats.blockRead(true, 0);
+    stats.blockRead(false, 1000);
+    stats.addSourcesMerged(3);
+    
+    assertEquals(2, stats.getCacheHits());
+    assertEquals(1, stats.getCacheMisses());
+    assertEquals(1000, stats.getBytesDecompressed());
+    assertEquals(3, stats.getSourcesMerged());
+    assertTrue(stats.toString().contains("bytes decompressed: 1000"));
+  }
+  
+  public void testConfiguredIterators() throws Exception {
+    ConfigurationCopy conf = new ConfigurationCopy();
+    conf.set(Property.TABLE_ITERATOR_PREFIX + IteratorScope.scan.name() + ".vers", "20," + VersioningIterator.class.getName());
+    KeyExtent extent = new KeyExtent(new Text("tab"), null, null);
+    
+    // nothing is timed when the scan is not traced
+    assertNull(ScanStats.current());
+    SortedKeyValueIterator<Key,Value> iter = IteratorUtil.loadIterators(IteratorScope.scan, new SortedMapIterator(data()), extent, conf,
+        new DefaultIteratorEnvironment(conf));
+    assertFalse(iter instanceof TimingIterator);
+    
+    ScanStats stats = new ScanStats();
+    stats.bind();
+    try {
+      assertSame(stats, ScanStats.current());
+      iter = IteratorUtil.loadIterators(IteratorScope.scan, new SortedMapIterator(data()), extent, conf, new DefaultIteratorEnvironment(conf));
+      assertEquals(10, read(iter));
+      assertEquals(11, stats.getTimer("vers").getCalls());
+    } finally {
+      ScanStats.unbind();
+    }
+    assertNull(ScanStats.current());
+  }
+}
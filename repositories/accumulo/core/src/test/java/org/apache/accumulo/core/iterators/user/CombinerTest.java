@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.TreeMap;
 
@@ -44,6 +45,7 @@ import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iterators.SortedMapIterator;
 import org.apache.accumulo.core.iterators.TypedValueCombiner;
 import org.apache.accumulo.core.iterators.TypedValueCombiner.Encoder;
+import org.apache.accumulo.core.iterators.ValueFormatException;
 import org.apache.accumulo.core.iterators.system.MultiIterator;
 import org.apache.hadoop.io.Text;
 import org.junit.Assert;
@@ -788,4 +790,191 @@ public class CombinerTest {
     assertEquals(LongCombiner.safeAdd(Long.MAX_VALUE - 5, 5), Long.MAX_VALUE);
   }
   
+  private static List<Value> versions(TreeMap<Key,Value> tm, Encoder<Long> encoder, int count) {
+    List<Value> values = new ArrayList<Value>();
+    for (int i = 0; i < count; i++) {
+      // crosses the batch size and mixes small, negative and large values
+      long l = (i % 3 == 0 ? -1 : 1) * ((long) i * i * i * i * i);
+      if (i == 100)
+        l = Long.MAX_VALUE - 7;
+      Value value = new Value(encoder.encode(l));
+      tm.put(nk(1, 1, 1, count - i), value);
+      values.add(value);
+    }
+    return values;
+  }
+  
+  @Test
+  public void testPrimitiveReduce() throws IOException {
+    for (SummingCombiner.Type type : SummingCombiner.Type.values()) {
+      for (Class<? extends LongCombiner> clazz : Arrays.<Class<? extends LongCombiner>> asList(SummingCombiner.class, MaxCombiner.class, MinCombiner.class)) {
+        Encoder<Long> encoder = type == SummingCombiner.Type.VARLEN ? LongCombiner.VAR_LEN_ENCODER
+            : type == SummingCombiner.Type.FIXEDLEN ? LongCombiner.FIXED_LEN_ENCODER : LongCombiner.STRING_ENCODER;
+        TreeMap<Key,Value> tm = new TreeMap<Key,Value>();
+        List<Value> values = versions(tm, encoder, 150);
+        
+        IteratorSetting is = new IteratorSetting(1, clazz);
+        LongCombiner.setEncodingType(is, type);
+        Combiner.setColumns(is, Collections.singletonList(new IteratorSetting.Column("cf001")));
+        LongCombiner ai;
+        try {
+          ai = clazz.newInstance();
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+        ai.init(new SortedMapIterator(tm), is.getOptions(), null);
+        ai.seek(new Range(), EMPTY_COL_FAMS, false);
+        
+        // reduce(Key, Iterator) decodes into Longs for typedReduce
+        Value expected = ai.reduce(nk(1, 1, 1, 150), values.iterator());
+        assertTrue(ai.hasTop());
+        assertEquals(nk(1, 1, 1, 150), ai.getTopKey());
+        assertEquals(clazz.getSimpleName() + " " + type, encoder.decode(expected.get()), encoder.decode(ai.getTopValue().get()));
+        ai.next();
+        assertFalse(ai.hasTop());
+      }
+    }
+  }
+  
+  public static class DoubleSummingCombiner extends SummingCombiner {
+    @Override
+    public Long typedReduce(Key key, Iterator<Long> iter) {
+      return 2 * super.typedReduce(key, iter);
+    }
+  }
+  
+  @Test
+  public void testPrimitiveReduceOverridden() throws IOException {
+    TreeMap<Key,Value> tm = new TreeMap<Key,Value>();
+    nkv(tm, 1, 1, 1, 1, false, 2l, LongCombiner.FIXED_LEN_ENCODER);
+    nkv(tm, 1, 1, 1, 2, false, 3l, LongCombiner.FIXED_LEN_ENCODER);
+    
+    IteratorSetting is = new IteratorSetting(1, DoubleSummingCombiner.class);
+    LongCombiner.setEncodingType(is, SummingCombiner.Type.FIXEDLEN);
+    Combiner.setColumns(is, Collections.singletonList(new IteratorSetting.Column("cf001")));
+    Combiner ai = new DoubleSummingCombiner();
+    ai.init(new SortedMapIterator(tm), is.getOptions(), null);
+    ai.seek(new Range(), EMPTY_COL_FAMS, false);
+    
+    // a subclass that only overrides typedReduce is still reduced by it
+    assertTrue(ai.hasTop());
+    assertEquals(10l, LongCombiner.FIXED_LEN_ENCODER.decode(ai.getTopValue().get()).longValue());
+  }
+  
+  public static class PlusOneSummingCombiner extends SummingCombiner {
+    @Override
+    public Value reduce(Key key, Iterator<Value> iter) {
+      return new Value(getEncoder().encode(getEncoder().decode(super.reduce(key, iter).get()) + 1));
+    }
+  }
+  
+  public static class PlusOneSummingArrayCombiner extends SummingArrayCombiner {
+    @Override
+    public Value reduce(Key key, Iterator<Value> iter) {
+      List<Long> sums = new ArrayList<Long>(getEncoder().decode(super.reduce(key, iter).get()));
+      sums.add(1l);
+      return new Value(getEncoder().encode(sums));
+    }
+  }
+  
+  @Test
+  public void testReduceOverridden() throws IOException {
+    TreeMap<Key,Value> tm = new TreeMap<Key,Value>();
+    nkv(tm, 1, 1, 1, 1, false, 2l, LongCombiner.FIXED_LEN_ENCODER);
+    nkv(tm, 1, 1, 1, 2, false, 3l, LongCombiner.FIXED_LEN_ENCODER);
+    
+    IteratorSetting is = new IteratorSetting(1, PlusOneSummingCombiner.class);
+    LongCombiner.setEncodingType(is, SummingCombiner.Type.FIXEDLEN);
+    Combiner.setColumns(is, Collections.singletonList(new IteratorSetting.Column("cf001")));
+    Combiner ai = new PlusOneSummingCombiner();
+    ai.init(new SortedMapIterator(tm), is.getOptions(), null);
+    ai.seek(new Range(), EMPTY_COL_FAMS, false);
+    
+    // a subclass that overrides reduce is still reduced by it
+    assertTrue(ai.hasTop());
+    assertEquals(6l, LongCombiner.FIXED_LEN_ENCODER.decode(ai.getTopValue().get()).longValue());
+    
+    tm = new TreeMap<Key,Value>();
+    nkv(tm, 1, 1, 1, 1, false, nal(1l, 2l), SummingArrayCombiner.FIXED_LONG_ARRAY_ENCODER);
+    nkv(tm, 1, 1, 1, 2, false, nal(3l, 4l), SummingArrayCombiner.FIXED_LONG_ARRAY_ENCODER);
+    
+    is = new IteratorSetting(1, PlusOneSummingArrayCombiner.class);
+    SummingArrayCombiner.setEncodingType(is, SummingArrayCombiner.Type.FIXEDLEN);
+    Combiner.setColumns(is, Collections.singletonList(new IteratorSetting.Column("cf001")));
+    ai = new PlusOneSummingArrayCombiner();
+    ai.init(new SortedMapIterator(tm), is.getOptions(), null);
+    ai.seek(new Range(), EMPTY_COL_FAMS, false);
+    
+    assertTrue(ai.hasTop());
+    assertBytesEqual(SummingArrayCombiner.FIXED_LONG_ARRAY_ENCODER.encode(nal(4l, 6l, 1l)), ai.getTopValue().get());
+  }
+  
+  @Test
+  public void testPrimitiveReduceLossy() throws IOException {
+    for (SummingCombiner.Type type : Arrays.asList(SummingCombiner.Type.VARLEN, SummingCombiner.Type.FIXEDLEN)) {
+      Encoder<Long> encoder = type == SummingCombiner.Type.VARLEN ? LongCombiner.VAR_LEN_ENCODER : LongCombiner.FIXED_LEN_ENCODER;
+      TreeMap<Key,Value> tm = new TreeMap<Key,Value>();
+      nkv(tm, 1, 1, 1, 1, false, 2l, encoder);
+      // a truncated value, and one of every byte
+      tm.put(nk(1, 1, 1, 2), new Value(Arrays.copyOf(encoder.encode(Long.MAX_VALUE), 3)));
+      tm.put(nk(1, 1, 1, 3), new Value(new byte[0]));
+      nkv(tm, 1, 1, 1, 4, false, 3l, encoder);
+      
+      IteratorSetting is = new IteratorSetting(1, SummingCombiner.class);
+      LongCombiner.setEncodingType(is, type);
+      Combiner.setColumns(is, Collections.singletonList(new IteratorSetting.Column("cf001")));
+      Combiner ai = new SummingCombiner();
+      ai.init(new SortedMapIterator(tm), is.getOptions(), null);
+      try {
+        ai.seek(new Range(), EMPTY_COL_FAMS, false);
+        Assert.fail();
+      } catch (ValueFormatException e) {}
+      
+      TypedValueCombiner.setLossyness(is, true);
+      ai.init(new SortedMapIterator(tm), is.getOptions(), null);
+      ai.seek(new Range(), EMPTY_COL_FAMS, false);
+      assertTrue(ai.hasTop());
+      assertEquals(5l, encoder.decode(ai.getTopValue().get()).longValue());
+      ai.next();
+      assertFalse(ai.hasTop());
+    }
+  }
+  
+  @Test
+  public void testPrimitiveSumArrayLossy() throws IOException {
+    for (SummingArrayCombiner.Type type : Arrays.asList(SummingArrayCombiner.Type.VARLEN, SummingArrayCombiner.Type.FIXEDLEN)) {
+      Encoder<List<Long>> encoder = type == SummingArrayCombiner.Type.VARLEN ? SummingArrayCombiner.VAR_LONG_ARRAY_ENCODER
+          : SummingArrayCombiner.FIXED_LONG_ARRAY_ENCODER;
+      TreeMap<Key,Value> tm = new TreeMap<Key,Value>();
+      nkv(tm, 1, 1, 1, 1, false, nal(1l, Long.MAX_VALUE), encoder);
+      byte[] truncated = encoder.encode(nal(100l, 100l, 100l));
+      tm.put(nk(1, 1, 1, 2), new Value(Arrays.copyOf(truncated, truncated.length - 1)));
+      nkv(tm, 1, 1, 1, 3, false, nal(3l, 4l, -5l), encoder);
+      
+      IteratorSetting is = new IteratorSetting(1, SummingArrayCombiner.class);
+      SummingArrayCombiner.setEncodingType(is, type);
+      TypedValueCombiner.setLossyness(is, true);
+      Combiner.setColumns(is, Collections.singletonList(new IteratorSetting.Column("cf001")));
+      Combiner ai = new SummingArrayCombiner();
+      ai.init(new SortedMapIterator(tm), is.getOptions(), null);
+      ai.seek(new Range(), EMPTY_COL_FAMS, false);
+      
+      // the truncated value adds nothing, and the sum saturates
+      assertTrue(ai.hasTop());
+      assertBytesEqual(encoder.encode(nal(4l, Long.MAX_VALUE, -5l)), ai.getTopValue().get());
+      ai.next();
+      assertFalse(ai.hasTop());
+    }
+  }
+  
+  @Test
+  public void testVarLenDecode() {
+    long[] longs = {0, 1, -1, 127, 128, -112, -113, 255, 256, -256, -257, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+    for (long l : longs) {
+      byte[] b = LongCombiner.VAR_LEN_ENCODER.encode(l);
+      byte[] offset = new byte[b.length + 2];
+      System.arraycopy(b, 0, offset, 2, b.length);
+      assertEquals(l, VarLenEncoder.decode(offset, 2));
+    }
+  }
 }
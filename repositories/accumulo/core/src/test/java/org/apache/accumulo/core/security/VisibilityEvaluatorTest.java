@@ -25,6 +25,7 @@ import static org.junit.Assert.fail;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 
+import org.apache.accumulo.core.data.ArrayByteSequence;
 import org.apache.accumulo.core.util.BadArgumentException;
 import org.apache.accumulo.core.util.ByteArraySet;
 import org.junit.Test;
@@ -102,6 +103,35 @@ public class VisibilityEvaluatorTest {
     assertTrue(ct.evaluate(new ColumnVisibility("(" + quote("A#C") + ")")));
   }
   
+  @Test
+  public void testCompiledEvaluation() throws VisibilityParseException {
+    VisibilityEvaluator ct = new VisibilityEvaluator(new Authorizations("one", "two", "three", "four", "A#C", "A\"C"));
+    
+    for (String marking : new String[] {"one", "five", "one|five", "five|one", "one&five", "(one)", "(one&two)|(foo&bar)", "(one|foo)&three", "one|foo|bar",
+        "((one|foo)|bar)&two", "((one|foo)|bar)&goober", "one&two&three&four", "one&two&three&five", quote("A#C") + "|" + quote("A?C"),
+        quote("A\"C") + "&" + quote("A#C"), quote("A#C") + "&B"}) {
+      ColumnVisibility cv = new ColumnVisibility(marking);
+      boolean expected = ct.evaluate(cv);
+      assertEquals(marking, expected, ct.evaluate(new ArrayByteSequence(marking)));
+      // evaluated again from the shared compiled form
+      assertEquals(marking, expected, ct.evaluate(new ArrayByteSequence(("x" + marking + "x").getBytes(), 1, marking.length())));
+      assertEquals(marking, expected, CompiledVisibility.compile(cv).evaluate(new Authorizations("one", "two", "three", "four", "A#C", "A\"C")));
+    }
+    
+    // compiled expressions are shared, but each evaluator uses its own authorizations
+    VisibilityEvaluator other = new VisibilityEvaluator(new Authorizations("five"));
+    assertTrue(ct.evaluate(new ArrayByteSequence("one|five")));
+    assertTrue(other.evaluate(new ArrayByteSequence("one|five")));
+    assertFalse(other.evaluate(new ArrayByteSequence("one")));
+    
+    try {
+      ct.evaluate(new ArrayByteSequence("one|(two"));
+      fail("bad expression failed to throw");
+    } catch (BadArgumentException e) {
+      // all is good
+    }
+  }
+  
   @Test
   public void testQuote() {
     assertEquals("\"A#C\"", quote("A#C"));
@@ -21,14 +21,30 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.accumulo.fate.util.Daemon;
 import org.apache.log4j.Logger;
+import org.apache.zookeeper.AsyncCallback.ChildrenCallback;
+import org.apache.zookeeper.AsyncCallback.DataCallback;
+import org.apache.zookeeper.AsyncCallback.StatCallback;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.KeeperException.Code;
 import org.apache.zookeeper.WatchedEvent;
@@ -39,16 +55,82 @@ import org.apache.zookeeper.data.Stat;
 /**
  * Caches values stored in zookeeper and keeps them up to date as they change in zookeeper.
  * 
+ * Cached values are read without locking. When zookeeper reports that a cached node changed, the old value is served until a background thread has read the
+ * new one. The thread reads all nodes changed since the last pass with asynchronous calls, and passes the events on to the external watcher once the new values
+ * are cached, so a watcher that reads the cache sees the change it was told about. The threads are shared by all caches and exit when idle, so caches that are
+ * created for a single use do not keep threads around.
  */
 public class ZooCache {
   private static final Logger log = Logger.getLogger(ZooCache.class);
   
+  // the most events handled in one pass of the refresh thread, and how long it waits for zookeeper to answer
+  private static final int MAX_REFRESH_BATCH = 1000;
+  private static final long REFRESH_TIMEOUT = 30 * 1000;
+  
+  // refreshes every cache, each by at most one thread at a time
+  static final int REFRESH_THREADS = 4;
+  private static final ThreadPoolExecutor refreshPool = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS, 60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Daemon(r);
+          t.setName("ZooCache refresh");
+          return t;
+        }
+      });
+  static {
+    refreshPool.allowCoreThreadTimeOut(true);
+  }
+  
   private ZCacheWatcher watcher = new ZCacheWatcher();
   private Watcher externalWatcher = null;
   
-  private HashMap<String,byte[]> cache;
-  private HashMap<String,Stat> statCache;
-  private HashMap<String,List<String>> childrenCache;
+  private static class NodeData {
+    final byte[] data;
+    final Stat stat;
+    
+    NodeData(byte[] data, Stat stat) {
+      this.data = data;
+      this.stat = stat;
+    }
+  }
+  
+  private ConcurrentHashMap<String,NodeData> cache;
+  private ConcurrentHashMap<String,List<String>> childrenCache;
+  
+  /*
+   * Counts invalidations. A value read from zookeeper is only cached if its node was not invalidated after the read started, otherwise a value read before a
+   * change could replace the new one. Guarded by this object along with the maps it is compared to.
+   */
+  private AtomicLong updateCount = new AtomicLong();
+  private long clearedAt = 0;
+  private HashMap<String,Long> invalidatedAt = new HashMap<String,Long>();
+  // the update count each read in progress started at, and how many reads started at it
+  private TreeMap<Long,Integer> readsInProgress = new TreeMap<Long,Integer>();
+  
+  private static class QueuedEvent {
+    final WatchedEvent event;
+    final long time;
+    
+    QueuedEvent(WatchedEvent event, long time) {
+      this.event = event;
+      this.time = time;
+    }
+  }
+  
+  private LinkedList<QueuedEvent> events = new LinkedList<QueuedEvent>();
+  // whether a pass over the events of this cache is queued or running
+  private boolean refreshScheduled = false;
+  private boolean closed = false;
+  // when the oldest event whose node has not been refreshed was received, or 0
+  private volatile long oldestUnprocessed = 0;
+  
+  private AtomicLong hits = new AtomicLong();
+  private AtomicLong misses = new AtomicLong();
+  private AtomicLong refreshes = new AtomicLong();
+  private AtomicLong refreshBatches = new AtomicLong();
+  private AtomicLong refreshLatency = new AtomicLong();
+  private AtomicLong eventsProcessed = new AtomicLong();
   
   private ZooReader zReader;
   
@@ -68,7 +150,7 @@ public class ZooCache {
         case NodeChildrenChanged:
         case NodeCreated:
         case NodeDeleted:
-          remove(event.getPath());
+          invalidate(event.getPath());
           break;
         case None:
           switch (event.getState()) {
@@ -92,9 +174,7 @@ public class ZooCache {
           log.warn("Unhandled: " + event);
       }
       
-      if (externalWatcher != null) {
-        externalWatcher.process(event);
-      }
+      enqueue(event);
     }
   }
   
@@ -108,17 +188,16 @@ public class ZooCache {
   
   public ZooCache(ZooReader reader, Watcher watcher) {
     this.zReader = reader;
-    this.cache = new HashMap<String,byte[]>();
-    this.statCache = new HashMap<String,Stat>();
-    this.childrenCache = new HashMap<String,List<String>>();
+    this.cache = new ConcurrentHashMap<String,NodeData>();
+    this.childrenCache = new ConcurrentHashMap<String,List<String>>();
     this.externalWatcher = watcher;
   }
   
-  private static interface ZooRunnable {
-    void run(ZooKeeper zooKeeper) throws KeeperException, InterruptedException;
+  private static interface ZooRunnable<T> {
+    T run(ZooKeeper zooKeeper) throws KeeperException, InterruptedException;
   }
   
-  private synchronized void retry(ZooRunnable op) {
+  private <T> T retry(ZooRunnable<T> op) {
     
     int sleepTime = 100;
     
@@ -127,8 +206,7 @@ public class ZooCache {
       ZooKeeper zooKeeper = getZooKeeper();
       
       try {
-        op.run(zooKeeper);
-        return;
+        return op.run(zooKeeper);
         
       } catch (KeeperException e) {
         if (e.code() == Code.NONODE) {
@@ -142,8 +220,7 @@ public class ZooCache {
       }
       
       try {
-        // do not hold lock while sleeping
-        wait(sleepTime);
+        Thread.sleep(sleepTime);
       } catch (InterruptedException e) {
         e.printStackTrace();
       }
@@ -153,128 +230,234 @@ public class ZooCache {
     }
   }
   
-  public synchronized List<String> getChildren(final String zPath) {
+  public List<String> getChildren(final String zPath) {
     
-    ZooRunnable zr = new ZooRunnable() {
+    List<String> children = childrenCache.get(zPath);
+    if (children != null) {
+      hits.incrementAndGet();
+      return children;
+    }
+    
+    misses.incrementAndGet();
+    
+    ZooRunnable<List<String>> zr = new ZooRunnable<List<String>>() {
       
       @Override
-      public void run(ZooKeeper zooKeeper) throws KeeperException, InterruptedException {
+      public List<String> run(ZooKeeper zooKeeper) throws KeeperException, InterruptedException {
         
-        if (childrenCache.containsKey(zPath))
-          return;
+        List<String> children = childrenCache.get(zPath);
+        if (children != null)
+          return children;
         
+        long start = startRead();
         try {
-          List<String> children = zooKeeper.getChildren(zPath, watcher);
-          childrenCache.put(zPath, children);
-        } catch (KeeperException ke) {
-          if (ke.code() != Code.NONODE) {
-            throw ke;
+          try {
+            children = Collections.unmodifiableList(zooKeeper.getChildren(zPath, watcher));
+          } catch (KeeperException ke) {
+            if (ke.code() != Code.NONODE) {
+              throw ke;
+            }
+            return null;
           }
+          
+          if (!putChildren(zPath, children, start, false))
+            throw new ConcurrentModificationException();
+          return children;
+        } finally {
+          endRead(start);
         }
       }
       
     };
     
-    retry(zr);
-    
-    List<String> children = childrenCache.get(zPath);
-    if (children == null) {
-      return null;
-    }
-    return Collections.unmodifiableList(children);
+    return retry(zr);
   }
   
-  public synchronized byte[] get(final String zPath) {
+  public byte[] get(final String zPath) {
     return get(zPath, null);
   }
   
-  public synchronized byte[] get(final String zPath, Stat stat) {
-    ZooRunnable zr = new ZooRunnable() {
+  public byte[] get(final String zPath, Stat stat) {
+    NodeData node = cache.get(zPath);
+    
+    if (node != null) {
+      hits.incrementAndGet();
+    } else {
+      misses.incrementAndGet();
       
-      @Override
-      public void run(ZooKeeper zooKeeper) throws KeeperException, InterruptedException {
-        
-        if (cache.containsKey(zPath))
-          return;
-        
-        /*
-         * The following call to exists() is important, since we are caching that a node does not exist. Once the node comes into existance, it will be added to
-         * the cache. But this notification of a node coming into existance will only be given if exists() was previously called.
-         * 
-         * If the call to exists() is bypassed and only getData() is called with a special case that looks for Code.NONODE in the KeeperException, then
-         * non-existance can not be cached.
-         */
+      ZooRunnable<NodeData> zr = new ZooRunnable<NodeData>() {
         
-        Stat stat = zooKeeper.exists(zPath, watcher);
-        
-        byte[] data = null;
-        
-        if (stat == null) {
-          if (log.isTraceEnabled())
-            log.trace("zookeeper did not contain " + zPath);
-        } else {
+        @Override
+        public NodeData run(ZooKeeper zooKeeper) throws KeeperException, InterruptedException {
+          
+          NodeData node = cache.get(zPath);
+          if (node != null)
+            return node;
+          
+          long start = startRead();
           try {
-            data = zooKeeper.getData(zPath, watcher, stat);
-          } catch (KeeperException.BadVersionException e1) {
-            throw new ConcurrentModificationException();
-          } catch (KeeperException.NoNodeException e2) {
-            throw new ConcurrentModificationException();
+            return read(zooKeeper, start);
+          } finally {
+            endRead(start);
           }
-          if (log.isTraceEnabled())
-            log.trace("zookeeper contained " + zPath + " " + (data == null ? null : new String(data)));
         }
-        if (log.isTraceEnabled())
-          log.trace("putting " + zPath + " " + (data == null ? null : new String(data)) + " in cache");
-        put(zPath, data, stat);
-      }
-      
-    };
-    
-    retry(zr);
-    
-    if (stat != null) {
-      Stat cstat = statCache.get(zPath);
-      if (cstat != null) {
-        try {
-          ByteArrayOutputStream baos = new ByteArrayOutputStream();
-          DataOutputStream dos = new DataOutputStream(baos);
-          cstat.write(dos);
-          dos.close();
+        
+        private NodeData read(ZooKeeper zooKeeper, long start) throws KeeperException, InterruptedException {
+          /*
+           * The following call to exists() is important, since we are caching that a node does not exist. Once the node comes into existance, it will be added
+           * to the cache. But this notification of a node coming into existance will only be given if exists() was previously called.
+           * 
+           * If the call to exists() is bypassed and only getData() is called with a special case that looks for Code.NONODE in the KeeperException, then
+           * non-existance can not be cached.
+           */
+          
+          Stat stat = zooKeeper.exists(zPath, watcher);
+          
+          byte[] data = null;
           
-          ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
-          DataInputStream dis = new DataInputStream(bais);
-          stat.readFields(dis);
+          if (stat == null) {
+            if (log.isTraceEnabled())
+              log.trace("zookeeper did not contain " + zPath);
+          } else {
+            try {
+              data = zooKeeper.getData(zPath, watcher, stat);
+            } catch (KeeperException.BadVersionException e1) {
+              throw new ConcurrentModificationException();
+            } catch (KeeperException.NoNodeException e2) {
+              throw new ConcurrentModificationException();
+            }
+            if (log.isTraceEnabled())
+              log.trace("zookeeper contained " + zPath + " " + (data == null ? null : new String(data)));
+          }
+          if (log.isTraceEnabled())
+            log.trace("putting " + zPath + " " + (data == null ? null : new String(data)) + " in cache");
           
-          dis.close();
-        } catch (IOException e) {
-          throw new RuntimeException(e);
+          NodeData node = new NodeData(data, stat);
+          if (!put(zPath, node, start, false))
+            throw new ConcurrentModificationException();
+          return node;
         }
+        
+      };
+      
+      node = retry(zr);
+    }
+    
+    if (stat != null && node.stat != null) {
+      try {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        node.stat.write(dos);
+        dos.close();
+        
+        ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
+        DataInputStream dis = new DataInputStream(bais);
+        stat.readFields(dis);
+        
+        dis.close();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
       }
     }
     
-    return cache.get(zPath);
+    return node.data;
   }
   
-  private synchronized void put(String zPath, byte[] data, Stat stat) {
-    cache.put(zPath, data);
-    statCache.put(zPath, stat);
+  /**
+   * @return the update count to check the values read against
+   */
+  private synchronized long startRead() {
+    long start = updateCount.get();
+    Integer reads = readsInProgress.get(start);
+    readsInProgress.put(start, reads == null ? 1 : reads + 1);
+    return start;
+  }
+  
+  /**
+   * Forgets the invalidations no read in progress can be affected by anymore.
+   */
+  private synchronized void endRead(long start) {
+    int reads = readsInProgress.get(start);
+    if (reads == 1)
+      readsInProgress.remove(start);
+    else
+      readsInProgress.put(start, reads - 1);
+    
+    if (readsInProgress.isEmpty()) {
+      invalidatedAt.clear();
+    } else if (!invalidatedAt.isEmpty()) {
+      long oldest = readsInProgress.firstKey();
+      for (Iterator<Long> i = invalidatedAt.values().iterator(); i.hasNext();)
+        if (i.next() <= oldest)
+          i.remove();
+    }
+  }
+  
+  private void invalidated(String zPath) {
+    long stamp = updateCount.incrementAndGet();
+    // reads started from here on can not see an older value, so only the reads in progress need to check
+    if (!readsInProgress.isEmpty())
+      invalidatedAt.put(zPath, stamp);
+  }
+  
+  synchronized int getInvalidationCount() {
+    return invalidatedAt.size();
+  }
+  
+  private boolean isCurrent(String zPath, long start) {
+    Long invalidated = invalidatedAt.get(zPath);
+    return clearedAt <= start && (invalidated == null || invalidated <= start);
+  }
+  
+  /**
+   * Caches data read from zookeeper, unless its node was invalidated after the read started.
+   * 
+   * @param refresh
+   *          only replace data that is already cached
+   */
+  private synchronized boolean put(String zPath, NodeData node, long start, boolean refresh) {
+    if (!isCurrent(zPath, start) || (refresh && !cache.containsKey(zPath)))
+      return false;
+    cache.put(zPath, node);
+    return true;
+  }
+  
+  private synchronized boolean putChildren(String zPath, List<String> children, long start, boolean refresh) {
+    if (!isCurrent(zPath, start) || (refresh && !childrenCache.containsKey(zPath)))
+      return false;
+    if (children == null)
+      childrenCache.remove(zPath);
+    else
+      childrenCache.put(zPath, children);
+    return true;
+  }
+  
+  /**
+   * Marks a node as changed. Its cached values are kept until they are refreshed.
+   */
+  private synchronized void invalidate(String zPath) {
+    if (log.isTraceEnabled())
+      log.trace("invalidating " + zPath + " in cache");
+    invalidated(zPath);
   }
   
   private synchronized void remove(String zPath) {
     if (log.isTraceEnabled())
       log.trace("removing " + zPath + " from cache");
+    invalidated(zPath);
     cache.remove(zPath);
     childrenCache.remove(zPath);
-    statCache.remove(zPath);
   }
   
   public synchronized void clear() {
+    clearedAt = updateCount.incrementAndGet();
+    invalidatedAt.clear();
     cache.clear();
     childrenCache.clear();
-    statCache.clear();
   }
   
   public synchronized void clear(String zPath) {
+    clearedAt = updateCount.incrementAndGet();
     
     for (Iterator<String> i = cache.keySet().iterator(); i.hasNext();) {
       String path = i.next();
@@ -287,14 +470,224 @@ public class ZooCache {
       if (path.startsWith(zPath))
         i.remove();
     }
+  }
+  
+  private synchronized void enqueue(WatchedEvent event) {
+    if (closed)
+      return;
     
-    for (Iterator<String> i = statCache.keySet().iterator(); i.hasNext();) {
-      String path = i.next();
-      if (path.startsWith(zPath))
-        i.remove();
+    long now = System.currentTimeMillis();
+    if (events.isEmpty() && oldestUnprocessed == 0)
+      oldestUnprocessed = now;
+    events.add(new QueuedEvent(event, now));
+    
+    if (!refreshScheduled) {
+      refreshScheduled = true;
+      refreshPool.execute(refresher);
+    }
+  }
+  
+  // handles one batch of events per run, so a busy cache does not keep the shared threads from the others
+  private final Runnable refresher = new Runnable() {
+    @Override
+    public void run() {
+      try {
+        List<QueuedEvent> batch = takeEvents();
+        if (!batch.isEmpty())
+          refresh(batch);
+      } catch (InterruptedException e) {
+        log.warn("Refresh of zookeeper cache interrupted", e);
+      } catch (RuntimeException e) {
+        log.error("Failed to refresh zookeeper cache", e);
+      } finally {
+        refreshDone();
+      }
+    }
+  };
+  
+  /**
+   * Stops refreshing the cache. Changes zookeeper reports afterwards are neither refreshed nor passed on to the watcher.
+   */
+  public synchronized void close() {
+    closed = true;
+    events.clear();
+    oldestUnprocessed = 0;
+  }
+  
+  private synchronized void refreshDone() {
+    if (!closed && !events.isEmpty())
+      refreshPool.execute(refresher);
+    else
+      refreshScheduled = false;
+  }
+  
+  private synchronized List<QueuedEvent> takeEvents() {
+    List<QueuedEvent> batch = new ArrayList<QueuedEvent>(Math.min(events.size(), MAX_REFRESH_BATCH));
+    while (!events.isEmpty() && batch.size() < MAX_REFRESH_BATCH)
+      batch.add(events.removeFirst());
+    return batch;
+  }
+  
+  /**
+   * Reads the current values of every cached node the events are about, then passes the events on to the external watcher.
+   */
+  private void refresh(List<QueuedEvent> batch) throws InterruptedException {
+    // the events were all received before this, so anything read from here on is at least as new as they are
+    long start = startRead();
+    try {
+      refresh(batch, start);
+    } finally {
+      endRead(start);
+    }
+    
+    refreshBatches.incrementAndGet();
+    
+    synchronized (this) {
+      oldestUnprocessed = events.isEmpty() ? 0 : events.getFirst().time;
+    }
+    
+    long now = System.currentTimeMillis();
+    for (QueuedEvent qe : batch) {
+      refreshLatency.addAndGet(now - qe.time);
+      eventsProcessed.incrementAndGet();
+      
+      if (externalWatcher != null) {
+        try {
+          externalWatcher.process(qe.event);
+        } catch (RuntimeException e) {
+          log.warn("Watcher failed to process " + qe.event, e);
+        }
+      }
+    }
+  }
+  
+  private void refresh(List<QueuedEvent> batch, long start) throws InterruptedException {
+    Set<String> dataPaths = new LinkedHashSet<String>();
+    Set<String> childPaths = new LinkedHashSet<String>();
+    for (QueuedEvent qe : batch) {
+      String path = qe.event.getPath();
+      if (path == null)
+        continue;
+      if (cache.containsKey(path))
+        dataPaths.add(path);
+      if (childrenCache.containsKey(path))
+        childPaths.add(path);
+    }
+    
+    if (dataPaths.size() + childPaths.size() > 0) {
+      final ConcurrentHashMap<String,NodeData> data = new ConcurrentHashMap<String,NodeData>();
+      final ConcurrentHashMap<String,List<String>> children = new ConcurrentHashMap<String,List<String>>();
+      final List<String> deleted = Collections.synchronizedList(new ArrayList<String>());
+      final CountDownLatch latch = new CountDownLatch(dataPaths.size() + childPaths.size());
+      final ZooKeeper zooKeeper = getZooKeeper();
+      
+      final StatCallback existsCallback = new StatCallback() {
+        @Override
+        public void processResult(int rc, String path, Object ctx, Stat stat) {
+          // the node was created after it was found missing, so it is left to be read again
+          if (Code.get(rc) == Code.NONODE)
+            data.put(path, new NodeData(null, null));
+          latch.countDown();
+        }
+      };
+      
+      DataCallback dataCallback = new DataCallback() {
+        @Override
+        public void processResult(int rc, String path, Object ctx, byte[] bytes, Stat stat) {
+          if (Code.get(rc) == Code.OK) {
+            data.put(path, new NodeData(bytes, stat));
+          } else if (Code.get(rc) == Code.NONODE) {
+            // only exists() leaves a watch that is told when the node is created
+            zooKeeper.exists(path, watcher, existsCallback, null);
+            return;
+          }
+          latch.countDown();
+        }
+      };
+      
+      ChildrenCallback childrenCallback = new ChildrenCallback() {
+        @Override
+        public void processResult(int rc, String path, Object ctx, List<String> list) {
+          if (Code.get(rc) == Code.OK)
+            children.put(path, Collections.unmodifiableList(list));
+          else if (Code.get(rc) == Code.NONODE)
+            deleted.add(path);
+          latch.countDown();
+        }
+      };
+      
+      for (String path : dataPaths)
+        zooKeeper.getData(path, watcher, dataCallback, null);
+      for (String path : childPaths)
+        zooKeeper.getChildren(path, watcher, childrenCallback, null);
+      
+      if (!latch.await(REFRESH_TIMEOUT, TimeUnit.MILLISECONDS))
+        log.warn("Timed out refreshing " + latch.getCount() + " zookeeper nodes");
+      
+      // nodes that could not be read are dropped, so the next reader reads them
+      for (String path : dataPaths) {
+        NodeData node = data.get(path);
+        if (node == null)
+          remove(path);
+        else
+          put(path, node, start, true);
+      }
+      
+      for (String path : childPaths) {
+        List<String> list = children.get(path);
+        if (list != null)
+          putChildren(path, list, start, true);
+        else if (deleted.contains(path))
+          putChildren(path, null, start, true);
+        else
+          remove(path);
+      }
+      
+      refreshes.addAndGet(dataPaths.size() + childPaths.size());
     }
   }
   
+  /**
+   * @return the number of reads answered from the cache
+   */
+  public long getCacheHits() {
+    return hits.get();
+  }
+  
+  /**
+   * @return the number of reads that had to go to zookeeper
+   */
+  public long getCacheMisses() {
+    return misses.get();
+  }
+  
+  /**
+   * @return the number of nodes read again after zookeeper reported a change
+   */
+  public long getRefreshCount() {
+    return refreshes.get();
+  }
+  
+  public long getRefreshBatchCount() {
+    return refreshBatches.get();
+  }
+  
+  /**
+   * @return the average time in milliseconds between zookeeper reporting a change and the changed values being cached
+   */
+  public double getAverageRefreshLatency() {
+    long processed = eventsProcessed.get();
+    return processed == 0 ? 0 : refreshLatency.get() / (double) processed;
+  }
+  
+  /**
+   * @return how long in milliseconds the oldest change zookeeper reported has been waiting to be refreshed, or 0 if every change was refreshed
+   */
+  public long getStaleness() {
+    long oldest = oldestUnprocessed;
+    return oldest == 0 ? 0 : System.currentTimeMillis() - oldest;
+  }
+  
   private static Map<String,ZooCache> instances = new HashMap<String,ZooCache>();
   
   public static synchronized ZooCache getInstance(String zooKeepers, int sessionTimeout) {
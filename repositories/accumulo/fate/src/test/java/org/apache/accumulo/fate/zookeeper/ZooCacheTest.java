@@ -0,0 +1,348 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.fate.zookeeper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.zookeeper.AsyncCallback.ChildrenCallback;
+import org.apache.zookeeper.AsyncCallback.DataCallback;
+import org.apache.zookeeper.AsyncCallback.StatCallback;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.apache.zookeeper.Watcher.Event.KeeperState;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.data.Stat;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZooCacheTest {
+  
+  /**
+   * Keeps nodes in memory and answers asynchronous calls immediately. Only the calls the cache makes are supported.
+   */
+  static class MemoryZooKeeper extends ZooKeeper {
+    Map<String,byte[]> nodes = new HashMap<String,byte[]>();
+    Map<String,Set<Watcher>> dataWatches = new HashMap<String,Set<Watcher>>();
+    Map<String,Set<Watcher>> childWatches = new HashMap<String,Set<Watcher>>();
+    AtomicInteger syncReads = new AtomicInteger();
+    AtomicInteger asyncReads = new AtomicInteger();
+    
+    MemoryZooKeeper() throws IOException {
+      super("localhost:1", 30000, new Watcher() {
+        @Override
+        public void process(WatchedEvent event) {}
+      });
+    }
+    
+    private synchronized void watch(Map<String,Set<Watcher>> watches, String path, Watcher watcher) {
+      Set<Watcher> set = watches.get(path);
+      if (set == null) {
+        set = new HashSet<Watcher>();
+        watches.put(path, set);
+      }
+      set.add(watcher);
+    }
+    
+    private void fire(Map<String,Set<Watcher>> watches, String path, EventType type) {
+      Set<Watcher> set;
+      synchronized (this) {
+        set = watches.remove(path);
+      }
+      if (set != null)
+        for (Watcher watcher : set)
+          watcher.process(new WatchedEvent(type, KeeperState.SyncConnected, path));
+    }
+    
+    private static String parent(String path) {
+      return path.substring(0, Math.max(1, path.lastIndexOf('/')));
+    }
+    
+    private synchronized List<String> children(String path) throws KeeperException {
+      if (!nodes.containsKey(path))
+        throw KeeperException.create(Code.NONODE, path);
+      TreeSet<String> children = new TreeSet<String>();
+      for (String node : nodes.keySet())
+        if (!node.equals(path) && parent(node).equals(path))
+          children.add(node.substring(node.lastIndexOf('/') + 1));
+      return new ArrayList<String>(children);
+    }
+    
+    void set(String path, String value) {
+      boolean created;
+      synchronized (this) {
+        created = nodes.put(path, value.getBytes()) == null;
+      }
+      fire(dataWatches, path, created ? EventType.NodeCreated : EventType.NodeDataChanged);
+      if (created)
+        fire(childWatches, parent(path), EventType.NodeChildrenChanged);
+    }
+    
+    void delete(String path) {
+      synchronized (this) {
+        nodes.remove(path);
+      }
+      fire(dataWatches, path, EventType.NodeDeleted);
+      fire(childWatches, path, EventType.NodeDeleted);
+      fire(childWatches, parent(path), EventType.NodeChildrenChanged);
+    }
+    
+    @Override
+    public Stat exists(String path, Watcher watcher) {
+      syncReads.incrementAndGet();
+      watch(dataWatches, path, watcher);
+      synchronized (this) {
+        return nodes.containsKey(path) ? new Stat() : null;
+      }
+    }
+    
+    @Override
+    public byte[] getData(String path, Watcher watcher, Stat stat) throws KeeperException {
+      syncReads.incrementAndGet();
+      synchronized (this) {
+        if (!nodes.containsKey(path))
+          throw KeeperException.create(Code.NONODE, path);
+        watch(dataWatches, path, watcher);
+        return nodes.get(path);
+      }
+    }
+    
+    @Override
+    public List<String> getChildren(String path, Watcher watcher) throws KeeperException {
+      syncReads.incrementAndGet();
+      List<String> children = children(path);
+      watch(childWatches, path, watcher);
+      return children;
+    }
+    
+    @Override
+    public void exists(String path, Watcher watcher, StatCallback cb, Object ctx) {
+      asyncReads.incrementAndGet();
+      watch(dataWatches, path, watcher);
+      boolean exists;
+      synchronized (this) {
+        exists = nodes.containsKey(path);
+      }
+      cb.processResult(exists ? Code.OK.intValue() : Code.NONODE.intValue(), path, ctx, exists ? new Stat() : null);
+    }
+    
+    @Override
+    public void getData(String path, Watcher watcher, DataCallback cb, Object ctx) {
+      asyncReads.incrementAndGet();
+      byte[] data;
+      synchronized (this) {
+        data = nodes.get(path);
+        if (data != null)
+          watch(dataWatches, path, watcher);
+      }
+      cb.processResult(data != null ? Code.OK.intValue() : Code.NONODE.intValue(), path, ctx, data, data != null ? new Stat() : null);
+    }
+    
+    @Override
+    public void getChildren(String path, Watcher watcher, ChildrenCallback cb, Object ctx) {
+      asyncReads.incrementAndGet();
+      try {
+        List<String> children = children(path);
+        watch(childWatches, path, watcher);
+        cb.processResult(Code.OK.intValue(), path, ctx, children);
+      } catch (KeeperException e) {
+        cb.processResult(e.code().intValue(), path, ctx, null);
+      }
+    }
+  }
+  
+  private MemoryZooKeeper zk;
+  private ZooReader reader;
+  private ZooCache cache;
+  private LinkedBlockingQueue<String> seen = new LinkedBlockingQueue<String>();
+  
+  @Before
+  public void setUp() throws Exception {
+    zk = new MemoryZooKeeper();
+    zk.set("/p", "parent");
+    zk.set("/p/a", "1");
+    zk.set("/p/b", "2");
+    
+    reader = new ZooReader("localhost:1", 30000) {
+      @Override
+      protected ZooKeeper getZooKeeper() {
+        return zk;
+      }
+    };
+    
+    // records what the cache holds when the watcher is told about a change
+    cache = new ZooCache(reader, new Watcher() {
+      @Override
+      public void process(WatchedEvent event) {
+        if (event.getType() == EventType.NodeChildrenChanged) {
+          seen.add(event.getPath() + " " + cache.getChildren(event.getPath()));
+        } else {
+          byte[] data = cache.get(event.getPath());
+          seen.add(event.getPath() + " " + (data == null ? null : new String(data)));
+        }
+      }
+    });
+  }
+  
+  @After
+  public void tearDown() throws Exception {
+    cache.close();
+    zk.close();
+  }
+  
+  private String nextSeen() throws InterruptedException {
+    String s = seen.poll(10, TimeUnit.SECONDS);
+    Assert.assertNotNull("watcher was not called", s);
+    return s;
+  }
+  
+  @Test
+  public void testCachedReads() {
+    Assert.assertEquals("1", new String(cache.get("/p/a")));
+    Assert.assertEquals("1", new String(cache.get("/p/a")));
+    Assert.assertNull(cache.get("/p/c"));
+    Assert.assertNull(cache.get("/p/c"));
+    Assert.assertEquals(2, cache.getChildren("/p").size());
+    Assert.assertEquals(2, cache.getChildren("/p").size());
+    
+    // exists and getData for /p/a, exists for /p/c and getChildren for /p
+    Assert.assertEquals(4, zk.syncReads.get());
+    Assert.assertEquals(3, cache.getCacheMisses());
+    Assert.assertEquals(3, cache.getCacheHits());
+  }
+  
+  @Test
+  public void testRefresh() throws Exception {
+    cache.get("/p/a");
+    int syncReads = zk.syncReads.get();
+    
+    zk.set("/p/a", "3");
+    // the watcher is told about the change only once the new value is cached
+    Assert.assertEquals("/p/a 3", nextSeen());
+    Assert.assertEquals("3", new String(cache.get("/p/a")));
+    
+    zk.set("/p/a", "4");
+    Assert.assertEquals("/p/a 4", nextSeen());
+    
+    // refreshes are read asynchronously, readers never went to zookeeper
+    Assert.assertEquals(syncReads, zk.syncReads.get());
+    Assert.assertEquals(2, zk.asyncReads.get());
+    Assert.assertEquals(2, cache.getRefreshCount());
+    Assert.assertEquals(0, cache.getStaleness());
+  }
+  
+  @Test
+  public void testCreateAndDelete() throws Exception {
+    Assert.assertNull(cache.get("/p/c"));
+    Assert.assertEquals(2, cache.getChildren("/p").size());
+    
+    zk.set("/p/c", "5");
+    List<String> events = new ArrayList<String>();
+    events.add(nextSeen());
+    events.add(nextSeen());
+    Assert.assertTrue(events.contains("/p/c 5"));
+    Assert.assertTrue(events.contains("/p [a, b, c]"));
+    
+    zk.delete("/p/c");
+    events.clear();
+    events.add(nextSeen());
+    events.add(nextSeen());
+    Assert.assertTrue(events.contains("/p/c null"));
+    Assert.assertTrue(events.contains("/p [a, b]"));
+    Assert.assertNull(cache.get("/p/c"));
+  }
+  
+  @Test
+  public void testClear() throws Exception {
+    cache.get("/p/a");
+    cache.clear();
+    int syncReads = zk.syncReads.get();
+    Assert.assertEquals("1", new String(cache.get("/p/a")));
+    Assert.assertEquals(syncReads + 2, zk.syncReads.get());
+  }
+  
+  @Test
+  public void testInvalidationsAreForgotten() throws Exception {
+    cache.get("/p/a");
+    
+    for (int i = 0; i < 10; i++) {
+      zk.set("/p/a", "" + i);
+      Assert.assertEquals("/p/a " + i, nextSeen());
+    }
+    
+    // no read is in progress that a change could have raced with
+    Assert.assertEquals(0, cache.getInvalidationCount());
+  }
+  
+  private static int countRefreshThreads() {
+    int count = 0;
+    for (Thread t : Thread.getAllStackTraces().keySet())
+      if (t.getName().equals("ZooCache refresh") && t.isAlive())
+        count++;
+    return count;
+  }
+  
+  @Test
+  public void testClose() throws Exception {
+    cache.get("/p/a");
+    zk.set("/p/a", "3");
+    Assert.assertEquals("/p/a 3", nextSeen());
+    long batches = cache.getRefreshBatchCount();
+    cache.close();
+    
+    // changes are no longer refreshed or passed on
+    zk.set("/p/a", "4");
+    Assert.assertNull(seen.poll(100, TimeUnit.MILLISECONDS));
+    Assert.assertEquals("3", new String(cache.get("/p/a")));
+    Assert.assertEquals(batches, cache.getRefreshBatchCount());
+  }
+  
+  @Test
+  public void testSharedRefreshThreads() throws Exception {
+    List<ZooCache> caches = new ArrayList<ZooCache>();
+    for (int i = 0; i < 20; i++) {
+      ZooCache zc = new ZooCache(reader, null);
+      zc.get("/p/a");
+      caches.add(zc);
+    }
+    
+    zk.set("/p/a", "3");
+    for (ZooCache zc : caches) {
+      for (int i = 0; i < 1000 && zc.getRefreshBatchCount() == 0; i++)
+        Thread.sleep(10);
+      Assert.assertEquals("3", new String(zc.get("/p/a")));
+      zc.close();
+    }
+    
+    // caches do not get a thread each
+    Assert.assertTrue(countRefreshThreads() <= ZooCache.REFRESH_THREADS);
+  }
+}
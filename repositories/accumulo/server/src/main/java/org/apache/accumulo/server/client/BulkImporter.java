@@ -125,6 +125,7 @@ public class BulkImporter {
     AssignmentStats assignmentStats = new AssignmentStats(paths.size());
     
     final Map<Path,List<KeyExtent>> completeFailures = Collections.synchronizedSortedMap(new TreeMap<Path,List<KeyExtent>>());
+    final Map<Path,Map<KeyExtent,Long>> tabletSizes = Collections.synchronizedMap(new HashMap<Path,Map<KeyExtent,Long>>());
     
     if (!fs.exists(failureDir)) {
       log.error(failureDir + " does not exist");
@@ -146,7 +147,9 @@ public class BulkImporter {
           public void run() {
             List<TabletLocation> tabletsToAssignMapFileTo = Collections.emptyList();
             try {
-              tabletsToAssignMapFileTo = findOverlappingTablets(instance.getConfiguration(), fs, locator, mapFile);
+              Map<KeyExtent,Long> sizes = new HashMap<KeyExtent,Long>();
+              tabletsToAssignMapFileTo = findOverlappingTablets(instance.getConfiguration(), fs, locator, mapFile, null, null, sizes);
+              tabletSizes.put(mapFile, sizes);
             } catch (Exception ex) {
               log.warn("Unable to find tablets that overlap file " + mapFile.toString());
             }
@@ -171,8 +174,9 @@ public class BulkImporter {
       timer.stop(Timers.EXAMINE_MAP_FILES);
       
       assignmentStats.attemptingAssignments(assignments);
-      Map<Path,List<KeyExtent>> assignmentFailures = assignMapFiles(acuConf, instance, conf, credentials, fs, tableId, assignments, paths, numAssignThreads,
-          numThreads);
+      Map<KeyExtent,String> attemptedLocations = locationsOf(assignments);
+      Map<Path,List<KeyExtent>> assignmentFailures = assignMapFiles(acuConf, instance, conf, credentials, fs, tableId, assignments, tabletSizes, paths,
+          numAssignThreads, numThreads);
       assignmentStats.assignmentsFailed(assignmentFailures);
       
       Map<Path,Integer> failureCount = new TreeMap<Path,Integer>();
@@ -189,7 +193,7 @@ public class BulkImporter {
         // same key range and are contiguous (no holes, no overlap)
         
         timer.start(Timers.SLEEP);
-        UtilWaitThread.sleep(4000);
+        waitForReassignment(locator, assignmentFailures.values(), attemptedLocations);
         timer.stop(Timers.SLEEP);
         
         log.debug("Trying to assign " + assignmentFailures.size() + " map files that previously failed on some key extents");
@@ -207,7 +211,12 @@ public class BulkImporter {
             
             try {
               timer.start(Timers.QUERY_METADATA);
-              tabletsToAssignMapFileTo.addAll(findOverlappingTablets(instance.getConfiguration(), fs, locator, entry.getKey(), ke));
+              Map<KeyExtent,Long> sizes = tabletSizes.get(entry.getKey());
+              if (sizes == null) {
+                sizes = new HashMap<KeyExtent,Long>();
+                tabletSizes.put(entry.getKey(), sizes);
+              }
+              tabletsToAssignMapFileTo.addAll(findOverlappingTablets(instance.getConfiguration(), fs, locator, entry.getKey(), ke, sizes));
               timer.stop(Timers.QUERY_METADATA);
               keListIter.remove();
             } catch (Exception ex) {
@@ -220,8 +229,9 @@ public class BulkImporter {
         }
         
         assignmentStats.attemptingAssignments(assignments);
-        Map<Path,List<KeyExtent>> assignmentFailures2 = assignMapFiles(acuConf, instance, conf, credentials, fs, tableId, assignments, paths, numAssignThreads,
-            numThreads);
+        attemptedLocations = locationsOf(assignments);
+        Map<Path,List<KeyExtent>> assignmentFailures2 = assignMapFiles(acuConf, instance, conf, credentials, fs, tableId, assignments, tabletSizes, paths,
+            numAssignThreads, numThreads);
         assignmentStats.assignmentsFailed(assignmentFailures2);
         
         // merge assignmentFailures2 into assignmentFailures
@@ -328,7 +338,7 @@ public class BulkImporter {
   }
   
   private Map<Path,List<AssignmentInfo>> estimateSizes(final AccumuloConfiguration acuConf, final Configuration conf, final FileSystem fs,
-      Map<Path,List<TabletLocation>> assignments, Collection<Path> paths, int numThreads) {
+      Map<Path,List<TabletLocation>> assignments, Map<Path,Map<KeyExtent,Long>> tabletSizes, Collection<Path> paths, int numThreads) {
     
     long t1 = System.currentTimeMillis();
     final Map<Path,Long> mapFileSizes = new TreeMap<Path,Long>();
@@ -357,6 +367,16 @@ public class BulkImporter {
         continue;
       }
       
+      // use the sizes estimated from the file's index while finding the tablets, when there is one for every tablet
+      Map<KeyExtent,Long> sizes = tabletSizes.get(entry.getKey());
+      if (sizes != null && sizes.keySet().containsAll(extentsOf(entry.getValue()))) {
+        List<AssignmentInfo> assignmentInfoList = new ArrayList<AssignmentInfo>(entry.getValue().size());
+        for (TabletLocation tl : entry.getValue())
+          assignmentInfoList.add(new AssignmentInfo(tl.tablet_extent, sizes.get(tl.tablet_extent)));
+        ais.put(entry.getKey(), assignmentInfoList);
+        continue;
+      }
+      
       Runnable estimationTask = new Runnable() {
         public void run() {
           Map<KeyExtent,Long> estimatedSizes = null;
@@ -416,9 +436,10 @@ public class BulkImporter {
   }
   
   private Map<Path,List<KeyExtent>> assignMapFiles(AccumuloConfiguration acuConf, Instance instance, Configuration conf, AuthInfo credentials, FileSystem fs,
-      String tableId, Map<Path,List<TabletLocation>> assignments, Collection<Path> paths, int numThreads, int numMapThreads) {
+      String tableId, Map<Path,List<TabletLocation>> assignments, Map<Path,Map<KeyExtent,Long>> tabletSizes, Collection<Path> paths, int numThreads,
+      int numMapThreads) {
     timer.start(Timers.EXAMINE_MAP_FILES);
-    Map<Path,List<AssignmentInfo>> assignInfo = estimateSizes(acuConf, conf, fs, assignments, paths, numMapThreads);
+    Map<Path,List<AssignmentInfo>> assignInfo = estimateSizes(acuConf, conf, fs, assignments, tabletSizes, paths, numMapThreads);
     timer.stop(Timers.EXAMINE_MAP_FILES);
     
     Map<Path,List<KeyExtent>> ret;
@@ -607,56 +628,190 @@ public class BulkImporter {
   }
   
   public static List<TabletLocation> findOverlappingTablets(AccumuloConfiguration acuConf, FileSystem fs, TabletLocator locator, Path file) throws Exception {
-    return findOverlappingTablets(acuConf, fs, locator, file, null, null);
+    return findOverlappingTablets(acuConf, fs, locator, file, null, null, null);
   }
   
   public static List<TabletLocation> findOverlappingTablets(AccumuloConfiguration acuConf, FileSystem fs, TabletLocator locator, Path file, KeyExtent failed)
       throws Exception {
+    return findOverlappingTablets(acuConf, fs, locator, file, failed, null);
+  }
+  
+  static List<TabletLocation> findOverlappingTablets(AccumuloConfiguration acuConf, FileSystem fs, TabletLocator locator, Path file, KeyExtent failed,
+      Map<KeyExtent,Long> sizes) throws Exception {
     locator.invalidateCache(failed);
     Text start = failed.getPrevEndRow();
     if (start != null)
-      start = Range.followingPrefix(start);
-    return findOverlappingTablets(acuConf, fs, locator, file, start, failed.getEndRow());
+      start = followingRow(start);
+    return findOverlappingTablets(acuConf, fs, locator, file, start, failed.getEndRow(), sizes);
   }
   
   final static byte[] byte0 = {0};
-
+  
+  private static Text followingRow(Text row) {
+    Text following = new Text(row);
+    following.append(byte0, 0, byte0.length);
+    return following;
+  }
+  
   public static List<TabletLocation> findOverlappingTablets(AccumuloConfiguration acuConf, FileSystem fs, TabletLocator locator, Path file, Text startRow,
       Text endRow) throws Exception {
+    return findOverlappingTablets(acuConf, fs, locator, file, startRow, endRow, null);
+  }
+  
+  /**
+   * Finds the tablets a file has data for using the file's index, whose entries hold the last key of each block. A tablet that contains an index row has data
+   * from the file without looking further. Only when a tablet falls between the last rows of two consecutive blocks is the file seeked, to find out whether
+   * the block has rows in it.
+   * 
+   * @param sizes
+   *          if not null, receives an estimate of how much of the file each tablet found gets, from the number of blocks that end in the tablet
+   */
+  static List<TabletLocation> findOverlappingTablets(AccumuloConfiguration acuConf, FileSystem fs, TabletLocator locator, Path file, Text startRow,
+      Text endRow, Map<KeyExtent,Long> sizes) throws Exception {
     List<TabletLocation> result = new ArrayList<TabletLocation>();
     Collection<ByteSequence> columnFamilies = Collections.emptyList();
     String filename = file.toString();
-    // log.debug(filename + " finding overlapping tablets " + startRow + " -> " + endRow);
-    FileSKVIterator reader = FileOperations.getInstance().openReader(filename, true, fs, fs.getConf(), acuConf);
+    List<Text> indexRows = readIndexRows(acuConf, fs, filename);
+    FileSKVIterator reader = null;
     try {
       Text row = startRow;
       if (row == null)
         row = new Text();
       while (true) {
-        // log.debug(filename + " Seeking to row " + row);
-        reader.seek(new Range(row, null), columnFamilies, false);
-        if (!reader.hasTop()) {
-          // log.debug(filename + " not found");
+        // the first block that has a row at or after the current one ends with that row or a later one
+        int block = countRowsBefore(indexRows, row);
+        if (block == indexRows.size())
           break;
-        }
-        row = reader.getTopKey().getRow();
         TabletLocation tabletLocation = locator.locateTablet(row, false, true);
-        // log.debug(filename + " found row " + row + " at location " + tabletLocation);
+        Text tabletEndRow = tabletLocation.tablet_extent.getEndRow();
+        if (tabletEndRow != null && indexRows.get(block).compareTo(tabletEndRow) > 0) {
+          // the tablet lies within the block, only reading the block tells which tablet its next row is in
+          if (reader == null)
+            reader = FileOperations.getInstance().openReader(filename, true, fs, fs.getConf(), acuConf);
+          reader.seek(new Range(row, null), columnFamilies, false);
+          if (!reader.hasTop())
+            break;
+          row = reader.getTopKey().getRow();
+          tabletLocation = locator.locateTablet(row, false, true);
+        }
         result.add(tabletLocation);
         row = tabletLocation.tablet_extent.getEndRow();
-        if (row != null && (endRow == null || row.compareTo(endRow) < 0)) {
-          row = new Text(row);
-          row.append(byte0, 0, byte0.length);
-        } else
+        if (row != null && (endRow == null || row.compareTo(endRow) < 0))
+          row = followingRow(row);
+        else
           break;
       }
     } finally {
-      reader.close();
+      if (reader != null)
+        reader.close();
+    }
+    
+    if (sizes != null && result.size() > 0) {
+      long fileSize = fs.getFileStatus(file).getLen();
+      for (TabletLocation tl : result) {
+        Text prevEndRow = tl.tablet_extent.getPrevEndRow();
+        Text tabletEndRow = tl.tablet_extent.getEndRow();
+        int first = prevEndRow == null ? 0 : countRowsBefore(indexRows, followingRow(prevEndRow));
+        int last = tabletEndRow == null ? indexRows.size() : countRowsBefore(indexRows, followingRow(tabletEndRow));
+        sizes.put(tl.tablet_extent, (long) (Math.max(1, last - first) / (double) indexRows.size() * fileSize));
+      }
     }
-    // log.debug(filename + " to be sent to " + result);
+    
     return result;
   }
   
+  /**
+   * @return the rows of the file's index entries, in order
+   */
+  private static List<Text> readIndexRows(AccumuloConfiguration acuConf, FileSystem fs, String filename) throws IOException {
+    List<Text> rows = new ArrayList<Text>();
+    FileSKVIterator index = FileOperations.getInstance().openIndex(filename, fs, fs.getConf(), acuConf);
+    try {
+      while (index.hasTop()) {
+        rows.add(index.getTopKey().getRow());
+        index.next();
+      }
+    } finally {
+      index.close();
+    }
+    return rows;
+  }
+  
+  /**
+   * @return the number of sorted rows that are less than the given row
+   */
+  private static int countRowsBefore(List<Text> rows, Text row) {
+    int low = 0;
+    int high = rows.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (rows.get(mid).compareTo(row) < 0)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+  
+  private static final long MIN_RETRY_WAIT = 100;
+  private static final long MAX_RETRY_WAIT = 4000;
+  
+  /**
+   * Waits for the tablets files could not be loaded into to show up in the metadata table again, either split or at a new location. Checks often at first,
+   * since splits and migrations usually finish quickly, and less often the longer they take. Stops waiting after {@value #MAX_RETRY_WAIT} ms, because a
+   * tablet that was only being loaded comes back unchanged.
+   */
+  private static void waitForReassignment(TabletLocator locator, Collection<List<KeyExtent>> failures, Map<KeyExtent,String> attemptedLocations) {
+    Set<KeyExtent> failed = new HashSet<KeyExtent>();
+    for (List<KeyExtent> extents : failures)
+      failed.addAll(extents);
+    
+    long start = System.currentTimeMillis();
+    long wait = MIN_RETRY_WAIT;
+    while (true) {
+      UtilWaitThread.sleep(wait);
+      long waited = System.currentTimeMillis() - start;
+      if (waited >= MAX_RETRY_WAIT)
+        return;
+      
+      locator.invalidateCache(failed);
+      Iterator<KeyExtent> iter = failed.iterator();
+      while (iter.hasNext()) {
+        KeyExtent extent = iter.next();
+        try {
+          if (isReassigned(locator, extent, attemptedLocations.get(extent)))
+            iter.remove();
+        } catch (Exception e) {
+          log.debug("Failed to look up tablets of " + extent + " " + e.getMessage());
+        }
+      }
+      if (failed.isEmpty()) {
+        log.debug("Tablets of failed assignments were reassigned after " + waited + " ms");
+        return;
+      }
+      
+      wait = Math.min(wait * 2, MAX_RETRY_WAIT - waited);
+    }
+  }
+  
+  /**
+   * @return true if the rows of a tablet a file could not be loaded into are hosted again, and not by the same tablet at the same location
+   */
+  private static boolean isReassigned(TabletLocator locator, KeyExtent extent, String attemptedLocation) throws Exception {
+    Text row = extent.getPrevEndRow() == null ? new Text() : followingRow(extent.getPrevEndRow());
+    while (true) {
+      TabletLocation tabletLocation = locator.locateTablet(row, false, false);
+      if (tabletLocation == null)
+        return false;
+      if (tabletLocation.tablet_extent.equals(extent) && tabletLocation.tablet_location.equals(attemptedLocation))
+        return false;
+      Text tabletEndRow = tabletLocation.tablet_extent.getEndRow();
+      if (tabletEndRow == null || (extent.getEndRow() != null && tabletEndRow.compareTo(extent.getEndRow()) >= 0))
+        return true;
+      row = followingRow(tabletEndRow);
+    }
+  }
+  
   public static class AssignmentStats {
     private Map<KeyExtent,Integer> counts;
     private int numUniqueMapFiles;
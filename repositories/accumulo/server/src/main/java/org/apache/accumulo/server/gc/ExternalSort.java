@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.gc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Sorts a set of strings that may be too large to hold in memory. Strings are buffered in memory up to a limit, then written to a sorted run in a local
+ * temporary file. Iterating merges the runs, returning each distinct string once in sorted order.
+ */
+class ExternalSort implements Iterable<String> {
+  
+  private static final Logger log = Logger.getLogger(ExternalSort.class);
+  
+  private static final String RUN_PREFIX = "gc-sort-";
+  private static final String RUN_SUFFIX = ".run";
+  
+  private final int maxInMemory;
+  private TreeSet<String> buffer = new TreeSet<String>();
+  private List<File> runs = new ArrayList<File>();
+  private List<DataInputStream> open = new ArrayList<DataInputStream>();
+  private long added = 0;
+  
+  /**
+   * @param maxInMemory
+   *          the number of strings to buffer before writing a run
+   */
+  ExternalSort(int maxInMemory) {
+    this.maxInMemory = Math.max(1, maxInMemory);
+  }
+  
+  void add(String s) throws IOException {
+    if (buffer.add(s))
+      added++;
+    if (buffer.size() >= maxInMemory)
+      spill();
+  }
+  
+  /**
+   * @return the number of strings added, counting strings added again after they were written to a run
+   */
+  long size() {
+    return added;
+  }
+  
+  int getNumRuns() {
+    return runs.size();
+  }
+  
+  private void spill() throws IOException {
+    File run = File.createTempFile(RUN_PREFIX, RUN_SUFFIX);
+    runs.add(run);
+    
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16));
+    try {
+      out.writeInt(buffer.size());
+      for (String s : buffer)
+        out.writeUTF(s);
+    } finally {
+      out.close();
+    }
+    
+    buffer.clear();
+  }
+  
+  private class Run implements Comparable<Run> {
+    DataInputStream in;
+    int remaining;
+    String top;
+    
+    Run(File file) throws IOException {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+      open.add(in);
+      remaining = in.readInt();
+    }
+    
+    boolean next() throws IOException {
+      if (remaining == 0) {
+        top = null;
+        return false;
+      }
+      remaining--;
+      top = in.readUTF();
+      return true;
+    }
+    
+    @Override
+    public int compareTo(Run o) {
+      return top.compareTo(o.top);
+    }
+  }
+  
+  /**
+   * Returns the strings in sorted order. Should only be called once, after all strings are added.
+   */
+  @Override
+  public Iterator<String> iterator() {
+    if (runs.isEmpty())
+      return buffer.iterator();
+    
+    final PriorityQueue<Run> queue = new PriorityQueue<Run>();
+    try {
+      if (!buffer.isEmpty())
+        spill();
+      for (File file : runs) {
+        Run run = new Run(file);
+        if (run.next())
+          queue.add(run);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    
+    return new Iterator<String>() {
+      String last = null;
+      
+      @Override
+      public boolean hasNext() {
+        // skip strings that were written to more than one run
+        while (!queue.isEmpty() && queue.peek().top.equals(last))
+          advance();
+        return !queue.isEmpty();
+      }
+      
+      @Override
+      public String next() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        last = queue.peek().top;
+        advance();
+        return last;
+      }
+      
+      private void advance() {
+        Run run = queue.poll();
+        try {
+          if (run.next())
+            queue.add(run);
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+  
+  /**
+   * Deletes the runs a process that did not close its sorts left behind in dir. Must not be called while sorts are open in dir.
+   * 
+   * @return the number of runs deleted
+   */
+  static int deleteStaleRuns(File dir) {
+    int deleted = 0;
+    File[] files = dir.listFiles();
+    if (files == null)
+      return 0;
+    for (File file : files) {
+      if (file.getName().startsWith(RUN_PREFIX) && file.getName().endsWith(RUN_SUFFIX)) {
+        if (file.delete())
+          deleted++;
+        else
+          log.warn("Unable to delete stale sorted run " + file);
+      }
+    }
+    return deleted;
+  }
+  
+  /**
+   * Deletes the runs written to disk.
+   */
+  void close() {
+    for (DataInputStream in : open) {
+      try {
+        in.close();
+      } catch (IOException e) {
+        log.warn("Unable to close sorted run", e);
+      }
+    }
+    for (File run : runs)
+      if (!run.delete())
+        log.warn("Unable to delete sorted run " + run);
+    open.clear();
+    runs.clear();
+    buffer.clear();
+  }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.accumulo.server.gc;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
@@ -27,8 +28,8 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.accumulo.cloudtrace.instrument.CountSampler;
@@ -131,6 +132,9 @@ public class SimpleGarbageCollector implements Iface {
   
   private int numDeleteThreads;
   
+  private boolean streaming;
+  private int streamingBatchSize;
+  
   private Instance instance;
   
   public static void main(String[] args) throws UnknownHostException, IOException {
@@ -184,6 +188,10 @@ public class SimpleGarbageCollector implements Iface {
   public void useAddress(String address) {
     this.address = address;
   }
+  
+  void setStreamingBatchSize(int batchSize) {
+    this.streamingBatchSize = batchSize;
+  }
 
   public void init(FileSystem fs, Instance instance, AuthInfo credentials) {
     this.fs = TraceFileSystem.wrap(fs);
@@ -193,6 +201,8 @@ public class SimpleGarbageCollector implements Iface {
     gcStartDelay = instance.getConfiguration().getTimeInMillis(Property.GC_CYCLE_START);
     long gcDelay = instance.getConfiguration().getTimeInMillis(Property.GC_CYCLE_DELAY);
     numDeleteThreads = instance.getConfiguration().getCount(Property.GC_DELETE_THREADS);
+    streaming = instance.getConfiguration().getBoolean(Property.GC_STREAMING_ENABLED);
+    streamingBatchSize = instance.getConfiguration().getCount(Property.GC_STREAMING_BATCH_SIZE);
     log.info("start delay: " + (offline ? 0 + " sec (offline)" : gcStartDelay + " milliseconds"));
     log.info("time delay: " + gcDelay + " milliseconds");
     log.info("safemode: " + safemode);
@@ -200,6 +210,7 @@ public class SimpleGarbageCollector implements Iface {
     log.info("verbose: " + verbose);
     log.info("memory threshold: " + CANDIDATE_MEMORY_PERCENTAGE + " of " + Runtime.getRuntime().maxMemory() + " bytes");
     log.info("delete threads: " + numDeleteThreads);
+    log.info("streaming: " + streaming + (streaming ? " (batch size " + streamingBatchSize + ")" : ""));
   }
   
   private void run() {
@@ -215,6 +226,13 @@ public class SimpleGarbageCollector implements Iface {
         System.exit(1);
       }
       
+      // runs of a collector that died while sorting; holding the lock, no other collector is sorting
+      if (streaming) {
+        int stale = ExternalSort.deleteStaleRuns(new File(System.getProperty("java.io.tmpdir")));
+        if (stale > 0)
+          log.info("Deleted " + stale + " sorted runs left by an earlier garbage collector");
+      }
+      
       try {
         log.debug("Sleeping for " + gcStartDelay + " milliseconds before beginning garbage collection cycles");
         Thread.sleep(gcStartDelay);
@@ -233,50 +251,13 @@ public class SimpleGarbageCollector implements Iface {
       Span gcSpan = Trace.start("loop");
       tStart = System.currentTimeMillis();
       try {
-        // STEP 1: gather candidates
-        System.gc(); // make room
         candidateMemExceeded = false;
-        checkForBulkProcessingFiles = false;
-        
-        Span candidatesSpan = Trace.start("getCandidates");
         status.current.started = System.currentTimeMillis();
-        SortedSet<String> candidates = getCandidates();
-        status.current.candidates = candidates.size();
-        candidatesSpan.stop();
-        
-        // STEP 2: confirm deletes
-        // WARNING: This line is EXTREMELY IMPORTANT.
-        // You MUST confirm candidates are okay to delete
-        Span confirmDeletesSpan = Trace.start("confirmDeletes");
-        confirmDeletes(candidates);
-        status.current.inUse = status.current.candidates - candidates.size();
-        confirmDeletesSpan.stop();
         
-        // STEP 3: delete files
-        if (safemode) {
-          if (verbose)
-            System.out.println("SAFEMODE: There are " + candidates.size() + " data file candidates marked for deletion.%n"
-                + "          Examine the log files to identify them.%n" + "          They can be removed by executing: bin/accumulo gc --offline%n"
-                + "WARNING:  Do not run the garbage collector in offline mode unless you are positive%n"
-                + "          that the accumulo METADATA table is in a clean state, or that accumulo%n"
-                + "          has not yet been run, in the case of an upgrade.");
-          log.info("SAFEMODE: Listing all data file candidates for deletion");
-          for (String s : candidates)
-            log.info("SAFEMODE: " + s);
-          log.info("SAFEMODE: End candidates for deletion");
-        } else {
-          Span deleteSpan = Trace.start("deleteFiles");
-          deleteFiles(candidates);
-          log.info("Number of data file candidates for deletion: " + status.current.candidates);
-          log.info("Number of data file candidates still in use: " + status.current.inUse);
-          log.info("Number of successfully deleted data files: " + status.current.deleted);
-          log.info("Number of data files delete failures: " + status.current.errors);
-          deleteSpan.stop();
-          
-          // delete empty dirs of deleted tables
-          // this can occur as a result of cloning
-          cleanUpDeletedTableDirs(candidates);
-        }
+        if (streaming && !offline)
+          collectStreaming();
+        else
+          collect();
         
         status.current.finished = System.currentTimeMillis();
         status.last = status.current;
@@ -320,6 +301,234 @@ public class SimpleGarbageCollector implements Iface {
     }
   }
   
+  /**
+   * Runs a collection cycle holding the delete candidates in memory. If the candidates do not fit, the remaining candidates are collected in the next cycle.
+   */
+  private void collect() throws Exception {
+    // STEP 1: gather candidates
+    System.gc(); // make room
+    checkForBulkProcessingFiles = false;
+    
+    Span candidatesSpan = Trace.start("getCandidates");
+    long candidatesStart = System.currentTimeMillis();
+    SortedSet<String> candidates = getCandidates();
+    status.current.candidates = candidates.size();
+    status.current.candidatesTime = System.currentTimeMillis() - candidatesStart;
+    candidatesSpan.stop();
+    
+    // STEP 2: confirm deletes
+    // WARNING: This line is EXTREMELY IMPORTANT.
+    // You MUST confirm candidates are okay to delete
+    Span confirmDeletesSpan = Trace.start("confirmDeletes");
+    long confirmStart = System.currentTimeMillis();
+    confirmDeletes(candidates);
+    status.current.inUse = status.current.candidates - candidates.size();
+    status.current.confirmTime = System.currentTimeMillis() - confirmStart;
+    confirmDeletesSpan.stop();
+    
+    // STEP 3: delete files
+    if (safemode) {
+      if (verbose)
+        System.out.println("SAFEMODE: There are " + candidates.size() + " data file candidates marked for deletion.%n"
+            + "          Examine the log files to identify them.%n" + "          They can be removed by executing: bin/accumulo gc --offline%n"
+            + "WARNING:  Do not run the garbage collector in offline mode unless you are positive%n"
+            + "          that the accumulo METADATA table is in a clean state, or that accumulo%n"
+            + "          has not yet been run, in the case of an upgrade.");
+      log.info("SAFEMODE: Listing all data file candidates for deletion");
+      for (String s : candidates)
+        log.info("SAFEMODE: " + s);
+      log.info("SAFEMODE: End candidates for deletion");
+    } else {
+      Span deleteSpan = Trace.start("deleteFiles");
+      long deleteStart = System.currentTimeMillis();
+      deleteFiles(candidates);
+      status.current.deleteTime = System.currentTimeMillis() - deleteStart;
+      logCounts();
+      deleteSpan.stop();
+      
+      // delete empty dirs of deleted tables
+      // this can occur as a result of cloning
+      cleanUpDeletedTableDirs(candidates);
+    }
+  }
+  
+  private void logCounts() {
+    log.info("Number of data file candidates for deletion: " + status.current.candidates);
+    log.info("Number of data file candidates still in use: " + status.current.inUse);
+    log.info("Number of successfully deleted data files: " + status.current.deleted);
+    log.info("Number of data files delete failures: " + status.current.errors);
+  }
+  
+  /**
+   * Receives the candidates confirmed for deletion by a streaming cycle, in sorted batches.
+   */
+  static interface ConfirmedDeletesHandler {
+    void handle(SortedSet<String> confirmedDeletes) throws Exception;
+  }
+  
+  /**
+   * Runs a collection cycle in bounded memory. The delete candidates and the file references in the metadata table are each sorted on local disk and then
+   * merged, and the confirmed deletes are handed to the delete threads in batches while the merge continues.
+   */
+  private void collectStreaming() throws Exception {
+    if (safemode) {
+      log.info("SAFEMODE: Listing all data file candidates for deletion");
+      streamConfirmedDeletes(new ConfirmedDeletesHandler() {
+        @Override
+        public void handle(SortedSet<String> confirmedDeletes) {
+          for (String s : confirmedDeletes)
+            log.info("SAFEMODE: " + s);
+        }
+      });
+      log.info("SAFEMODE: End candidates for deletion");
+      return;
+    }
+    
+    final FileDeleter deleter = new FileDeleter(streamingBatchSize);
+    final HashSet<String> tableIdsWithDeletes = new HashSet<String>();
+    try {
+      streamConfirmedDeletes(new ConfirmedDeletesHandler() {
+        @Override
+        public void handle(SortedSet<String> confirmedDeletes) {
+          addTableIdsOfDirs(confirmedDeletes, tableIdsWithDeletes);
+          deleter.delete(confirmedDeletes);
+        }
+      });
+    } finally {
+      Span deleteSpan = Trace.start("deleteFiles");
+      long deleteStart = System.currentTimeMillis();
+      deleter.close();
+      status.current.deleteTime += System.currentTimeMillis() - deleteStart;
+      deleteSpan.stop();
+    }
+    logCounts();
+    
+    // delete empty dirs of deleted tables
+    // this can occur as a result of cloning
+    cleanUpDeletedTableDirs(tableIdsWithDeletes);
+  }
+  
+  /**
+   * Finds the candidates for deletion that are no longer in use, without holding all candidates or references in memory.
+   */
+  void streamConfirmedDeletes(ConfirmedDeletesHandler handler) throws Exception {
+    ExternalSort candidates = new ExternalSort(streamingBatchSize);
+    ExternalSort references = new ExternalSort(streamingBatchSize);
+    
+    try {
+      // STEP 1: gather candidates
+      Span candidatesSpan = Trace.start("getCandidates");
+      long candidatesStart = System.currentTimeMillis();
+      Connector connector = instance.getConnector(credentials);
+      Scanner scanner = connector.createScanner(Constants.METADATA_TABLE_NAME, Constants.NO_AUTHS);
+      scanner.setRange(Constants.METADATA_DELETES_KEYSPACE);
+      checkForBulkProcessingFiles = false;
+      for (Entry<Key,Value> entry : scanner) {
+        String cand = entry.getKey().getRow().toString().substring(Constants.METADATA_DELETE_FLAG_PREFIX.length());
+        candidates.add(cand);
+        checkForBulkProcessingFiles |= cand.toLowerCase(Locale.ENGLISH).contains(Constants.BULK_PREFIX);
+      }
+      status.current.candidates = candidates.size();
+      long confirmStart = System.currentTimeMillis();
+      status.current.candidatesTime = confirmStart - candidatesStart;
+      candidatesSpan.stop();
+      
+      // STEP 2: gather the references, which MUST be read after the candidates
+      Span referencesSpan = Trace.start("getReferences");
+      scanner = new IsolatedScanner(connector.createScanner(Constants.METADATA_TABLE_NAME, Constants.NO_AUTHS));
+      
+      SortedSet<String> blips = new TreeSet<String>();
+      if (checkForBulkProcessingFiles) {
+        log.debug("Checking for bulk processing flags");
+        scanner.setRange(Constants.METADATA_BLIP_KEYSPACE);
+        for (Entry<Key,Value> entry : scanner)
+          blips.add(entry.getKey().getRow().toString().substring(Constants.METADATA_BLIP_FLAG_PREFIX.length()));
+      }
+      
+      scanner.clearColumns();
+      scanner.fetchColumnFamily(Constants.METADATA_DATAFILE_COLUMN_FAMILY);
+      scanner.fetchColumnFamily(Constants.METADATA_SCANFILE_COLUMN_FAMILY);
+      Constants.METADATA_DIRECTORY_COLUMN.fetch(scanner);
+      
+      TabletIterator tabletIterator = new TabletIterator(scanner, Constants.METADATA_KEYSPACE, false, true);
+      while (tabletIterator.hasNext())
+        for (Entry<Key,Value> entry : tabletIterator.next().entrySet())
+          for (String reference : getReferences(entry))
+            references.add(reference);
+      referencesSpan.stop();
+      
+      log.debug("Sorted " + candidates.size() + " candidates into " + candidates.getNumRuns() + " runs and " + references.size() + " references into "
+          + references.getNumRuns() + " runs");
+      
+      // STEP 3: merge the sorted candidates and references
+      Span mergeSpan = Trace.start("confirmDeletes");
+      long handlerTime = 0;
+      Iterator<String> refIter = references.iterator();
+      String reference = refIter.hasNext() ? refIter.next() : null;
+      SortedSet<String> confirmed = new TreeSet<String>();
+      
+      for (String cand : candidates) {
+        while (reference != null && reference.compareTo(cand) < 0)
+          reference = refIter.hasNext() ? refIter.next() : null;
+        
+        // WARNING: This line is EXTREMELY IMPORTANT.
+        // You MUST NOT delete candidates that are still in use
+        if (cand.equals(reference)) {
+          log.debug("Candidate was still in use in the METADATA table: " + cand);
+          status.current.inUse++;
+          continue;
+        }
+        
+        // You MUST NOT delete candidates that are in the same folder as a bulk processing flag
+        String blipPath = getBulkProcessingFolder(blips, cand);
+        if (blipPath != null) {
+          log.debug("Folder has bulk processing flag: " + blipPath);
+          status.current.inUse++;
+          continue;
+        }
+        
+        confirmed.add(cand);
+        if (confirmed.size() >= streamingBatchSize) {
+          long t1 = System.currentTimeMillis();
+          handler.handle(confirmed);
+          handlerTime += System.currentTimeMillis() - t1;
+          confirmed = new TreeSet<String>();
+        }
+      }
+      
+      if (!confirmed.isEmpty()) {
+        long t1 = System.currentTimeMillis();
+        handler.handle(confirmed);
+        handlerTime += System.currentTimeMillis() - t1;
+      }
+      
+      status.current.confirmTime = System.currentTimeMillis() - confirmStart - handlerTime;
+      status.current.deleteTime = handlerTime;
+      mergeSpan.stop();
+    } finally {
+      candidates.close();
+      references.close();
+    }
+  }
+  
+  static String getBulkProcessingFolder(SortedSet<String> blips, String candidate) {
+    // a prefix of the candidate sorts before it, and any path sorted in between shares that prefix
+    String prefix = candidate;
+    while (true) {
+      SortedSet<String> head = blips.headSet(prefix + '\0');
+      if (head.isEmpty())
+        return null;
+      String blipPath = head.last();
+      if (candidate.startsWith(blipPath))
+        return blipPath;
+      
+      int common = 0;
+      while (common < Math.min(blipPath.length(), prefix.length()) && blipPath.charAt(common) == prefix.charAt(common))
+        common++;
+      prefix = prefix.substring(0, common);
+    }
+  }
+  
   /*
    * this method removes deleted table dirs that are empty
    */
@@ -328,13 +537,21 @@ public class SimpleGarbageCollector implements Iface {
     HashSet<String> tableIdsWithDeletes = new HashSet<String>();
     
     // find the table ids that had dirs deleted
-    for (String delete : candidates) {
+    addTableIdsOfDirs(candidates, tableIdsWithDeletes);
+    
+    cleanUpDeletedTableDirs(tableIdsWithDeletes);
+  }
+  
+  private void addTableIdsOfDirs(SortedSet<String> deletes, Set<String> tableIds) {
+    for (String delete : deletes) {
       if (isDir(delete)) {
         String tableId = delete.split("/")[1];
-        tableIdsWithDeletes.add(tableId);
+        tableIds.add(tableId);
       }
     }
-    
+  }
+  
+  private void cleanUpDeletedTableDirs(Set<String> tableIdsWithDeletes) throws Exception {
     Tables.clearCache(instance);
     Set<String> tableIdsInZookeeper = Tables.getIdToNameMap(instance).keySet();
     
@@ -510,159 +727,187 @@ public class SimpleGarbageCollector implements Iface {
       Map<Key,Value> tabletKeyValues = tabletIterator.next();
       
       for (Entry<Key,Value> entry : tabletKeyValues.entrySet()) {
-        if (entry.getKey().getColumnFamily().equals(Constants.METADATA_DATAFILE_COLUMN_FAMILY)
-            || entry.getKey().getColumnFamily().equals(Constants.METADATA_SCANFILE_COLUMN_FAMILY)) {
-          
-          String cf = entry.getKey().getColumnQualifier().toString();
-          String delete;
-          if (cf.startsWith("../")) {
-            delete = cf.substring(2);
-          } else {
-            String table = new String(KeyExtent.tableOfMetadataRow(entry.getKey().getRow()));
-            delete = "/" + table + cf;
-          }
+        for (String reference : getReferences(entry)) {
           // WARNING: This line is EXTREMELY IMPORTANT.
           // You MUST REMOVE candidates that are still in use
-          if (candidates.remove(delete))
-            log.debug("Candidate was still in use in the METADATA table: " + delete);
-          
-          String path = delete.substring(0, delete.lastIndexOf('/'));
-          if (candidates.remove(path))
-            log.debug("Candidate was still in use in the METADATA table: " + path);
-        } else if (Constants.METADATA_DIRECTORY_COLUMN.hasColumns(entry.getKey())) {
-          String table = new String(KeyExtent.tableOfMetadataRow(entry.getKey().getRow()));
-          String delete = "/" + table + entry.getValue().toString();
-          if (candidates.remove(delete))
-            log.debug("Candidate was still in use in the METADATA table: " + delete);
-        } else
-          throw new AccumuloException("Scanner over metadata table returned unexpected column : " + entry.getKey());
+          if (candidates.remove(reference))
+            log.debug("Candidate was still in use in the METADATA table: " + reference);
+        }
       }
     }
   }
   
+  /**
+   * @return the paths of the files and directories a file or directory entry in the metadata table keeps in use
+   */
+  private static String[] getReferences(Entry<Key,Value> entry) throws AccumuloException {
+    if (entry.getKey().getColumnFamily().equals(Constants.METADATA_DATAFILE_COLUMN_FAMILY)
+        || entry.getKey().getColumnFamily().equals(Constants.METADATA_SCANFILE_COLUMN_FAMILY)) {
+      
+      String cf = entry.getKey().getColumnQualifier().toString();
+      String delete;
+      if (cf.startsWith("../")) {
+        delete = cf.substring(2);
+      } else {
+        String table = new String(KeyExtent.tableOfMetadataRow(entry.getKey().getRow()));
+        delete = "/" + table + cf;
+      }
+      
+      String path = delete.substring(0, delete.lastIndexOf('/'));
+      return new String[] {delete, path};
+    } else if (Constants.METADATA_DIRECTORY_COLUMN.hasColumns(entry.getKey())) {
+      String table = new String(KeyExtent.tableOfMetadataRow(entry.getKey().getRow()));
+      return new String[] {"/" + table + entry.getValue().toString()};
+    } else
+      throw new AccumuloException("Scanner over metadata table returned unexpected column : " + entry.getKey());
+  }
+  
   /**
    * This method attempts to do its best to remove files from the filesystem that have been confirmed for deletion.
    */
   private void deleteFiles(SortedSet<String> confirmedDeletes) {
-    // create a batchwriter to remove the delete flags for successful
-    // deletes
-    BatchWriter writer = null;
-    if (!offline) {
-      Connector c;
-      try {
-        c = instance.getConnector(SecurityConstants.getSystemCredentials());
-        writer = c.createBatchWriter(Constants.METADATA_TABLE_NAME, new BatchWriterConfig());
-      } catch (Exception e) {
-        log.error("Unable to create writer to remove file from the !METADATA table", e);
+    FileDeleter deleter = new FileDeleter(Integer.MAX_VALUE);
+    deleter.delete(confirmedDeletes);
+    deleter.close();
+  }
+  
+  /**
+   * Deletes files on a pool of threads, and removes the delete flags of the files it deleted. Files can be handed to it in several batches.
+   */
+  private class FileDeleter {
+    
+    private BatchWriter writer = null;
+    private ThreadPoolExecutor deleteThreadPool;
+    
+    /**
+     * @param maxQueued
+     *          the number of files that may wait for a delete thread; once reached, the thread handing over files deletes them itself
+     */
+    FileDeleter(int maxQueued) {
+      // create a batchwriter to remove the delete flags for successful
+      // deletes
+      if (!offline) {
+        Connector c;
+        try {
+          c = instance.getConnector(SecurityConstants.getSystemCredentials());
+          writer = c.createBatchWriter(Constants.METADATA_TABLE_NAME, new BatchWriterConfig());
+        } catch (Exception e) {
+          log.error("Unable to create writer to remove file from the !METADATA table", e);
+        }
       }
+      
+      deleteThreadPool = new ThreadPoolExecutor(numDeleteThreads, numDeleteThreads, 0l, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(maxQueued),
+          new NamingThreadFactory("deleting"), new ThreadPoolExecutor.CallerRunsPolicy());
     }
     
-    // when deleting a dir and all files in that dir, only need to delete the dir
-    // the dir will sort right before the files... so remove the files in this case
-    // to minimize namenode ops
-    Iterator<String> cdIter = confirmedDeletes.iterator();
-    String lastDir = null;
-    while (cdIter.hasNext()) {
-      String delete = cdIter.next();
-      if (isDir(delete)) {
-        lastDir = delete;
-      } else if (lastDir != null) {
-        if (delete.startsWith(lastDir)) {
-          log.debug("Ignoring " + delete + " because " + lastDir + " exist");
-          Mutation m = new Mutation(new Text(Constants.METADATA_DELETE_FLAG_PREFIX + delete));
-          m.putDelete(EMPTY_TEXT, EMPTY_TEXT);
-          try {
-            writer.addMutation(m);
-          } catch (MutationsRejectedException e) {
-            throw new RuntimeException(e);
+    void delete(SortedSet<String> confirmedDeletes) {
+      // when deleting a dir and all files in that dir, only need to delete the dir
+      // the dir will sort right before the files... so remove the files in this case
+      // to minimize namenode ops
+      Iterator<String> cdIter = confirmedDeletes.iterator();
+      String lastDir = null;
+      while (cdIter.hasNext()) {
+        String delete = cdIter.next();
+        if (isDir(delete)) {
+          lastDir = delete;
+        } else if (lastDir != null) {
+          if (delete.startsWith(lastDir)) {
+            log.debug("Ignoring " + delete + " because " + lastDir + " exist");
+            Mutation m = new Mutation(new Text(Constants.METADATA_DELETE_FLAG_PREFIX + delete));
+            m.putDelete(EMPTY_TEXT, EMPTY_TEXT);
+            if (writer != null) {
+              try {
+                writer.addMutation(m);
+              } catch (MutationsRejectedException e) {
+                throw new RuntimeException(e);
+              }
+            }
+            cdIter.remove();
+          } else {
+            lastDir = null;
           }
-          cdIter.remove();
-        } else {
-          lastDir = null;
+          
         }
-        
       }
-    }
-    
-    final BatchWriter finalWriter = writer;
-    
-    ExecutorService deleteThreadPool = Executors.newFixedThreadPool(numDeleteThreads, new NamingThreadFactory("deleting"));
-    
-    for (final String delete : confirmedDeletes) {
       
-      Runnable deleteTask = new Runnable() {
-        @Override
-        public void run() {
-          boolean removeFlag;
-          
-          log.debug("Deleting " + ServerConstants.getTablesDir() + delete);
-          try {
-            
-            Path p = new Path(ServerConstants.getTablesDir() + delete);
+      for (final String delete : confirmedDeletes) {
+        
+        Runnable deleteTask = new Runnable() {
+          @Override
+          public void run() {
+            boolean removeFlag;
             
-            if (fs.delete(p, true)) {
-              // delete succeeded, still want to delete
-              removeFlag = true;
-              synchronized (SimpleGarbageCollector.this) {
-                ++status.current.deleted;
-              }
-            } else if (fs.exists(p)) {
-              // leave the entry in the METADATA table; we'll try again
-              // later
-              removeFlag = false;
-              synchronized (SimpleGarbageCollector.this) {
-                ++status.current.errors;
-              }
-              log.warn("File exists, but was not deleted for an unknown reason: " + p);
-            } else {
-              // this failure, we still want to remove the METADATA table
-              // entry
-              removeFlag = true;
-              synchronized (SimpleGarbageCollector.this) {
-                ++status.current.errors;
-              }
-              String parts[] = delete.split("/");
-              if (parts.length > 1) {
-                String tableId = parts[1];
-                TableManager.getInstance().updateTableStateCache(tableId);
-                TableState tableState = TableManager.getInstance().getTableState(tableId);
-                if (tableState != null && tableState != TableState.DELETING)
-                  log.warn("File doesn't exist: " + p);
+            log.debug("Deleting " + ServerConstants.getTablesDir() + delete);
+            try {
+              
+              Path p = new Path(ServerConstants.getTablesDir() + delete);
+              
+              if (fs.delete(p, true)) {
+                // delete succeeded, still want to delete
+                removeFlag = true;
+                synchronized (SimpleGarbageCollector.this) {
+                  ++status.current.deleted;
+                }
+              } else if (fs.exists(p)) {
+                // leave the entry in the METADATA table; we'll try again
+                // later
+                removeFlag = false;
+                synchronized (SimpleGarbageCollector.this) {
+                  ++status.current.errors;
+                }
+                log.warn("File exists, but was not deleted for an unknown reason: " + p);
               } else {
-                log.warn("Very strange path name: " + delete);
+                // this failure, we still want to remove the METADATA table
+                // entry
+                removeFlag = true;
+                synchronized (SimpleGarbageCollector.this) {
+                  ++status.current.errors;
+                }
+                String parts[] = delete.split("/");
+                if (parts.length > 1) {
+                  String tableId = parts[1];
+                  TableManager.getInstance().updateTableStateCache(tableId);
+                  TableState tableState = TableManager.getInstance().getTableState(tableId);
+                  if (tableState != null && tableState != TableState.DELETING)
+                    log.warn("File doesn't exist: " + p);
+                } else {
+                  log.warn("Very strange path name: " + delete);
+                }
+              }
+              
+              // proceed to clearing out the flags for successful deletes and
+              // non-existent files
+              if (removeFlag && writer != null) {
+                Mutation m = new Mutation(new Text(Constants.METADATA_DELETE_FLAG_PREFIX + delete));
+                m.putDelete(EMPTY_TEXT, EMPTY_TEXT);
+                writer.addMutation(m);
               }
+            } catch (Exception e) {
+              log.error(e, e);
             }
             
-            // proceed to clearing out the flags for successful deletes and
-            // non-existent files
-            if (removeFlag && finalWriter != null) {
-              Mutation m = new Mutation(new Text(Constants.METADATA_DELETE_FLAG_PREFIX + delete));
-              m.putDelete(EMPTY_TEXT, EMPTY_TEXT);
-              finalWriter.addMutation(m);
-            }
-          } catch (Exception e) {
-            log.error(e, e);
           }
-          
-        }
-      };
-      
-      deleteThreadPool.execute(deleteTask);
-    }
-    
-    deleteThreadPool.shutdown();
-    
-    try {
-      while (!deleteThreadPool.awaitTermination(1000, TimeUnit.MILLISECONDS)) {}
-    } catch (InterruptedException e1) {
-      log.error(e1, e1);
+        };
+        
+        deleteThreadPool.execute(deleteTask);
+      }
     }
     
-    if (writer != null) {
+    void close() {
+      deleteThreadPool.shutdown();
+      
       try {
-        writer.close();
-      } catch (MutationsRejectedException e) {
-        log.error("Problem removing entries from the metadata table: ", e);
+        while (!deleteThreadPool.awaitTermination(1000, TimeUnit.MILLISECONDS)) {}
+      } catch (InterruptedException e1) {
+        log.error(e1, e1);
+      }
+      
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (MutationsRejectedException e) {
+          log.error("Problem removing entries from the metadata table: ", e);
+        }
       }
     }
   }
@@ -266,7 +266,7 @@ public class DefaultLoadBalancer extends TabletBalancer {
     return result;
   }
   
-  static KeyExtent selectTablet(TServerInstance tserver, Map<KeyExtent,TabletStats> extents) {
+  KeyExtent selectTablet(TServerInstance tserver, Map<KeyExtent,TabletStats> extents) {
     if (extents.size() == 0)
       return null;
     KeyExtent mostRecentlySplit = null;
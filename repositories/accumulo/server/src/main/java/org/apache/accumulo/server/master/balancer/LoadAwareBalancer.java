@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.master.balancer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.apache.accumulo.core.data.KeyExtent;
+import org.apache.accumulo.core.master.thrift.TableInfo;
+import org.apache.accumulo.core.master.thrift.TabletServerStatus;
+import org.apache.accumulo.core.tabletserver.thrift.TabletStats;
+import org.apache.accumulo.server.master.state.TServerInstance;
+import org.apache.accumulo.server.master.state.TabletMigration;
+import org.apache.log4j.Logger;
+
+/**
+ * Balances the ingest and query load reported by the tablet servers, rather than the number of tablets they host. Tablets are moved from the busiest server
+ * to the least busy one, choosing the tablet whose load best evens out the pair. Once the load is within a tolerance of the mean, or no tablet can be moved to
+ * even it out further, the number of tablets is balanced as the {@link DefaultLoadBalancer} does, moving the least busy tablets.
+ * 
+ * To keep tablets from flapping between servers, server loads are smoothed over several balancing passes and a tablet that was moved is not moved again for
+ * a while. A tablet that carries more load than moving it could even out is reported as a hotspot instead, since it has to be split to spread its load.
+ */
+public class LoadAwareBalancer extends DefaultLoadBalancer {
+  
+  private static final Logger log = Logger.getLogger(LoadAwareBalancer.class);
+  
+  // weight of the latest reported load in the smoothed load of a server
+  static final double ALPHA = 0.5;
+  // how far above the mean load a server may be before tablets are moved off of it
+  static final double TOLERANCE = 0.2;
+  // differences in load, in entries per second, that are too small to bother with
+  static final double MIN_LOAD_DIFFERENCE = 10.0;
+  // how long a tablet that was moved stays where it was moved to
+  static final long QUIET_PERIOD = 10 * 60 * 1000;
+  static final int MAX_MIGRATIONS = 10;
+  
+  private Map<TServerInstance,Double> smoothedLoads = new HashMap<TServerInstance,Double>();
+  private Map<KeyExtent,Long> recentlyMoved = new HashMap<KeyExtent,Long>();
+  private Set<KeyExtent> hotTablets = new HashSet<KeyExtent>();
+  
+  // used while balancing the number of tablets, to not overload the server tablets are moved to
+  private double meanLoad = 0;
+  private Double destinationLoad = null;
+  
+  public LoadAwareBalancer() {}
+  
+  public LoadAwareBalancer(String table) {
+    super(table);
+  }
+  
+  long currentTime() {
+    return System.currentTimeMillis();
+  }
+  
+  static double getLoad(TabletStats stats) {
+    return stats.ingestRate + stats.queryRate;
+  }
+  
+  double getLoad(TabletServerStatus status) {
+    double load = 0;
+    if (status.tableMap != null) {
+      for (Entry<String,TableInfo> entry : status.tableMap.entrySet()) {
+        if (tableToBalance == null || tableToBalance.equals(entry.getKey()))
+          load += entry.getValue().ingestRate + entry.getValue().queryRate;
+      }
+    }
+    return load;
+  }
+  
+  /**
+   * @return the smoothed load of the server, or null if it has not reported a load
+   */
+  Double getSmoothedLoad(TServerInstance server) {
+    return smoothedLoads.get(server);
+  }
+  
+  /**
+   * @return the tablets found in the last balancing pass that carry too much load to be balanced by moving them
+   */
+  Set<KeyExtent> getHotTablets() {
+    return hotTablets;
+  }
+  
+  void updateLoads(SortedMap<TServerInstance,TabletServerStatus> current) {
+    smoothedLoads.keySet().retainAll(current.keySet());
+    double total = 0;
+    for (Entry<TServerInstance,TabletServerStatus> entry : current.entrySet()) {
+      if (entry.getValue() == null)
+        continue;
+      double load = getLoad(entry.getValue());
+      Double previous = smoothedLoads.get(entry.getKey());
+      smoothedLoads.put(entry.getKey(), previous == null ? load : ALPHA * load + (1 - ALPHA) * previous);
+      total += smoothedLoads.get(entry.getKey());
+    }
+    meanLoad = smoothedLoads.size() == 0 ? 0 : total / smoothedLoads.size();
+  }
+  
+  private void adjustLoad(Map<TServerInstance,Double> loads, TServerInstance server, double delta) {
+    loads.put(server, loads.get(server) + delta);
+  }
+  
+  private static boolean isOverloaded(double load, double mean) {
+    return load > mean * (1 + TOLERANCE) && load - mean >= MIN_LOAD_DIFFERENCE;
+  }
+  
+  /**
+   * Moves tablets from servers whose load is above the mean, most loaded first.
+   * 
+   * @return true if some server is still overloaded once the migrations added are done
+   */
+  boolean getLoadMigrations(SortedMap<TServerInstance,TabletServerStatus> current, List<TabletMigration> result) {
+    long now = currentTime();
+    Iterator<Long> times = recentlyMoved.values().iterator();
+    while (times.hasNext())
+      if (now - times.next() > QUIET_PERIOD)
+        times.remove();
+    
+    Map<TServerInstance,Double> loads = new HashMap<TServerInstance,Double>();
+    double total = 0;
+    for (Entry<TServerInstance,TabletServerStatus> entry : current.entrySet()) {
+      Double load = smoothedLoads.get(entry.getKey());
+      if (entry.getValue() != null && load != null) {
+        loads.put(entry.getKey(), load);
+        total += load;
+      }
+    }
+    
+    Set<KeyExtent> hot = new HashSet<KeyExtent>();
+    try {
+      if (loads.size() < 2)
+        return false;
+      double mean = total / loads.size();
+      
+      Set<TServerInstance> exhausted = new HashSet<TServerInstance>();
+      Map<TServerInstance,List<TabletStats>> tablets = new HashMap<TServerInstance,List<TabletStats>>();
+      
+      while (result.size() < MAX_MIGRATIONS) {
+        TServerInstance busiest = null;
+        TServerInstance idlest = null;
+        for (Entry<TServerInstance,Double> entry : loads.entrySet()) {
+          if (!exhausted.contains(entry.getKey()) && (busiest == null || entry.getValue() > loads.get(busiest)))
+            busiest = entry.getKey();
+          if (idlest == null || entry.getValue() < loads.get(idlest))
+            idlest = entry.getKey();
+        }
+        
+        if (busiest == null || busiest.equals(idlest))
+          break;
+        
+        double busy = loads.get(busiest);
+        if (!isOverloaded(busy, mean))
+          break;
+        
+        List<TabletStats> candidates = tablets.get(busiest);
+        if (candidates == null) {
+          candidates = getTablets(busiest, current.get(busiest));
+          tablets.put(busiest, candidates);
+        }
+        
+        TabletStats tablet = selectLoadedTablet(busiest, candidates, busy - loads.get(idlest), hot);
+        if (tablet == null) {
+          exhausted.add(busiest);
+          continue;
+        }
+        candidates.remove(tablet);
+        
+        KeyExtent extent = new KeyExtent(tablet.extent);
+        double load = getLoad(tablet);
+        result.add(new TabletMigration(extent, busiest, idlest));
+        recentlyMoved.put(extent, now);
+        
+        // account for the move, so the following passes do not move more than needed while the reported loads catch up
+        adjustLoad(loads, busiest, -load);
+        adjustLoad(loads, idlest, load);
+        adjustLoad(smoothedLoads, busiest, -load);
+        adjustLoad(smoothedLoads, idlest, load);
+      }
+    } finally {
+      hotTablets = hot;
+      log.debug("load balance ended with " + result.size() + " migrations");
+    }
+    
+    double mean = total / loads.size();
+    for (Double load : loads.values())
+      if (isOverloaded(load, mean))
+        return true;
+    return false;
+  }
+  
+  private List<TabletStats> getTablets(TServerInstance server, TabletServerStatus status) {
+    List<TabletStats> result = new ArrayList<TabletStats>();
+    if (status.tableMap == null)
+      return result;
+    for (Entry<String,TableInfo> entry : status.tableMap.entrySet()) {
+      TableInfo info = entry.getValue();
+      if ((tableToBalance != null && !tableToBalance.equals(entry.getKey())) || info.ingestRate + info.queryRate <= 0)
+        continue;
+      try {
+        List<TabletStats> stats = getOnlineTabletsForTable(server, entry.getKey());
+        if (stats != null)
+          result.addAll(stats);
+      } catch (Exception ex) {
+        log.error("Unable to get the tablets of table " + entry.getKey() + " on " + server, ex);
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Selects the tablet whose load comes closest to evening out the load of the two servers. Moving a tablet with a load of at least the difference in load
+   * would only move the hotspot, so such tablets are reported instead.
+   */
+  private TabletStats selectLoadedTablet(TServerInstance server, List<TabletStats> tablets, double difference, Set<KeyExtent> hot) {
+    TabletStats best = null;
+    double target = difference / 2;
+    for (TabletStats stats : tablets) {
+      KeyExtent extent = new KeyExtent(stats.extent);
+      if (recentlyMoved.containsKey(extent))
+        continue;
+      double load = getLoad(stats);
+      if (load <= 0)
+        continue;
+      if (load >= difference) {
+        hot.add(extent);
+        if (!hotTablets.contains(extent))
+          log.warn("Tablet " + extent + " on " + server + " has a load of " + String.format("%.1f", load) + " which can not be balanced by moving it, "
+              + "consider splitting it");
+        continue;
+      }
+      if (best == null || Math.abs(load - target) < Math.abs(getLoad(best) - target))
+        best = stats;
+    }
+    return best;
+  }
+  
+  @Override
+  List<TabletMigration> move(ServerCounts tooMuch, ServerCounts tooLittle, int count) {
+    destinationLoad = smoothedLoads.get(tooLittle.server);
+    List<TabletMigration> result = super.move(tooMuch, tooLittle, count);
+    if (destinationLoad != null)
+      smoothedLoads.put(tooLittle.server, destinationLoad);
+    destinationLoad = null;
+    return result;
+  }
+  
+  /**
+   * When balancing the number of tablets, move the least busy tablet that was not recently moved and that does not overload the server it is moved to.
+   */
+  @Override
+  KeyExtent selectTablet(TServerInstance tserver, Map<KeyExtent,TabletStats> extents) {
+    KeyExtent result = null;
+    TabletStats resultStats = null;
+    for (Entry<KeyExtent,TabletStats> entry : extents.entrySet()) {
+      if (recentlyMoved.containsKey(entry.getKey()))
+        continue;
+      TabletStats stats = entry.getValue();
+      if (destinationLoad != null && isOverloaded(destinationLoad + getLoad(stats), meanLoad))
+        continue;
+      if (resultStats == null || getLoad(stats) < getLoad(resultStats)
+          || (getLoad(stats) == getLoad(resultStats) && stats.splitCreationTime >= resultStats.splitCreationTime)) {
+        result = entry.getKey();
+        resultStats = stats;
+      }
+    }
+    if (result != null) {
+      recentlyMoved.put(result, currentTime());
+      if (destinationLoad != null)
+        destinationLoad += getLoad(resultStats);
+      Double sourceLoad = smoothedLoads.get(tserver);
+      if (sourceLoad != null)
+        smoothedLoads.put(tserver, sourceLoad - getLoad(resultStats));
+    }
+    return result;
+  }
+  
+  @Override
+  public long balance(SortedMap<TServerInstance,TabletServerStatus> current, Set<KeyExtent> migrations, List<TabletMigration> migrationsOut) {
+    updateLoads(current);
+    if (current.size() > 0 && migrations.size() == 0) {
+      // do not even out the number of tablets while moving tablets evens out the load, that could move tablets back onto an overloaded server
+      getLoadMigrations(current, migrationsOut);
+      if (migrationsOut.size() > 0)
+        return 1 * 1000;
+      // the load is even, or can not be evened out by moving tablets, as with a hotspot; tablets are not moved onto overloaded servers
+      if (getMigrations(current, migrationsOut) && migrationsOut.size() > 0)
+        return 1 * 1000;
+    }
+    return 5 * 1000;
+  }
+}
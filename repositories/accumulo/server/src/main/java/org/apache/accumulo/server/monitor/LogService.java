@@ -21,12 +21,14 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.core.util.Daemon;
+import org.apache.accumulo.server.tabletserver.Tablet;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.apache.log4j.net.SocketNode;
@@ -99,6 +101,10 @@ public class LogService extends org.apache.log4j.AppenderSkeleton {
     }
   };
   
+  private static final int MAX_SLOW_SCANS = 100;
+  
+  private LinkedList<LoggingEvent> slowScans = new LinkedList<LoggingEvent>();
+  
   public LogService() {
     synchronized (LogService.class) {
       instance = this;
@@ -111,6 +117,14 @@ public class LogService extends org.apache.log4j.AppenderSkeleton {
     if (application == null || application.toString().isEmpty())
       return;
     
+    // slow scans are expected while tracing, keep them apart from the problems logged
+    if (Tablet.SLOW_SCAN_LOGGER.equals(ev.getLoggerName())) {
+      slowScans.addFirst(ev);
+      if (slowScans.size() > MAX_SLOW_SCANS)
+        slowScans.removeLast();
+      return;
+    }
+    
     DedupedLogEvent dev = new DedupedLogEvent(ev);
     
     // if event is present, increase the count
@@ -143,4 +157,15 @@ public class LogService extends org.apache.log4j.AppenderSkeleton {
   synchronized public void clear() {
     events.clear();
   }
+  
+  /**
+   * @return the most recent slow scans logged by the tablet servers, newest first
+   */
+  synchronized public List<LoggingEvent> getSlowScans() {
+    return new ArrayList<LoggingEvent>(slowScans);
+  }
+  
+  synchronized public void clearSlowScans() {
+    slowScans.clear();
+  }
 }
@@ -17,15 +17,12 @@
 package org.apache.accumulo.server.monitor;
 
 import java.net.InetSocketAddress;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.accumulo.cloudtrace.instrument.Tracer;
 import org.apache.accumulo.core.Constants;
@@ -61,6 +58,7 @@ import org.apache.accumulo.server.monitor.servlets.MasterServlet;
 import org.apache.accumulo.server.monitor.servlets.OperationServlet;
 import org.apache.accumulo.server.monitor.servlets.ProblemServlet;
 import org.apache.accumulo.server.monitor.servlets.ShellServlet;
+import org.apache.accumulo.server.monitor.servlets.SlowScansServlet;
 import org.apache.accumulo.server.monitor.servlets.TServersServlet;
 import org.apache.accumulo.server.monitor.servlets.TablesServlet;
 import org.apache.accumulo.server.monitor.servlets.VisServlet;
@@ -68,6 +66,7 @@ import org.apache.accumulo.server.monitor.servlets.XMLServlet;
 import org.apache.accumulo.server.monitor.servlets.trace.ListType;
 import org.apache.accumulo.server.monitor.servlets.trace.ShowTrace;
 import org.apache.accumulo.server.monitor.servlets.trace.Summary;
+import org.apache.accumulo.server.monitor.util.TimeSeries;
 import org.apache.accumulo.server.problems.ProblemReports;
 import org.apache.accumulo.server.problems.ProblemType;
 import org.apache.accumulo.server.security.SecurityConstants;
@@ -86,64 +85,62 @@ public class Monitor {
   private static final Logger log = Logger.getLogger(Monitor.class);
   
   public static final int REFRESH_TIME = 5;
-  private static long lastRecalc = 0L;
-  private static double totalIngestRate = 0.0;
-  private static double totalIngestByteRate = 0.0;
-  private static double totalQueryRate = 0.0;
-  private static double totalScanRate = 0.0;
-  private static double totalQueryByteRate = 0.0;
-  private static long totalEntries = 0L;
-  private static int totalTabletCount = 0;
-  private static int onlineTabletCount = 0;
-  private static long totalHoldTime = 0;
-  private static long totalLookups = 0;
-  private static int totalTables = 0;
-  
-  private static class MaxList<T> extends LinkedList<Pair<Long,T>> {
-    private static final long serialVersionUID = 1L;
-    
-    private long maxDelta;
-    
-    public MaxList(long maxDelta) {
-      this.maxDelta = maxDelta;
-    }
-    
-    @Override
-    public boolean add(Pair<Long,T> obj) {
-      boolean result = super.add(obj);
-      
-      if (obj.getFirst() - get(0).getFirst() > maxDelta)
-        remove(0);
-      
-      return result;
-    }
-    
-  }
+  private static volatile long lastRecalc = 0L;
+  private static volatile double totalIngestRate = 0.0;
+  private static volatile double totalIngestByteRate = 0.0;
+  private static volatile double totalQueryRate = 0.0;
+  private static volatile double totalScanRate = 0.0;
+  private static volatile double totalQueryByteRate = 0.0;
+  private static volatile long totalEntries = 0L;
+  private static volatile int totalTabletCount = 0;
+  private static volatile int onlineTabletCount = 0;
+  private static volatile long totalHoldTime = 0;
+  private static volatile long totalLookups = 0;
+  private static volatile int totalTables = 0;
+  private static volatile double lookupRate = 0.0;
   
   private static final int MAX_TIME_PERIOD = 60 * 60 * 1000;
-  private static List<Pair<Long,Double>> loadOverTime = Collections.synchronizedList(new MaxList<Double>(MAX_TIME_PERIOD));
-  private static List<Pair<Long,Double>> ingestRateOverTime = Collections.synchronizedList(new MaxList<Double>(MAX_TIME_PERIOD));
-  private static List<Pair<Long,Double>> ingestByteRateOverTime = Collections.synchronizedList(new MaxList<Double>(MAX_TIME_PERIOD));
-  private static List<Pair<Long,Integer>> recoveriesOverTime = Collections.synchronizedList(new MaxList<Integer>(MAX_TIME_PERIOD));
-  private static List<Pair<Long,Integer>> minorCompactionsOverTime = Collections.synchronizedList(new MaxList<Integer>(MAX_TIME_PERIOD));
-  private static List<Pair<Long,Integer>> majorCompactionsOverTime = Collections.synchronizedList(new MaxList<Integer>(MAX_TIME_PERIOD));
-  private static List<Pair<Long,Double>> lookupsOverTime = Collections.synchronizedList(new MaxList<Double>(MAX_TIME_PERIOD));
-  private static List<Pair<Long,Integer>> queryRateOverTime = Collections.synchronizedList(new MaxList<Integer>(MAX_TIME_PERIOD));
-  private static List<Pair<Long,Integer>> scanRateOverTime = Collections.synchronizedList(new MaxList<Integer>(MAX_TIME_PERIOD));
-  private static List<Pair<Long,Double>> queryByteRateOverTime = Collections.synchronizedList(new MaxList<Double>(MAX_TIME_PERIOD));
-  private static List<Pair<Long,Double>> indexCacheHitRateOverTime = Collections.synchronizedList(new MaxList<Double>(MAX_TIME_PERIOD));
-  private static List<Pair<Long,Double>> dataCacheHitRateOverTime = Collections.synchronizedList(new MaxList<Double>(MAX_TIME_PERIOD));
+  private static final int MAX_POINTS = MAX_TIME_PERIOD / (REFRESH_TIME * 1000);
+  private static final TimeSeries loadOverTime = new TimeSeries(MAX_TIME_PERIOD, MAX_POINTS);
+  private static final TimeSeries ingestRateOverTime = new TimeSeries(MAX_TIME_PERIOD, MAX_POINTS);
+  private static final TimeSeries ingestByteRateOverTime = new TimeSeries(MAX_TIME_PERIOD, MAX_POINTS);
+  private static final TimeSeries recoveriesOverTime = new TimeSeries(MAX_TIME_PERIOD, MAX_POINTS);
+  private static final TimeSeries minorCompactionsOverTime = new TimeSeries(MAX_TIME_PERIOD, MAX_POINTS);
+  private static final TimeSeries majorCompactionsOverTime = new TimeSeries(MAX_TIME_PERIOD, MAX_POINTS);
+  private static final TimeSeries lookupsOverTime = new TimeSeries(MAX_TIME_PERIOD, MAX_POINTS);
+  private static final TimeSeries queryRateOverTime = new TimeSeries(MAX_TIME_PERIOD, MAX_POINTS);
+  private static final TimeSeries scanRateOverTime = new TimeSeries(MAX_TIME_PERIOD, MAX_POINTS);
+  private static final TimeSeries queryByteRateOverTime = new TimeSeries(MAX_TIME_PERIOD, MAX_POINTS);
+  private static final TimeSeries indexCacheHitRateOverTime = new TimeSeries(MAX_TIME_PERIOD, MAX_POINTS);
+  private static final TimeSeries dataCacheHitRateOverTime = new TimeSeries(MAX_TIME_PERIOD, MAX_POINTS);
   private static EventCounter lookupRateTracker = new EventCounter();
   private static EventCounter indexCacheHitTracker = new EventCounter();
   private static EventCounter indexCacheRequestTracker = new EventCounter();
   private static EventCounter dataCacheHitTracker = new EventCounter();
   private static EventCounter dataCacheRequestTracker = new EventCounter();
   
-  private static volatile boolean fetching = false;
-  private static MasterMonitorInfo mmi;
-  private static Map<String,Map<ProblemType,Integer>> problemSummary = Collections.emptyMap();
-  private static Exception problemException;
-  private static GCStatus gcStatus;
+  private static final AtomicBoolean fetching = new AtomicBoolean(false);
+  private static volatile MasterMonitorInfo mmi;
+  
+  /**
+   * The summary of a tablet server's tables, kept until the server reports again.
+   */
+  private static class ServerSummary {
+    final long lastContact;
+    final TableInfo summary;
+    
+    ServerSummary(long lastContact, TableInfo summary) {
+      this.lastContact = lastContact;
+      this.summary = summary;
+    }
+  }
+  
+  // replaced, never modified, by each fetch
+  private static volatile Map<String,ServerSummary> serverSummaries = Collections.emptyMap();
+  private static volatile Map<String,Double> holdTimeByTable = Collections.emptyMap();
+  private static volatile Map<String,Map<ProblemType,Integer>> problemSummary = Collections.emptyMap();
+  private static volatile Exception problemException;
+  private static volatile GCStatus gcStatus;
   
   private static Instance instance;
   
@@ -196,6 +193,23 @@ public class Monitor {
     total.scanRate += more.scanRate;
   }
   
+  /**
+   * @return the summary of a tablet server's tables made by the last fetch, or a new summary if the server reported since
+   */
+  public static TableInfo getServerSummary(TabletServerStatus status) {
+    ServerSummary summary = serverSummaries.get(status.name);
+    if (summary != null && summary.lastContact == status.lastContact)
+      return summary.summary;
+    return summarizeTableStats(status);
+  }
+  
+  /**
+   * @return the longest time any tablet server holding a table has held commits, by table id
+   */
+  public static Map<String,Double> getHoldTimeByTable() {
+    return holdTimeByTable;
+  }
+  
   public static TableInfo summarizeTableStats(TabletServerStatus status) {
     TableInfo summary = new TableInfo();
     summary.major = new Compacting();
@@ -209,42 +223,53 @@ public class Monitor {
   
   private static class EventCounter {
     
-    Map<String,Pair<Long,Long>> prevSamples = new HashMap<String,Pair<Long,Long>>();
-    Map<String,Pair<Long,Long>> samples = new HashMap<String,Pair<Long,Long>>();
-    Set<String> serversUpdated = new HashSet<String>();
+    private static class Sample {
+      long time;
+      long events;
+      long prevTime;
+      long prevEvents;
+      boolean hasPrev = false;
+      boolean updated;
+    }
+    
+    Map<String,Sample> samples = new HashMap<String,Sample>();
     
     void startingUpdates() {
-      serversUpdated.clear();
+      for (Sample sample : samples.values())
+        sample.updated = false;
     }
     
     void updateTabletServer(String name, long sampleTime, long numEvents) {
-      Pair<Long,Long> newSample = new Pair<Long,Long>(sampleTime, numEvents);
-      Pair<Long,Long> lastSample = samples.get(name);
-      
-      if (lastSample == null || !lastSample.equals(newSample)) {
-        samples.put(name, newSample);
-        if (lastSample != null) {
-          prevSamples.put(name, lastSample);
-        }
+      Sample sample = samples.get(name);
+      if (sample == null) {
+        sample = new Sample();
+        sample.time = sampleTime;
+        sample.events = numEvents;
+        samples.put(name, sample);
+      } else if (sample.time != sampleTime || sample.events != numEvents) {
+        sample.prevTime = sample.time;
+        sample.prevEvents = sample.events;
+        sample.hasPrev = true;
+        sample.time = sampleTime;
+        sample.events = numEvents;
       }
-      serversUpdated.add(name);
+      sample.updated = true;
     }
     
     void finishedUpdating() {
       // remove any tablet servers not updated
-      samples.keySet().retainAll(serversUpdated);
-      prevSamples.keySet().retainAll(serversUpdated);
+      Iterator<Sample> iter = samples.values().iterator();
+      while (iter.hasNext())
+        if (!iter.next().updated)
+          iter.remove();
     }
     
     double calculateRate() {
       double totalRate = 0;
       
-      for (Entry<String,Pair<Long,Long>> entry : prevSamples.entrySet()) {
-        Pair<Long,Long> prevSample = entry.getValue();
-        Pair<Long,Long> sample = samples.get(entry.getKey());
-        
-        totalRate += (sample.getSecond() - prevSample.getSecond()) / ((sample.getFirst() - prevSample.getFirst()) / (double) 1000);
-      }
+      for (Sample sample : samples.values())
+        if (sample.hasPrev)
+          totalRate += (sample.events - sample.prevEvents) / ((sample.time - sample.prevTime) / (double) 1000);
       
       return totalRate;
     }
@@ -252,12 +277,9 @@ public class Monitor {
     long calculateCount() {
       long count = 0;
       
-      for (Entry<String,Pair<Long,Long>> entry : prevSamples.entrySet()) {
-        Pair<Long,Long> prevSample = entry.getValue();
-        Pair<Long,Long> sample = samples.get(entry.getKey());
-        
-        count += sample.getSecond() - prevSample.getSecond();
-      }
+      for (Sample sample : samples.values())
+        if (sample.hasPrev)
+          count += sample.events - sample.prevEvents;
       
       return count;
     }
@@ -281,11 +303,8 @@ public class Monitor {
     if (currentTime - lastRecalc < REFRESH_TIME * 1000)
       return;
     
-    synchronized (Monitor.class) {
-      if (fetching)
-        return;
-      fetching = true;
-    }
+    if (!fetching.compareAndSet(false, true))
+      return;
     
     try {
       while (retry) {
@@ -320,8 +339,15 @@ public class Monitor {
         dataCacheHitTracker.startingUpdates();
         dataCacheRequestTracker.startingUpdates();
 
+        Map<String,ServerSummary> lastSummaries = serverSummaries;
+        Map<String,ServerSummary> summaries = new HashMap<String,ServerSummary>();
         for (TabletServerStatus server : mmi.tServerInfo) {
-          TableInfo summary = Monitor.summarizeTableStats(server);
+          // only summarize the servers that reported since the last fetch
+          ServerSummary serverSummary = lastSummaries.get(server.name);
+          if (serverSummary == null || serverSummary.lastContact != server.lastContact)
+            serverSummary = new ServerSummary(server.lastContact, summarizeTableStats(server));
+          summaries.put(server.name, serverSummary);
+          TableInfo summary = serverSummary.summary;
           totalIngestRate += summary.ingestRate;
           totalIngestByteRate += summary.ingestByteRate;
           totalQueryRate += summary.queryRate;
@@ -344,6 +370,8 @@ public class Monitor {
         indexCacheRequestTracker.finishedUpdating();
         dataCacheHitTracker.finishedUpdating();
         dataCacheRequestTracker.finishedUpdating();
+        serverSummaries = Collections.unmodifiableMap(summaries);
+        holdTimeByTable = Collections.unmodifiableMap(summarizeTableStats(mmi));
         
         int totalTables = 0;
         for (TableInfo tInfo : mmi.tableMap.values()) {
@@ -365,25 +393,26 @@ public class Monitor {
         Monitor.totalHoldTime = totalHoldTime;
         Monitor.totalLookups = totalLookups;
         
-        ingestRateOverTime.add(new Pair<Long,Double>(currentTime, totalIngestRate));
-        ingestByteRateOverTime.add(new Pair<Long,Double>(currentTime, totalIngestByteRate));
+        ingestRateOverTime.add(currentTime, totalIngestRate);
+        ingestByteRateOverTime.add(currentTime, totalIngestByteRate);
         
         double totalLoad = 0.;
         for (TabletServerStatus status : mmi.tServerInfo) {
           if (status != null)
             totalLoad += status.osLoad;
         }
-        loadOverTime.add(new Pair<Long,Double>(currentTime, totalLoad));
+        loadOverTime.add(currentTime, totalLoad);
         
-        minorCompactionsOverTime.add(new Pair<Long,Integer>(currentTime, minorCompactions));
-        majorCompactionsOverTime.add(new Pair<Long,Integer>(currentTime, majorCompactions));
+        minorCompactionsOverTime.add(currentTime, minorCompactions);
+        majorCompactionsOverTime.add(currentTime, majorCompactions);
         
-        lookupsOverTime.add(new Pair<Long,Double>(currentTime, lookupRateTracker.calculateRate()));
+        lookupRate = lookupRateTracker.calculateRate();
+        lookupsOverTime.add(currentTime, lookupRate);
         
-        queryRateOverTime.add(new Pair<Long,Integer>(currentTime, (int) totalQueryRate));
-        queryByteRateOverTime.add(new Pair<Long,Double>(currentTime, totalQueryByteRate));
+        queryRateOverTime.add(currentTime, (int) totalQueryRate);
+        queryByteRateOverTime.add(currentTime, totalQueryByteRate);
         
-        scanRateOverTime.add(new Pair<Long,Integer>(currentTime, (int) totalScanRate));
+        scanRateOverTime.add(currentTime, (int) totalScanRate);
         
         calcCacheHitRate(indexCacheHitRateOverTime, currentTime, indexCacheHitTracker, indexCacheRequestTracker);
         calcCacheHitRate(dataCacheHitRateOverTime, currentTime, dataCacheHitTracker, dataCacheRequestTracker);
@@ -398,19 +427,17 @@ public class Monitor {
       }
       
     } finally {
-      synchronized (Monitor.class) {
-        fetching = false;
-        lastRecalc = currentTime;
-      }
+      lastRecalc = currentTime;
+      fetching.set(false);
     }
   }
   
-  private static void calcCacheHitRate(List<Pair<Long,Double>> hitRate, long currentTime, EventCounter cacheHits, EventCounter cacheReq) {
+  private static void calcCacheHitRate(TimeSeries hitRate, long currentTime, EventCounter cacheHits, EventCounter cacheReq) {
     long req = cacheReq.calculateCount();
     if (req > 0)
-      hitRate.add(new Pair<Long,Double>(currentTime, cacheHits.calculateCount() / (double) cacheReq.calculateCount()));
+      hitRate.add(currentTime, cacheHits.calculateCount() / (double) req);
     else
-      hitRate.add(new Pair<Long,Double>(currentTime, null));
+      hitRate.add(currentTime, Double.NaN);
   }
   
   private static GCStatus fetchGcStatus() {
@@ -480,6 +507,7 @@ public class Monitor {
     server.addServlet(ProblemServlet.class, "/problems");
     server.addServlet(GcStatusServlet.class, "/gc");
     server.addServlet(LogServlet.class, "/log");
+    server.addServlet(SlowScansServlet.class, "/slowscans");
     server.addServlet(XMLServlet.class, "/xml");
     server.addServlet(JSONServlet.class, "/json");
     server.addServlet(VisServlet.class, "/vis");
@@ -577,79 +605,55 @@ public class Monitor {
   }
   
   public static List<Pair<Long,Double>> getLoadOverTime() {
-    synchronized (loadOverTime) {
-      return new ArrayList<Pair<Long,Double>>(loadOverTime);
-    }
+    return loadOverTime.getPoints();
   }
   
   public static List<Pair<Long,Double>> getIngestRateOverTime() {
-    synchronized (ingestRateOverTime) {
-      return new ArrayList<Pair<Long,Double>>(ingestRateOverTime);
-    }
+    return ingestRateOverTime.getPoints();
   }
   
   public static List<Pair<Long,Double>> getIngestByteRateOverTime() {
-    synchronized (ingestByteRateOverTime) {
-      return new ArrayList<Pair<Long,Double>>(ingestByteRateOverTime);
-    }
+    return ingestByteRateOverTime.getPoints();
   }
   
-  public static List<Pair<Long,Integer>> getRecoveriesOverTime() {
-    synchronized (recoveriesOverTime) {
-      return new ArrayList<Pair<Long,Integer>>(recoveriesOverTime);
-    }
+  public static List<Pair<Long,Double>> getRecoveriesOverTime() {
+    return recoveriesOverTime.getPoints();
   }
   
-  public static List<Pair<Long,Integer>> getMinorCompactionsOverTime() {
-    synchronized (minorCompactionsOverTime) {
-      return new ArrayList<Pair<Long,Integer>>(minorCompactionsOverTime);
-    }
+  public static List<Pair<Long,Double>> getMinorCompactionsOverTime() {
+    return minorCompactionsOverTime.getPoints();
   }
   
-  public static List<Pair<Long,Integer>> getMajorCompactionsOverTime() {
-    synchronized (majorCompactionsOverTime) {
-      return new ArrayList<Pair<Long,Integer>>(majorCompactionsOverTime);
-    }
+  public static List<Pair<Long,Double>> getMajorCompactionsOverTime() {
+    return majorCompactionsOverTime.getPoints();
   }
   
   public static List<Pair<Long,Double>> getLookupsOverTime() {
-    synchronized (lookupsOverTime) {
-      return new ArrayList<Pair<Long,Double>>(lookupsOverTime);
-    }
+    return lookupsOverTime.getPoints();
   }
   
   public static double getLookupRate() {
-    return lookupRateTracker.calculateRate();
+    return lookupRate;
   }
   
-  public static List<Pair<Long,Integer>> getQueryRateOverTime() {
-    synchronized (queryRateOverTime) {
-      return new ArrayList<Pair<Long,Integer>>(queryRateOverTime);
-    }
+  public static List<Pair<Long,Double>> getQueryRateOverTime() {
+    return queryRateOverTime.getPoints();
   }
   
-  public static List<Pair<Long,Integer>> getScanRateOverTime() {
-    synchronized (scanRateOverTime) {
-      return new ArrayList<Pair<Long,Integer>>(scanRateOverTime);
-    }
+  public static List<Pair<Long,Double>> getScanRateOverTime() {
+    return scanRateOverTime.getPoints();
   }
   
   public static List<Pair<Long,Double>> getQueryByteRateOverTime() {
-    synchronized (queryByteRateOverTime) {
-      return new ArrayList<Pair<Long,Double>>(queryByteRateOverTime);
-    }
+    return queryByteRateOverTime.getPoints();
   }
   
   public static List<Pair<Long,Double>> getIndexCacheHitRateOverTime() {
-    synchronized (indexCacheHitRateOverTime) {
-      return new ArrayList<Pair<Long,Double>>(indexCacheHitRateOverTime);
-    }
+    return indexCacheHitRateOverTime.getPoints();
   }
   
   public static List<Pair<Long,Double>> getDataCacheHitRateOverTime() {
-    synchronized (dataCacheHitRateOverTime) {
-      return new ArrayList<Pair<Long,Double>>(dataCacheHitRateOverTime);
-    }
+    return dataCacheHitRateOverTime.getPoints();
   }
   
   public static AccumuloConfiguration getSystemConfiguration() {
@@ -184,6 +184,9 @@ abstract public class BasicServlet extends HttpServlet {
     int numLogs = LogService.getInstance().getEvents().size();
     if (numLogs > 0)
       sb.append("<span class='error'><a href='/log'>Recent&nbsp;Logs&nbsp;<span class='smalltext'>(" + numLogs + ")</a></span></span><br />\n");
+    int numSlowScans = LogService.getInstance().getSlowScans().size();
+    if (numSlowScans > 0)
+      sb.append("<a href='/slowscans'>Slow&nbsp;Scans&nbsp;<span class='smalltext'>(" + numSlowScans + ")</span></a><br />\n");
     int numProblems = Monitor.getProblemSummary().entrySet().size();
     if (numProblems > 0)
       sb.append("<span class='error'><a href='/problems'>Table&nbsp;Problems&nbsp;<span class='smalltext'>(" + numProblems + ")</a></span></span><br />\n");
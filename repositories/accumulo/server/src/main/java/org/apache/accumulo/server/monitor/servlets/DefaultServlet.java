@@ -188,10 +188,12 @@ public class DefaultServlet extends BasicServlet {
           continue;
         
         String y;
-        if (point.getSecond() instanceof Double)
-          y = String.format("%1.2f", point.getSecond());
+        double value = point.getSecond().doubleValue();
+        // counts are kept as doubles too, print whole values as integers
+        if (point.getSecond() instanceof Double && value != Math.rint(value))
+          y = String.format("%1.2f", value);
         else
-          y = point.getSecond().toString();
+          y = Long.toString(point.getSecond().longValue());
         
         sb.append(sep);
         sep = ",";
@@ -48,19 +48,25 @@ public class GcStatusServlet extends BasicServlet {
       gcActivity.addSortableColumn("In&nbsp;Use", new NumberType<Long>(), null);
       gcActivity.addSortableColumn("Errors", new NumberType<Long>(0l, 1l), null);
       gcActivity.addSortableColumn("Duration", new DurationType(), null);
+      gcActivity.addSortableColumn("Candidates&nbsp;Time", new DurationType(), "Time spent gathering candidates for deletion.");
+      gcActivity.addSortableColumn("Confirm&nbsp;Time", new DurationType(), "Time spent finding the candidates that are still in use.");
+      gcActivity.addSortableColumn("Delete&nbsp;Time", new DurationType(), "Time spent deleting files.");
       
       if (status.last.finished > 0)
         gcActivity.addRow("File&nbsp;Collection,&nbsp;Last&nbsp;Cycle", status.last.finished, status.last.candidates, status.last.deleted, status.last.inUse,
-            status.last.errors, status.last.finished - status.last.started);
+            status.last.errors, status.last.finished - status.last.started, status.last.candidatesTime, status.last.confirmTime, status.last.deleteTime);
       if (status.current.started > 0)
         gcActivity.addRow("File&nbsp;Collection,&nbsp;Running", status.current.finished, status.current.candidates, status.current.deleted,
-            status.current.inUse, status.current.errors, System.currentTimeMillis() - status.current.started);
+            status.current.inUse, status.current.errors, System.currentTimeMillis() - status.current.started, status.current.candidatesTime,
+            status.current.confirmTime, status.current.deleteTime);
       if (status.lastLog.finished > 0)
         gcActivity.addRow("WAL&nbsp;Collection,&nbsp;Last&nbsp;Cycle", status.lastLog.finished, status.lastLog.candidates, status.lastLog.deleted,
-            status.lastLog.inUse, status.lastLog.errors, status.lastLog.finished - status.lastLog.started);
+            status.lastLog.inUse, status.lastLog.errors, status.lastLog.finished - status.lastLog.started, status.lastLog.candidatesTime,
+            status.lastLog.confirmTime, status.lastLog.deleteTime);
       if (status.currentLog.started > 0)
         gcActivity.addRow("WAL&nbsp;Collection,&nbsp;Running", status.currentLog.finished, status.currentLog.candidates, status.currentLog.deleted,
-            status.currentLog.inUse, status.currentLog.errors, System.currentTimeMillis() - status.currentLog.started);
+            status.currentLog.inUse, status.currentLog.errors, System.currentTimeMillis() - status.currentLog.started, status.currentLog.candidatesTime,
+            status.currentLog.confirmTime, status.currentLog.deleteTime);
       gcActivity.generate(req, sb);
     } else {
       banner(sb, "error", "Collector is Unavailable");
@@ -56,7 +56,7 @@ public class JSONServlet extends BasicServlet {
     }
     
     for (TabletServerStatus status : Monitor.getMmi().tServerInfo) {
-      TableInfo summary = Monitor.summarizeTableStats(status);
+      TableInfo summary = Monitor.getServerSummary(status);
       addServerLine(sb, status.name, TServerLinkType.displayName(status.name), status.osLoad, summary.ingestRate, summary.queryRate,
           summary.ingestByteRate / 1000000.0, summary.queryByteRate / 1000000.0, summary.scans.running + summary.scans.queued, Monitor.getLookupRate(),
           status.holdTime);
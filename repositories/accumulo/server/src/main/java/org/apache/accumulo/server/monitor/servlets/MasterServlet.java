@@ -179,6 +179,10 @@ public class MasterServlet extends BasicServlet {
       recoveryTable.addSortableColumn("Log");
       recoveryTable.addSortableColumn("Time", new DurationType(), null);
       recoveryTable.addSortableColumn("Copy/Sort", new ProgressChartType(), null);
+      recoveryTable.addSortableColumn("Read", new DurationType(), "Time spent reading the log.");
+      recoveryTable.addSortableColumn("Sort", new DurationType(), "Time spent sorting the buffered entries before they are written out.");
+      recoveryTable.addSortableColumn("Spill", new DurationType(), "Time spent writing sorted runs.");
+      recoveryTable.addSortableColumn("Merge", new DurationType(), "Time spent merging the sorted runs into the recovered log.");
       int rows = 0;
       for (TabletServerStatus server : mmi.tServerInfo) {
         if (server.logSorts != null) {
@@ -188,6 +192,10 @@ public class MasterServlet extends BasicServlet {
             row.add(recovery.name);
             row.add((long) recovery.runtime);
             row.add(recovery.progress);
+            row.add((long) recovery.readTime);
+            row.add((long) recovery.chunkSortTime);
+            row.add((long) recovery.spillTime);
+            row.add((long) recovery.mergeTime);
             recoveryTable.addRow(row);
             rows++;
           }
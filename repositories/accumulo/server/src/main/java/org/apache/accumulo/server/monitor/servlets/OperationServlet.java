@@ -101,6 +101,13 @@ public class OperationServlet extends BasicServlet {
     }
   }
   
+  public static class ClearSlowScansOperation implements WebOperation {
+    @Override
+    public void execute(HttpServletRequest req, HttpServletResponse resp, Logger log) {
+      LogService.getInstance().clearSlowScans();
+    }
+  }
+  
   public static class ClearTableProblemsOperation implements WebOperation {
     @Override
     public void execute(HttpServletRequest req, HttpServletResponse resp, Logger log) {
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.monitor.servlets;
+
+import java.text.SimpleDateFormat;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.server.monitor.LogService;
+import org.apache.accumulo.server.monitor.util.Table;
+import org.apache.accumulo.server.monitor.util.celltypes.DateTimeType;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Shows the scans the tablet servers logged for taking longer than {@link Property#TSERV_SCAN_TRACE_THRESHOLD}.
+ */
+public class SlowScansServlet extends BasicServlet {
+  
+  private static final long serialVersionUID = 1L;
+  
+  @Override
+  protected String getTitle(HttpServletRequest req) {
+    return "Slow Scans";
+  }
+  
+  @Override
+  protected void pageBody(HttpServletRequest req, HttpServletResponse resp, StringBuilder sb) {
+    boolean clear = true;
+    SimpleDateFormat fmt = new SimpleDateFormat("dd HH:mm:ss,SSSS");
+    Table scanTable = new Table("slowScans", "Slow&nbsp;Scans");
+    scanTable.addSortableColumn("Time", new DateTimeType(fmt), null);
+    scanTable.addSortableColumn("Server");
+    scanTable.addSortableColumn("Scan");
+    for (LoggingEvent ev : LogService.getInstance().getSlowScans()) {
+      clear = false;
+      Object application = ev.getMDC("application");
+      if (application == null)
+        application = "";
+      scanTable.addRow(ev.getTimeStamp(), application, "<pre class='logevent'>" + sanitize(ev.getMessage().toString()) + "</pre>");
+    }
+    if (clear)
+      scanTable.setSubCaption("Scans are traced when " + Property.TSERV_SCAN_TRACE_THRESHOLD.getKey() + " is set");
+    else
+      scanTable.setSubCaption("<a href='/op?action=clearSlowScans&redir=" + currentPage(req) + "'>Clear&nbsp;All&nbsp;Scans</a>");
+    scanTable.generate(req, sb);
+  }
+}
@@ -341,7 +341,7 @@ public class TServersServlet extends BasicServlet {
     for (TabletServerStatus status : tservers) {
       if (status == null)
         status = NO_STATUS;
-      TableInfo summary = Monitor.summarizeTableStats(status);
+      TableInfo summary = Monitor.getServerSummary(status);
       if (tableId != null)
         summary = status.tableMap.get(tableId);
       if (summary == null)
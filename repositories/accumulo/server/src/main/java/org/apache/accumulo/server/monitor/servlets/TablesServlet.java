@@ -111,7 +111,7 @@ public class TablesServlet extends BasicServlet {
       for (Entry<String,TableInfo> te : Monitor.getMmi().tableMap.entrySet())
         tableStats.put(Tables.getPrintableTableNameFromId(tidToNameMap, te.getKey()), te.getValue());
     
-    Map<String,Double> compactingByTable = Monitor.summarizeTableStats(Monitor.getMmi());
+    Map<String,Double> compactingByTable = Monitor.getHoldTimeByTable();
     TableManager tableManager = TableManager.getInstance();
     
     for (Entry<String,String> tableName_tableId : Tables.getNameToIdMap(HdfsZooInstance.getInstance()).entrySet()) {
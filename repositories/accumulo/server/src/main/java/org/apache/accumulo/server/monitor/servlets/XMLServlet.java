@@ -70,7 +70,7 @@ public class XMLServlet extends BasicServlet {
       sb.append("<lastContact>").append(System.currentTimeMillis() - status.lastContact).append("</lastContact>\n");
       sb.append("<osload>").append(status.osLoad).append("</osload>\n");
       
-      TableInfo summary = Monitor.summarizeTableStats(status);
+      TableInfo summary = Monitor.getServerSummary(status);
       sb.append("<compactions>\n");
       sb.append("<major>").append("<running>").append(summary.major.running).append("</running>").append("<queued>").append(summary.major.queued)
           .append("</queued>").append("</major>\n");
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.monitor.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.accumulo.core.util.Pair;
+
+/**
+ * The recent history of a value the monitor plots, kept in a ring of primitive arrays.
+ *
+ * Points are added by a single thread and read without locking by any number of others. The ring holds twice the points that are returned, so the writer only
+ * reuses a slot long after it dropped out of what readers are returned. A reader that is still copying when its points are reused drops them.
+ */
+public class TimeSeries {
+  
+  private final long maxAge;
+  private final int maxPoints;
+  private final long[] times;
+  private final double[] values;
+  // the number of points ever added, written only after the point itself so it publishes the point to readers
+  private volatile long count = 0;
+  
+  /**
+   * @param maxAge
+   *          points older than this many milliseconds before the newest point are not returned
+   * @param maxPoints
+   *          the most points returned
+   */
+  public TimeSeries(long maxAge, int maxPoints) {
+    if (maxPoints <= 0)
+      throw new IllegalArgumentException("maxPoints must be positive: " + maxPoints);
+    this.maxAge = maxAge;
+    this.maxPoints = maxPoints;
+    this.times = new long[maxPoints * 2];
+    this.values = new double[maxPoints * 2];
+  }
+  
+  /**
+   * Adds a point. Must only be called by one thread at a time.
+   *
+   * @param value
+   *          the value, or NaN if there is none at this time
+   */
+  public void add(long time, double value) {
+    long n = count;
+    int slot = (int) (n % times.length);
+    times[slot] = time;
+    values[slot] = value;
+    count = n + 1;
+  }
+  
+  /**
+   * @return the points added within the maximum age of the newest point, oldest first. Points added without a value have a null value.
+   */
+  public List<Pair<Long,Double>> getPoints() {
+    long end = count;
+    long start = Math.max(0, end - maxPoints);
+    int n = (int) (end - start);
+    long[] t = new long[n];
+    double[] v = new double[n];
+    for (int i = 0; i < n; i++) {
+      int slot = (int) ((start + i) % times.length);
+      t[i] = times[slot];
+      v[i] = values[slot];
+    }
+    
+    // the slot of the point being added may already be partly written
+    int first = (int) Math.max(0, count - times.length + 1 - start);
+    List<Pair<Long,Double>> points = new ArrayList<Pair<Long,Double>>(Math.max(0, n - first));
+    for (int i = first; i < n; i++) {
+      if (t[n - 1] - t[i] > maxAge)
+        continue;
+      points.add(new Pair<Long,Double>(t[i], Double.isNaN(v[i]) ? null : v[i]));
+    }
+    return points;
+  }
+}
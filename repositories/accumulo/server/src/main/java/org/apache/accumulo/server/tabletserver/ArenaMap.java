@@ -0,0 +1,508 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.tabletserver;
+
+import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IterationInterruptedException;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.system.InterruptibleIterator;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * This class stores data in large Java byte arrays instead of one Java object per key and value, which gets close to the memory density of the {@link NativeMap}
+ * without needing its native library.
+ *
+ * Each entry is serialized once into an append-only arena of byte chunks. The only per entry objects are the node of a concurrent skip list and the boxed int
+ * address of the entry in the arena, and the skip list orders addresses by comparing the serialized entries in place. Chunks start small so that maps of idle
+ * tablets stay small, and double in size up to {@link #MAX_CHUNK_SIZE}. An entry larger than that gets a chunk of its own. Entries are aligned to 8 bytes, so
+ * the 32 bit addresses reach {@link #MAX_SIZE} bytes of entries.
+ *
+ * Keys and values are only materialized as Java objects when they are read.
+ */
+public class ArenaMap implements Iterable<Map.Entry<Key,Value>> {
+  
+  static final int MAX_CHUNK_SIZE = 1 << 20;
+  static final int MIN_CHUNK_SIZE = 1 << 12;
+  
+  /** Entries start at multiples of 8 bytes */
+  private static final int ALIGNMENT_BITS = 3;
+  
+  /** The low bits of an address are the offset within a chunk in multiples of the alignment, the high bits the chunk number */
+  static final int OFFSET_BITS = 20 - ALIGNMENT_BITS;
+  static final int MAX_CHUNKS = 1 << (32 - OFFSET_BITS);
+  private static final int OFFSET_MASK = (1 << OFFSET_BITS) - 1;
+  
+  /** The number of bytes of entries a map holds at least, in chunks of the maximum size */
+  public static final long MAX_SIZE = (long) MAX_CHUNKS * MAX_CHUNK_SIZE;
+  
+  // entry layout : kvCount, timestamp, deleted, row/cf/cq/cv/value lengths, then row, cf, cq, cv and value bytes
+  private static final int TS_OFFSET = 4;
+  private static final int DELETED_OFFSET = 12;
+  private static final int LENGTHS_OFFSET = 13;
+  private static final int HEADER_SIZE = LENGTHS_OFFSET + 5 * 4;
+  
+  /**
+   * The skip list node, its index nodes and the boxed address of each entry, in bytes. Estimated the same way as the overhead of the default map, using
+   * test.EstimateInMemMapOverhead in 64 bit server mode.
+   */
+  static final long OVERHEAD_PER_ENTRY = 64;
+  
+  private volatile byte[][] chunks = new byte[4][];
+  private int numChunks = 0;
+  private int chunkOffset = 0;
+  private volatile long allocatedBytes = 0;
+  private final int maxChunks;
+  
+  private volatile ConcurrentSkipListSet<Object> entries = new ConcurrentSkipListSet<Object>(new EntryComparator());
+  private final AtomicInteger size = new AtomicInteger();
+  
+  public ArenaMap() {
+    this(MAX_CHUNKS);
+  }
+  
+  /**
+   * @param maxChunks
+   *          the number of chunks after which the map is full, only lowered by tests
+   */
+  ArenaMap(int maxChunks) {
+    this.maxChunks = maxChunks;
+  }
+  
+  /**
+   * A key being searched for, unpacked once so that comparing it against serialized entries does not allocate.
+   */
+  private static class Probe {
+    final byte[] row, cf, cq, cv;
+    final long ts;
+    final boolean deleted;
+    final boolean memKey;
+    final int kvCount;
+    
+    Probe(Key key) {
+      row = key.getRowData().toArray();
+      cf = key.getColumnFamilyData().toArray();
+      cq = key.getColumnQualifierData().toArray();
+      cv = key.getColumnVisibilityData().toArray();
+      ts = key.getTimestamp();
+      deleted = key.isDeleted();
+      memKey = key instanceof MemKey;
+      kvCount = memKey ? ((MemKey) key).kvCount : 0;
+    }
+  }
+  
+  /**
+   * Orders entries like {@link MemKeyComparator}, where addresses of serialized entries are compared in place.
+   */
+  private class EntryComparator implements Comparator<Object> {
+    @Override
+    public int compare(Object o1, Object o2) {
+      if (o1 instanceof Integer) {
+        if (o2 instanceof Integer)
+          return compareEntries((Integer) o1, (Integer) o2);
+        return -compareProbe((Probe) o2, (Integer) o1);
+      }
+      if (o2 instanceof Integer)
+        return compareProbe((Probe) o1, (Integer) o2);
+      throw new IllegalArgumentException("Can not compare two search keys");
+    }
+  }
+  
+  private byte[] chunk(int address) {
+    return chunks[address >>> OFFSET_BITS];
+  }
+  
+  private static int offset(int address) {
+    return (address & OFFSET_MASK) << ALIGNMENT_BITS;
+  }
+  
+  private int compareEntries(int a1, int a2) {
+    byte[] c1 = chunk(a1), c2 = chunk(a2);
+    int o1 = offset(a1), o2 = offset(a2);
+    
+    int d1 = o1 + HEADER_SIZE, d2 = o2 + HEADER_SIZE;
+    for (int field = 0; field < 4; field++) {
+      int l1 = getInt(c1, o1 + LENGTHS_OFFSET + field * 4), l2 = getInt(c2, o2 + LENGTHS_OFFSET + field * 4);
+      int cmp = WritableComparator.compareBytes(c1, d1, l1, c2, d2, l2);
+      if (cmp != 0)
+        return cmp;
+      d1 += l1;
+      d2 += l2;
+    }
+    
+    int cmp = compareTail(getLong(c1, o1 + TS_OFFSET), c1[o1 + DELETED_OFFSET] != 0, getLong(c2, o2 + TS_OFFSET), c2[o2 + DELETED_OFFSET] != 0);
+    if (cmp != 0)
+      return cmp;
+    return getInt(c2, o2) - getInt(c1, o1);
+  }
+  
+  private int compareProbe(Probe probe, int address) {
+    byte[] c = chunk(address);
+    int o = offset(address);
+    
+    int d = o + HEADER_SIZE;
+    int l = getInt(c, o + LENGTHS_OFFSET);
+    int cmp = WritableComparator.compareBytes(probe.row, 0, probe.row.length, c, d, l);
+    if (cmp != 0)
+      return cmp;
+    d += l;
+    l = getInt(c, o + LENGTHS_OFFSET + 4);
+    cmp = WritableComparator.compareBytes(probe.cf, 0, probe.cf.length, c, d, l);
+    if (cmp != 0)
+      return cmp;
+    d += l;
+    l = getInt(c, o + LENGTHS_OFFSET + 8);
+    cmp = WritableComparator.compareBytes(probe.cq, 0, probe.cq.length, c, d, l);
+    if (cmp != 0)
+      return cmp;
+    d += l;
+    l = getInt(c, o + LENGTHS_OFFSET + 12);
+    cmp = WritableComparator.compareBytes(probe.cv, 0, probe.cv.length, c, d, l);
+    if (cmp != 0)
+      return cmp;
+    
+    cmp = compareTail(probe.ts, probe.deleted, getLong(c, o + TS_OFFSET), c[o + DELETED_OFFSET] != 0);
+    if (cmp != 0)
+      return cmp;
+    
+    // a plain key sorts before every entry with the same key
+    if (!probe.memKey)
+      return -1;
+    return getInt(c, o) - probe.kvCount;
+  }
+  
+  private static int compareTail(long ts1, boolean del1, long ts2, boolean del2) {
+    if (ts1 < ts2)
+      return 1;
+    if (ts1 > ts2)
+      return -1;
+    if (del1)
+      return del2 ? 0 : -1;
+    return del2 ? 1 : 0;
+  }
+  
+  private static int getInt(byte[] b, int off) {
+    return (b[off] << 24) | ((b[off + 1] & 0xff) << 16) | ((b[off + 2] & 0xff) << 8) | (b[off + 3] & 0xff);
+  }
+  
+  private static long getLong(byte[] b, int off) {
+    return ((long) getInt(b, off) << 32) | (getInt(b, off + 4) & 0xffffffffL);
+  }
+  
+  private static void putInt(byte[] b, int off, int v) {
+    b[off] = (byte) (v >>> 24);
+    b[off + 1] = (byte) (v >>> 16);
+    b[off + 2] = (byte) (v >>> 8);
+    b[off + 3] = (byte) v;
+  }
+  
+  private static void putLong(byte[] b, int off, long v) {
+    putInt(b, off, (int) (v >>> 32));
+    putInt(b, off + 4, (int) v);
+  }
+  
+  /**
+   * Reserves space for an entry. The space is only written by the caller, so entries are copied into the arena concurrently.
+   *
+   * @return the address of the reserved space
+   */
+  private synchronized int allocate(int length) {
+    if (entries == null)
+      throw new IllegalStateException("Arena map deleted");
+    
+    length = (length + (1 << ALIGNMENT_BITS) - 1) & -(1 << ALIGNMENT_BITS);
+    byte[][] chunkArray = chunks;
+    if (numChunks == 0 || chunkOffset + length > chunkArray[numChunks - 1].length) {
+      if (numChunks == maxChunks)
+        throw new IllegalStateException("Arena map is full");
+      
+      int chunkSize = numChunks == 0 ? MIN_CHUNK_SIZE : Math.min(MAX_CHUNK_SIZE, chunkArray[numChunks - 1].length * 2);
+      if (length > chunkSize)
+        chunkSize = length > MAX_CHUNK_SIZE ? length : MAX_CHUNK_SIZE;
+      
+      if (numChunks == chunkArray.length)
+        chunkArray = Arrays.copyOf(chunkArray, Math.min(maxChunks, chunkArray.length * 2));
+      chunkArray[numChunks++] = new byte[chunkSize];
+      chunks = chunkArray;
+      chunkOffset = 0;
+      allocatedBytes += chunkSize;
+    }
+    
+    int address = ((numChunks - 1) << OFFSET_BITS) | (chunkOffset >>> ALIGNMENT_BITS);
+    chunkOffset += length;
+    return address;
+  }
+  
+  private void put(byte[] row, byte[] cf, byte[] cq, byte[] cv, long ts, boolean deleted, byte[] value, int kvCount) {
+    int address = allocate(HEADER_SIZE + row.length + cf.length + cq.length + cv.length + value.length);
+    byte[] c = chunk(address);
+    int o = offset(address);
+    
+    putInt(c, o, kvCount);
+    putLong(c, o + TS_OFFSET, ts);
+    c[o + DELETED_OFFSET] = (byte) (deleted ? 1 : 0);
+    int d = o + HEADER_SIZE;
+    d = putField(c, o, 0, d, row);
+    d = putField(c, o, 1, d, cf);
+    d = putField(c, o, 2, d, cq);
+    d = putField(c, o, 3, d, cv);
+    putField(c, o, 4, d, value);
+    
+    // adding the address publishes the entry written above to readers
+    if (entries().add(address))
+      size.incrementAndGet();
+  }
+  
+  private static int putField(byte[] c, int entryOffset, int field, int dataOffset, byte[] data) {
+    putInt(c, entryOffset + LENGTHS_OFFSET + field * 4, data.length);
+    System.arraycopy(data, 0, c, dataOffset, data.length);
+    return dataOffset + data.length;
+  }
+  
+  private ConcurrentSkipListSet<Object> entries() {
+    ConcurrentSkipListSet<Object> e = entries;
+    if (e == null)
+      throw new IllegalStateException("Arena map deleted");
+    return e;
+  }
+  
+  private MemKey readKey(int address) {
+    byte[] c = chunk(address);
+    int o = offset(address);
+    
+    byte[][] fields = new byte[4][];
+    int d = o + HEADER_SIZE;
+    for (int field = 0; field < 4; field++) {
+      int l = getInt(c, o + LENGTHS_OFFSET + field * 4);
+      fields[field] = Arrays.copyOfRange(c, d, d + l);
+      d += l;
+    }
+    return new MemKey(fields[0], fields[1], fields[2], fields[3], getLong(c, o + TS_OFFSET), c[o + DELETED_OFFSET] != 0, false, getInt(c, o));
+  }
+  
+  private Value readValue(int address) {
+    byte[] c = chunk(address);
+    int o = offset(address);
+    
+    int d = o + HEADER_SIZE;
+    for (int field = 0; field < 4; field++)
+      d += getInt(c, o + LENGTHS_OFFSET + field * 4);
+    int l = getInt(c, o + LENGTHS_OFFSET + 16);
+    return new Value(Arrays.copyOfRange(c, d, d + l), false);
+  }
+  
+  public void mutate(Mutation mutation, int kvCount) {
+    byte[] row = mutation.getRow();
+    for (ColumnUpdate update : mutation.getUpdates()) {
+      put(row, update.getColumnFamily(), update.getColumnQualifier(), update.getColumnVisibility(), update.getTimestamp(), update.isDeleted(),
+          update.getValue(), kvCount++);
+    }
+  }
+  
+  public void mutate(List<Mutation> mutations, int kvCount) {
+    for (Mutation mutation : mutations) {
+      mutate(mutation, kvCount);
+      kvCount += mutation.size();
+    }
+  }
+  
+  public void put(Key key, Value value) {
+    put(key.getRowData().toArray(), key.getColumnFamilyData().toArray(), key.getColumnQualifierData().toArray(), key.getColumnVisibilityData().toArray(),
+        key.getTimestamp(), key.isDeleted(), value.get(), key instanceof MemKey ? ((MemKey) key).kvCount : 0);
+  }
+  
+  public Value get(Key key) {
+    Object first = entries().ceiling(new Probe(key));
+    if (first == null)
+      return null;
+    
+    int address = (Integer) first;
+    if (!readKey(address).equals(key))
+      return null;
+    return readValue(address);
+  }
+  
+  public int size() {
+    entries();
+    return size.get();
+  }
+  
+  public long getMemoryUsed() {
+    entries();
+    return allocatedBytes + size.get() * OVERHEAD_PER_ENTRY;
+  }
+  
+  private class EntryIterator implements Iterator<Entry<Key,Value>> {
+    private final Iterator<Object> source;
+    
+    EntryIterator(Iterator<Object> source) {
+      this.source = source;
+    }
+    
+    @Override
+    public boolean hasNext() {
+      return source.hasNext();
+    }
+    
+    @Override
+    public Entry<Key,Value> next() {
+      int address = (Integer) source.next();
+      return new SimpleImmutableEntry<Key,Value>(readKey(address), readValue(address));
+    }
+    
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+  
+  @Override
+  public Iterator<Map.Entry<Key,Value>> iterator() {
+    return new EntryIterator(entries().iterator());
+  }
+  
+  public Iterator<Map.Entry<Key,Value>> iterator(Key startKey) {
+    return new EntryIterator(entries().tailSet(new Probe(startKey)).iterator());
+  }
+  
+  /**
+   * Releases the arena. The map can not be used afterwards.
+   */
+  public synchronized void delete() {
+    entries();
+    entries = null;
+    chunks = null;
+    allocatedBytes = 0;
+  }
+  
+  private static class ArenaSKVIter implements InterruptibleIterator {
+    
+    private final ArenaMap map;
+    private Iterator<Object> iter;
+    private Range range = new Range();
+    private Key topKey;
+    private Value topValue;
+    private AtomicBoolean interruptFlag;
+    private int interruptCheckCount = 0;
+    
+    ArenaSKVIter(ArenaMap map, AtomicBoolean interruptFlag) {
+      this.map = map;
+      this.interruptFlag = interruptFlag;
+      this.iter = map.entries().iterator();
+      readNext();
+    }
+    
+    private void readNext() {
+      if (iter.hasNext()) {
+        int address = (Integer) iter.next();
+        topKey = map.readKey(address);
+        if (range.afterEndKey(topKey)) {
+          topKey = null;
+          topValue = null;
+        } else {
+          topValue = map.readValue(address);
+        }
+      } else {
+        topKey = null;
+        topValue = null;
+      }
+    }
+    
+    @Override
+    public Key getTopKey() {
+      return topKey;
+    }
+    
+    @Override
+    public Value getTopValue() {
+      return topValue;
+    }
+    
+    @Override
+    public boolean hasTop() {
+      return topKey != null;
+    }
+    
+    @Override
+    public void next() throws IOException {
+      if (topKey == null)
+        throw new IllegalStateException();
+      
+      // same as the native map, checking the interrupt flag for every call to next is too expensive
+      if (interruptFlag != null && interruptCheckCount++ % 100 == 0 && interruptFlag.get())
+        throw new IterationInterruptedException();
+      
+      readNext();
+    }
+    
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+      if (interruptFlag != null && interruptFlag.get())
+        throw new IterationInterruptedException();
+      
+      this.range = range;
+      
+      Key key = range.getStartKey();
+      if (key == null)
+        iter = map.entries().iterator();
+      else
+        iter = map.entries().tailSet(new Probe(key)).iterator();
+      readNext();
+      
+      while (hasTop() && range.beforeStartKey(getTopKey())) {
+        next();
+      }
+    }
+    
+    @Override
+    public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options, IteratorEnvironment env) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+      return new ArenaSKVIter(map, interruptFlag);
+    }
+    
+    @Override
+    public void setInterruptFlag(AtomicBoolean flag) {
+      this.interruptFlag = flag;
+    }
+  }
+  
+  public InterruptibleIterator skvIterator() {
+    return new ArenaSKVIter(this, null);
+  }
+}
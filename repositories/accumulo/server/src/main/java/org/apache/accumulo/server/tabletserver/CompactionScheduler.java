@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.tabletserver;
+
+import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.server.util.time.SimpleTimer;
+import org.apache.log4j.Logger;
+
+/**
+ * Runs the major compactions of user tablets from two queues, split by the amount of data a compaction reads, so that large compactions can not hold up the
+ * small compactions that keep the number of files per tablet, and with it scan latency, under control. Each queue has its own threads and its own throughput
+ * limit. Huge compactions are deferred while smaller compactions are waiting for a large compaction thread, up to a maximum time.
+ */
+public class CompactionScheduler {
+  
+  private static final Logger log = Logger.getLogger(CompactionScheduler.class);
+  
+  static final long DEFER_DELAY = 30 * 1000;
+  
+  /**
+   * A major compaction of a single tablet.
+   */
+  public static interface Job extends Runnable {
+    /**
+     * @return an estimate of the number of bytes the compaction will read
+     */
+    long getEstimatedSize();
+    
+    /**
+     * Sets the limiter the compaction reports the bytes it writes to, before it is run.
+     */
+    void setThroughputLimiter(ThroughputLimiter limiter);
+  }
+  
+  private class SizeQueue {
+    final ExecutorService pool;
+    final ThroughputLimiter limiter = new ThroughputLimiter(0);
+    final AtomicInteger queued = new AtomicInteger(0);
+    // queued compactions that are not huge, which a huge compaction would keep from the threads of this queue
+    final AtomicInteger queuedNotHuge = new AtomicInteger(0);
+    final AtomicInteger running = new AtomicInteger(0);
+    final Rate throughput = new Rate(0.2);
+    
+    SizeQueue(ExecutorService pool) {
+      this.pool = pool;
+    }
+    
+    void execute(ScheduledJob sj) {
+      queued.incrementAndGet();
+      if (!sj.huge)
+        queuedNotHuge.incrementAndGet();
+      try {
+        pool.execute(sj);
+      } catch (RejectedExecutionException e) {
+        dequeued(sj);
+        throw e;
+      }
+    }
+    
+    void dequeued(ScheduledJob sj) {
+      queued.decrementAndGet();
+      if (!sj.huge)
+        queuedNotHuge.decrementAndGet();
+    }
+  }
+  
+  private class ScheduledJob implements Runnable, Comparable<ScheduledJob> {
+    final Job job;
+    final SizeQueue queue;
+    final long size;
+    final boolean huge;
+    final long firstQueued = System.currentTimeMillis();
+    
+    ScheduledJob(Job job, SizeQueue queue, long size) {
+      this.job = job;
+      this.queue = queue;
+      this.size = size;
+      this.huge = size >= hugeThreshold;
+    }
+    
+    @Override
+    public void run() {
+      queue.dequeued(this);
+      
+      // small compactions have their own threads, only the smaller compactions waiting for the thread this one would take gain from deferring it
+      int waiting = queue.queuedNotHuge.get();
+      if (huge && waiting > 0 && System.currentTimeMillis() - firstQueued < maxDeferTime) {
+        deferred.incrementAndGet();
+        log.debug("Deferring compaction of " + size + " bytes while " + waiting + " smaller compactions are queued");
+        SimpleTimer.getInstance().schedule(new TimerTask() {
+          @Override
+          public void run() {
+            try {
+              queue.execute(ScheduledJob.this);
+            } catch (RejectedExecutionException e) {
+              log.debug("Dropping deferred compaction, compactions are shutting down");
+            }
+          }
+        }, DEFER_DELAY);
+        return;
+      }
+      
+      queue.running.incrementAndGet();
+      try {
+        job.setThroughputLimiter(queue.limiter);
+        job.run();
+      } finally {
+        queue.running.decrementAndGet();
+      }
+    }
+    
+    // jobs are ordered within a queue by the compaction queue
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @Override
+    public int compareTo(ScheduledJob o) {
+      return ((Comparable) job).compareTo(o.job);
+    }
+  }
+  
+  private final SizeQueue small;
+  private final SizeQueue large;
+  private final AtomicLong deferred = new AtomicLong(0);
+  
+  private volatile long largeThreshold;
+  private volatile long hugeThreshold;
+  private volatile long maxDeferTime;
+  private long lastSample = 0;
+  
+  /**
+   * @param smallPool
+   *          runs compactions that read less than {@link Property#TSERV_MAJC_LARGE_THRESHOLD}; should be ordered by a {@link CompactionQueue}
+   * @param largePool
+   *          runs all other compactions; should be ordered by a {@link CompactionQueue}
+   */
+  public CompactionScheduler(ExecutorService smallPool, ExecutorService largePool, AccumuloConfiguration conf) {
+    this.small = new SizeQueue(smallPool);
+    this.large = new SizeQueue(largePool);
+    updateConfiguration(conf);
+  }
+  
+  /**
+   * Reads thresholds and throughput limits from the configuration, and samples the throughput of each queue.
+   */
+  public synchronized void updateConfiguration(AccumuloConfiguration conf) {
+    largeThreshold = conf.getMemoryInBytes(Property.TSERV_MAJC_LARGE_THRESHOLD);
+    hugeThreshold = conf.getMemoryInBytes(Property.TSERV_MAJC_HUGE_THRESHOLD);
+    maxDeferTime = conf.getTimeInMillis(Property.TSERV_MAJC_HUGE_DEFER_MAX);
+    small.limiter.setRate(conf.getMemoryInBytes(Property.TSERV_MAJC_THROUGHPUT));
+    large.limiter.setRate(conf.getMemoryInBytes(Property.TSERV_MAJC_LARGE_THROUGHPUT));
+    
+    long now = System.currentTimeMillis();
+    if (now > lastSample) {
+      for (SizeQueue queue : new SizeQueue[] {small, large})
+        queue.throughput.update(now, queue.limiter.getTotalBytes());
+      lastSample = now;
+    }
+  }
+  
+  public void execute(Job job) {
+    long size = job.getEstimatedSize();
+    SizeQueue queue = size < largeThreshold ? small : large;
+    queue.execute(new ScheduledJob(job, queue, size));
+  }
+  
+  public int getSmallQueued() {
+    return small.queued.get();
+  }
+  
+  public int getSmallRunning() {
+    return small.running.get();
+  }
+  
+  /**
+   * @return the recent throughput of small compactions in bytes per second
+   */
+  public long getSmallThroughput() {
+    return (long) small.throughput.rate();
+  }
+  
+  public int getLargeQueued() {
+    return large.queued.get();
+  }
+  
+  public int getLargeRunning() {
+    return large.running.get();
+  }
+  
+  /**
+   * @return the recent throughput of large compactions in bytes per second
+   */
+  public long getLargeThroughput() {
+    return (long) large.throughput.rate();
+  }
+  
+  /**
+   * @return the number of times a huge compaction was deferred
+   */
+  public long getDeferred() {
+    return deferred.get();
+  }
+}
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.accumulo.cloudtrace.instrument.Span;
 import org.apache.accumulo.cloudtrace.instrument.Trace;
@@ -61,6 +62,8 @@ public class Compactor implements Callable<CompactionStats> {
   
   private static final Logger log = Logger.getLogger(Compactor.class);
   
+  private static final long THROUGHPUT_REPORT_SIZE = 1 << 16;
+  
   static class CompactionCanceledException extends Exception {
     private static final long serialVersionUID = 1L;
   }
@@ -81,6 +84,8 @@ public class Compactor implements Callable<CompactionStats> {
   private FileSystem fs;
   protected KeyExtent extent;
   private List<IteratorSetting> iterators;
+  private ExecutorService pipelinePool = null;
+  private ThroughputLimiter limiter = null;
   
   Compactor(Configuration conf, FileSystem fs, Map<String,DataFileValue> files, InMemoryMap imm, String outputFile, boolean propogateDeletes,
       TableConfiguration acuTableConf, KeyExtent extent, CompactionEnv env, List<IteratorSetting> iterators) {
@@ -113,6 +118,21 @@ public class Compactor implements Callable<CompactionStats> {
     return outputFile;
   }
   
+  /**
+   * Decompress the files being compacted and compress the output file on the given pool, leaving only the merge on the compaction thread. The output file is
+   * the same as without a pool.
+   */
+  void setPipelinePool(ExecutorService pipelinePool) {
+    this.pipelinePool = pipelinePool;
+  }
+  
+  /**
+   * Report the bytes written to the given limiter, which slows the compaction down when its rate is exceeded.
+   */
+  void setThroughputLimiter(ThroughputLimiter limiter) {
+    this.limiter = limiter;
+  }
+  
   @Override
   public CompactionStats call() throws IOException, CompactionCanceledException {
     
@@ -123,6 +143,8 @@ public class Compactor implements Callable<CompactionStats> {
     try {
       FileOperations fileFactory = FileOperations.getInstance();
       mfw = fileFactory.openWriter(outputFile, fs, conf, acuTableConf);
+      if (pipelinePool != null)
+        mfw = new PipelinedFileWriter(mfw, pipelinePool);
       
       Map<String,Set<ByteSequence>> lGroups;
       try {
@@ -189,7 +211,8 @@ public class Compactor implements Callable<CompactionStats> {
     }
   }
   
-  private List<SortedKeyValueIterator<Key,Value>> openMapDataFiles(String lgName, ArrayList<FileSKVIterator> readers) throws IOException {
+  private List<SortedKeyValueIterator<Key,Value>> openMapDataFiles(String lgName, ArrayList<FileSKVIterator> readers,
+      ArrayList<PipelinedSourceIterator> pipelines) throws IOException {
     
     List<SortedKeyValueIterator<Key,Value>> iters = new ArrayList<SortedKeyValueIterator<Key,Value>>(filesToCompact.size());
     
@@ -204,7 +227,14 @@ public class Compactor implements Callable<CompactionStats> {
         
         readers.add(reader);
         
-        SortedKeyValueIterator<Key,Value> iter = new ProblemReportingIterator(extent.getTableId().toString(), mapFile, false, reader);
+        SortedKeyValueIterator<Key,Value> source = reader;
+        if (pipelinePool != null) {
+          PipelinedSourceIterator pipeline = new PipelinedSourceIterator(reader, pipelinePool);
+          pipelines.add(pipeline);
+          source = pipeline;
+        }
+        
+        SortedKeyValueIterator<Key,Value> iter = new ProblemReportingIterator(extent.getTableId().toString(), mapFile, false, source);
         
         if (filesToCompact.get(mapFile).isTimeSet()) {
           iter = new TimeSettingIterator(iter, filesToCompact.get(mapFile).getTime());
@@ -218,6 +248,7 @@ public class Compactor implements Callable<CompactionStats> {
         
         log.warn("Some problem opening map file " + mapFile + " " + e.getMessage(), e);
         // failed to open some map file... close the ones that were opened
+        closePipelines(pipelines);
         for (FileSKVIterator reader : readers) {
           try {
             reader.close();
@@ -240,10 +271,11 @@ public class Compactor implements Callable<CompactionStats> {
   private void compactLocalityGroup(String lgName, Set<ByteSequence> columnFamilies, boolean inclusive, FileSKVWriter mfw, CompactionStats majCStats)
       throws IOException, CompactionCanceledException {
     ArrayList<FileSKVIterator> readers = new ArrayList<FileSKVIterator>(filesToCompact.size());
+    ArrayList<PipelinedSourceIterator> pipelines = new ArrayList<PipelinedSourceIterator>();
     Span span = Trace.start("compact");
     try {
       long entriesCompacted = 0;
-      List<SortedKeyValueIterator<Key,Value>> iters = openMapDataFiles(lgName, readers);
+      List<SortedKeyValueIterator<Key,Value>> iters = openMapDataFiles(lgName, readers, pipelines);
       
       if (imm != null) {
         iters.add(imm.compactionIterator());
@@ -277,11 +309,23 @@ public class Compactor implements Callable<CompactionStats> {
       
       Span write = Trace.start("write");
       try {
+        long unreported = 0;
         while (itr.hasTop() && env.isCompactionEnabled()) {
-          mfw.append(itr.getTopKey(), itr.getTopValue());
+          Key key = itr.getTopKey();
+          Value value = itr.getTopValue();
+          mfw.append(key, value);
+          if (limiter != null) {
+            unreported += key.getSize() + value.getSize();
+            if (unreported >= THROUGHPUT_REPORT_SIZE) {
+              limiter.acquire(unreported);
+              unreported = 0;
+            }
+          }
           itr.next();
           entriesCompacted++;
         }
+        if (limiter != null)
+          limiter.acquire(unreported);
         
         if (itr.hasTop() && !env.isCompactionEnabled()) {
           // cancel major compaction operation
@@ -305,6 +349,9 @@ public class Compactor implements Callable<CompactionStats> {
       }
       
     } finally {
+      // stop reading ahead before closing the files read
+      closePipelines(pipelines);
+      
       // close sequence files opened
       for (FileSKVIterator reader : readers) {
         try {
@@ -317,4 +364,15 @@ public class Compactor implements Callable<CompactionStats> {
     }
   }
   
+  private static void closePipelines(List<PipelinedSourceIterator> pipelines) {
+    for (PipelinedSourceIterator pipeline : pipelines) {
+      try {
+        pipeline.close();
+      } catch (Throwable e) {
+        log.warn("Failed to stop reading ahead", e);
+      }
+    }
+    pipelines.clear();
+  }
+  
 }
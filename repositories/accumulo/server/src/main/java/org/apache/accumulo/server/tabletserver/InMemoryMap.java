@@ -195,6 +195,10 @@ public class InMemoryMap {
   private final String memDumpDir;
   
   public InMemoryMap(boolean useNativeMap, String memDumpDir) {
+    this(useNativeMap, false, memDumpDir);
+  }
+  
+  public InMemoryMap(boolean useNativeMap, boolean useArenaMap, String memDumpDir) {
     this.memDumpDir = memDumpDir;
     if (useNativeMap && NativeMap.loadedNativeLibraries()) {
       try {
@@ -204,13 +208,17 @@ public class InMemoryMap {
       }
     }
     
+    if (map == null && useArenaMap) {
+      map = new ArenaMapWrapper();
+    }
+    
     if (map == null) {
       map = new DefaultMap();
     }
   }
   
   public InMemoryMap(AccumuloConfiguration config) {
-    this(config.getBoolean(Property.TSERV_NATIVEMAP_ENABLED), config.get(Property.TSERV_MEMDUMP_DIR));
+    this(config.getBoolean(Property.TSERV_NATIVEMAP_ENABLED), config.getBoolean(Property.TSERV_ARENAMAP_ENABLED), config.get(Property.TSERV_MEMDUMP_DIR));
   }
   
   private interface SimpleMap {
@@ -332,6 +340,39 @@ public class InMemoryMap {
     }
   }
   
+  private static class ArenaMapWrapper implements SimpleMap {
+    private ArenaMap arenaMap = new ArenaMap();
+    
+    public Value get(Key key) {
+      return arenaMap.get(key);
+    }
+    
+    public Iterator<Entry<Key,Value>> iterator(Key startKey) {
+      return arenaMap.iterator(startKey);
+    }
+    
+    public int size() {
+      return arenaMap.size();
+    }
+    
+    public InterruptibleIterator skvIterator() {
+      return arenaMap.skvIterator();
+    }
+    
+    public void delete() {
+      arenaMap.delete();
+    }
+    
+    public long getMemoryUsed() {
+      return arenaMap.getMemoryUsed();
+    }
+    
+    @Override
+    public void mutate(List<Mutation> mutations, int kvCount) {
+      arenaMap.mutate(mutations, kvCount);
+    }
+  }
+  
   private AtomicInteger nextKVCount = new AtomicInteger(1);
   private AtomicInteger kvCount = new AtomicInteger(0);
   
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.tabletserver;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileSKVWriter;
+
+/**
+ * Appends to a file on a thread pool, so that encoding and compressing blocks overlaps with the merge that produces the key values. Appended key values are
+ * handed to the pool in batches through a bounded queue and written in order by a task that exits when the queue is empty. Every other operation waits for
+ * the queued key values to be written first, so the file is identical to one written directly.
+ */
+class PipelinedFileWriter implements FileSKVWriter {
+  
+  static final int BATCH_SIZE = 1 << 16;
+  static final int QUEUE_DEPTH = 4;
+  
+  private static class Batch {
+    final ArrayList<Key> keys = new ArrayList<Key>();
+    final ArrayList<Value> values = new ArrayList<Value>();
+    long size = 0;
+  }
+  
+  private final FileSKVWriter writer;
+  private final ExecutorService pool;
+  
+  // guarded by this
+  private final ArrayDeque<Batch> queue = new ArrayDeque<Batch>();
+  private boolean writing = false;
+  private IOException error = null;
+  
+  // only used by the merge thread
+  private Batch batch = new Batch();
+  
+  private final Runnable drainer = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+  
+  PipelinedFileWriter(FileSKVWriter writer, ExecutorService pool) {
+    this.writer = writer;
+    this.pool = pool;
+  }
+  
+  private void drain() {
+    while (true) {
+      Batch b;
+      synchronized (this) {
+        if (queue.isEmpty() || error != null) {
+          writing = false;
+          notifyAll();
+          return;
+        }
+        // leave the batch queued until it is written, so that flush waits for it
+        b = queue.peekFirst();
+      }
+      
+      try {
+        for (int i = 0; i < b.keys.size(); i++)
+          writer.append(b.keys.get(i), b.values.get(i));
+      } catch (Throwable t) {
+        synchronized (this) {
+          error = t instanceof IOException ? (IOException) t : new IOException(t);
+          queue.clear();
+          writing = false;
+          notifyAll();
+        }
+        return;
+      }
+      
+      synchronized (this) {
+        queue.removeFirst();
+        notifyAll();
+      }
+    }
+  }
+  
+  private void handOff() throws IOException {
+    if (batch.keys.isEmpty())
+      return;
+    
+    Batch b = batch;
+    batch = new Batch();
+    
+    boolean execute = false;
+    synchronized (this) {
+      while (queue.size() >= QUEUE_DEPTH && error == null) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      if (error != null)
+        throw error;
+      
+      queue.addLast(b);
+      if (!writing) {
+        writing = true;
+        execute = true;
+      }
+    }
+    
+    if (execute) {
+      try {
+        pool.execute(drainer);
+      } catch (RejectedExecutionException e) {
+        drainer.run();
+      }
+    }
+  }
+  
+  private void flush() throws IOException {
+    handOff();
+    synchronized (this) {
+      while (writing && error == null) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      if (error != null)
+        throw error;
+    }
+  }
+  
+  @Override
+  public boolean supportsLocalityGroups() {
+    return writer.supportsLocalityGroups();
+  }
+  
+  @Override
+  public void startNewLocalityGroup(String name, Set<ByteSequence> columnFamilies) throws IOException {
+    flush();
+    writer.startNewLocalityGroup(name, columnFamilies);
+  }
+  
+  @Override
+  public void startDefaultLocalityGroup() throws IOException {
+    flush();
+    writer.startDefaultLocalityGroup();
+  }
+  
+  @Override
+  public void append(Key key, Value value) throws IOException {
+    // iterators may reuse the keys and values they return, and the bytes of values
+    Key k = new Key(key);
+    Value v = new Value(value);
+    batch.keys.add(k);
+    batch.values.add(v);
+    batch.size += k.getSize() + v.getSize();
+    if (batch.size >= BATCH_SIZE)
+      handOff();
+  }
+  
+  @Override
+  public DataOutputStream createMetaStore(String name) throws IOException {
+    flush();
+    return writer.createMetaStore(name);
+  }
+  
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      writer.close();
+    }
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.tabletserver;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.system.InterruptibleIterator;
+
+/**
+ * Reads a compaction source ahead of the merge on a thread pool, so that decompressing the blocks of a file overlaps with merging and writing. The source is
+ * read in batches into a bounded queue by a task that exits instead of blocking when the queue is full, which lets the sources of several compactions share a
+ * small pool. The source is only ever used by one thread at a time, and seeks happen on the calling thread.
+ * <p>
+ * A deep copy shares state with its source, so after a deep copy is made the source is no longer read ahead.
+ */
+class PipelinedSourceIterator implements InterruptibleIterator {
+  
+  static final int BATCH_SIZE = 1 << 16;
+  static final int QUEUE_DEPTH = 4;
+  
+  private static class Batch {
+    final ArrayList<Key> keys = new ArrayList<Key>();
+    final ArrayList<Value> values = new ArrayList<Value>();
+    boolean last;
+  }
+  
+  private final SortedKeyValueIterator<Key,Value> source;
+  private final ExecutorService pool;
+  
+  // guarded by this
+  private final ArrayDeque<Batch> ready = new ArrayDeque<Batch>();
+  private boolean fetching = false;
+  private boolean exhausted = false;
+  private boolean stopped = false;
+  private boolean synchronous = false;
+  private boolean closed = false;
+  private IOException error = null;
+  
+  // only used by the merge thread
+  private Batch batch = null;
+  private int pos = 0;
+  
+  private final Runnable fetcher = new Runnable() {
+    @Override
+    public void run() {
+      fetch();
+    }
+  };
+  
+  PipelinedSourceIterator(SortedKeyValueIterator<Key,Value> source, ExecutorService pool) {
+    this.source = source;
+    this.pool = pool;
+  }
+  
+  private Batch read() throws IOException {
+    Batch b = new Batch();
+    long size = 0;
+    while (source.hasTop() && size < BATCH_SIZE) {
+      Key key = source.getTopKey();
+      Value value = source.getTopValue();
+      // sources may reuse the objects they return, but not the arrays behind them
+      b.keys.add(new Key(key));
+      b.values.add(new Value(value.get()));
+      size += key.getSize() + value.getSize();
+      source.next();
+    }
+    b.last = !source.hasTop();
+    return b;
+  }
+  
+  private void fetch() {
+    while (true) {
+      Batch b = null;
+      Throwable t = null;
+      try {
+        b = read();
+      } catch (Throwable e) {
+        t = e;
+      }
+      
+      synchronized (this) {
+        if (t != null) {
+          error = t instanceof IOException ? (IOException) t : new IOException(t);
+        } else {
+          ready.addLast(b);
+          exhausted = b.last;
+        }
+        notifyAll();
+        
+        if (error != null || exhausted || stopped || synchronous || closed || ready.size() >= QUEUE_DEPTH) {
+          fetching = false;
+          return;
+        }
+      }
+    }
+  }
+  
+  private synchronized void scheduleFetch() {
+    if (!fetching && !exhausted && !stopped && !synchronous && !closed && error == null && ready.size() < QUEUE_DEPTH) {
+      fetching = true;
+      try {
+        pool.execute(fetcher);
+      } catch (RejectedExecutionException e) {
+        fetching = false;
+        synchronous = true;
+      }
+    }
+  }
+  
+  private synchronized void waitForFetch() throws IOException {
+    while (fetching) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+    }
+  }
+  
+  private synchronized Batch take() throws IOException {
+    while (true) {
+      if (!ready.isEmpty()) {
+        Batch b = ready.removeFirst();
+        scheduleFetch();
+        return b;
+      }
+      
+      if (error != null)
+        throw error;
+      
+      if (!fetching) {
+        scheduleFetch();
+        // the pool may have rejected the read
+        if (synchronous)
+          return read();
+      }
+      
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+    }
+  }
+  
+  private void advance() throws IOException {
+    while (batch != null && pos == batch.keys.size()) {
+      if (batch.last) {
+        batch = null;
+      } else {
+        batch = take();
+        pos = 0;
+      }
+    }
+  }
+  
+  @Override
+  public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+    synchronized (this) {
+      // stop reading ahead at the next batch
+      stopped = true;
+      waitForFetch();
+      ready.clear();
+      error = null;
+      batch = null;
+    }
+    
+    source.seek(range, columnFamilies, inclusive);
+    
+    synchronized (this) {
+      exhausted = false;
+      stopped = false;
+    }
+    batch = take();
+    pos = 0;
+    advance();
+  }
+  
+  @Override
+  public boolean hasTop() {
+    return batch != null;
+  }
+  
+  @Override
+  public Key getTopKey() {
+    return batch.keys.get(pos);
+  }
+  
+  @Override
+  public Value getTopValue() {
+    return batch.values.get(pos);
+  }
+  
+  @Override
+  public void next() throws IOException {
+    if (batch == null)
+      throw new IllegalStateException();
+    pos++;
+    advance();
+  }
+  
+  @Override
+  public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+    try {
+      synchronized (this) {
+        synchronous = true;
+        waitForFetch();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return source.deepCopy(env);
+  }
+  
+  @Override
+  public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options, IteratorEnvironment env) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+  
+  @Override
+  public void setInterruptFlag(AtomicBoolean flag) {
+    ((InterruptibleIterator) source).setInterruptFlag(flag);
+  }
+  
+  /**
+   * Stops reading ahead and waits for any read in progress, after which the source may be closed. Does not close the source.
+   */
+  synchronized void close() throws IOException {
+    closed = true;
+    waitForFetch();
+    ready.clear();
+  }
+}
@@ -79,9 +79,11 @@ import org.apache.accumulo.core.iterators.system.ColumnQualifierFilter;
 import org.apache.accumulo.core.iterators.system.DeletingIterator;
 import org.apache.accumulo.core.iterators.system.InterruptibleIterator;
 import org.apache.accumulo.core.iterators.system.MultiIterator;
+import org.apache.accumulo.core.iterators.system.ScanStats;
 import org.apache.accumulo.core.iterators.system.SourceSwitchingIterator;
 import org.apache.accumulo.core.iterators.system.SourceSwitchingIterator.DataSource;
 import org.apache.accumulo.core.iterators.system.StatsIterator;
+import org.apache.accumulo.core.iterators.system.TimingIterator;
 import org.apache.accumulo.core.iterators.system.VisibilityFilter;
 import org.apache.accumulo.core.master.thrift.TabletLoadState;
 import org.apache.accumulo.core.security.Authorizations;
@@ -115,6 +117,7 @@ import org.apache.accumulo.server.tabletserver.TabletStatsKeeper.Operation;
 import org.apache.accumulo.server.tabletserver.log.DfsLogger;
 import org.apache.accumulo.server.tabletserver.log.MutationReceiver;
 import org.apache.accumulo.server.tabletserver.mastermessage.TabletStatusMessage;
+import org.apache.accumulo.server.tabletserver.metrics.TabletServerMajCMetrics;
 import org.apache.accumulo.server.tabletserver.metrics.TabletServerMinCMetrics;
 import org.apache.accumulo.server.trace.TraceFileSystem;
 import org.apache.accumulo.server.util.MapCounter;
@@ -413,6 +416,13 @@ public class Tablet {
   private int writesInProgress = 0;
   
   private static final Logger log = Logger.getLogger(Tablet.class);
+  
+  /**
+   * The name of the logger slow scans are logged to, the monitor shows its events separately.
+   */
+  public static final String SLOW_SCAN_LOGGER = Tablet.class.getName() + ".slowScans";
+  private static final Logger slowScanLog = Logger.getLogger(SLOW_SCAN_LOGGER);
+  
   public TabletStatsKeeper timer;
   
   private Rate queryRate = new Rate(0.2);
@@ -1691,6 +1701,7 @@ public class Tablet {
     ScanDataSource dataSource = new ScanDataSource(authorizations, this.defaultSecurityLabel, columns, ssiList, ssio, interruptFlag);
     
     LookupResult result = null;
+    ScanStats scanStats = startScanTrace(null);
 
     try {
       SortedKeyValueIterator<Key,Value> iter = new SourceSwitchingIterator(dataSource);
@@ -1700,18 +1711,52 @@ public class Tablet {
       dataSource.close(true);
       throw ioe;
     } finally {
-      // code in finally block because always want
-      // to return mapfiles, even when exception is thrown
-      dataSource.close(false);
-      
-      synchronized (this) {
-        queryCount += results.size();
-        if (result != null)
-          queryBytes += result.dataSize;
+      // unbind the stats first, so they are not left bound to this pooled thread if closing fails
+      try {
+        finishScanTrace(scanStats, "Lookup of " + ranges.size() + " ranges", results.size());
+      } finally {
+        // code in finally block because always want
+        // to return mapfiles, even when exception is thrown
+        dataSource.close(false);
+        
+        synchronized (this) {
+          queryCount += results.size();
+          if (result != null)
+            queryBytes += result.dataSize;
+        }
       }
     }
   }
   
+  /**
+   * Starts collecting stats for a scan or lookup if slow scans are traced, binding them to the current thread.
+   * 
+   * @return the stats to pass to {@link #finishScanTrace}, or null when slow scans are not traced
+   */
+  private ScanStats startScanTrace(ScanStats scanStats) {
+    if (tabletServer.getSystemConfiguration().getTimeInMillis(Property.TSERV_SCAN_TRACE_THRESHOLD) <= 0)
+      return null;
+    
+    if (scanStats == null)
+      scanStats = new ScanStats();
+    else
+      scanStats.reset();
+    scanStats.bind();
+    return scanStats;
+  }
+  
+  private void finishScanTrace(ScanStats scanStats, String scan, int entries) {
+    if (scanStats == null)
+      return;
+    
+    ScanStats.unbind();
+    
+    long threshold = tabletServer.getSystemConfiguration().getTimeInMillis(Property.TSERV_SCAN_TRACE_THRESHOLD);
+    long elapsed = scanStats.getElapsedMillis();
+    if (threshold > 0 && elapsed >= threshold)
+      slowScanLog.warn(scan + " in " + extent + " took " + elapsed + " ms for " + entries + " entries, " + scanStats);
+  }
+  
   private Batch nextBatch(SortedKeyValueIterator<Key,Value> iter, Range range, int num, HashSet<Column> columns) throws IOException {
     
     // log.info("In nextBatch..");
@@ -1828,6 +1873,7 @@ public class Tablet {
     private ScanDataSource isolatedDataSource;
     private boolean sawException = false;
     private boolean scanClosed = false;
+    private ScanStats scanStats;
     
     Scanner(Range range, ScanOptions options) {
       this.range = range;
@@ -1844,6 +1890,10 @@ public class Tablet {
       
       Batch results = null;
       
+      // an isolated scan keeps its iterators, which keep timing into the same stats
+      scanStats = startScanTrace(scanStats);
+      Range startRange = range;
+      
       ScanDataSource dataSource;
       
       if (options.isolated) {
@@ -1899,18 +1949,23 @@ public class Tablet {
         sawException = true;
         throw re;
       } finally {
-        // code in finally block because always want
-        // to return mapfiles, even when exception is thrown
-        if (!options.isolated)
-          dataSource.close(false);
-        else if (dataSource.fileManager != null)
-          dataSource.fileManager.detach();
-        
-        synchronized (Tablet.this) {
-          if (results != null && results.results != null) {
-            long more = results.results.size();
-            queryCount += more;
-            queryBytes += results.numBytes;
+        // unbind the stats first, so they are not left bound to this pooled thread if closing fails
+        try {
+          finishScanTrace(scanStats, "Scan of " + startRange, results != null && results.results != null ? results.results.size() : 0);
+        } finally {
+          // code in finally block because always want
+          // to return mapfiles, even when exception is thrown
+          if (!options.isolated)
+            dataSource.close(false);
+          else if (dataSource.fileManager != null)
+            dataSource.fileManager.detach();
+          
+          synchronized (Tablet.this) {
+            if (results != null && results.results != null) {
+              long more = results.results.size();
+              queryCount += more;
+              queryBytes += results.numBytes;
+            }
           }
         }
       }
@@ -2063,18 +2118,28 @@ public class Tablet {
       
       TabletIteratorEnvironment iterEnv = new TabletIteratorEnvironment(IteratorScope.scan, acuTableConf, fileManager, files);
       
-      statsIterator = new StatsIterator(multiIter, TabletServer.seekCount, scannedCount);
+      ScanStats scanStats = ScanStats.current();
+      if (scanStats != null)
+        scanStats.addSourcesMerged(iters.size());
+      
+      statsIterator = new StatsIterator(timed(multiIter, "merge", scanStats), TabletServer.seekCount, scannedCount);
       
       DeletingIterator delIter = new DeletingIterator(statsIterator, false);
       
-      ColumnFamilySkippingIterator cfsi = new ColumnFamilySkippingIterator(delIter);
+      ColumnFamilySkippingIterator cfsi = new ColumnFamilySkippingIterator(timed(delIter, "deletes", scanStats));
       
       ColumnQualifierFilter colFilter = new ColumnQualifierFilter(cfsi, options.columnSet);
       
-      VisibilityFilter visFilter = new VisibilityFilter(colFilter, options.authorizations, options.defaultLabels);
+      VisibilityFilter visFilter = new VisibilityFilter(timed(colFilter, "columns", scanStats), options.authorizations, options.defaultLabels);
       
-      return iterEnv.getTopLevelIterator(IteratorUtil
-          .loadIterators(IteratorScope.scan, visFilter, extent, acuTableConf, options.ssiList, options.ssio, iterEnv));
+      return iterEnv.getTopLevelIterator(IteratorUtil.loadIterators(IteratorScope.scan, timed(visFilter, "visibility", scanStats), extent, acuTableConf,
+          options.ssiList, options.ssio, iterEnv));
+    }
+    
+    private SortedKeyValueIterator<Key,Value> timed(SortedKeyValueIterator<Key,Value> iter, String layer, ScanStats scanStats) {
+      if (scanStats == null)
+        return iter;
+      return new TimingIterator(iter, scanStats.getTimer(layer));
     }
     
     private void close(boolean sawErrors) {
@@ -2799,12 +2864,13 @@ public class Tablet {
     return location;
   }
   
-  private class CompactionRunner implements Runnable, Comparable<CompactionRunner> {
+  private class CompactionRunner implements CompactionScheduler.Job, Comparable<CompactionRunner> {
     
     long queued;
     long start;
     boolean failed = false;
     private MajorCompactionReason reason;
+    private ThroughputLimiter limiter = null;
     
     public CompactionRunner(MajorCompactionReason reason) {
       queued = System.currentTimeMillis();
@@ -2824,7 +2890,7 @@ public class Tablet {
       try {
         timer.incrementStatusMajor();
         start = System.currentTimeMillis();
-        majCStats = majorCompact(reason);
+        majCStats = majorCompact(reason, limiter);
         
         // if there is more work to be done, queue another major compaction
         synchronized (Tablet.this) {
@@ -2841,9 +2907,29 @@ public class Tablet {
         }
         
         timer.updateTime(Operation.MAJOR, queued, start, count, failed);
+        
+        if (tabletServer.majcMetrics.isEnabled()) {
+          tabletServer.majcMetrics.add(TabletServerMajCMetrics.majc, (System.currentTimeMillis() - start));
+          tabletServer.majcMetrics.add(TabletServerMajCMetrics.queue, (start - queued));
+        }
       }
     }
     
+    @Override
+    public long getEstimatedSize() {
+      long size = 0;
+      synchronized (Tablet.this) {
+        for (DataFileValue dfv : datafileManager.datafileSizes.values())
+          size += dfv.getSize();
+      }
+      return size;
+    }
+    
+    @Override
+    public void setThroughputLimiter(ThroughputLimiter limiter) {
+      this.limiter = limiter;
+    }
+    
     private int getNumFiles() {
       synchronized (Tablet.this) {
         return datafileManager.datafileSizes.size();
@@ -3116,7 +3202,7 @@ public class Tablet {
     return !closing && !tabletServer.isMajorCompactionDisabled();
   }
   
-  private CompactionStats _majorCompact(MajorCompactionReason reason) throws IOException, CompactionCanceledException {
+  private CompactionStats _majorCompact(MajorCompactionReason reason, ThroughputLimiter limiter) throws IOException, CompactionCanceledException {
     
     boolean propogateDeletes;
     
@@ -3240,6 +3326,9 @@ public class Tablet {
           // always propagate deletes, unless last batch
           Compactor compactor = new Compactor(conf, fs, copy, null, compactTmpName, filesToCompact.size() == 0 ? propogateDeletes : true,
               acuTableConf, extent, cenv, compactionIterators);
+          if (acuTableConf.getBoolean(Property.TABLE_MAJC_PIPELINE_ENABLED))
+            compactor.setPipelinePool(tabletResources.getTabletServerResourceManager().getCompactionPipelinePool());
+          compactor.setThroughputLimiter(limiter);
           
           CompactionStats mcs = compactor.call();
           
@@ -3306,7 +3395,7 @@ public class Tablet {
    * Performs a major compaction on the tablet. If needsSplit() returns true, the tablet is split and a reference to the new tablet is returned.
    */
   
-  private CompactionStats majorCompact(MajorCompactionReason reason) {
+  private CompactionStats majorCompact(MajorCompactionReason reason, ThroughputLimiter limiter) {
     
     CompactionStats majCStats = null;
     
@@ -3324,7 +3413,7 @@ public class Tablet {
         majorCompactionInProgress = true;
       }
       
-      majCStats = _majorCompact(reason);
+      majCStats = _majorCompact(reason, limiter);
       if (reason == MajorCompactionReason.CHOP) {
         MetadataTable.chopped(getExtent(), this.tabletServer.getLock());
         tabletServer.enqueueMasterMessage(new TabletStatusMessage(TabletLoadState.CHOPPED, extent));
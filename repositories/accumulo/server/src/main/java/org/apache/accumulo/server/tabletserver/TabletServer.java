@@ -179,6 +179,7 @@ import org.apache.accumulo.server.tabletserver.mastermessage.MasterMessage;
 import org.apache.accumulo.server.tabletserver.mastermessage.SplitReportMessage;
 import org.apache.accumulo.server.tabletserver.mastermessage.TabletStatusMessage;
 import org.apache.accumulo.server.tabletserver.metrics.TabletServerMBean;
+import org.apache.accumulo.server.tabletserver.metrics.TabletServerMajCMetrics;
 import org.apache.accumulo.server.tabletserver.metrics.TabletServerMinCMetrics;
 import org.apache.accumulo.server.tabletserver.metrics.TabletServerScanMetrics;
 import org.apache.accumulo.server.tabletserver.metrics.TabletServerUpdateMetrics;
@@ -231,6 +232,7 @@ public class TabletServer extends AbstractMetricsImpl implements org.apache.accu
   private TabletServerLogger logger;
   
   protected TabletServerMinCMetrics mincMetrics = new TabletServerMinCMetrics();
+  protected TabletServerMajCMetrics majcMetrics = new TabletServerMajCMetrics();
   
   private ServerConfiguration serverConfig;
   private LogSorter logSorter = null;
@@ -2756,6 +2758,7 @@ public class TabletServer extends AbstractMetricsImpl implements org.apache.accu
       StandardMBean mbean = new StandardMBean(this, TabletServerMBean.class, false);
       this.register(mbean);
       mincMetrics.register();
+      majcMetrics.register();
     } catch (Exception e) {
       log.error("Error registering with JMX", e);
     }
@@ -3058,6 +3061,7 @@ public class TabletServer extends AbstractMetricsImpl implements org.apache.accu
     SimpleTimer.getInstance().schedule(gcDebugTask, 0, 1000);
     
     this.resourceManager = new TabletServerResourceManager(instance, fs);
+    majcMetrics.setCompactionScheduler(resourceManager.getCompactionScheduler());
     
     lastPingTime = System.currentTimeMillis();
     
@@ -42,7 +42,10 @@ import org.apache.accumulo.core.client.Instance;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.core.data.KeyExtent;
+import org.apache.accumulo.core.file.blockfile.cache.BlockCache;
 import org.apache.accumulo.core.file.blockfile.cache.LruBlockCache;
+import org.apache.accumulo.core.file.blockfile.cache.OffHeapBlockCache;
+import org.apache.accumulo.core.file.blockfile.cache.TinyLfuBlockCache;
 import org.apache.accumulo.core.util.Daemon;
 import org.apache.accumulo.core.util.LoggingRunnable;
 import org.apache.accumulo.core.util.MetadataTable.DataFileValue;
@@ -66,8 +69,11 @@ public class TabletServerResourceManager {
   
   private ExecutorService minorCompactionThreadPool;
   private ExecutorService majorCompactionThreadPool;
+  private ExecutorService largeMajorCompactionThreadPool;
+  private CompactionScheduler compactionScheduler;
   private ExecutorService rootMajorCompactionThreadPool;
   private ExecutorService defaultMajorCompactionThreadPool;
+  private ExecutorService compactionPipelineThreadPool;
   private ExecutorService splitThreadPool;
   private ExecutorService defaultSplitThreadPool;
   private ExecutorService defaultMigrationPool;
@@ -86,8 +92,8 @@ public class TabletServerResourceManager {
   
   private MemoryManagementFramework memMgmt;
   
-  private final LruBlockCache _dCache;
-  private final LruBlockCache _iCache;
+  private final BlockCache _dCache;
+  private final BlockCache _iCache;
   private final ServerConfiguration conf;
   
   private static final Logger log = Logger.getLogger(TabletServerResourceManager.class);
@@ -140,6 +146,16 @@ public class TabletServerResourceManager {
     return addEs(name, new ThreadPoolExecutor(min, max, timeout, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamingThreadFactory(name)));
   }
   
+  private static BlockCache createBlockCache(String policy, long cacheSize, long blockSize) {
+    if (policy.equalsIgnoreCase("lru"))
+      return new LruBlockCache(cacheSize, blockSize);
+    if (policy.equalsIgnoreCase("tinylfu"))
+      return new TinyLfuBlockCache(cacheSize, blockSize);
+    if (policy.equalsIgnoreCase("offheap"))
+      return new OffHeapBlockCache(cacheSize, blockSize);
+    throw new IllegalArgumentException("Unknown " + Property.TSERV_CACHE_POLICY.getKey() + " " + policy);
+  }
+  
   public TabletServerResourceManager(Instance instance, FileSystem fs) {
     this.conf = new ServerConfiguration(instance);
     final AccumuloConfiguration acuConf = conf.getConfiguration();
@@ -151,13 +167,22 @@ public class TabletServerResourceManager {
     long dCacheSize = acuConf.getMemoryInBytes(Property.TSERV_DATACACHE_SIZE);
     long iCacheSize = acuConf.getMemoryInBytes(Property.TSERV_INDEXCACHE_SIZE);
     
-    _iCache = new LruBlockCache(iCacheSize, blockSize);
-    _dCache = new LruBlockCache(dCacheSize, blockSize);
+    String cachePolicy = acuConf.get(Property.TSERV_CACHE_POLICY);
+    _iCache = createBlockCache(cachePolicy, iCacheSize, blockSize);
+    _dCache = createBlockCache(cachePolicy, dCacheSize, blockSize);
+    
+    // off heap caches do not compete with the in-memory map for heap
+    long heapCacheSize = cachePolicy.equalsIgnoreCase("offheap") ? 0 : dCacheSize + iCacheSize;
+    
+    if (!usingNativeMap && acuConf.getBoolean(Property.TSERV_ARENAMAP_ENABLED) && maxMemory > ArenaMap.MAX_SIZE) {
+      throw new IllegalArgumentException(String.format("Maximum tablet server map memory %,d is larger than an arena map can hold %,d", maxMemory,
+          ArenaMap.MAX_SIZE));
+    }
     
     Runtime runtime = Runtime.getRuntime();
-    if (!usingNativeMap && maxMemory + dCacheSize + iCacheSize > runtime.maxMemory()) {
+    if (!usingNativeMap && maxMemory + heapCacheSize > runtime.maxMemory()) {
       throw new IllegalArgumentException(String.format(
-          "Maximum tablet server map memory %,d and block cache sizes %,d is too large for this JVM configuration %,d", maxMemory, dCacheSize + iCacheSize,
+          "Maximum tablet server map memory %,d and block cache sizes %,d is too large for this JVM configuration %,d", maxMemory, heapCacheSize,
           runtime.maxMemory()));
     }
     runtime.gc();
@@ -173,8 +198,21 @@ public class TabletServerResourceManager {
     // make this thread pool have a priority queue... and execute tablets with the most
     // files first!
     majorCompactionThreadPool = createEs(Property.TSERV_MAJC_MAXCONCURRENT, "major compactor", new CompactionQueue());
+    largeMajorCompactionThreadPool = createEs(Property.TSERV_MAJC_LARGE_MAXCONCURRENT, "large major compactor", new CompactionQueue());
+    compactionScheduler = new CompactionScheduler(majorCompactionThreadPool, largeMajorCompactionThreadPool, acuConf);
+    SimpleTimer.getInstance().schedule(new TimerTask() {
+      @Override
+      public void run() {
+        try {
+          compactionScheduler.updateConfiguration(conf.getConfiguration());
+        } catch (Throwable t) {
+          log.error(t, t);
+        }
+      }
+    }, 10 * 1000, 10 * 1000);
     rootMajorCompactionThreadPool = createEs(0, 1, 300, "md root major compactor");
     defaultMajorCompactionThreadPool = createEs(0, 1, 300, "md major compactor");
+    compactionPipelineThreadPool = createEs(Property.TSERV_MAJC_PIPELINE_THREADS, "compaction pipeline");
     
     splitThreadPool = createEs(1, "splitter");
     defaultSplitThreadPool = createEs(0, 1, 60, "md splitter");
@@ -690,7 +728,7 @@ public class TabletServerResourceManager {
       return TabletServerResourceManager.this;
     }
     
-    public void executeMajorCompaction(KeyExtent tablet, Runnable compactionTask) {
+    public void executeMajorCompaction(KeyExtent tablet, CompactionScheduler.Job compactionTask) {
       TabletServerResourceManager.this.executeMajorCompaction(tablet, compactionTask);
     }
     
@@ -708,16 +746,24 @@ public class TabletServerResourceManager {
     }
   }
   
-  public void executeMajorCompaction(KeyExtent tablet, Runnable compactionTask) {
+  public void executeMajorCompaction(KeyExtent tablet, CompactionScheduler.Job compactionTask) {
     if (tablet.equals(Constants.ROOT_TABLET_EXTENT)) {
       rootMajorCompactionThreadPool.execute(compactionTask);
     } else if (tablet.isMeta()) {
       defaultMajorCompactionThreadPool.execute(compactionTask);
     } else {
-      majorCompactionThreadPool.execute(compactionTask);
+      compactionScheduler.execute(compactionTask);
     }
   }
   
+  public CompactionScheduler getCompactionScheduler() {
+    return compactionScheduler;
+  }
+  
+  ExecutorService getCompactionPipelinePool() {
+    return compactionPipelineThreadPool;
+  }
+  
   public void executeReadAhead(KeyExtent tablet, Runnable task) {
     if (tablet.isRootTablet()) {
       task.run();
@@ -792,11 +838,11 @@ public class TabletServerResourceManager {
     }
   }
   
-  public LruBlockCache getIndexCache() {
+  public BlockCache getIndexCache() {
     return _iCache;
   }
   
-  public LruBlockCache getDataCache() {
+  public BlockCache getDataCache() {
     return _dCache;
   }
   
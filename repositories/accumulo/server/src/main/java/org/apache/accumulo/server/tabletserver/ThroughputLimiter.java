@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.tabletserver;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.accumulo.core.util.UtilWaitThread;
+
+/**
+ * Limits the combined throughput of the threads that share it. Each thread reports the bytes it processed and sleeps long enough to keep the total at or
+ * below the configured rate. Up to a second of unused throughput may be used in a burst.
+ */
+public class ThroughputLimiter {
+  
+  private static final long NANOS_PER_SECOND = 1000000000l;
+  
+  private volatile long bytesPerSecond;
+  private final AtomicLong total = new AtomicLong(0);
+  
+  // the time at which the bytes acquired so far have been paid for
+  private long paidUntil = System.nanoTime();
+  
+  /**
+   * @param bytesPerSecond
+   *          the rate to limit to, or zero for no limit
+   */
+  public ThroughputLimiter(long bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+  }
+  
+  public void setRate(long bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+  }
+  
+  public long getRate() {
+    return bytesPerSecond;
+  }
+  
+  /**
+   * @return the total number of bytes reported to this limiter
+   */
+  public long getTotalBytes() {
+    return total.get();
+  }
+  
+  /**
+   * Reports bytes processed by the calling thread, sleeping if the rate has been exceeded.
+   */
+  public void acquire(long bytes) {
+    total.addAndGet(bytes);
+    
+    long rate = bytesPerSecond;
+    if (rate <= 0)
+      return;
+    
+    long sleep;
+    synchronized (this) {
+      long now = System.nanoTime();
+      if (paidUntil < now - NANOS_PER_SECOND)
+        paidUntil = now - NANOS_PER_SECOND;
+      paidUntil += (long) ((double) bytes * NANOS_PER_SECOND / rate);
+      sleep = paidUntil - now;
+    }
+    
+    if (sleep > 0)
+      UtilWaitThread.sleep(sleep / 1000000);
+  }
+}
@@ -22,6 +22,8 @@ import static org.apache.accumulo.server.logger.LogEvents.DEFINE_TABLET;
 import static org.apache.accumulo.server.logger.LogEvents.MANY_MUTATIONS;
 import static org.apache.accumulo.server.logger.LogEvents.OPEN;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -79,7 +81,15 @@ public class DfsLogger {
   
   private static final LogFileValue EMPTY = new LogFileValue();
   
-  private boolean closed = false;
+  private volatile boolean closed = false;
+  
+  private boolean syncThreadStopped = false;
+  
+  /**
+   * When set, writers encode their records on their own threads and hand them to the syncing thread, which appends everything that was queued since the last
+   * sync in one go and then syncs once for the whole group.
+   */
+  private boolean groupCommit = false;
 
   private class LogSyncingTask implements Runnable {
 
@@ -96,20 +106,24 @@ public class DfsLogger {
         }
         workQueue.drainTo(work);
         
-        synchronized (closeLock) {
-          if (!closed) {
-            try {
-              logFile.sync();
-            } catch (IOException ex) {
-              log.warn("Exception syncing " + ex);
-              for (DfsLogger.LogWork logWork : work) {
-                logWork.exception = ex;
-              }
-            }
-          } else {
-            for (DfsLogger.LogWork logWork : work) {
-              logWork.exception = new LogClosedException();
-            }
+        // close() waits for this thread to stop before closing the file, and nothing is queued after the CLOSED_MARKER, so the file can be used without
+        // holding closeLock. This keeps writers from blocking on closeLock while a sync is in progress.
+        Exception failure = null;
+        try {
+          if (groupCommit)
+            append(work);
+          logFile.sync();
+        } catch (IOException ex) {
+          log.warn("Exception syncing " + ex);
+          for (DfsLogger.LogWork logWork : work) {
+            logWork.exception = ex;
+          }
+        } catch (Throwable t) {
+          // the log may be missing records, so it can not be used any more
+          log.error("Failed to write to walog " + DfsLogger.this, t);
+          failure = t instanceof Exception ? (Exception) t : new RuntimeException(t);
+          for (DfsLogger.LogWork logWork : work) {
+            logWork.exception = failure;
           }
         }
         
@@ -120,10 +134,20 @@ public class DfsLogger {
           else
             logWork.latch.countDown();
         
-        if (sawClosedMarker) {
+        if (sawClosedMarker || failure != null) {
+          // once stopped nothing more is queued, fail whatever was queued since the work was taken
           synchronized (closeLock) {
+            syncThreadStopped = true;
             closeLock.notifyAll();
           }
+          work.clear();
+          workQueue.drainTo(work);
+          for (DfsLogger.LogWork logWork : work) {
+            if (logWork != CLOSED_MARKER) {
+              logWork.exception = failure;
+              logWork.latch.countDown();
+            }
+          }
           break;
         }
       }
@@ -134,6 +158,8 @@ public class DfsLogger {
     List<TabletMutations> mutations;
     CountDownLatch latch;
     volatile Exception exception;
+    // encoded records, only used in group commit mode
+    byte[] data;
     
     public LogWork(List<TabletMutations> mutations, CountDownLatch latch) {
       this.mutations = mutations;
@@ -204,6 +230,7 @@ public class DfsLogger {
   }
 
   public synchronized void open(String address) throws IOException {
+    groupCommit = conf.getConfiguration().getBoolean(Property.TSERV_WAL_GROUP_COMMIT);
     String filename = UUID.randomUUID().toString();
     logger = StringUtil.join(Arrays.asList(address.split(":")), "+");
 
@@ -266,7 +293,7 @@ public class DfsLogger {
       // thread to do work
       closed = true;
       workQueue.add(CLOSED_MARKER);
-      while (!workQueue.isEmpty())
+      while (!syncThreadStopped)
         try {
           closeLock.wait();
         } catch (InterruptedException e) {
@@ -283,7 +310,7 @@ public class DfsLogger {
       }
   }
   
-  public synchronized void defineTablet(int seq, int tid, KeyExtent tablet) throws IOException {
+  public void defineTablet(int seq, int tid, KeyExtent tablet) throws IOException {
     // write this log to the METADATA table
     final LogFileKey key = new LogFileKey();
     key.event = DEFINE_TABLET;
@@ -291,8 +318,14 @@ public class DfsLogger {
     key.tid = tid;
     key.tablet = tablet;
     try {
-      write(key, EMPTY);
-      logFile.sync();
+      if (groupCommit) {
+        writeGrouped(key, EMPTY);
+      } else {
+        synchronized (this) {
+          write(key, EMPTY);
+          logFile.sync();
+        }
+      }
     } catch (IOException ex) {
       log.error(ex);
       throw ex;
@@ -308,6 +341,49 @@ public class DfsLogger {
     key.write(logFile);
     value.write(logFile);
   }
+  
+  private static void encode(DataOutputStream out, LogFileKey key, LogFileValue value) throws IOException {
+    key.write(out);
+    value.write(out);
+  }
+  
+  /**
+   * Queues a single record for the syncing thread and waits until it has been synced.
+   */
+  private void writeGrouped(LogFileKey key, LogFileValue value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    encode(out, key, value);
+    out.close();
+    
+    DfsLogger.LogWork work = new DfsLogger.LogWork(null, new CountDownLatch(1));
+    work.data = bytes.toByteArray();
+    enqueue(work);
+    new LoggerOperation(work).await();
+  }
+  
+  private void enqueue(DfsLogger.LogWork work) throws IOException {
+    synchronized (closeLock) {
+      // use a different lock for close check so that adding to work queue does not need
+      // to wait on walog I/O operations
+      
+      if (closed || syncThreadStopped)
+        throw new LogClosedException();
+      workQueue.add(work);
+    }
+  }
+  
+  /**
+   * Appends the records of a group of writers. Only called by the syncing thread.
+   */
+  private void append(List<DfsLogger.LogWork> work) throws IOException {
+    synchronized (this) {
+      for (DfsLogger.LogWork logWork : work) {
+        if (logWork.data != null)
+          logFile.write(logWork.data);
+      }
+    }
+  }
 
   public LoggerOperation log(int seq, int tid, Mutation mutation) throws IOException {
     return logManyTablets(Collections.singletonList(new TabletMutations(tid, seq, Collections.singletonList(mutation))));
@@ -316,56 +392,78 @@ public class DfsLogger {
   public LoggerOperation logManyTablets(List<TabletMutations> mutations) throws IOException {
     DfsLogger.LogWork work = new DfsLogger.LogWork(mutations, new CountDownLatch(1));
     
-    synchronized (DfsLogger.this) {
+    if (groupCommit) {
+      // encode on this thread, without holding any lock, the syncing thread appends the bytes
       try {
-        for (TabletMutations tabletMutations : mutations) {
-          LogFileKey key = new LogFileKey();
-          key.event = MANY_MUTATIONS;
-          key.seq = tabletMutations.getSeq();
-          key.tid = tabletMutations.getTid();
-          LogFileValue value = new LogFileValue();
-          value.mutations = tabletMutations.getMutations();
-          write(key, value);
-        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (TabletMutations tabletMutations : mutations)
+          encode(out, newMutationsKey(tabletMutations), newMutationsValue(tabletMutations));
+        out.close();
+        work.data = bytes.toByteArray();
       } catch (Exception e) {
         log.error(e, e);
         work.exception = e;
       }
+    } else {
+      synchronized (DfsLogger.this) {
+        try {
+          for (TabletMutations tabletMutations : mutations) {
+            write(newMutationsKey(tabletMutations), newMutationsValue(tabletMutations));
+          }
+        } catch (Exception e) {
+          log.error(e, e);
+          work.exception = e;
+        }
+      }
     }
-
-    synchronized (closeLock) {
-      // use a different lock for close check so that adding to work queue does not need
-      // to wait on walog I/O operations
-
-      if (closed)
-        throw new LogClosedException();
-      workQueue.add(work);
-    }
-
+    
+    enqueue(work);
+    
     return new LoggerOperation(work);
   }
   
-  public synchronized void minorCompactionFinished(int seq, int tid, String fqfn) throws IOException {
+  private static LogFileKey newMutationsKey(TabletMutations tabletMutations) {
+    LogFileKey key = new LogFileKey();
+    key.event = MANY_MUTATIONS;
+    key.seq = tabletMutations.getSeq();
+    key.tid = tabletMutations.getTid();
+    return key;
+  }
+  
+  private static LogFileValue newMutationsValue(TabletMutations tabletMutations) {
+    LogFileValue value = new LogFileValue();
+    value.mutations = tabletMutations.getMutations();
+    return value;
+  }
+  
+  public void minorCompactionFinished(int seq, int tid, String fqfn) throws IOException {
     LogFileKey key = new LogFileKey();
     key.event = COMPACTION_FINISH;
     key.seq = seq;
     key.tid = tid;
     try {
-      write(key, EMPTY);
+      if (groupCommit)
+        writeGrouped(key, EMPTY);
+      else
+        write(key, EMPTY);
     } catch (IOException ex) {
       log.error(ex);
       throw ex;
     }
   }
   
-  public synchronized void minorCompactionStarted(int seq, int tid, String fqfn) throws IOException {
+  public void minorCompactionStarted(int seq, int tid, String fqfn) throws IOException {
     LogFileKey key = new LogFileKey();
     key.event = COMPACTION_START;
     key.seq = seq;
     key.tid = tid;
     key.filename = fqfn;
     try {
-      write(key, EMPTY);
+      if (groupCommit)
+        writeGrouped(key, EMPTY);
+      else
+        write(key, EMPTY);
     } catch (IOException ex) {
       log.error(ex);
       throw ex;
@@ -25,7 +25,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.accumulo.core.Constants;
 import org.apache.accumulo.core.client.Instance;
@@ -47,7 +53,11 @@ import org.apache.log4j.Logger;
 import org.apache.zookeeper.KeeperException;
 
 /**
- * 
+ * Sorts write-ahead logs for recovery.
+ * <p>
+ * A log is read sequentially in chunks whose size is derived from {@link Property#TSERV_SORT_BUFFER_SIZE}. Each chunk is sorted and spilled as a run on a
+ * shared pool of {@link Property#TSERV_SORT_THREADS} threads while the next chunk is read, and the runs are then merged with a k-way merge into the single
+ * sorted part that recovery reads.
  */
 public class LogSorter {
   
@@ -65,6 +75,12 @@ public class LogSorter {
     private long sortStart = 0;
     private long sortStop = -1;
     
+    // time spent in each phase, sort and spill times are summed over all sort threads
+    private final AtomicLong readTime = new AtomicLong(0);
+    private final AtomicLong chunkSortTime = new AtomicLong(0);
+    private final AtomicLong spillTime = new AtomicLong(0);
+    private final AtomicLong mergeTime = new AtomicLong(0);
+    
     @Override
     public Processor newProcessor() {
       return new LogProcessor();
@@ -109,28 +125,76 @@ public class LogSorter {
           this.input = tmpInput;
         }
 
+        // one chunk is read while the others are being sorted, keep them all within the sort buffer
         final long bufferSize = conf.getMemoryInBytes(Property.TSERV_SORT_BUFFER_SIZE);
+        final long chunkSize = Math.max(1, bufferSize / (sortThreads + 1));
+        final Semaphore chunkPermits = new Semaphore(sortThreads);
+        
         Thread.currentThread().setName("Sorting " + name + " for recovery");
-        while (true) {
+        List<Future<Path>> runs = new ArrayList<Future<Path>>();
+        boolean eof = false;
+        while (!eof) {
           final ArrayList<Pair<LogFileKey,LogFileValue>> buffer = new ArrayList<Pair<LogFileKey,LogFileValue>>();
+          long t1 = System.currentTimeMillis();
           try {
             long start = input.getPos();
-            while (input.getPos() - start < bufferSize) {
+            while (input.getPos() - start < chunkSize) {
               LogFileKey key = new LogFileKey();
               LogFileValue value = new LogFileValue();
               key.readFields(input);
               value.readFields(input);
               buffer.add(new Pair<LogFileKey,LogFileValue>(key, value));
             }
-            writeBuffer(destPath, buffer, part++);
-            buffer.clear();
           } catch (EOFException ex) {
-            writeBuffer(destPath, buffer, part++);
+            eof = true;
+          }
+          readTime.addAndGet(System.currentTimeMillis() - t1);
+          
+          if (buffer.isEmpty() && !runs.isEmpty())
             break;
+          
+          chunkPermits.acquire();
+          final Path runPath = new Path(destPath, String.format("_run-%05d", part++));
+          runs.add(sortThreadPool.submit(new Callable<Path>() {
+            @Override
+            public Path call() throws Exception {
+              try {
+                writeBuffer(runPath.toString(), buffer);
+                return runPath;
+              } finally {
+                chunkPermits.release();
+              }
+            }
+          }));
+        }
+        
+        List<Path> runPaths = new ArrayList<Path>();
+        ExecutionException failure = null;
+        for (Future<Path> run : runs) {
+          try {
+            runPaths.add(run.get());
+          } catch (ExecutionException ex) {
+            failure = ex;
           }
         }
+        if (failure != null)
+          throw failure.getCause();
+        
+        long t1 = System.currentTimeMillis();
+        Path output = new Path(destPath, "part-r-00000");
+        if (runPaths.size() == 1) {
+          if (!fs.rename(runPaths.get(0), output))
+            throw new IOException("Failed to rename " + runPaths.get(0) + " to " + output);
+        } else {
+          merge(runPaths, output);
+          for (Path runPath : runPaths)
+            fs.delete(runPath, true);
+        }
+        mergeTime.addAndGet(System.currentTimeMillis() - t1);
+        
         fs.create(new Path(destPath, "finished")).close();
-        log.info("Finished log sort " + name + " " + getBytesCopied() + " bytes " + part + " parts in " + getSortTime() + "ms");
+        log.info("Finished log sort " + name + " " + getBytesCopied() + " bytes " + part + " runs in " + getSortTime() + "ms (read " + readTime.get()
+            + "ms, sort " + chunkSortTime.get() + "ms, spill " + spillTime.get() + "ms, merge " + mergeTime.get() + "ms)");
       } catch (Throwable t) {
         try {
           // parent dir may not exist
@@ -153,21 +217,57 @@ public class LogSorter {
       }
     }
     
-    private void writeBuffer(String destPath, ArrayList<Pair<LogFileKey,LogFileValue>> buffer, int part) throws IOException {
-      String path = destPath + String.format("/part-r-%05d", part++);
+    private void writeBuffer(String path, ArrayList<Pair<LogFileKey,LogFileValue>> buffer) throws IOException {
+      long t1 = System.currentTimeMillis();
+      Collections.sort(buffer, new Comparator<Pair<LogFileKey,LogFileValue>>() {
+        @Override
+        public int compare(Pair<LogFileKey,LogFileValue> o1, Pair<LogFileKey,LogFileValue> o2) {
+          return o1.getFirst().compareTo(o2.getFirst());
+        }
+      });
+      long t2 = System.currentTimeMillis();
+      chunkSortTime.addAndGet(t2 - t1);
+      
       MapFile.Writer output = new MapFile.Writer(fs.getConf(), fs, path, LogFileKey.class, LogFileValue.class);
       try {
-        Collections.sort(buffer, new Comparator<Pair<LogFileKey,LogFileValue>>() {
-          @Override
-          public int compare(Pair<LogFileKey,LogFileValue> o1, Pair<LogFileKey,LogFileValue> o2) {
-            return o1.getFirst().compareTo(o2.getFirst());
-          }
-        });
         for (Pair<LogFileKey,LogFileValue> entry : buffer) {
           output.append(entry.getFirst(), entry.getSecond());
         }
       } finally {
         output.close();
+        spillTime.addAndGet(System.currentTimeMillis() - t2);
+      }
+    }
+    
+    /**
+     * Merges sorted runs into one sorted map file, keeping only the current entry of each run in memory.
+     */
+    private void merge(List<Path> runPaths, Path output) throws IOException {
+      PriorityQueue<Run> heap = new PriorityQueue<Run>(Math.max(1, runPaths.size()));
+      MapFile.Writer writer = null;
+      try {
+        for (Path runPath : runPaths) {
+          Run run = new Run(new MapFile.Reader(fs, runPath.toString(), fs.getConf()));
+          if (run.next())
+            heap.add(run);
+          else
+            run.close();
+        }
+        
+        writer = new MapFile.Writer(fs.getConf(), fs, output.toString(), LogFileKey.class, LogFileValue.class);
+        while (!heap.isEmpty()) {
+          Run run = heap.poll();
+          writer.append(run.key, run.value);
+          if (run.next())
+            heap.add(run);
+          else
+            run.close();
+        }
+      } finally {
+        for (Run run : heap)
+          run.close();
+        if (writer != null)
+          writer.close();
       }
     }
 
@@ -177,6 +277,22 @@ public class LogSorter {
       input = null;
     }
     
+    public long getReadTime() {
+      return readTime.get();
+    }
+    
+    public long getChunkSortTime() {
+      return chunkSortTime.get();
+    }
+    
+    public long getSpillTime() {
+      return spillTime.get();
+    }
+    
+    public long getMergeTime() {
+      return mergeTime.get();
+    }
+    
     public synchronized long getSortTime() {
       if (sortStart > 0) {
         if (sortStop > 0)
@@ -191,7 +307,35 @@ public class LogSorter {
     }
   }
   
+  /**
+   * The current entry of one sorted run during the merge.
+   */
+  private static class Run implements Comparable<Run> {
+    private final MapFile.Reader reader;
+    private final LogFileKey key = new LogFileKey();
+    private final LogFileValue value = new LogFileValue();
+    
+    Run(MapFile.Reader reader) {
+      this.reader = reader;
+    }
+    
+    boolean next() throws IOException {
+      return reader.next(key, value);
+    }
+    
+    void close() throws IOException {
+      reader.close();
+    }
+    
+    @Override
+    public int compareTo(Run o) {
+      return key.compareTo(o.key);
+    }
+  }
+  
   ThreadPoolExecutor threadPool;
+  private final ThreadPoolExecutor sortThreadPool;
+  private final int sortThreads;
   private Instance instance;
   
   public LogSorter(Instance instance, FileSystem fs, AccumuloConfiguration conf) {
@@ -200,6 +344,8 @@ public class LogSorter {
     this.conf = conf;
     int threadPoolSize = conf.getCount(Property.TSERV_RECOVERY_MAX_CONCURRENT);
     this.threadPool = new SimpleThreadPool(threadPoolSize, this.getClass().getName());
+    this.sortThreads = Math.max(1, conf.getCount(Property.TSERV_SORT_THREADS));
+    this.sortThreadPool = new SimpleThreadPool(sortThreads, "log sort workers");
   }
 
   public void startWatchingForRecoveryLogs(ThreadPoolExecutor distWorkQThreadPool) throws KeeperException, InterruptedException {
@@ -219,6 +365,10 @@ public class LogSorter {
           log.warn("Error getting bytes read");
         }
         status.runtime = (int) entries.getValue().getSortTime();
+        status.readTime = (int) entries.getValue().getReadTime();
+        status.chunkSortTime = (int) entries.getValue().getChunkSortTime();
+        status.spillTime = (int) entries.getValue().getSpillTime();
+        status.mergeTime = (int) entries.getValue().getMergeTime();
         result.add(status);
       }
       return result;
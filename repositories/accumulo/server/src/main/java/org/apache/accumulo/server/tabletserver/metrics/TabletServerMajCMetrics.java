@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.tabletserver.metrics;
+
+import javax.management.ObjectName;
+
+import org.apache.accumulo.server.metrics.AbstractMetricsImpl;
+import org.apache.accumulo.server.tabletserver.CompactionScheduler;
+
+public class TabletServerMajCMetrics extends AbstractMetricsImpl implements TabletServerMajCMetricsMBean {
+  
+  static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(TabletServerMajCMetrics.class);
+  
+  private static final String METRICS_PREFIX = "tserver.majc";
+  
+  private static ObjectName OBJECT_NAME = null;
+  
+  private volatile CompactionScheduler scheduler = null;
+  
+  public TabletServerMajCMetrics() {
+    super();
+    reset();
+    try {
+      OBJECT_NAME = new ObjectName("accumulo.server.metrics:service=TServerInfo,name=TabletServerMajCMetricsMBean,instance=" + Thread.currentThread().getName());
+    } catch (Exception e) {
+      log.error("Exception setting MBean object name", e);
+    }
+  }
+  
+  /**
+   * Sets the scheduler whose queues are reported.
+   */
+  public void setCompactionScheduler(CompactionScheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+  
+  @Override
+  protected ObjectName getObjectName() {
+    return OBJECT_NAME;
+  }
+  
+  @Override
+  protected String getMetricsPrefix() {
+    return METRICS_PREFIX;
+  }
+  
+  public long getMajorCompactionMinTime() {
+    return this.getMetricMin(majc);
+  }
+  
+  public long getMajorCompactionAvgTime() {
+    return this.getMetricAvg(majc);
+  }
+  
+  public long getMajorCompactionCount() {
+    return this.getMetricCount(majc);
+  }
+  
+  public long getMajorCompactionMaxTime() {
+    return this.getMetricMax(majc);
+  }
+  
+  public long getMajorCompactionQueueAvgTime() {
+    return this.getMetricAvg(queue);
+  }
+  
+  public long getMajorCompactionQueueCount() {
+    return this.getMetricCount(queue);
+  }
+  
+  public long getMajorCompactionQueueMaxTime() {
+    return this.getMetricMax(queue);
+  }
+  
+  public long getMajorCompactionQueueMinTime() {
+    return this.getMetricMin(queue);
+  }
+  
+  public int getSmallCompactionsQueued() {
+    CompactionScheduler cs = scheduler;
+    return cs == null ? 0 : cs.getSmallQueued();
+  }
+  
+  public int getSmallCompactionsRunning() {
+    CompactionScheduler cs = scheduler;
+    return cs == null ? 0 : cs.getSmallRunning();
+  }
+  
+  public long getSmallCompactionThroughput() {
+    CompactionScheduler cs = scheduler;
+    return cs == null ? 0 : cs.getSmallThroughput();
+  }
+  
+  public int getLargeCompactionsQueued() {
+    CompactionScheduler cs = scheduler;
+    return cs == null ? 0 : cs.getLargeQueued();
+  }
+  
+  public int getLargeCompactionsRunning() {
+    CompactionScheduler cs = scheduler;
+    return cs == null ? 0 : cs.getLargeRunning();
+  }
+  
+  public long getLargeCompactionThroughput() {
+    CompactionScheduler cs = scheduler;
+    return cs == null ? 0 : cs.getLargeThroughput();
+  }
+  
+  public long getDeferredCompactions() {
+    CompactionScheduler cs = scheduler;
+    return cs == null ? 0 : cs.getDeferred();
+  }
+  
+  public void reset() {
+    createMetric(majc);
+    createMetric(queue);
+  }
+  
+}
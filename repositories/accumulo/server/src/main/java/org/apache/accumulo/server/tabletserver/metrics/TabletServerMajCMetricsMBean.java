@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.tabletserver.metrics;
+
+public interface TabletServerMajCMetricsMBean {
+  
+  public static final String majc = "majc";
+  public static final String queue = "queue";
+  
+  public long getMajorCompactionCount();
+  
+  public long getMajorCompactionAvgTime();
+  
+  public long getMajorCompactionMinTime();
+  
+  public long getMajorCompactionMaxTime();
+  
+  public long getMajorCompactionQueueCount();
+  
+  public long getMajorCompactionQueueAvgTime();
+  
+  public long getMajorCompactionQueueMinTime();
+  
+  public long getMajorCompactionQueueMaxTime();
+  
+  public int getSmallCompactionsQueued();
+  
+  public int getSmallCompactionsRunning();
+  
+  public long getSmallCompactionThroughput();
+  
+  public int getLargeCompactionsQueued();
+  
+  public int getLargeCompactionsRunning();
+  
+  public long getLargeCompactionThroughput();
+  
+  public long getDeferredCompactions();
+  
+  public void reset();
+  
+}
@@ -114,6 +114,8 @@ public class GetMasterStats {
           out(3, "File %s", sort.name);
           out(3, "Progress %.2f%%", sort.progress * 100);
           out(3, "Time running %s", sort.runtime / 1000.);
+          out(3, "Time reading %s, sorting %s, spilling %s, merging %s", sort.readTime / 1000., sort.chunkSortTime / 1000., sort.spillTime / 1000.,
+              sort.mergeTime / 1000.);
         }
       }
     }
@@ -28,6 +28,7 @@ import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.util.UtilWaitThread;
+import org.apache.accumulo.server.tabletserver.ArenaMap;
 import org.apache.accumulo.server.tabletserver.NativeMap;
 import org.apache.hadoop.io.Text;
 
@@ -54,6 +55,7 @@ public class NativeMapPerformanceTest {
     
     SortedMap<Key,Value> tm = null;
     NativeMap nm = null;
+    ArenaMap am = null;
     
     if (mapType.equals("SKIP_LIST"))
       tm = new ConcurrentSkipListMap<Key,Value>();
@@ -61,8 +63,10 @@ public class NativeMapPerformanceTest {
       tm = Collections.synchronizedSortedMap(new TreeMap<Key,Value>());
     else if (mapType.equals("NATIVE_MAP"))
       nm = new NativeMap();
+    else if (mapType.equals("ARENA_MAP"))
+      am = new ArenaMap();
     else
-      throw new IllegalArgumentException(" map type must be SKIP_LIST, TREE_MAP, or NATIVE_MAP");
+      throw new IllegalArgumentException(" map type must be SKIP_LIST, TREE_MAP, NATIVE_MAP, or ARENA_MAP");
     
     Random rand = new Random(19);
     
@@ -80,6 +84,17 @@ public class NativeMapPerformanceTest {
         }
         nm.mutate(m, i);
       }
+    } else if (am != null) {
+      for (int i = 0; i < numRows; i++) {
+        int row = rand.nextInt(1000000000);
+        Mutation m = nm(row);
+        for (int j = 0; j < numCols; j++) {
+          int col = rand.nextInt(1000000);
+          Value val = new Value("test".getBytes());
+          pc(m, col, val);
+        }
+        am.mutate(m, i * numCols);
+      }
     } else {
       for (int i = 0; i < numRows; i++) {
         int row = rand.nextInt(1000000000);
@@ -98,6 +113,8 @@ public class NativeMapPerformanceTest {
     Iterator<Entry<Key,Value>> iter;
     if (nm != null) {
       iter = nm.iterator();
+    } else if (am != null) {
+      iter = am.iterator();
     } else {
       iter = tm.entrySet().iterator();
     }
@@ -134,6 +151,13 @@ public class NativeMapPerformanceTest {
           throw new RuntimeException("Did not find " + rowsToLookup[i] + " " + colsToLookup[i] + " " + i);
         }
       }
+    } else if (am != null) {
+      for (int i = 0; i < numLookups; i++) {
+        Key key = nk(rowsToLookup[i], colsToLookup[i]);
+        if (am.get(key) == null) {
+          throw new RuntimeException("Did not find " + rowsToLookup[i] + " " + colsToLookup[i] + " " + i);
+        }
+      }
     } else {
       for (int i = 0; i < numLookups; i++) {
         Key key = nk(rowsToLookup[i], colsToLookup[i]);
@@ -147,15 +171,19 @@ public class NativeMapPerformanceTest {
     long memUsed = 0;
     if (nm != null) {
       memUsed = nm.getMemoryUsed();
+    } else if (am != null) {
+      memUsed = am.getMemoryUsed();
     }
     
-    int size = (nm == null ? tm.size() : nm.size());
+    int size = (nm != null ? nm.size() : am != null ? am.size() : tm.size());
     
     // delete
     long tds = System.currentTimeMillis();
     
     if (nm != null)
       nm.delete();
+    if (am != null)
+      am.delete();
     
     long tde = System.currentTimeMillis();
     
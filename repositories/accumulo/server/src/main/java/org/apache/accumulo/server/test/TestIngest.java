@@ -133,6 +133,8 @@ public class TestIngest {
     String columnFamily = "colf";
     
     boolean trace = false;
+    
+    int progressInterval = 0;
   }
   
   public static Options getOptions() {
@@ -149,6 +151,7 @@ public class TestIngest {
     opts.addOption(new Option("password", "password", true, "password"));
     opts.addOption(new Option("trace", "trace", false, "turn on distributed tracing"));
     opts.addOption(new Option("rFile", "rFile", true, "relative-key file"));
+    opts.addOption(new Option("progress", "progress", true, "report the achieved throughput every <arg> seconds"));
     return opts;
   }
   
@@ -210,6 +213,9 @@ public class TestIngest {
     if (cl.hasOption("trace")) {
       ia.trace = true;
     }
+    if (cl.hasOption("progress")) {
+      ia.progressInterval = Integer.parseInt(cl.getOptionValue("progress"));
+    }
     return ia;
   }
   
@@ -300,8 +306,24 @@ public class TestIngest {
       // int step = 100;
       
       long startTime = System.currentTimeMillis();
+      long lastReportTime = startTime;
+      long lastReportBytes = 0;
+      int lastReportRows = 0;
       for (int i = 0; i < ingestArgs.rows; i++) {
         
+        if (ingestArgs.progressInterval > 0 && i % 100 == 0) {
+          long now = System.currentTimeMillis();
+          if (now - lastReportTime >= ingestArgs.progressInterval * 1000l) {
+            double interval = (now - lastReportTime) / 1000.0;
+            long values = (long) (i - lastReportRows) * ingestArgs.cols;
+            System.out.printf("%,12d records written | %,8d records/sec | %,12d bytes written | %,8d bytes/sec | %6.3f secs (progress)%n", (long) i
+                * ingestArgs.cols, (int) (values / interval), bytesWritten, (int) ((bytesWritten - lastReportBytes) / interval), (now - startTime) / 1000.0);
+            lastReportTime = now;
+            lastReportBytes = bytesWritten;
+            lastReportRows = i;
+          }
+        }
+        
         int rowid;
         
         if (ingestArgs.stride > 0) {
@@ -204,11 +204,13 @@ public class NullTserver {
     String keepers = args[1];
     String tableName = args[2];
     int port = Integer.parseInt(args[3]);
+    // optionally, the number of selector threads, to compare the single and multiple selector servers
+    int selectorThreads = args.length > 4 ? Integer.parseInt(args[4]) : 1;
     
     TransactionWatcher watcher = new TransactionWatcher();
     ThriftClientHandler tch = new ThriftClientHandler(HdfsZooInstance.getInstance(), watcher);
     Processor<Iface> processor = new Processor<Iface>(tch);
-    TServerUtils.startTServer(port, processor, "NullTServer", "null tserver", 2, 1000);
+    TServerUtils.startTServer(port, processor, "NullTServer", "null tserver", 2, 1000, selectorThreads);
     
     InetSocketAddress addr = new InetSocketAddress(InetAddress.getLocalHost(), port);
     
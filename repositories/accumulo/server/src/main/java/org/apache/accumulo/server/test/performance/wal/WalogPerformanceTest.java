@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.test.performance.wal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.util.CachedConfiguration;
+import org.apache.accumulo.server.master.state.TServerInstance;
+import org.apache.accumulo.server.tabletserver.log.DfsLogger;
+import org.apache.accumulo.server.tabletserver.log.DfsLogger.LoggerOperation;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Drives a single write-ahead log from many writer threads, the way concurrent client sessions do in a tablet server, and reports the achieved throughput and
+ * the latency distribution of each log-and-sync call. Run once with group commit off and once with it on to compare the two modes.
+ *
+ * <pre>
+ * WalogPerformanceTest &lt;wal base dir&gt; &lt;group commit true|false&gt; &lt;threads&gt; &lt;mutations per thread&gt; &lt;value size&gt;
+ * </pre>
+ *
+ * The base dir may be a local path or an hdfs:// URI; the log is written beneath it and deleted afterwards.
+ */
+public class WalogPerformanceTest {
+  
+  public static void main(String[] args) throws Exception {
+    if (args.length != 5) {
+      System.err.println("Usage: " + WalogPerformanceTest.class.getName() + " <wal base dir> <group commit true|false> <threads> <mutations per thread> <value size>");
+      System.exit(1);
+    }
+    
+    final Path baseDir = new Path(args[0]);
+    boolean groupCommit = Boolean.parseBoolean(args[1]);
+    int numThreads = Integer.parseInt(args[2]);
+    final int numMutations = Integer.parseInt(args[3]);
+    int valueSize = Integer.parseInt(args[4]);
+    
+    final FileSystem fs = baseDir.getFileSystem(CachedConfiguration.getInstance());
+    final ConfigurationCopy conf = new ConfigurationCopy(AccumuloConfiguration.getDefaultConfiguration());
+    conf.set(Property.INSTANCE_DFS_DIR, baseDir.toString());
+    conf.set(Property.TSERV_WAL_GROUP_COMMIT, Boolean.toString(groupCommit));
+    
+    final DfsLogger logger = new DfsLogger(new DfsLogger.ServerResources() {
+      @Override
+      public FileSystem getFileSystem() {
+        return fs;
+      }
+      
+      @Override
+      public Set<TServerInstance> getCurrentTServers() {
+        return Collections.emptySet();
+      }
+      
+      @Override
+      public AccumuloConfiguration getConfiguration() {
+        return conf;
+      }
+    });
+    logger.open("localhost:9997");
+    
+    byte[] valueBytes = new byte[valueSize];
+    Arrays.fill(valueBytes, (byte) 'v');
+    final Value value = new Value(valueBytes);
+    
+    final long latencies[][] = new long[numThreads][numMutations];
+    final AtomicInteger failures = new AtomicInteger(0);
+    
+    Thread threads[] = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int tid = t;
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < numMutations; i++) {
+            Mutation m = new Mutation(new Text(String.format("row_%04d_%010d", tid, i)));
+            m.put(new Text("cf"), new Text("cq"), value);
+            long t1 = System.nanoTime();
+            try {
+              LoggerOperation op = logger.log(i, tid, m);
+              op.await();
+            } catch (Exception e) {
+              failures.incrementAndGet();
+            }
+            latencies[tid][i] = System.nanoTime() - t1;
+          }
+        }
+      });
+    }
+    
+    long t1 = System.currentTimeMillis();
+    for (Thread thread : threads)
+      thread.start();
+    for (Thread thread : threads)
+      thread.join();
+    long t2 = System.currentTimeMillis();
+    
+    logger.close();
+    fs.delete(new Path(baseDir, "wal"), true);
+    
+    long all[] = new long[numThreads * numMutations];
+    for (int t = 0; t < numThreads; t++)
+      System.arraycopy(latencies[t], 0, all, t * numMutations, numMutations);
+    Arrays.sort(all);
+    
+    double seconds = (t2 - t1) / 1000.0;
+    System.out.printf("group commit  : %s%n", groupCommit);
+    System.out.printf("threads       : %,d%n", numThreads);
+    System.out.printf("mutations     : %,d in %6.2f secs (%,d failed)%n", all.length, seconds, failures.get());
+    System.out.printf("throughput    : %,10.2f mutations/sec %,10.2f MB/sec%n", all.length / seconds, all.length * (double) valueSize / seconds / (1 << 20));
+    System.out.printf("latency (ms)  : p50 %6.2f p90 %6.2f p99 %6.2f max %6.2f%n", percentile(all, .50), percentile(all, .90), percentile(all, .99),
+        all[all.length - 1] / 1000000.0);
+  }
+  
+  private static double percentile(long sorted[], double p) {
+    int index = (int) Math.ceil(p * sorted.length) - 1;
+    return sorted[Math.max(0, index)] / 1000000.0;
+  }
+}
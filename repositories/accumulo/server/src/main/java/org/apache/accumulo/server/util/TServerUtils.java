@@ -45,6 +45,7 @@ import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.server.THsHaServer;
 import org.apache.thrift.server.TServer;
 import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadedSelectorServer;
 import org.apache.thrift.transport.TNonblockingServerSocket;
 import org.apache.thrift.transport.TServerTransport;
 import org.apache.thrift.transport.TTransport;
@@ -96,6 +97,7 @@ public class TServerUtils {
     boolean portSearch = false;
     if (portSearchProperty != null)
       portSearch = conf.getBoolean(portSearchProperty);
+    int selectorThreads = conf.getCount(Property.GENERAL_RPC_SELECTOR_THREADS);
     Random random = new Random();
     for (int j = 0; j < 100; j++) {
       
@@ -111,7 +113,7 @@ public class TServerUtils {
         if (port > 65535)
           port = 1024 + port % (65535 - 1024);
         try {
-          return TServerUtils.startTServer(port, processor, serverName, threadName, minThreads, timeBetweenThreadChecks);
+          return TServerUtils.startTServer(port, processor, serverName, threadName, minThreads, timeBetweenThreadChecks, selectorThreads);
         } catch (Exception ex) {
           log.info("Unable to use port " + port + ", retrying. (Thread Name = " + threadName + ")");
           UtilWaitThread.sleep(250);
@@ -177,15 +179,10 @@ public class TServerUtils {
     }
   }
   
-  public static ServerPort startHsHaServer(int port, TProcessor processor, final String serverName, String threadName, final int numThreads,
-      long timeBetweenThreadChecks) throws TTransportException {
-    TNonblockingServerSocket transport = new TNonblockingServerSocket(port);
-    THsHaServer.Args options = new THsHaServer.Args(transport);
-    options.protocolFactory(ThriftUtil.protocolFactory());
-    options.transportFactory(ThriftUtil.transportFactory());
-    /*
-     * Create our own very special thread pool.
-     */
+  /*
+   * Create our own very special thread pool.
+   */
+  private static ThreadPoolExecutor createClientPool(final String serverName, final int numThreads, long timeBetweenThreadChecks) {
     final ThreadPoolExecutor pool = new SimpleThreadPool(numThreads, "ClientPool");
     // periodically adjust the number of threads we need by checking how busy our threads are
     SimpleTimer.getInstance().schedule(new TimerTask() {
@@ -211,12 +208,39 @@ public class TServerUtils {
         }
       }
     }, timeBetweenThreadChecks, timeBetweenThreadChecks);
-    options.executorService(pool);
+    return pool;
+  }
+  
+  public static ServerPort startHsHaServer(int port, TProcessor processor, final String serverName, String threadName, final int numThreads,
+      long timeBetweenThreadChecks) throws TTransportException {
+    TNonblockingServerSocket transport = new TNonblockingServerSocket(port);
+    THsHaServer.Args options = new THsHaServer.Args(transport);
+    options.protocolFactory(ThriftUtil.protocolFactory());
+    options.transportFactory(ThriftUtil.transportFactory());
+    options.executorService(createClientPool(serverName, numThreads, timeBetweenThreadChecks));
     processor = new TServerUtils.TimedProcessor(processor, serverName, threadName);
     options.processorFactory(new ClientInfoProcessorFactory(processor));
     return new ServerPort(new THsHaServer(options), port);
   }
   
+  /**
+   * Like {@link #startHsHaServer(int, TProcessor, String, String, int, long)}, except that connections are spread over several selector threads instead of
+   * all being read and written by one. With thousands of client connections a single selector thread becomes the bottleneck, while the requests themselves
+   * are still run by a small pool of worker threads.
+   */
+  public static ServerPort startThreadedSelectorServer(int port, TProcessor processor, final String serverName, String threadName, final int numThreads,
+      long timeBetweenThreadChecks, int selectorThreads) throws TTransportException {
+    TNonblockingServerSocket transport = new TNonblockingServerSocket(port);
+    TThreadedSelectorServer.Args options = new TThreadedSelectorServer.Args(transport);
+    options.protocolFactory(ThriftUtil.protocolFactory());
+    options.transportFactory(ThriftUtil.transportFactory());
+    options.selectorThreads(selectorThreads);
+    options.executorService(createClientPool(serverName, numThreads, timeBetweenThreadChecks));
+    processor = new TServerUtils.TimedProcessor(processor, serverName, threadName);
+    options.processorFactory(new ClientInfoProcessorFactory(processor));
+    return new ServerPort(new TThreadedSelectorServer(options), port);
+  }
+  
   public static ServerPort startThreadPoolServer(int port, TProcessor processor, String serverName, String threadName, int numThreads)
       throws TTransportException {
     
@@ -241,7 +265,20 @@ public class TServerUtils {
   
   public static ServerPort startTServer(int port, TProcessor processor, String serverName, String threadName, int numThreads, long timeBetweenThreadChecks)
       throws TTransportException {
-    ServerPort result = startHsHaServer(port, processor, serverName, threadName, numThreads, timeBetweenThreadChecks);
+    return startTServer(port, processor, serverName, threadName, numThreads, timeBetweenThreadChecks, 1);
+  }
+  
+  /**
+   * @param selectorThreads
+   *          the number of threads reading and writing client connections, a single selector thread is used when this is less than two
+   */
+  public static ServerPort startTServer(int port, TProcessor processor, String serverName, String threadName, int numThreads, long timeBetweenThreadChecks,
+      int selectorThreads) throws TTransportException {
+    ServerPort result;
+    if (selectorThreads > 1)
+      result = startThreadedSelectorServer(port, processor, serverName, threadName, numThreads, timeBetweenThreadChecks, selectorThreads);
+    else
+      result = startHsHaServer(port, processor, serverName, threadName, numThreads, timeBetweenThreadChecks);
     // ServerPort result = startThreadPoolServer(port, processor, serverName, threadName, -1);
     final TServer finalServer = result.server;
     Runnable serveTask = new Runnable() {
@@ -265,7 +302,7 @@ public class TServerUtils {
       return;
     s.stop();
     try {
-      Field f = s.getClass().getDeclaredField("executorService_");
+      Field f = getExecutorField(s.getClass());
       f.setAccessible(true);
       ExecutorService es = (ExecutorService) f.get(s);
       es.shutdownNow();
@@ -273,4 +310,18 @@ public class TServerUtils {
       TServerUtils.log.error("Unable to call shutdownNow", e);
     }
   }
+  
+  // the thread pool server and the non-blocking servers name their executor differently
+  private static Field getExecutorField(Class<?> serverClass) throws NoSuchFieldException {
+    for (Class<?> c = serverClass; c != null; c = c.getSuperclass()) {
+      for (String name : new String[] {"executorService_", "invoker"}) {
+        try {
+          return c.getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+          // try the next name
+        }
+      }
+    }
+    throw new NoSuchFieldException("executorService_");
+  }
 }
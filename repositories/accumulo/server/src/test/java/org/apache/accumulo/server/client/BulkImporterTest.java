@@ -18,6 +18,7 @@ package org.apache.accumulo.server.client;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
@@ -31,6 +32,8 @@ import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.client.impl.TabletLocator;
 import org.apache.accumulo.core.client.impl.TabletLocator.TabletLocation;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.KeyExtent;
 import org.apache.accumulo.core.data.Mutation;
@@ -147,4 +150,41 @@ public class BulkImporterTest {
     Assert.assertEquals(locator.invalidated, 1);
   }
   
+  @Test
+  public void testFindOverlappingTabletsFromIndex() throws Exception {
+    MockTabletLocator locator = new MockTabletLocator();
+    FileSystem fs = FileSystem.getLocal(CachedConfiguration.getInstance());
+    ConfigurationCopy acuConf = new ConfigurationCopy(AccumuloConfiguration.getDefaultConfiguration());
+    // small blocks, so most tablets the file spans contain the last row of some block
+    acuConf.set(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE, "1K");
+    String file = "target/testIndexFile.rf";
+    fs.delete(new Path(file), true);
+    FileSKVWriter writer = FileOperations.getInstance().openWriter(file, fs, fs.getConf(), acuConf);
+    writer.startDefaultLocalityGroup();
+    Value value = new Value("a value that is not empty".getBytes());
+    for (String prefix : new String[] {"c", "f"})
+      for (int i = 0; i < 1000; i++)
+        writer.append(new Key(String.format("%s%04d", prefix, i), "cf", "cq"), value);
+    writer.append(new Key("zz", "cf", "cq"), value);
+    writer.close();
+    
+    Map<KeyExtent,Long> sizes = new HashMap<KeyExtent,Long>();
+    List<TabletLocation> overlaps = BulkImporter.findOverlappingTablets(acuConf, fs, locator, new Path(file), null, null, sizes);
+    // the tablets between the c and f rows fall inside the block that holds the last c rows and the first f rows
+    Assert.assertEquals(3, overlaps.size());
+    KeyExtent cTablet = new KeyExtent(tableId, new Text("cm"), new Text("c"));
+    KeyExtent fTablet = new KeyExtent(tableId, new Text("g"), new Text("f"));
+    KeyExtent lastTablet = new KeyExtent(tableId, null, new Text("l"));
+    Assert.assertEquals(cTablet, overlaps.get(0).tablet_extent);
+    Assert.assertEquals(fTablet, overlaps.get(1).tablet_extent);
+    Assert.assertEquals(lastTablet, overlaps.get(2).tablet_extent);
+    
+    // the sizes are estimated from the index
+    long fileSize = fs.getFileStatus(new Path(file)).getLen();
+    Assert.assertEquals(3, sizes.size());
+    Assert.assertTrue(sizes.get(cTablet) > fileSize / 3);
+    Assert.assertTrue(sizes.get(fTablet) > fileSize / 3);
+    Assert.assertTrue(sizes.get(lastTablet) < fileSize / 10);
+  }
+  
 }
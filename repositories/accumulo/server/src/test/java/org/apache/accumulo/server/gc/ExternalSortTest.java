@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.gc;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExternalSortTest {
+  
+  private static List<String> sort(ExternalSort sort, List<String> input) throws Exception {
+    for (String s : input)
+      sort.add(s);
+    List<String> output = new ArrayList<String>();
+    for (String s : sort)
+      output.add(s);
+    return output;
+  }
+  
+  @Test
+  public void testInMemory() throws Exception {
+    ExternalSort sort = new ExternalSort(100);
+    List<String> output = sort(sort, Arrays.asList("/2/t-1/F3.rf", "/1/t-1", "/1/t-1/F1.rf", "/1/t-1"));
+    Assert.assertEquals(0, sort.getNumRuns());
+    Assert.assertEquals(3, sort.size());
+    Assert.assertEquals(Arrays.asList("/1/t-1", "/1/t-1/F1.rf", "/2/t-1/F3.rf"), output);
+    sort.close();
+  }
+  
+  @Test
+  public void testSpilled() throws Exception {
+    Random random = new Random(42);
+    List<String> input = new ArrayList<String>();
+    for (int i = 0; i < 5000; i++)
+      input.add(String.format("/%d/t-%04d/F%06d.rf", random.nextInt(5), random.nextInt(100), random.nextInt(3000)));
+    
+    ExternalSort sort = new ExternalSort(97);
+    List<String> output = sort(sort, input);
+    Assert.assertTrue(sort.getNumRuns() > 1);
+    Assert.assertEquals(new ArrayList<String>(new TreeSet<String>(input)), output);
+    sort.close();
+    Assert.assertEquals(0, sort.getNumRuns());
+  }
+  
+  @Test
+  public void testDeleteStaleRuns() throws Exception {
+    File dir = File.createTempFile("gc-sort-test", "");
+    Assert.assertTrue(dir.delete());
+    Assert.assertTrue(dir.mkdir());
+    try {
+      File stale = File.createTempFile("gc-sort-", ".run", dir);
+      File other = File.createTempFile("other-", ".run", dir);
+      Assert.assertEquals(1, ExternalSort.deleteStaleRuns(dir));
+      Assert.assertFalse(stale.exists());
+      Assert.assertTrue(other.exists());
+      Assert.assertTrue(other.delete());
+    } finally {
+      dir.delete();
+    }
+  }
+  
+  @Test
+  public void testEmpty() throws Exception {
+    ExternalSort sort = new ExternalSort(10);
+    Assert.assertEquals(Collections.emptyList(), sort(sort, new ArrayList<String>()));
+    sort.close();
+  }
+}
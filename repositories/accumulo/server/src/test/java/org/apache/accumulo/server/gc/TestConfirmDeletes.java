@@ -104,6 +104,31 @@ public class TestConfirmDeletes {
     Assert.assertEquals(expectedInitial, candidates.size());
     gc.confirmDeletes(candidates);
     Assert.assertEquals(expected, candidates.size());
+    
+    // the streaming collector must confirm the same deletes, even when everything is sorted on disk
+    gc = new SimpleGarbageCollector();
+    gc.init(fs, instance, auth);
+    gc.setStreamingBatchSize(1);
+    final SortedSet<String> confirmed = new TreeSet<String>();
+    gc.streamConfirmedDeletes(new SimpleGarbageCollector.ConfirmedDeletesHandler() {
+      @Override
+      public void handle(SortedSet<String> confirmedDeletes) {
+        confirmed.addAll(confirmedDeletes);
+      }
+    });
+    Assert.assertEquals(candidates, confirmed);
+  }
+  
+  @Test
+  public void testBulkProcessingFolder() {
+    SortedSet<String> blips = newSet("/1636/b-0001", "/1636/b-0001.tmp", "/1636/b-0002", "/1637/b-0001");
+    Assert.assertEquals("/1636/b-0001", SimpleGarbageCollector.getBulkProcessingFolder(blips, "/1636/b-0001/I0000"));
+    Assert.assertEquals("/1636/b-0002", SimpleGarbageCollector.getBulkProcessingFolder(blips, "/1636/b-0002"));
+    Assert.assertEquals("/1637/b-0001", SimpleGarbageCollector.getBulkProcessingFolder(blips, "/1637/b-0001/I0000"));
+    Assert.assertNull(SimpleGarbageCollector.getBulkProcessingFolder(blips, "/1636/b-0000/I0000"));
+    Assert.assertNull(SimpleGarbageCollector.getBulkProcessingFolder(blips, "/1636/default_tablet/F0000"));
+    Assert.assertNull(SimpleGarbageCollector.getBulkProcessingFolder(blips, "/1638/b-0001/I0000"));
+    Assert.assertNull(SimpleGarbageCollector.getBulkProcessingFolder(newSet(), "/1636/b-0001/I0000"));
   }
   
   private void load(Instance instance, String[] metadata, String[] deletes) throws Exception {
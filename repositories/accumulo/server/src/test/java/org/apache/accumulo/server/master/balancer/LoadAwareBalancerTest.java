@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.master.balancer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.KeyExtent;
+import org.apache.accumulo.core.master.thrift.TableInfo;
+import org.apache.accumulo.core.master.thrift.TabletServerStatus;
+import org.apache.accumulo.core.security.thrift.ThriftSecurityException;
+import org.apache.accumulo.core.tabletserver.thrift.TabletStats;
+import org.apache.accumulo.core.util.AddressUtil;
+import org.apache.accumulo.server.master.state.TServerInstance;
+import org.apache.accumulo.server.master.state.TabletMigration;
+import org.apache.hadoop.io.Text;
+import org.apache.thrift.TException;
+import org.junit.Test;
+
+/**
+ * Simulates a cluster whose tablets have a fixed load, applying the migrations of each balancing pass and advancing the clock a minute between passes.
+ */
+public class LoadAwareBalancerTest {
+  
+  class FakeTServer {
+    Map<KeyExtent,Double> tablets = new HashMap<KeyExtent,Double>();
+    
+    TabletServerStatus getStatus() {
+      TabletServerStatus result = new TabletServerStatus();
+      result.tableMap = new HashMap<String,TableInfo>();
+      for (Entry<KeyExtent,Double> entry : tablets.entrySet()) {
+        String table = entry.getKey().getTableId().toString();
+        TableInfo info = result.tableMap.get(table);
+        if (info == null)
+          result.tableMap.put(table, info = new TableInfo());
+        info.onlineTablets++;
+        info.tablets++;
+        info.ingestRate += entry.getValue();
+      }
+      return result;
+    }
+    
+    double getLoad() {
+      double load = 0;
+      for (Double l : tablets.values())
+        load += l;
+      return load;
+    }
+  }
+  
+  Map<TServerInstance,FakeTServer> servers = new TreeMap<TServerInstance,FakeTServer>();
+  Map<KeyExtent,Integer> moves = new HashMap<KeyExtent,Integer>();
+  
+  class TestLoadAwareBalancer extends LoadAwareBalancer {
+    long now = 0;
+    
+    @Override
+    long currentTime() {
+      return now;
+    }
+    
+    @Override
+    public List<TabletStats> getOnlineTabletsForTable(TServerInstance tserver, String table) throws ThriftSecurityException, TException {
+      List<TabletStats> result = new ArrayList<TabletStats>();
+      for (Entry<KeyExtent,Double> entry : servers.get(tserver).tablets.entrySet()) {
+        if (entry.getKey().getTableId().toString().equals(table))
+          result.add(new TabletStats(entry.getKey().toThrift(), null, null, null, 0l, entry.getValue(), 0., 0));
+      }
+      return result;
+    }
+  }
+  
+  private void createServers(int count) {
+    servers.clear();
+    moves.clear();
+    for (int i = 0; i < count; i++)
+      servers.put(new TServerInstance(AddressUtil.parseAddress("127.0.0.1", 1234 + i), "s" + i), new FakeTServer());
+  }
+  
+  private FakeTServer getServer(int i) {
+    return new ArrayList<FakeTServer>(servers.values()).get(i);
+  }
+  
+  private SortedMap<TServerInstance,TabletServerStatus> getStatus() {
+    SortedMap<TServerInstance,TabletServerStatus> result = new TreeMap<TServerInstance,TabletServerStatus>();
+    for (Entry<TServerInstance,FakeTServer> entry : servers.entrySet())
+      result.put(entry.getKey(), entry.getValue().getStatus());
+    return result;
+  }
+  
+  /**
+   * Runs one balancing pass and applies its migrations.
+   * 
+   * @return the number of migrations
+   */
+  private int step(TestLoadAwareBalancer balancer) {
+    Set<KeyExtent> migrations = Collections.emptySet();
+    List<TabletMigration> migrationsOut = new ArrayList<TabletMigration>();
+    balancer.balance(getStatus(), migrations, migrationsOut);
+    for (TabletMigration migration : migrationsOut) {
+      Double load = servers.get(migration.oldServer).tablets.remove(migration.tablet);
+      assertTrue(load != null);
+      servers.get(migration.newServer).tablets.put(migration.tablet, load);
+      Integer count = moves.get(migration.tablet);
+      moves.put(migration.tablet, count == null ? 1 : count + 1);
+    }
+    balancer.now += 60 * 1000;
+    return migrationsOut.size();
+  }
+  
+  private void assertLoadBalanced() {
+    double total = 0;
+    for (FakeTServer server : servers.values())
+      total += server.getLoad();
+    double mean = total / servers.size();
+    for (FakeTServer server : servers.values())
+      assertTrue("load " + server.getLoad() + " mean " + mean, server.getLoad() <= mean * (1 + LoadAwareBalancer.TOLERANCE));
+  }
+  
+  @Test
+  public void testConverges() {
+    createServers(5);
+    Random random = new Random(7);
+    // the tablets of one server get ten times the load of the others
+    for (int i = 0; i < 5; i++)
+      for (int j = 0; j < 10; j++)
+        getServer(i).tablets.put(makeExtent("t" + j % 3, i + "_" + j), (double) (1 + random.nextInt(20)) * (i == 0 ? 10 : 1));
+    
+    TestLoadAwareBalancer balancer = new TestLoadAwareBalancer();
+    int rounds = 0;
+    while (step(balancer) > 0) {
+      rounds++;
+      assertTrue("did not converge", rounds < 20);
+    }
+    assertLoadBalanced();
+    
+    // the number of tablets may still be evened out, but the load stays balanced and tablets do not flap
+    for (int i = 0; i < 30; i++)
+      step(balancer);
+    assertLoadBalanced();
+    for (Integer count : moves.values())
+      assertTrue(count <= 2);
+  }
+  
+  @Test
+  public void testEvenLoad() {
+    createServers(4);
+    // the load is even, but the number of tablets is not
+    for (int i = 0; i < 20; i++)
+      getServer(i % 2).tablets.put(makeExtent("t", "" + i), 50.);
+    getServer(2).tablets.put(makeExtent("u", "a"), 500.);
+    getServer(3).tablets.put(makeExtent("u", "b"), 500.);
+    
+    TestLoadAwareBalancer balancer = new TestLoadAwareBalancer();
+    for (int i = 0; i < 30; i++)
+      step(balancer);
+    
+    assertLoadBalanced();
+    // tablets are moved to even out the number of tablets, as far as the load allows
+    assertTrue(getServer(2).tablets.size() > 1);
+    assertTrue(getServer(3).tablets.size() > 1);
+    // the busy tablets should stay where they are, and the idle ones should not be moved back and forth
+    assertFalse(moves.containsKey(makeExtent("u", "a")));
+    assertFalse(moves.containsKey(makeExtent("u", "b")));
+    for (Integer count : moves.values())
+      assertEquals(1, count.intValue());
+  }
+  
+  @Test
+  public void testHotTablet() {
+    createServers(5);
+    KeyExtent hot = makeExtent("t", "hot");
+    getServer(0).tablets.put(hot, 1000.);
+    for (int i = 0; i < 9; i++)
+      getServer(0).tablets.put(makeExtent("t", "0_" + i), 10.);
+    for (int i = 1; i < 5; i++)
+      for (int j = 0; j < 10; j++)
+        getServer(i).tablets.put(makeExtent("t", i + "_" + j), 10.);
+    
+    TestLoadAwareBalancer balancer = new TestLoadAwareBalancer();
+    // run for longer than the quiet period, so that moved tablets could move again
+    for (int i = 0; i < 30; i++)
+      step(balancer);
+    
+    // moving the hot tablet would only move the hotspot, so it stays and is reported
+    assertTrue(getServer(0).tablets.containsKey(hot));
+    assertFalse(moves.containsKey(hot));
+    assertTrue(balancer.getHotTablets().contains(hot));
+    
+    // the rest of the server's tablets are moved off of it, once
+    assertEquals(1, getServer(0).tablets.size());
+    assertEquals(9, moves.size());
+    for (Integer count : moves.values())
+      assertEquals(1, count.intValue());
+  }
+  
+  @Test
+  public void testHotTabletAndNewServer() {
+    createServers(3);
+    KeyExtent hot = makeExtent("t", "hot");
+    getServer(0).tablets.put(hot, 1000.);
+    for (int i = 1; i < 3; i++)
+      for (int j = 0; j < 10; j++)
+        getServer(i).tablets.put(makeExtent("t", i + "_" + j), 10.);
+    
+    TestLoadAwareBalancer balancer = new TestLoadAwareBalancer();
+    for (int i = 0; i < 10; i++)
+      step(balancer);
+    assertTrue(balancer.getHotTablets().contains(hot));
+    
+    // the load stays uneven, but a new server still gets its share of the tablets
+    FakeTServer added = new FakeTServer();
+    servers.put(new TServerInstance(AddressUtil.parseAddress("127.0.0.1", 1234 + 3), "s3"), added);
+    for (int i = 0; i < 10; i++)
+      step(balancer);
+    
+    assertTrue(balancer.getHotTablets().contains(hot));
+    assertFalse(moves.containsKey(hot));
+    assertTrue("new server has " + added.tablets.size() + " tablets", added.tablets.size() >= 5);
+    // and no tablets are moved onto the server with the hotspot
+    assertEquals(1, getServer(0).tablets.size());
+  }
+  
+  private static KeyExtent makeExtent(String table, String end) {
+    return new KeyExtent(new Text(table), new Text(end), null);
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.monitor.util;
+
+import java.util.List;
+
+import org.apache.accumulo.core.util.Pair;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimeSeriesTest {
+  
+  @Test
+  public void testEmpty() {
+    TimeSeries series = new TimeSeries(1000, 10);
+    Assert.assertEquals(0, series.getPoints().size());
+  }
+  
+  @Test
+  public void testMissingValues() {
+    TimeSeries series = new TimeSeries(1000, 10);
+    series.add(1, 0.5);
+    series.add(2, Double.NaN);
+    List<Pair<Long,Double>> points = series.getPoints();
+    Assert.assertEquals(2, points.size());
+    Assert.assertEquals(new Pair<Long,Double>(1L, 0.5), points.get(0));
+    Assert.assertEquals(2L, points.get(1).getFirst().longValue());
+    Assert.assertNull(points.get(1).getSecond());
+  }
+  
+  @Test
+  public void testMaxPoints() {
+    TimeSeries series = new TimeSeries(1000, 10);
+    // wrap around the ring a few times
+    for (int i = 0; i < 55; i++)
+      series.add(i, i * 2);
+    List<Pair<Long,Double>> points = series.getPoints();
+    Assert.assertEquals(10, points.size());
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(45L + i, points.get(i).getFirst().longValue());
+      Assert.assertEquals((45. + i) * 2, points.get(i).getSecond(), 0.);
+    }
+  }
+  
+  @Test
+  public void testMaxAge() {
+    TimeSeries series = new TimeSeries(100, 10);
+    series.add(0, 1);
+    series.add(50, 2);
+    series.add(100, 3);
+    Assert.assertEquals(3, series.getPoints().size());
+    series.add(120, 4);
+    List<Pair<Long,Double>> points = series.getPoints();
+    Assert.assertEquals(3, points.size());
+    Assert.assertEquals(50L, points.get(0).getFirst().longValue());
+  }
+}
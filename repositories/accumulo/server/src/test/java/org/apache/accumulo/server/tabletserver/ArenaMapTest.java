@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.tabletserver;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.system.InterruptibleIterator;
+import org.apache.accumulo.core.util.LocalityGroupUtil;
+import org.apache.accumulo.server.tabletserver.InMemoryMap.MemoryIterator;
+import org.apache.hadoop.io.Text;
+
+public class ArenaMapTest extends TestCase {
+  
+  private static Mutation nm(String row, String cf, String cq, long ts, boolean delete, String val) {
+    Mutation m = new Mutation(new Text(row));
+    if (delete)
+      m.putDelete(new Text(cf), new Text(cq), ts);
+    else
+      m.put(new Text(cf), new Text(cq), ts, new Value(val.getBytes()));
+    return m;
+  }
+  
+  public void testOrderMatchesDefaultMap() throws Exception {
+    ArenaMap am = new ArenaMap();
+    TreeMap<Key,Value> expected = new TreeMap<Key,Value>(new MemKeyComparator());
+    
+    Random rand = new Random(7);
+    for (int kvCount = 0; kvCount < 5000; kvCount++) {
+      String row = String.format("r%03d", rand.nextInt(100));
+      String cf = "cf" + rand.nextInt(3);
+      String cq = "cq" + rand.nextInt(3);
+      long ts = rand.nextInt(5);
+      boolean delete = rand.nextInt(10) == 0;
+      String val = delete ? "" : "v" + kvCount;
+      
+      am.mutate(nm(row, cf, cq, ts, delete, val), kvCount);
+      expected.put(new MemKey(row.getBytes(), cf.getBytes(), cq.getBytes(), new byte[0], ts, delete, false, kvCount), new Value(val.getBytes()));
+    }
+    
+    assertEquals(expected.size(), am.size());
+    
+    Iterator<Entry<Key,Value>> iter = am.iterator();
+    for (Entry<Key,Value> entry : expected.entrySet()) {
+      assertTrue(iter.hasNext());
+      Entry<Key,Value> actual = iter.next();
+      assertEquals(entry.getKey(), actual.getKey());
+      assertEquals(((MemKey) entry.getKey()).kvCount, ((MemKey) actual.getKey()).kvCount);
+      assertEquals(entry.getValue(), actual.getValue());
+    }
+    assertFalse(iter.hasNext());
+    
+    // a plain key sorts before all versions of the same key, and get returns the most recent one
+    Key first = expected.firstKey();
+    Key plain = new Key(first);
+    assertEquals(expected.get(first), am.get(plain));
+    assertEquals(first, am.iterator(plain).next().getKey());
+    
+    // a mem key only sees versions written before it
+    MemKey probe = new MemKey(first, ((MemKey) first).kvCount);
+    assertEquals(((MemKey) first).kvCount, ((MemKey) am.iterator(probe).next().getKey()).kvCount);
+    
+    assertNull(am.get(new Key(new Text("zzz"))));
+    am.delete();
+  }
+  
+  public void testSeek() throws Exception {
+    ArenaMap am = new ArenaMap();
+    for (int i = 0; i < 100; i++)
+      am.mutate(nm(String.format("r%03d", i), "cf", "cq", 1, false, "v" + i), i);
+    
+    InterruptibleIterator iter = am.skvIterator();
+    iter.seek(new Range(new Text("r010"), false, new Text("r013"), true), LocalityGroupUtil.EMPTY_CF_SET, false);
+    for (int i = 11; i <= 13; i++) {
+      assertTrue(iter.hasTop());
+      assertEquals(new Text(String.format("r%03d", i)), iter.getTopKey().getRow());
+      assertEquals(new Value(("v" + i).getBytes()), iter.getTopValue());
+      iter.next();
+    }
+    assertFalse(iter.hasTop());
+    
+    iter.seek(new Range(), LocalityGroupUtil.EMPTY_CF_SET, false);
+    int count = 0;
+    while (iter.hasTop()) {
+      count++;
+      iter.next();
+    }
+    assertEquals(100, count);
+    
+    am.delete();
+  }
+  
+  public void testChunks() throws Exception {
+    ArenaMap am = new ArenaMap();
+    
+    // fill several chunks, then add an entry larger than any chunk
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++)
+      sb.append("0123456789");
+    for (int i = 0; i < 500; i++)
+      am.mutate(nm(String.format("r%03d", i), "cf", "cq", 1, false, sb.toString()), i);
+    
+    byte[] large = new byte[ArenaMap.MAX_CHUNK_SIZE * 2];
+    new Random(3).nextBytes(large);
+    Mutation m = new Mutation(new Text("large"));
+    m.put(new Text("cf"), new Text("cq"), new Value(large));
+    am.mutate(m, 500);
+    
+    assertEquals(501, am.size());
+    assertEquals(new Value(large), am.get(new Key(new Text("large"), new Text("cf"), new Text("cq"))));
+    assertEquals(new Value(sb.toString().getBytes()), am.get(new Key(new Text("r123"), new Text("cf"), new Text("cq"), 1)));
+    
+    long dataSize = 500l * (10000 + 4 + 2 + 2) + large.length;
+    assertTrue(am.getMemoryUsed() > dataSize);
+    // far less than one object per key and value, as estimated for the default map
+    assertTrue(am.getMemoryUsed() < dataSize * 1.5 + 501 * ArenaMap.OVERHEAD_PER_ENTRY);
+    
+    am.delete();
+    try {
+      am.mutate(m, 501);
+      fail("mutated deleted map");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+  
+  public void testFull() throws Exception {
+    // the default map holds more than the largest int offset
+    assertTrue(ArenaMap.MAX_SIZE > 8l * Integer.MAX_VALUE);
+    
+    // chunks of 4k, 8k and 16k
+    ArenaMap am = new ArenaMap(3);
+    String val = String.format("%1000d", 0);
+    int count = 0;
+    try {
+      while (true) {
+        am.mutate(nm(String.format("r%03d", count), "cf", "cq", 1, false, val), count);
+        count++;
+      }
+    } catch (IllegalStateException e) {
+      assertEquals("Arena map is full", e.getMessage());
+    }
+    
+    assertTrue(count > 20);
+    assertEquals(count, am.size());
+    for (int i = 0; i < count; i++)
+      assertEquals(new Value(val.getBytes()), am.get(new Key(new Text(String.format("r%03d", i)), new Text("cf"), new Text("cq"), 1)));
+    assertEquals(28 * 1024 + count * ArenaMap.OVERHEAD_PER_ENTRY, am.getMemoryUsed());
+  }
+  
+  public void testInMemoryMap() throws Exception {
+    InMemoryMap imm = new InMemoryMap(false, true, "/tmp");
+    
+    imm.mutate(Collections.singletonList(nm("r1", "foo", "cq1", 3, false, "bar1")));
+    imm.mutate(Collections.singletonList(nm("r1", "foo", "cq1", 3, false, "bar2")));
+    MemoryIterator ski1 = imm.skvIterator();
+    imm.mutate(Collections.singletonList(nm("r1", "foo", "cq1", 3, false, "bar3")));
+    MemoryIterator ski2 = imm.skvIterator();
+    
+    ski1.seek(new Range(new Text("r1")), LocalityGroupUtil.EMPTY_CF_SET, false);
+    InMemoryMapTest.ae(ski1, "r1", "foo:cq1", 3, "bar2");
+    InMemoryMapTest.ae(ski1, "r1", "foo:cq1", 3, "bar1");
+    assertFalse(ski1.hasTop());
+    
+    ski2.seek(new Range(new Text("r1")), LocalityGroupUtil.EMPTY_CF_SET, false);
+    InMemoryMapTest.ae(ski2, "r1", "foo:cq1", 3, "bar3");
+    InMemoryMapTest.ae(ski2, "r1", "foo:cq1", 3, "bar2");
+    InMemoryMapTest.ae(ski2, "r1", "foo:cq1", 3, "bar1");
+    assertFalse(ski2.hasTop());
+    
+    assertEquals(3, imm.getNumEntries());
+    ski1.close();
+    ski2.close();
+    imm.delete(0);
+  }
+}
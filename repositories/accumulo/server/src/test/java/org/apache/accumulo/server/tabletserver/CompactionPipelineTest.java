@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.tabletserver;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileSKVWriter;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.util.LocalityGroupUtil;
+import org.apache.hadoop.io.Text;
+
+public class CompactionPipelineTest extends TestCase {
+  
+  private static class ListWriter implements FileSKVWriter {
+    List<Object> written = new ArrayList<Object>();
+    
+    @Override
+    public boolean supportsLocalityGroups() {
+      return true;
+    }
+    
+    @Override
+    public void startNewLocalityGroup(String name, Set<ByteSequence> columnFamilies) throws IOException {
+      written.add(name);
+    }
+    
+    @Override
+    public void startDefaultLocalityGroup() throws IOException {
+      written.add(null);
+    }
+    
+    @Override
+    public void append(Key key, Value value) throws IOException {
+      written.add(key);
+      written.add(value);
+    }
+    
+    @Override
+    public DataOutputStream createMetaStore(String name) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public void close() throws IOException {}
+  }
+  
+  private static Key nk(int row) {
+    return new Key(new Text(String.format("r%06d", row)), new Text("cf"), new Text("cq"));
+  }
+  
+  private static TreeMap<Key,Value> data(int entries) {
+    TreeMap<Key,Value> tm = new TreeMap<Key,Value>();
+    for (int i = 0; i < entries; i++)
+      tm.put(nk(i), new Value(("v" + i).getBytes()));
+    return tm;
+  }
+  
+  private ExecutorService pool;
+  
+  @Override
+  protected void setUp() throws Exception {
+    pool = Executors.newFixedThreadPool(2);
+  }
+  
+  @Override
+  protected void tearDown() throws Exception {
+    pool.shutdownNow();
+  }
+  
+  private static void check(PipelinedSourceIterator iter, int start, int end) throws IOException {
+    for (int i = start; i < end; i++) {
+      assertTrue(iter.hasTop());
+      assertEquals(nk(i), iter.getTopKey());
+      assertEquals(new Value(("v" + i).getBytes()), iter.getTopValue());
+      iter.next();
+    }
+  }
+  
+  public void testSource() throws Exception {
+    TreeMap<Key,Value> tm = data(50000);
+    PipelinedSourceIterator iter = new PipelinedSourceIterator(new SortedMapIterator(tm), pool);
+    
+    iter.seek(new Range(), LocalityGroupUtil.EMPTY_CF_SET, false);
+    check(iter, 0, 50000);
+    assertFalse(iter.hasTop());
+    
+    // seek while reading ahead
+    iter.seek(new Range(nk(100), null), LocalityGroupUtil.EMPTY_CF_SET, false);
+    check(iter, 100, 200);
+    iter.seek(new Range(nk(40000), nk(40010)), LocalityGroupUtil.EMPTY_CF_SET, false);
+    check(iter, 40000, 40011);
+    assertFalse(iter.hasTop());
+    
+    iter.seek(new Range(nk(60000), null), LocalityGroupUtil.EMPTY_CF_SET, false);
+    assertFalse(iter.hasTop());
+    
+    // after a deep copy the source is read on the calling thread
+    iter.seek(new Range(nk(10), null), LocalityGroupUtil.EMPTY_CF_SET, false);
+    iter.deepCopy(null);
+    check(iter, 10, 50000);
+    assertFalse(iter.hasTop());
+    
+    iter.close();
+  }
+  
+  public void testRejected() throws Exception {
+    pool.shutdown();
+    PipelinedSourceIterator iter = new PipelinedSourceIterator(new SortedMapIterator(data(1000)), pool);
+    iter.seek(new Range(), LocalityGroupUtil.EMPTY_CF_SET, false);
+    check(iter, 0, 1000);
+    assertFalse(iter.hasTop());
+  }
+  
+  public void testWriter() throws Exception {
+    ListWriter lw = new ListWriter();
+    PipelinedFileWriter writer = new PipelinedFileWriter(lw, pool);
+    
+    // the writer must copy keys and values, which iterators reuse
+    Key key = new Key();
+    Value value = new Value();
+    
+    writer.startNewLocalityGroup("lg1", null);
+    for (int i = 0; i < 20000; i++) {
+      key.set(nk(i));
+      value.set(("v" + i).getBytes());
+      writer.append(key, value);
+    }
+    writer.startDefaultLocalityGroup();
+    for (int i = 20000; i < 30000; i++) {
+      key.set(nk(i));
+      value.set(("v" + i).getBytes());
+      writer.append(key, value);
+    }
+    writer.close();
+    
+    assertEquals(2 + 30000 * 2, lw.written.size());
+    assertEquals("lg1", lw.written.get(0));
+    assertNull(lw.written.get(1 + 20000 * 2));
+    for (int i = 0; i < 30000; i++) {
+      int index = 1 + i * 2 + (i >= 20000 ? 1 : 0);
+      assertEquals(nk(i), lw.written.get(index));
+      assertEquals(new Value(("v" + i).getBytes()), lw.written.get(index + 1));
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.server.tabletserver;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.Property;
+
+public class CompactionSchedulerTest extends TestCase {
+  
+  private static class TestJob implements CompactionScheduler.Job, Comparable<TestJob> {
+    final long size;
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release;
+    volatile ThroughputLimiter limiter;
+    
+    TestJob(long size, CountDownLatch release) {
+      this.size = size;
+      this.release = release;
+    }
+    
+    @Override
+    public void run() {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    
+    @Override
+    public long getEstimatedSize() {
+      return size;
+    }
+    
+    @Override
+    public void setThroughputLimiter(ThroughputLimiter limiter) {
+      this.limiter = limiter;
+    }
+    
+    @Override
+    public int compareTo(TestJob o) {
+      return 0;
+    }
+  }
+  
+  private ExecutorService smallPool;
+  private ExecutorService largePool;
+  private ConfigurationCopy conf;
+  
+  @Override
+  protected void setUp() throws Exception {
+    smallPool = new ThreadPoolExecutor(1, 1, 0l, TimeUnit.MILLISECONDS, new CompactionQueue());
+    largePool = new ThreadPoolExecutor(1, 1, 0l, TimeUnit.MILLISECONDS, new CompactionQueue());
+    conf = new ConfigurationCopy(AccumuloConfiguration.getDefaultConfiguration());
+    conf.set(Property.TSERV_MAJC_LARGE_THRESHOLD, "1K");
+    conf.set(Property.TSERV_MAJC_HUGE_THRESHOLD, "1M");
+  }
+  
+  @Override
+  protected void tearDown() throws Exception {
+    smallPool.shutdownNow();
+    largePool.shutdownNow();
+  }
+  
+  public void testQueues() throws Exception {
+    CompactionScheduler scheduler = new CompactionScheduler(smallPool, largePool, conf);
+    CountDownLatch release = new CountDownLatch(1);
+    
+    TestJob small1 = new TestJob(100, release);
+    TestJob small2 = new TestJob(100, release);
+    TestJob large = new TestJob(10000, release);
+    
+    scheduler.execute(small1);
+    scheduler.execute(small2);
+    scheduler.execute(large);
+    
+    // the large compaction runs while a small one is waiting
+    assertTrue(small1.started.await(10, TimeUnit.SECONDS));
+    assertTrue(large.started.await(10, TimeUnit.SECONDS));
+    assertEquals(1, scheduler.getSmallRunning());
+    assertEquals(1, scheduler.getSmallQueued());
+    assertEquals(1, scheduler.getLargeRunning());
+    assertEquals(0, scheduler.getLargeQueued());
+    assertNotSame(small1.limiter, large.limiter);
+    
+    release.countDown();
+    assertTrue(small2.started.await(10, TimeUnit.SECONDS));
+    assertSame(small1.limiter, small2.limiter);
+  }
+  
+  public void testDeferral() throws Exception {
+    CompactionScheduler scheduler = new CompactionScheduler(smallPool, largePool, conf);
+    CountDownLatch release1 = new CountDownLatch(1);
+    CountDownLatch release2 = new CountDownLatch(1);
+    
+    TestJob large1 = new TestJob(10000, release1);
+    TestJob huge = new TestJob(1 << 21, release2);
+    TestJob large2 = new TestJob(10000, release2);
+    
+    scheduler.execute(large1);
+    assertTrue(large1.started.await(10, TimeUnit.SECONDS));
+    scheduler.execute(huge);
+    scheduler.execute(large2);
+    release1.countDown();
+    
+    // the huge compaction is taken first, but gives its thread to the large compaction queued behind it
+    assertTrue(large2.started.await(10, TimeUnit.SECONDS));
+    assertEquals(1, scheduler.getDeferred());
+    assertEquals(1, huge.started.getCount());
+    release2.countDown();
+    
+    // unless it has waited long enough
+    conf.set(Property.TSERV_MAJC_HUGE_DEFER_MAX, "0s");
+    scheduler.updateConfiguration(conf);
+    CountDownLatch release3 = new CountDownLatch(1);
+    CountDownLatch release4 = new CountDownLatch(1);
+    TestJob large3 = new TestJob(10000, release3);
+    TestJob huge2 = new TestJob(1 << 21, release4);
+    TestJob large4 = new TestJob(10000, release4);
+    scheduler.execute(large3);
+    assertTrue(large3.started.await(10, TimeUnit.SECONDS));
+    scheduler.execute(huge2);
+    scheduler.execute(large4);
+    release3.countDown();
+    assertTrue(huge2.started.await(10, TimeUnit.SECONDS));
+    assertEquals(1, large4.started.getCount());
+    assertEquals(1, scheduler.getDeferred());
+    release4.countDown();
+  }
+  
+  public void testNoDeferralForSmallQueue() throws Exception {
+    CompactionScheduler scheduler = new CompactionScheduler(smallPool, largePool, conf);
+    CountDownLatch release = new CountDownLatch(1);
+    
+    TestJob small1 = new TestJob(100, release);
+    TestJob small2 = new TestJob(100, release);
+    TestJob huge = new TestJob(1 << 21, release);
+    
+    scheduler.execute(small1);
+    assertTrue(small1.started.await(10, TimeUnit.SECONDS));
+    scheduler.execute(small2);
+    
+    // small compactions run on their own threads, so queued ones do not hold up a huge compaction
+    scheduler.execute(huge);
+    assertTrue(huge.started.await(10, TimeUnit.SECONDS));
+    assertEquals(0, scheduler.getDeferred());
+    assertEquals(1, scheduler.getSmallQueued());
+    release.countDown();
+  }
+  
+  public void testThroughputLimiter() throws Exception {
+    ThroughputLimiter limiter = new ThroughputLimiter(0);
+    long t1 = System.currentTimeMillis();
+    for (int i = 0; i < 100; i++)
+      limiter.acquire(1 << 20);
+    assertTrue(System.currentTimeMillis() - t1 < 1000);
+    assertEquals(100l << 20, limiter.getTotalBytes());
+    
+    limiter.setRate(10 << 20);
+    t1 = System.currentTimeMillis();
+    for (int i = 0; i < 30; i++)
+      limiter.acquire(1 << 17);
+    assertTrue(System.currentTimeMillis() - t1 >= 300);
+  }
+}
@@ -55,6 +55,7 @@ import org.apache.camel.support.TokenPairExpressionIterator;
 import org.apache.camel.support.TokenXMLExpressionIterator;
 import org.apache.camel.support.XMLTokenExpressionIterator;
 import org.apache.camel.util.CamelContextHelper;
+import org.apache.camel.util.CompiledOgnl;
 import org.apache.camel.util.ExchangeHelper;
 import org.apache.camel.util.FileUtil;
 import org.apache.camel.util.GroupIterator;
@@ -924,6 +925,141 @@ public final class ExpressionBuilder {
         };
     }
 
+    /**
+     * Returns the expression for the exchanges inbound message body invoking methods defined
+     * in a simple OGNL notation, which invokes getters directly instead of using the bean language.
+     * <p/>
+     * Falls back to {@link #bodyOgnlExpression(String)} when the OGNL cannot be walked without the bean language.
+     *
+     * @param ognl  methods to invoke on the body in a simple OGNL syntax
+     * @see CompiledOgnl
+     */
+    public static Expression compiledBodyOgnlExpression(final String ognl) {
+        final Expression interpreted = bodyOgnlExpression(ognl);
+        final CompiledOgnl compiled = CompiledOgnl.compile(ognl);
+        if (compiled == null) {
+            return interpreted;
+        }
+        return new ExpressionAdapter() {
+            public Object evaluate(Exchange exchange) {
+                Object body = exchange.getIn().getBody();
+                if (body == null) {
+                    return null;
+                }
+                Object answer = compiled.getValue(body);
+                if (answer == CompiledOgnl.UNRESOLVED) {
+                    return interpreted.evaluate(exchange, Object.class);
+                }
+                return answer;
+            }
+
+            @Override
+            public String toString() {
+                return "bodyOgnl(" + ognl + ")";
+            }
+        };
+    }
+
+    /**
+     * Returns the expression for the exchanges inbound message header invoking methods defined
+     * in a simple OGNL notation, which invokes getters directly instead of using the bean language.
+     * <p/>
+     * Falls back to {@link #headersOgnlExpression(String)} when the OGNL cannot be walked without the bean language.
+     *
+     * @param ognl  methods to invoke on the header in a simple OGNL syntax
+     * @see CompiledOgnl
+     */
+    public static Expression compiledHeadersOgnlExpression(final String ognl) {
+        return compiledKeyedOgnlExpression(ognl, headersOgnlExpression(ognl),
+            new KeyedOgnlExpressionAdapter.KeyedEntityRetrievalStrategy() {
+                public Object getKeyedEntity(Exchange exchange, String key) {
+                    return exchange.getIn().getHeader(key);
+                }
+            });
+    }
+
+    /**
+     * Returns an expression for the property value of exchange with the given name invoking methods defined
+     * in a simple OGNL notation, which invokes getters directly instead of using the bean language.
+     * <p/>
+     * Falls back to {@link #propertyOgnlExpression(String)} when the OGNL cannot be walked without the bean language.
+     *
+     * @param ognl  methods to invoke on the property in a simple OGNL syntax
+     * @see CompiledOgnl
+     */
+    public static Expression compiledPropertyOgnlExpression(final String ognl) {
+        return compiledKeyedOgnlExpression(ognl, propertyOgnlExpression(ognl),
+            new KeyedOgnlExpressionAdapter.KeyedEntityRetrievalStrategy() {
+                public Object getKeyedEntity(Exchange exchange, String key) {
+                    return exchange.getProperty(key);
+                }
+            });
+    }
+
+    /**
+     * Returns the expression for the exchange invoking methods defined
+     * in a simple OGNL notation, which invokes getters directly instead of using the bean language.
+     * <p/>
+     * Falls back to {@link #exchangeOgnlExpression(String)} when the OGNL cannot be walked without the bean language.
+     *
+     * @param ognl  methods to invoke on the exchange in a simple OGNL syntax
+     * @see CompiledOgnl
+     */
+    public static Expression compiledExchangeOgnlExpression(final String ognl) {
+        final Expression interpreted = exchangeOgnlExpression(ognl);
+        final CompiledOgnl compiled = CompiledOgnl.compile(ognl);
+        if (compiled == null) {
+            return interpreted;
+        }
+        return new ExpressionAdapter() {
+            public Object evaluate(Exchange exchange) {
+                Object answer = compiled.getValue(exchange);
+                if (answer == CompiledOgnl.UNRESOLVED) {
+                    return interpreted.evaluate(exchange, Object.class);
+                }
+                return answer;
+            }
+
+            @Override
+            public String toString() {
+                return "exchangeOgnl(" + ognl + ")";
+            }
+        };
+    }
+
+    private static Expression compiledKeyedOgnlExpression(final String ognl, final Expression interpreted,
+                                                          final KeyedOgnlExpressionAdapter.KeyedEntityRetrievalStrategy strategy) {
+        // the key is the first method, the same as the interpreted expression uses
+        final String key = OgnlHelper.removeOperators(OgnlHelper.splitOgnl(ognl).get(0));
+        final CompiledOgnl compiled = CompiledOgnl.compile(ObjectHelper.after(ognl, key));
+        if (compiled == null) {
+            return interpreted;
+        }
+        return new ExpressionAdapter() {
+            public Object evaluate(Exchange exchange) {
+                // try with full name first
+                Object value = strategy.getKeyedEntity(exchange, ognl);
+                if (value != null) {
+                    return value;
+                }
+                value = strategy.getKeyedEntity(exchange, key);
+                if (value == null) {
+                    return null;
+                }
+                Object answer = compiled.getValue(value);
+                if (answer == CompiledOgnl.UNRESOLVED) {
+                    return interpreted.evaluate(exchange, Object.class);
+                }
+                return answer;
+            }
+
+            @Override
+            public String toString() {
+                return interpreted.toString();
+            }
+        };
+    }
+
     /**
      * Returns the expression for the exchanges inbound message body converted
      * to the given type
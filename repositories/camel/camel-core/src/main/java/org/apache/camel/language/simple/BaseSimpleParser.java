@@ -45,10 +45,16 @@ public abstract class BaseSimpleParser {
     protected int previousIndex;
     protected int index;
     protected boolean allowEscape = true;
+    protected boolean compiled;
 
     protected BaseSimpleParser(String expression, boolean allowEscape) {
+        this(expression, allowEscape, false);
+    }
+
+    protected BaseSimpleParser(String expression, boolean allowEscape, boolean compiled) {
         this.expression = expression;
         this.allowEscape = allowEscape;
+        this.compiled = compiled;
     }
 
     /**
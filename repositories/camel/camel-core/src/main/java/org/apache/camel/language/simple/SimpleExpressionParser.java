@@ -47,6 +47,10 @@ public class SimpleExpressionParser extends BaseSimpleParser {
         super(expression, allowEscape);
     }
 
+    public SimpleExpressionParser(String expression, boolean allowEscape, boolean compiled) {
+        super(expression, allowEscape, compiled);
+    }
+
     public Expression parseExpression() {
         clear();
         try {
@@ -141,7 +145,7 @@ public class SimpleExpressionParser extends BaseSimpleParser {
         if (token.getType().isFunctionStart()) {
             // starting a new function
             functions.incrementAndGet();
-            return new SimpleFunctionStart(token);
+            return new SimpleFunctionStart(token, compiled);
         } else if (functions.get() > 0 && token.getType().isFunctionEnd()) {
             // there must be a start function already, to let this be a end function
             functions.decrementAndGet();
@@ -61,6 +61,11 @@ import org.apache.camel.util.PredicateToExpressionAdapter;
  * <p/>
  * The simple language supports OGNL notation when accessing either body or header.
  * <p/>
+ * The OGNL notation is evaluated using the {@link org.apache.camel.language.bean.BeanLanguage BeanLanguage}.
+ * When {@link #setCompiled(boolean) compiled} is enabled, OGNL notations of only getters and index lookups such as
+ * <tt>${body.address.city}</tt> invoke the getters directly, and only fallback to the bean language for types
+ * where the getters cannot be found.
+ * <p/>
  * The simple language now also includes file language out of the box which means the following expression is also
  * supported:
  * <ul>
@@ -94,6 +99,7 @@ public class SimpleLanguage extends LanguageSupport {
     private static final SimpleLanguage SIMPLE = new SimpleLanguage();
 
     protected boolean allowEscape = true;
+    protected boolean compiled;
 
     /**
      * Default constructor.
@@ -111,7 +117,7 @@ public class SimpleLanguage extends LanguageSupport {
         Predicate answer = SimpleBackwardsCompatibleParser.parsePredicate(expression, allowEscape);
         if (answer == null) {
             // use the new parser
-            SimplePredicateParser parser = new SimplePredicateParser(expression, allowEscape);
+            SimplePredicateParser parser = new SimplePredicateParser(expression, allowEscape, compiled);
             answer = parser.parsePredicate();
         }
         return answer;
@@ -127,7 +133,7 @@ public class SimpleLanguage extends LanguageSupport {
         Expression answer = SimpleBackwardsCompatibleParser.parseExpression(expression, allowEscape);
         if (answer == null) {
             // use the new parser
-            SimpleExpressionParser parser = new SimpleExpressionParser(expression, allowEscape);
+            SimpleExpressionParser parser = new SimpleExpressionParser(expression, allowEscape, compiled);
             answer = parser.parseExpression();
         }
         return answer;
@@ -210,6 +216,23 @@ public class SimpleLanguage extends LanguageSupport {
         SimpleTokenizer.changeFunctionEndToken(endToken);
     }
 
+    public boolean isCompiled() {
+        return compiled;
+    }
+
+    /**
+     * Whether to compile OGNL notations such as <tt>${body.address.city}</tt> into direct getter calls,
+     * instead of evaluating them with the bean language on every evaluation.
+     * <p/>
+     * This is disabled by default. To enable it for routes, register a simple language with this option enabled
+     * in the registry with the name <tt>simple</tt>.
+     *
+     * @see org.apache.camel.util.CompiledOgnl
+     */
+    public void setCompiled(boolean compiled) {
+        this.compiled = compiled;
+    }
+
     /**
      * Change the start token used for functions.
      * <p/>
@@ -60,6 +60,10 @@ public class SimplePredicateParser extends BaseSimpleParser {
         super(expression, allowEscape);
     }
 
+    public SimplePredicateParser(String expression, boolean allowEscape, boolean compiled) {
+        super(expression, allowEscape, compiled);
+    }
+
     public Predicate parsePredicate() {
         clear();
         try {
@@ -221,7 +225,7 @@ public class SimplePredicateParser extends BaseSimpleParser {
                                   AtomicBoolean startFunction) {
         if (token.getType().isFunctionStart()) {
             startFunction.set(true);
-            return new SimpleFunctionStart(token);
+            return new SimpleFunctionStart(token, compiled);
         } else if (token.getType().isFunctionEnd()) {
             startFunction.set(false);
             return new SimpleFunctionEnd(token);
@@ -30,8 +30,20 @@ import org.apache.camel.util.StringHelper;
  */
 public class SimpleFunctionExpression extends LiteralExpression {
 
+    private final boolean compiled;
+
     public SimpleFunctionExpression(SimpleToken token) {
+        this(token, false);
+    }
+
+    /**
+     * @param token the function token
+     * @param compiled whether to compile OGNL expressions into direct getter calls,
+     *          see {@link org.apache.camel.util.CompiledOgnl}
+     */
+    public SimpleFunctionExpression(SimpleToken token, boolean compiled) {
         super(token);
+        this.compiled = compiled;
     }
 
     @Override
@@ -111,6 +123,9 @@ public class SimpleFunctionExpression extends LiteralExpression {
 
             if (OgnlHelper.isValidOgnlExpression(remainder)) {
                 // ognl based property
+                if (compiled) {
+                    return ExpressionBuilder.compiledPropertyOgnlExpression(remainder);
+                }
                 return ExpressionBuilder.propertyOgnlExpression(remainder);
             } else {
                 // regular property
@@ -135,6 +150,9 @@ public class SimpleFunctionExpression extends LiteralExpression {
             if (invalid) {
                 throw new SimpleParserException("Valid syntax: ${exchange.OGNL} was: " + function, token.getIndex());
             }
+            if (compiled) {
+                return ExpressionBuilder.compiledExchangeOgnlExpression(remainder);
+            }
             return ExpressionBuilder.exchangeOgnlExpression(remainder);
         }
 
@@ -254,6 +272,9 @@ public class SimpleFunctionExpression extends LiteralExpression {
             if (invalid) {
                 throw new SimpleParserException("Valid syntax: ${body.OGNL} was: " + function, token.getIndex());
             }
+            if (compiled) {
+                return ExpressionBuilder.compiledBodyOgnlExpression(remainder);
+            }
             return ExpressionBuilder.bodyOgnlExpression(remainder);
         }
 
@@ -312,6 +333,9 @@ public class SimpleFunctionExpression extends LiteralExpression {
 
             if (OgnlHelper.isValidOgnlExpression(key)) {
                 // ognl based header
+                if (compiled) {
+                    return ExpressionBuilder.compiledHeadersOgnlExpression(key);
+                }
                 return ExpressionBuilder.headersOgnlExpression(key);
             } else {
                 // regular header
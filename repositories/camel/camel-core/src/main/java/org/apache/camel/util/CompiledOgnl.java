@@ -0,0 +1,243 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.util;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.Exchange;
+
+/**
+ * A Camel OGNL expression of getters and index lookups, such as <tt>.address.city</tt> or <tt>.items[0]?.name</tt>,
+ * compiled into a chain of steps which invoke the getters directly.
+ * <p/>
+ * Each step remembers the getter it found for the last type it was invoked on, so walking the path costs a type check
+ * and a {@link Method#invoke(Object, Object...)} per step, instead of the bean introspection and exchange copies of the
+ * {@link org.apache.camel.language.bean.BeanLanguage bean language}. The JVM turns frequently invoked methods into
+ * generated accessors, so the getters end up being called from generated bytecode.
+ * <p/>
+ * Paths which use anything else, such as method calls with parameters, cannot be compiled. Values where a step cannot be
+ * resolved, such as types without a matching getter, a <tt>null</tt> without the null safe operator, or an index out of
+ * bounds, are returned as {@link #UNRESOLVED} so the caller can fallback to the bean language, which gives the same
+ * result or error as without compiling. The getters already called may then be called again.
+ *
+ * @version
+ */
+public final class CompiledOgnl {
+
+    /**
+     * Returned by {@link #getValue(Object)} when the path cannot be walked without the bean language.
+     */
+    public static final Object UNRESOLVED = new Object();
+
+    private final String ognl;
+    private final Step[] steps;
+
+    private CompiledOgnl(String ognl, Step[] steps) {
+        this.ognl = ognl;
+        this.steps = steps;
+    }
+
+    /**
+     * Compiles the Camel OGNL expression.
+     *
+     * @param ognl the Camel OGNL expression, eg <tt>.address.city</tt>
+     * @return the compiled expression, or <tt>null</tt> if the expression is not only getters and index lookups
+     */
+    public static CompiledOgnl compile(String ognl) {
+        List<String> methods = OgnlHelper.splitOgnl(ognl);
+        if (methods.isEmpty()) {
+            return null;
+        }
+
+        Step[] steps = new Step[methods.size()];
+        for (int i = 0; i < steps.length; i++) {
+            String method = methods.get(i);
+            boolean nullSafe = OgnlHelper.isNullSafeOperator(method);
+            String name = OgnlHelper.removeLeadingOperators(method);
+
+            String key = null;
+            KeyValueHolder<String, String> index = OgnlHelper.isOgnlIndex(name);
+            if (index != null) {
+                name = index.getKey();
+                key = index.getValue();
+                if (key == null) {
+                    return null;
+                }
+                key = StringHelper.removeLeadingAndEndingQuotes(key.trim());
+            }
+
+            // only getters, method calls must be invoked by the bean language
+            if (name != null && !isPropertyName(name)) {
+                return null;
+            }
+            steps[i] = new Step(name, key, nullSafe);
+        }
+        return new CompiledOgnl(ognl, steps);
+    }
+
+    /**
+     * Walks the path from the given object.
+     *
+     * @param target the object to start from, must not be <tt>null</tt>
+     * @return the value, or {@link #UNRESOLVED} if the path cannot be walked without the bean language
+     */
+    public Object getValue(Object target) {
+        Object result = target;
+        for (int i = 0; i < steps.length; i++) {
+            Step step = steps[i];
+            if (result == null) {
+                // the bean language fails when invoking a method on null
+                return UNRESOLVED;
+            }
+            if (step.name != null) {
+                result = step.invokeGetter(result);
+                if (result == UNRESOLVED) {
+                    return UNRESOLVED;
+                }
+            }
+            if (step.key != null) {
+                result = step.lookup(result);
+                if (result == UNRESOLVED) {
+                    return UNRESOLVED;
+                }
+            }
+            if (result == null && step.nullSafe) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return ognl;
+    }
+
+    private static boolean isPropertyName(String name) {
+        if (name.length() == 0 || !Character.isJavaIdentifierStart(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (!Character.isJavaIdentifierPart(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The getter found for a type, or <tt>null</tt> if the type has none the bean language would invoke.
+     */
+    private static final class Getter {
+        private final Class<?> type;
+        private final Method method;
+
+        Getter(Class<?> type, Method method) {
+            this.type = type;
+            this.method = method;
+        }
+    }
+
+    private static final class Step {
+        private final String name;
+        private final String key;
+        private final boolean nullSafe;
+        private volatile Getter getter;
+
+        Step(String name, String key, boolean nullSafe) {
+            this.name = name;
+            this.key = key;
+            this.nullSafe = nullSafe;
+        }
+
+        Object invokeGetter(Object target) {
+            Getter cached = getter;
+            if (cached == null || cached.type != target.getClass()) {
+                cached = new Getter(target.getClass(), findGetter(target.getClass(), name));
+                getter = cached;
+            }
+            if (cached.method == null) {
+                return UNRESOLVED;
+            }
+            try {
+                return cached.method.invoke(target);
+            } catch (Exception e) {
+                // let the bean language report the failure
+                return UNRESOLVED;
+            }
+        }
+
+        Object lookup(Object target) {
+            if (target instanceof Map) {
+                return ((Map<?, ?>) target).get(key);
+            }
+            if (target instanceof List) {
+                List<?> list = (List<?>) target;
+                int num;
+                try {
+                    num = Integer.parseInt(key);
+                } catch (NumberFormatException e) {
+                    return UNRESOLVED;
+                }
+                if (num >= 0 && num < list.size()) {
+                    return list.get(num);
+                }
+            }
+            return UNRESOLVED;
+        }
+
+        /**
+         * Finds the getter the bean language would invoke for the method name or the shorthand name of a getter, but
+         * only when it is the one method it could choose.
+         */
+        private static Method findGetter(Class<?> type, String name) {
+            if (Proxy.isProxyClass(type)) {
+                return null;
+            }
+            Method named = null;
+            Method shorthand = null;
+            boolean ambiguous = false;
+            for (Method method : type.getMethods()) {
+                if (method.isBridge()) {
+                    continue;
+                }
+                if (method.getName().equals(name)) {
+                    // a method with the name is chosen before the getters, it must not be overloaded
+                    ambiguous |= named != null;
+                    named = method;
+                } else if (IntrospectionSupport.isGetter(method) && name.equals(IntrospectionSupport.getGetterShorthandName(method))) {
+                    // both getXxx and isXxx
+                    ambiguous |= shorthand != null;
+                    shorthand = method;
+                }
+            }
+            if (named != null && !IntrospectionSupport.isGetter(named)) {
+                return null;
+            }
+            Method answer = named != null ? named : shorthand;
+            if (ambiguous || answer == null || answer.getDeclaringClass() == Object.class || Modifier.isStatic(answer.getModifiers())
+                    || !Modifier.isPublic(answer.getDeclaringClass().getModifiers()) || Exchange.class.isAssignableFrom(answer.getReturnType())) {
+                return null;
+            }
+            return answer;
+        }
+    }
+}
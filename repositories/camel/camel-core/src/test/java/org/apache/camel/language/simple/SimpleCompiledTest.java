@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.language.simple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import org.apache.camel.component.bean.MethodNotFoundException;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.language.bean.RuntimeBeanExpressionException;
+
+/**
+ * Runs all the simple language tests with OGNL notations compiled into direct getter calls.
+ */
+public class SimpleCompiledTest extends SimpleTest {
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        JndiRegistry jndi = super.createRegistry();
+        SimpleLanguage simple = new SimpleLanguage();
+        simple.setCompiled(true);
+        jndi.bind("simple", simple);
+        return jndi;
+    }
+
+    public void testCompiledLanguage() throws Exception {
+        SimpleLanguage simple = assertIsInstanceOf(SimpleLanguage.class, context.resolveLanguage("simple"));
+        assertTrue(simple.isCompiled());
+    }
+
+    public void testCompiledChangingBodies() throws Exception {
+        List<OrderLine> lines = new ArrayList<OrderLine>();
+        lines.add(new OrderLine(123, "Camel in Action"));
+        lines.add(new OrderLine(456, "ActiveMQ in Action"));
+
+        Predicate predicate = context.resolveLanguage("simple").createPredicate("${body.lines[0].id} == 123");
+        Expression expression = context.resolveLanguage("simple").createExpression("${body.lines[1].name}");
+
+        exchange.getIn().setBody(new Order(lines));
+        assertTrue(predicate.matches(exchange));
+        assertEquals("ActiveMQ in Action", expression.evaluate(exchange, String.class));
+
+        // another type with the same getters
+        exchange.getIn().setBody(new Shipment(Arrays.asList(lines.get(1), lines.get(0))));
+        assertFalse(predicate.matches(exchange));
+        assertEquals("Camel in Action", expression.evaluate(exchange, String.class));
+
+        // a type without the getter falls back to the bean language
+        exchange.getIn().setBody(new MyClass());
+        try {
+            expression.evaluate(exchange, String.class);
+            fail("Should have thrown exception");
+        } catch (RuntimeBeanExpressionException e) {
+            MethodNotFoundException cause = assertIsInstanceOf(MethodNotFoundException.class, e.getCause());
+            assertEquals("lines", cause.getMethodName());
+        }
+
+        exchange.getIn().setBody(new Order(lines));
+        assertEquals("ActiveMQ in Action", expression.evaluate(exchange, String.class));
+    }
+
+    public void testCompiledHeaderAndPropertyOGNL() throws Exception {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("line", new OrderLine(123, "Camel in Action"));
+        exchange.getIn().setHeader("order", map);
+        exchange.setProperty("order", map);
+
+        Expression expression = context.resolveLanguage("simple").createExpression("${header.order[line].name} and ${exchangeProperty.order[line].id}");
+        assertEquals("Camel in Action and 123", expression.evaluate(exchange, String.class));
+
+        // a header with the full name is used before the OGNL
+        exchange.getIn().setHeader("order[line].name", "ActiveMQ in Action");
+        assertEquals("ActiveMQ in Action and 123", expression.evaluate(exchange, String.class));
+    }
+
+    public static final class Shipment {
+        private final List<OrderLine> lines;
+
+        public Shipment(List<OrderLine> lines) {
+            this.lines = lines;
+        }
+
+        public List<OrderLine> getLines() {
+            return lines;
+        }
+    }
+}
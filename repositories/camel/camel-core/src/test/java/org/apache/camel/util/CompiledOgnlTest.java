@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ */
+public class CompiledOgnlTest extends TestCase {
+
+    public void testCompile() throws Exception {
+        assertNotNull(CompiledOgnl.compile(".address.city"));
+        assertNotNull(CompiledOgnl.compile(".getAddress?.city"));
+        assertNotNull(CompiledOgnl.compile(".lines[0].name"));
+        assertNotNull(CompiledOgnl.compile("[foo]"));
+
+        // method calls are left to the bean language
+        assertNull(CompiledOgnl.compile(".name.toUpperCase()"));
+        assertNull(CompiledOgnl.compile(".name.substring(1, 2)"));
+        assertNull(CompiledOgnl.compile(""));
+        assertNull(CompiledOgnl.compile(null));
+    }
+
+    public void testGetters() throws Exception {
+        Person person = new Person("Claus", new Address("Copenhagen"));
+
+        assertEquals("Claus", CompiledOgnl.compile(".name").getValue(person));
+        assertEquals("Copenhagen", CompiledOgnl.compile(".address.city").getValue(person));
+        assertEquals("Copenhagen", CompiledOgnl.compile(".getAddress.getCity").getValue(person));
+        assertEquals(Boolean.TRUE, CompiledOgnl.compile(".address.capital").getValue(person));
+    }
+
+    public void testNullSafe() throws Exception {
+        Person person = new Person("Claus", new Address(null));
+
+        // the null safe operator stops at the method after it
+        assertNull(CompiledOgnl.compile(".address?.city.empty").getValue(person));
+        // the bean language reports the null
+        assertSame(CompiledOgnl.UNRESOLVED, CompiledOgnl.compile(".address.city.empty").getValue(person));
+        // the last value can be null
+        assertNull(CompiledOgnl.compile(".address.city").getValue(person));
+    }
+
+    public void testIndex() throws Exception {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("foo", new Address("Paris"));
+        List<Object> list = new ArrayList<Object>();
+        list.add(map);
+
+        assertEquals("Paris", CompiledOgnl.compile("[0][foo].city").getValue(list));
+        assertEquals("Paris", CompiledOgnl.compile("[0]['foo'].city").getValue(list));
+        assertNull(CompiledOgnl.compile("[0][bar]").getValue(list));
+        assertNull(CompiledOgnl.compile("[0]?[bar].city").getValue(list));
+
+        // out of bounds and last are left to the bean language
+        assertSame(CompiledOgnl.UNRESOLVED, CompiledOgnl.compile("[1]").getValue(list));
+        assertSame(CompiledOgnl.UNRESOLVED, CompiledOgnl.compile("[last]").getValue(list));
+    }
+
+    public void testChangingTypes() throws Exception {
+        CompiledOgnl ognl = CompiledOgnl.compile(".city");
+
+        assertEquals("Copenhagen", ognl.getValue(new Address("Copenhagen")));
+        assertEquals("Paris", ognl.getValue(new CapitalAddress("Paris")));
+        assertEquals("Rome", ognl.getValue(new Address("Rome")));
+        // no getter so the bean language must be used
+        assertSame(CompiledOgnl.UNRESOLVED, ognl.getValue("Rome"));
+    }
+
+    public void testNotGetters() throws Exception {
+        // a method which is not a getter
+        assertSame(CompiledOgnl.UNRESOLVED, CompiledOgnl.compile(".length").getValue("Camel"));
+        // methods from Object are not invoked by the bean language
+        assertSame(CompiledOgnl.UNRESOLVED, CompiledOgnl.compile(".class").getValue("Camel"));
+        // getters of classes which are not public
+        assertSame(CompiledOgnl.UNRESOLVED, CompiledOgnl.compile(".city").getValue(new HiddenAddress()));
+    }
+
+    public static class Person {
+        private final String name;
+        private final Address address;
+
+        public Person(String name, Address address) {
+            this.name = name;
+            this.address = address;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Address getAddress() {
+            return address;
+        }
+    }
+
+    public static class Address {
+        private final String city;
+
+        public Address(String city) {
+            this.city = city;
+        }
+
+        public String getCity() {
+            return city;
+        }
+
+        public boolean isCapital() {
+            return "Copenhagen".equals(city);
+        }
+    }
+
+    public static class CapitalAddress extends Address {
+
+        public CapitalAddress(String city) {
+            super(city);
+        }
+
+        @Override
+        public boolean isCapital() {
+            return true;
+        }
+    }
+
+    private static class HiddenAddress {
+
+        public String getCity() {
+            return "Hidden";
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.test.perf;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.language.simple.SimpleLanguage;
+import org.apache.camel.util.StopWatch;
+import org.junit.Test;
+
+public class SimpleOgnlPerformanceTest extends AbstractBasePerformanceTest {
+
+    private static final String PREDICATE = "${body.order.symbol} == 'IBM' && ${body.order.volume} > 1000";
+
+    private final int count = 30000;
+
+    @Test
+    public void testFilterSimple() throws InterruptedException {
+        template.setDefaultEndpointUri("direct:filter-simple");
+
+        // warm up with 20.000 messages so that the JIT compiler kicks in
+        execute(20000);
+
+        resetMock(count);
+
+        StopWatch watch = new StopWatch();
+        execute(count);
+
+        assertMockEndpointsSatisfied();
+        log.warn("Ran {} tests in {}ms", count, watch.taken());
+    }
+
+    @Test
+    public void testFilterCompiledSimple() throws InterruptedException {
+        template.setDefaultEndpointUri("direct:filter-compiled-simple");
+
+        // warm up with 20.000 messages so that the JIT compiler kicks in
+        execute(20000);
+
+        resetMock(count);
+
+        StopWatch watch = new StopWatch();
+        execute(count);
+
+        assertMockEndpointsSatisfied();
+        log.warn("Ran {} tests in {}ms", count, watch.taken());
+    }
+
+    @Override
+    protected void execute(int count) {
+        for (int counter = 0; counter < count; counter++) {
+            template.sendBody(new Trade(new Order("IBM", 2000)));
+        }
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        final SimpleLanguage compiled = new SimpleLanguage();
+        compiled.setCompiled(true);
+
+        return new RouteBuilder() {
+            public void configure() throws Exception {
+                from("direct:filter-simple")
+                    .filter(simple(PREDICATE))
+                        .to("mock:end");
+
+                from("direct:filter-compiled-simple")
+                    .filter(compiled.createPredicate(PREDICATE))
+                        .to("mock:end");
+            }
+        };
+    }
+
+    public static final class Trade {
+        private final Order order;
+
+        public Trade(Order order) {
+            this.order = order;
+        }
+
+        public Order getOrder() {
+            return order;
+        }
+    }
+
+    public static final class Order {
+        private final String symbol;
+        private final int volume;
+
+        public Order(String symbol, int volume) {
+            this.symbol = symbol;
+            this.volume = volume;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public int getVolume() {
+            return volume;
+        }
+    }
+}